@@ -0,0 +1,49 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.widget.ImageView;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+/**
+ * Loads the animated illustrations of the action screens.
+ *
+ * Glide's memory cache is keyed by size and transformation, so the GIFs are always decoded at
+ * their original size without a transformation (the ImageView's scale type still fits them).
+ * That makes {@link #preload} and {@link #load} share cache entries: a GIF preloaded by
+ * {@link Prefetch} shows on its action screen without decoding again.
+ */
+public final class ActionGifs {
+
+    /**
+     * Every GIF the screens behind the first two action cards on Main1 show, the likeliest to be
+     * opened first: {@link ReduceF_waste} (gif1, gif2) and {@link ShortWalkAction} (gif1, gif3, gif4).
+     */
+    static final int[] FIRST_SCREENS = {R.drawable.gif1, R.drawable.gif2, R.drawable.gif3, R.drawable.gif4};
+
+    private static final RequestOptions OPTIONS = new RequestOptions()
+            .override(Target.SIZE_ORIGINAL)
+            .dontTransform();
+
+    private ActionGifs() {}
+
+    public static void load(ImageView imageView, int gifResourceId) {
+        Glide.with(imageView)
+                .asGif()
+                .load(gifResourceId)
+                .apply(OPTIONS)
+                .transition(DrawableTransitionOptions.withCrossFade())
+                .into(imageView);
+    }
+
+    /** Decodes {@code gifResourceId} into the memory cache; the target can be cleared to cancel. */
+    static Target<?> preload(Context context, int gifResourceId) {
+        return Glide.with(context.getApplicationContext())
+                .asGif()
+                .load(gifResourceId)
+                .apply(OPTIONS)
+                .preload();
+    }
+}
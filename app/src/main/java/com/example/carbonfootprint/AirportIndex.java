@@ -0,0 +1,428 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Embedded airport database with a type-ahead prefix index.
+ *
+ * Ships as {@code assets/airports.bin}, compiled by {@link #compile} from an OurAirports-style
+ * {@code airports.csv}. The asset is read in one go and sliced into primitive arrays;
+ * names live in a single UTF-8 blob and are decoded only for displayed results. No
+ * per-airport objects exist. The prefix index is a sorted list of search tokens (IATA
+ * code, city, and the words of city and name, lowercased and stripped of accents). A
+ * keystroke is one binary search plus a scan of the matching range.
+ *
+ * The bundled asset covers about 150 large and medium airports with scheduled service, not
+ * the full OurAirports list of roughly 10,000 with an IATA code: it is compiled from a
+ * trimmed extract to keep the APK small. Compiling the full {@code airports.csv} needs no code
+ * change; the format and the search are built for that size (about 1 MB).
+ *
+ * Binary layout (big-endian):
+ * <pre>
+ * int    magic "CFAP"
+ * short  format version
+ * int    airport count N, int text bytes T, int token count K, int key bytes B
+ * int    IATA code x N (three ASCII letters, first in the high byte)
+ * int    latitude, longitude in microdegrees x N each
+ * byte   size x N (2 large, 1 medium, 0 small)
+ * int    text start x (N + 1), then T bytes of "name\ncity\ncountry"
+ * int    key start x (K + 1), int airport x K, then B bytes of sorted keys
+ * </pre>
+ */
+public final class AirportIndex {
+
+    public static final int NOT_FOUND = -1;
+
+    private static final String TAG = "AirportIndex";
+    private static final String FILE_NAME = "airports.bin";
+    private static final int MAGIC = 0x43464150; // "CFAP"
+    private static final short FORMAT = 1;
+
+    // Words too common in airport names to help type-ahead
+    private static final Set<String> STOP_WORDS = new LinkedHashSet<>(Arrays.asList(
+            "airport", "international", "intl", "regional", "municipal", "field", "the", "of", "de", "del", "la"));
+
+    private static volatile AirportIndex current;
+
+    private final int count;
+    private final int[] codes;
+    private final int[] latE6;
+    private final int[] lonE6;
+    private final byte[] size;
+    private final int[] textStart;
+    private final byte[] text;
+    private final int[] keyStart;
+    private final int[] keyAirport;
+    private final byte[] keys;
+
+    private AirportIndex(int count, int[] codes, int[] latE6, int[] lonE6, byte[] size,
+                         int[] textStart, byte[] text, int[] keyStart, int[] keyAirport, byte[] keys) {
+        this.count = count;
+        this.codes = codes;
+        this.latE6 = latE6;
+        this.lonE6 = lonE6;
+        this.size = size;
+        this.textStart = textStart;
+        this.text = text;
+        this.keyStart = keyStart;
+        this.keyAirport = keyAirport;
+        this.keys = keys;
+    }
+
+    /** Shared index, read from the bundled asset on first use. Call off the main thread. */
+    public static AirportIndex get(Context context) throws IOException {
+        AirportIndex index = current;
+        if (index == null) {
+            synchronized (AirportIndex.class) {
+                if (current == null) {
+                    try (InputStream in = context.getApplicationContext().getAssets().open(FILE_NAME)) {
+                        current = read(in);
+                    }
+                    Log.d(TAG, "Loaded " + current.count + " airports");
+                }
+                index = current;
+            }
+        }
+        return index;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public String code(int airport) {
+        int c = codes[airport];
+        return new String(new char[]{(char) (c >>> 16), (char) ((c >>> 8) & 0xFF), (char) (c & 0xFF)});
+    }
+
+    public double latitude(int airport) {
+        return latE6[airport] / 1e6;
+    }
+
+    public double longitude(int airport) {
+        return lonE6[airport] / 1e6;
+    }
+
+    public String name(int airport) {
+        return field(airport, 0);
+    }
+
+    public String city(int airport) {
+        return field(airport, 1);
+    }
+
+    public String country(int airport) {
+        return field(airport, 2);
+    }
+
+    /** "LHR – Heathrow Airport, London (GB)" */
+    public String label(int airport) {
+        return code(airport) + " – " + name(airport) + ", " + city(airport) + " (" + country(airport) + ")";
+    }
+
+    /**
+     * Up to {@code limit} airports whose code, city or a name word starts with the query.
+     * An exact code match comes first, then larger airports.
+     */
+    public int[] search(String query, int limit) {
+        byte[] prefix = normalize(query).getBytes(StandardCharsets.US_ASCII);
+        if (prefix.length == 0 || limit <= 0) return new int[0];
+        int packedQuery = prefix.length == 3 ? pack(prefix) : 0;
+
+        int[] best = new int[limit];
+        int[] bestScore = new int[limit];
+        int found = 0;
+        for (int k = lowerBound(prefix); k < keyAirport.length && startsWith(k, prefix); k++) {
+            int airport = keyAirport[k];
+            int score = size[airport] + (codes[airport] == packedQuery ? 10 : 0);
+
+            // Already listed through another token: keep its better score
+            int at = -1;
+            for (int i = 0; i < found; i++) {
+                if (best[i] == airport) {
+                    at = i;
+                    break;
+                }
+            }
+            if (at >= 0) {
+                if (score <= bestScore[at]) continue;
+            } else if (found < limit) {
+                at = found++;
+            } else if (score > bestScore[found - 1]) {
+                at = found - 1;
+            } else {
+                continue;
+            }
+            // Bubble up to keep the list sorted by descending score
+            while (at > 0 && bestScore[at - 1] < score) {
+                best[at] = best[at - 1];
+                bestScore[at] = bestScore[at - 1];
+                at--;
+            }
+            best[at] = airport;
+            bestScore[at] = score;
+        }
+        return Arrays.copyOf(best, found);
+    }
+
+    /** Airport for a typed code, a picked label ("LHR – …") or the best prefix match. */
+    public int resolve(String input) {
+        String trimmed = input.trim();
+        if (trimmed.isEmpty()) return NOT_FOUND;
+        String head = trimmed.startsWith(" – ", 3) ? trimmed.substring(0, 3) : trimmed;
+        int[] match = search(head, 1);
+        return match.length > 0 ? match[0] : NOT_FOUND;
+    }
+
+    /** Great-circle distance in km between two airports. */
+    public double distanceKm(int from, int to) {
+        return FlightCalculator.greatCircleKm(latitude(from), longitude(from), latitude(to), longitude(to));
+    }
+
+    private String field(int airport, int field) {
+        int start = textStart[airport];
+        int end = textStart[airport + 1];
+        for (int f = 0; f < field; f++) {
+            while (start < end && text[start] != '\n') start++;
+            start++;
+        }
+        int stop = start;
+        while (stop < end && text[stop] != '\n') stop++;
+        return new String(text, start, Math.max(0, stop - start), StandardCharsets.UTF_8);
+    }
+
+    private int lowerBound(byte[] prefix) {
+        int low = 0, high = keyAirport.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(mid, prefix) < 0) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int compareKey(int k, byte[] other) {
+        int start = keyStart[k];
+        int length = keyStart[k + 1] - start;
+        int n = Math.min(length, other.length);
+        for (int i = 0; i < n; i++) {
+            int d = (keys[start + i] & 0xFF) - (other[i] & 0xFF);
+            if (d != 0) return d;
+        }
+        return length - other.length;
+    }
+
+    private boolean startsWith(int k, byte[] prefix) {
+        int start = keyStart[k];
+        if (keyStart[k + 1] - start < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (keys[start + i] != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static int pack(byte[] code) {
+        return (Character.toUpperCase(code[0]) << 16) | (Character.toUpperCase(code[1]) << 8)
+                | Character.toUpperCase(code[2]);
+    }
+
+    // Lowercase ASCII with accents stripped and anything else turned into single spaces
+    static String normalize(String s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFD);
+        StringBuilder out = new StringBuilder(decomposed.length());
+        boolean space = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = Character.toLowerCase(decomposed.charAt(i));
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                out.append(c);
+                space = false;
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK && !space) {
+                out.append(' ');
+                space = true;
+            }
+        }
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') end--;
+        return out.substring(0, end);
+    }
+
+    static AirportIndex read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 20);
+        byte[] chunk = new byte[1 << 16];
+        int n;
+        while ((n = in.read(chunk)) > 0) bytes.write(chunk, 0, n);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not an airport index");
+            short format = buffer.getShort();
+            if (format != FORMAT) throw new IOException("Unsupported airport index format " + format);
+            int count = buffer.getInt();
+            int textBytes = buffer.getInt();
+            int tokens = buffer.getInt();
+            int keyBytes = buffer.getInt();
+
+            int[] codes = ints(buffer, count);
+            int[] lat = ints(buffer, count);
+            int[] lon = ints(buffer, count);
+            byte[] size = bytes(buffer, count);
+            int[] textStart = ints(buffer, count + 1);
+            byte[] text = bytes(buffer, textBytes);
+            int[] keyStart = ints(buffer, tokens + 1);
+            int[] keyAirport = ints(buffer, tokens);
+            byte[] keys = bytes(buffer, keyBytes);
+            return new AirportIndex(count, codes, lat, lon, size, textStart, text, keyStart, keyAirport, keys);
+        } catch (RuntimeException e) {
+            throw new IOException("Truncated airport index", e);
+        }
+    }
+
+    private static int[] ints(ByteBuffer buffer, int n) {
+        int[] out = new int[n];
+        buffer.asIntBuffer().get(out);
+        buffer.position(buffer.position() + n * 4);
+        return out;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer, int n) {
+        byte[] out = new byte[n];
+        buffer.get(out);
+        return out;
+    }
+
+    /**
+     * Builds the binary index from an OurAirports {@code airports.csv} (columns found by name:
+     * type, name, latitude_deg, longitude_deg, iso_country, municipality, iata_code). Rows
+     * without an IATA code and closed airports are skipped.
+     */
+    public static void compile(Reader csv, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(csv);
+        List<String> header = splitCsv(reader.readLine());
+        int typeColumn = header.indexOf("type");
+        int nameColumn = header.indexOf("name");
+        int latColumn = header.indexOf("latitude_deg");
+        int lonColumn = header.indexOf("longitude_deg");
+        int countryColumn = header.indexOf("iso_country");
+        int cityColumn = header.indexOf("municipality");
+        int codeColumn = header.indexOf("iata_code");
+        if (Math.min(Math.min(typeColumn, nameColumn), Math.min(Math.min(latColumn, lonColumn),
+                Math.min(Math.min(countryColumn, cityColumn), codeColumn))) < 0) {
+            throw new IOException("Missing OurAirports columns in " + header);
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            List<String> cells = splitCsv(line);
+            if (cells.size() < header.size()) continue;
+            String code = cells.get(codeColumn).trim().toUpperCase(Locale.ROOT);
+            String type = cells.get(typeColumn);
+            if (!code.matches("[A-Z]{3}") || !type.endsWith("airport")) continue;
+            rows.add(new String[]{code, cells.get(nameColumn), cells.get(cityColumn),
+                    cells.get(countryColumn), cells.get(latColumn), cells.get(lonColumn), type});
+        }
+        rows.sort((a, b) -> a[0].compareTo(b[0]));
+
+        int count = rows.size();
+        ByteArrayOutputStream text = new ByteArrayOutputStream();
+        int[] textStart = new int[count + 1];
+        List<String> tokenKeys = new ArrayList<>();
+        List<Integer> tokenAirports = new ArrayList<>();
+        for (int a = 0; a < count; a++) {
+            String[] row = rows.get(a);
+            textStart[a] = text.size();
+            byte[] entry = (row[1] + "\n" + row[2] + "\n" + row[3]).getBytes(StandardCharsets.UTF_8);
+            text.write(entry, 0, entry.length);
+
+            Set<String> tokens = new LinkedHashSet<>();
+            tokens.add(normalize(row[0]));
+            String city = normalize(row[2]);
+            if (!city.isEmpty()) tokens.add(city);
+            for (String word : (city + " " + normalize(row[1])).split(" ")) {
+                if (word.length() > 1 && !STOP_WORDS.contains(word)) tokens.add(word);
+            }
+            for (String token : tokens) {
+                tokenKeys.add(token);
+                tokenAirports.add(a);
+            }
+        }
+        textStart[count] = text.size();
+
+        Integer[] order = new Integer[tokenKeys.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (x, y) -> tokenKeys.get(x).compareTo(tokenKeys.get(y)));
+        ByteArrayOutputStream keyBytes = new ByteArrayOutputStream();
+        int[] keyStart = new int[order.length + 1];
+        int[] keyAirport = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            keyStart[i] = keyBytes.size();
+            byte[] key = tokenKeys.get(order[i]).getBytes(StandardCharsets.US_ASCII);
+            keyBytes.write(key, 0, key.length);
+            keyAirport[i] = tokenAirports.get(order[i]);
+        }
+        keyStart[order.length] = keyBytes.size();
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(FORMAT);
+        data.writeInt(count);
+        data.writeInt(text.size());
+        data.writeInt(order.length);
+        data.writeInt(keyBytes.size());
+        for (String[] row : rows) data.writeInt(pack(row[0].getBytes(StandardCharsets.US_ASCII)));
+        for (String[] row : rows) data.writeInt((int) Math.round(Double.parseDouble(row[4]) * 1e6));
+        for (String[] row : rows) data.writeInt((int) Math.round(Double.parseDouble(row[5]) * 1e6));
+        for (String[] row : rows) {
+            data.writeByte(row[6].startsWith("large") ? 2 : row[6].startsWith("medium") ? 1 : 0);
+        }
+        for (int start : textStart) data.writeInt(start);
+        text.writeTo(data);
+        for (int start : keyStart) data.writeInt(start);
+        for (int airport : keyAirport) data.writeInt(airport);
+        keyBytes.writeTo(data);
+        data.flush();
+    }
+
+    private static List<String> splitCsv(String line) {
+        List<String> cells = new ArrayList<>();
+        if (line == null) return cells;
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                // A doubled quote inside a quoted cell is a literal quote
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.carbonfootprint;
+
+/**
+ * Packs all answers of one survey category into a single long.
+ *
+ * Each question gets just enough bits for its option count plus an "unanswered" code
+ * (value 0; option {@code n} is stored as {@code n + 1}). Widths come from the survey
+ * layout, so the largest category needs 28 bits. The catalog version and a format tag sit
+ * above the answers:
+ * <pre>
+ * bits  0..31  answers, question 0 in the lowest bits
+ * bits 32..47  catalog version the emissions were computed with
+ * bits 48..51  codec format
+ * </pre>
+ * The value stays below 2^53 so it survives Realtime Database's double-based numbers.
+ */
+public final class AnswerCodec {
+
+    public static final int FORMAT = 1;
+
+    private static final int VERSION_SHIFT = 32;
+    private static final int VERSION_BITS = 16;
+    private static final int FORMAT_SHIFT = 48;
+    private static final int FORMAT_BITS = 4;
+    private static final int ANSWER_BITS = 32;
+
+    // Bit offset and width of every question, per category
+    private static final int[][] SHIFT = new int[EmissionEngine.CATEGORY_COUNT][];
+    private static final int[][] WIDTH = new int[EmissionEngine.CATEGORY_COUNT][];
+
+    static {
+        EmissionEngine layout = EmissionEngine.getDefault();
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            int questions = layout.questionCount(c);
+            SHIFT[c] = new int[questions];
+            WIDTH[c] = new int[questions];
+            int shift = 0;
+            for (int q = 0; q < questions; q++) {
+                // Room for every option plus the unanswered code
+                int width = 32 - Integer.numberOfLeadingZeros(layout.optionCount(c, q));
+                SHIFT[c][q] = shift;
+                WIDTH[c][q] = width;
+                shift += width;
+            }
+            if (shift > ANSWER_BITS) {
+                throw new IllegalStateException(EmissionEngine.CATEGORY_NAMES[c] + " needs " + shift + " answer bits");
+            }
+        }
+    }
+
+    private AnswerCodec() {}
+
+    public static long encode(int category, int[] answers, int catalogVersion) {
+        if (catalogVersion < 0 || catalogVersion >= 1 << VERSION_BITS) {
+            throw new IllegalArgumentException("Catalog version out of range: " + catalogVersion);
+        }
+        int[] shift = SHIFT[category];
+        int[] width = WIDTH[category];
+
+        long packed = 0;
+        for (int q = 0; q < shift.length; q++) {
+            int code = answers[q] < 0 ? 0 : answers[q] + 1;
+            if (code >= 1 << width[q]) {
+                throw new IllegalArgumentException("Option " + answers[q] + " out of range for question " + q);
+            }
+            packed |= (long) code << shift[q];
+        }
+        return packed
+                | (long) catalogVersion << VERSION_SHIFT
+                | (long) FORMAT << FORMAT_SHIFT;
+    }
+
+    /** Unpacks the answers into {@code out}; unanswered questions become {@link EmissionEngine#UNANSWERED}. */
+    public static void decode(int category, long packed, int[] out) {
+        int[] shift = SHIFT[category];
+        for (int q = 0; q < shift.length; q++) {
+            out[q] = answer(category, packed, q);
+        }
+    }
+
+    public static int answer(int category, long packed, int question) {
+        int code = (int) (packed >>> SHIFT[category][question]) & ((1 << WIDTH[category][question]) - 1);
+        return code - 1;
+    }
+
+    public static int catalogVersion(long packed) {
+        return (int) (packed >>> VERSION_SHIFT) & ((1 << VERSION_BITS) - 1);
+    }
+
+    public static int format(long packed) {
+        return (int) (packed >>> FORMAT_SHIFT) & ((1 << FORMAT_BITS) - 1);
+    }
+}
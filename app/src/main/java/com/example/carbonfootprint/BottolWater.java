@@ -3,23 +3,15 @@ package com.example.carbonfootprint;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
 import android.widget.TextView;
-import android.widget.Toast;
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.MutableData;
-import com.google.firebase.database.Transaction;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -97,11 +89,8 @@ public class BottolWater extends AppCompatActivity {
 
     // Helper method to load GIFs
     private void loadGif(ImageView imageView, int gifResourceId) {
-        Glide.with(this)
-                .asGif()
-                .load(gifResourceId)
-                .transition(DrawableTransitionOptions.withCrossFade())
-                .into(imageView);
+        // Shared options, so a GIF the login prefetch decoded is reused
+        ActionGifs.load(imageView, gifResourceId);
     }
 
     private void saveCardData() {
@@ -137,45 +126,11 @@ public class BottolWater extends AppCompatActivity {
 
     private void updateFirebaseData() {
         String userId = mAuth.getCurrentUser().getUid();
-        DatabaseReference userRef = mDatabase.child("Users").child(userId);
-
-        userRef.runTransaction(new Transaction.Handler() {
-            @Override
-            public Transaction.Result doTransaction(MutableData mutableData) {
-                User user = mutableData.getValue(User.class);
-                if (user == null) {
-                    // Create new user if doesn't exist
-                    user = new User("", 0.2, 5); // 0.2kg CO2 saved, 5 points
-                    mutableData.setValue(user);
-                    return Transaction.success(mutableData);
-                }
-
-                // Update CO2 saved (convert 200g to kg = 0.2kg)
-                user.setTotalCO2Saved(user.getTotalCO2Saved() + 0.2);
-
-                // Update Talipoints
-                user.setTaliPoints(user.getTaliPoints() + 5);
-
-                mutableData.setValue(user);
-                return Transaction.success(mutableData);
-            }
-
-            @Override
-            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
-                if (committed) {
-                    Log.d("Firebase", "Transaction successfully committed");
-                    // Redirect to completion page
-                    Intent intent = new Intent(BottolWater.this, BottolWaterDone.class);
-                    startActivity(intent);
-                    overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-                } else {
-                    Log.e("Firebase", "Transaction failed: " + databaseError.getMessage());
-                    // Show error message
-                    Toast.makeText(BottolWater.this, "Failed to save data. Please try again.", Toast.LENGTH_SHORT).show();
-                }
-
-            }
-        });
 
+        // 200g CO2 saved = 0.2kg, 5 Talipoints; queued, so the action counts even without a connection
+        Rewards.queueAward(this, userId, 0.2, 5);
+        Intent intent = new Intent(BottolWater.this, BottolWaterDone.class);
+        startActivity(intent);
+        overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
     }
 }
\ No newline at end of file
@@ -0,0 +1,333 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Population statistics over every stored survey, held column by column.
+ *
+ * Each question is one {@code byte[]} of option ordinals indexed by user row, and each
+ * category's annual emissions is one {@code float[]}, plus a {@link #TOTAL} column. A million
+ * users take about 30 MB. Queries scan the columns in fixed blocks on the common fork/join
+ * pool and merge per-block partial sums, so no per-row objects are created.
+ *
+ * Supported queries are the share of each option, the mean emissions per option (group-by),
+ * and percentiles of an emission column. Each accepts an optional {@link Filter}.
+ */
+public final class CohortAnalytics {
+
+    /** Column index of the all-category total; 0..CATEGORY_COUNT-1 are the categories. */
+    public static final int TOTAL = EmissionEngine.CATEGORY_COUNT;
+
+    // Rows per scan block; also the unit of parallel work
+    private static final int BLOCK_ROWS = 1 << 15;
+
+    private final int size;
+    private final byte[][][] answers;   // [category][question][row], UNANSWERED when missing
+    private final float[][] emissions;  // [category or TOTAL][row], tons CO₂e/year
+    private final byte[] present;       // bit c set when the user has a record for category c
+
+    /** Rows whose answers equal every given option; build with {@link #where} and {@link #and}. */
+    public static final class Filter {
+        final int[] categories;
+        final int[] questions;
+        final int[] options;
+
+        private Filter(int[] categories, int[] questions, int[] options) {
+            this.categories = categories;
+            this.questions = questions;
+            this.options = options;
+        }
+
+        public static Filter where(int category, int question, int option) {
+            return new Filter(new int[]{category}, new int[]{question}, new int[]{option});
+        }
+
+        public Filter and(int category, int question, int option) {
+            int n = questions.length;
+            int[] c = Arrays.copyOf(categories, n + 1);
+            int[] q = Arrays.copyOf(questions, n + 1);
+            int[] o = Arrays.copyOf(options, n + 1);
+            c[n] = category;
+            q[n] = question;
+            o[n] = option;
+            return new Filter(c, q, o);
+        }
+    }
+
+    private CohortAnalytics(int size, byte[][][] answers, float[][] emissions, byte[] present) {
+        this.size = size;
+        this.answers = answers;
+        this.emissions = emissions;
+        this.present = present;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Number of users matching the filter; null matches everyone. */
+    public long count(Filter filter) {
+        byte[][] columns = filterColumns(filter);
+        byte[] values = filterValues(filter);
+        return (long) scan(1, (from, to, acc) -> {
+            int n = 0;
+            for (int r = from; r < to; r++) {
+                if (matches(columns, values, r)) n++;
+            }
+            acc[0] += n;
+        })[0];
+    }
+
+    /**
+     * Fraction of answering users on each option of a question, e.g. the share heating with
+     * gas. Users who skipped the question are left out of the denominator.
+     */
+    public double[] optionShares(int category, int question, Filter filter) {
+        byte[] column = answers[category][question];
+        byte[][] columns = filterColumns(filter);
+        byte[] values = filterValues(filter);
+        double[] counts = scan(optionCount(category, question), (from, to, acc) -> {
+            for (int r = from; r < to; r++) {
+                int option = column[r];
+                if (option >= 0 && matches(columns, values, r)) acc[option]++;
+            }
+        });
+        double answered = 0;
+        for (double c : counts) answered += c;
+        for (int o = 0; o < counts.length; o++) {
+            counts[o] = answered > 0 ? counts[o] / answered : 0;
+        }
+        return counts;
+    }
+
+    /**
+     * Mean of an emission column grouped by the option chosen on a question, e.g. mean travel
+     * emissions per transport choice. Options nobody chose get NaN.
+     */
+    public double[] meanByOption(int category, int question, int column, Filter filter) {
+        byte[] groups = answers[category][question];
+        float[] values = emissions[column];
+        int presentMask = presentMask(column);
+        byte[][] columns = filterColumns(filter);
+        byte[] filterValues = filterValues(filter);
+        int options = optionCount(category, question);
+        // Sums in [0, options), counts in [options, 2 * options)
+        double[] acc = scan(2 * options, (from, to, partial) -> {
+            for (int r = from; r < to; r++) {
+                int option = groups[r];
+                if (option < 0 || (present[r] & presentMask) == 0 || !matches(columns, filterValues, r)) continue;
+                partial[option] += values[r];
+                partial[options + option]++;
+            }
+        });
+        double[] means = new double[options];
+        for (int o = 0; o < options; o++) {
+            means[o] = acc[options + o] > 0 ? acc[o] / acc[options + o] : Double.NaN;
+        }
+        return means;
+    }
+
+    /**
+     * Nearest-rank percentiles of an emission column over users who have it, for each
+     * fraction in {@code fractions} (0.5 is the median). Empty selections give NaN.
+     */
+    public double[] percentiles(int column, Filter filter, double... fractions) {
+        float[] values = emissions[column];
+        int presentMask = presentMask(column);
+        byte[][] columns = filterColumns(filter);
+        byte[] filterValues = filterValues(filter);
+
+        // First pass counts matches per block so the second can write without coordination
+        int blocks = blockCount();
+        double[] perBlock = scan(blocks, (from, to, acc) -> {
+            int n = 0;
+            for (int r = from; r < to; r++) {
+                if ((present[r] & presentMask) != 0 && matches(columns, filterValues, r)) n++;
+            }
+            acc[from / BLOCK_ROWS] = n;
+        });
+        int[] offset = new int[blocks + 1];
+        for (int b = 0; b < blocks; b++) {
+            offset[b + 1] = offset[b] + (int) perBlock[b];
+        }
+
+        float[] selected = new float[offset[blocks]];
+        scan(0, (from, to, acc) -> {
+            int at = offset[from / BLOCK_ROWS];
+            for (int r = from; r < to; r++) {
+                if ((present[r] & presentMask) != 0 && matches(columns, filterValues, r)) {
+                    selected[at++] = values[r];
+                }
+            }
+        });
+        Arrays.sort(selected);
+
+        double[] result = new double[fractions.length];
+        for (int i = 0; i < fractions.length; i++) {
+            result[i] = selected.length == 0 ? Double.NaN
+                    : selected[Math.min(selected.length - 1, (int) (selected.length * fractions[i]))];
+        }
+        return result;
+    }
+
+    private int optionCount(int category, int question) {
+        return EmissionEngine.getDefault().optionCount(category, question);
+    }
+
+    // Category columns need that category's record; the total needs any record
+    private static int presentMask(int column) {
+        return column == TOTAL ? 0xFF : 1 << column;
+    }
+
+    private byte[][] filterColumns(Filter filter) {
+        if (filter == null) return null;
+        byte[][] columns = new byte[filter.questions.length][];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = answers[filter.categories[i]][filter.questions[i]];
+        }
+        return columns;
+    }
+
+    private static byte[] filterValues(Filter filter) {
+        if (filter == null) return null;
+        byte[] values = new byte[filter.options.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (byte) filter.options[i];
+        }
+        return values;
+    }
+
+    private static boolean matches(byte[][] columns, byte[] values, int row) {
+        if (columns == null) return true;
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i][row] != values[i]) return false;
+        }
+        return true;
+    }
+
+    private int blockCount() {
+        return (size + BLOCK_ROWS - 1) / BLOCK_ROWS;
+    }
+
+    private interface BlockScan {
+        /** Accumulates rows {@code [from, to)} into {@code acc}; {@code from} is block-aligned. */
+        void scan(int from, int to, double[] acc);
+    }
+
+    private double[] scan(int width, BlockScan blockScan) {
+        if (size == 0) return new double[width];
+        return ForkJoinPool.commonPool().invoke(new ScanTask(blockScan, width, 0, blockCount()));
+    }
+
+    private final class ScanTask extends RecursiveTask<double[]> {
+        private final BlockScan blockScan;
+        private final int width;
+        private final int fromBlock, toBlock;
+
+        ScanTask(BlockScan blockScan, int width, int fromBlock, int toBlock) {
+            this.blockScan = blockScan;
+            this.width = width;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (toBlock - fromBlock > 1) {
+                int mid = (fromBlock + toBlock) >>> 1;
+                ScanTask left = new ScanTask(blockScan, width, fromBlock, mid);
+                left.fork();
+                double[] right = new ScanTask(blockScan, width, mid, toBlock).compute();
+                double[] merged = left.join();
+                for (int i = 0; i < width; i++) merged[i] += right[i];
+                return merged;
+            }
+            double[] acc = new double[width];
+            int from = fromBlock * BLOCK_ROWS;
+            blockScan.scan(from, Math.min(size, from + BLOCK_ROWS), acc);
+            return acc;
+        }
+    }
+
+    /** Collects survey records one category at a time, keyed by user id. */
+    public static final class Builder {
+        private final Map<String, Integer> rows;
+        private byte[][][] answers;
+        private float[][] emissions;
+        private byte[] present;
+        private int size;
+        private int capacity;
+
+        public Builder(int expectedUsers) {
+            capacity = Math.max(expectedUsers, 16);
+            rows = new HashMap<>(capacity * 4 / 3 + 1);
+            EmissionEngine layout = EmissionEngine.getDefault();
+            answers = new byte[EmissionEngine.CATEGORY_COUNT][][];
+            for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+                answers[c] = new byte[layout.questionCount(c)][];
+                for (int q = 0; q < answers[c].length; q++) {
+                    answers[c][q] = new byte[capacity];
+                    Arrays.fill(answers[c][q], (byte) EmissionEngine.UNANSWERED);
+                }
+            }
+            emissions = new float[EmissionEngine.CATEGORY_COUNT + 1][capacity];
+            present = new byte[capacity];
+        }
+
+        /** Adds or replaces one user's record for a category; {@code answerOrdinals} is not kept. */
+        public Builder add(String uid, int category, int[] answerOrdinals, double annualTons) {
+            Integer existing = rows.get(uid);
+            int row;
+            if (existing != null) {
+                row = existing;
+            } else {
+                if (size == capacity) grow();
+                row = size++;
+                rows.put(uid, row);
+            }
+            byte[][] columns = answers[category];
+            for (int q = 0; q < columns.length; q++) {
+                columns[q][row] = (byte) answerOrdinals[q];
+            }
+            emissions[category][row] = (float) annualTons;
+            present[row] |= (byte) (1 << category);
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Fills the total column and hands the arrays over; the builder must not be reused. */
+        public CohortAnalytics build() {
+            float[] total = emissions[TOTAL];
+            for (int r = 0; r < size; r++) {
+                float sum = 0;
+                for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+                    sum += emissions[c][r];
+                }
+                total[r] = sum;
+            }
+            return new CohortAnalytics(size, answers, emissions, present);
+        }
+
+        private void grow() {
+            int grown = capacity * 2;
+            for (byte[][] category : answers) {
+                for (int q = 0; q < category.length; q++) {
+                    category[q] = Arrays.copyOf(category[q], grown);
+                    Arrays.fill(category[q], capacity, grown, (byte) EmissionEngine.UNANSWERED);
+                }
+            }
+            for (int c = 0; c < emissions.length; c++) {
+                emissions[c] = Arrays.copyOf(emissions[c], grown);
+            }
+            present = Arrays.copyOf(present, grown);
+            capacity = grown;
+        }
+    }
+}
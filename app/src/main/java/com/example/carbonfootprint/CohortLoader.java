@@ -0,0 +1,80 @@
+package com.example.carbonfootprint;
+
+import android.util.Log;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+
+/**
+ * Reads every stored survey into a {@link CohortAnalytics}.
+ *
+ * Pages through {@code surveys/home|travel|food|others} with a {@link SurveyPager}, decoding
+ * each record straight into the columnar builder, so only one page of snapshots is alive at a
+ * time. Records without stored emissions are scored with the given engine.
+ */
+public class CohortLoader {
+
+    public interface Listener {
+        void onProgress(String category, long loaded);
+        void onLoaded(CohortAnalytics analytics);
+        void onError(String message);
+    }
+
+    private static final String TAG = "CohortLoader";
+    public static final int DEFAULT_PAGE_SIZE = 1000;
+
+    private final EmissionEngine engine;
+    private final SurveyPager pager;
+    private final Listener listener;
+    private final CohortAnalytics.Builder builder;
+
+    // Reused for every record
+    private final int[] answers = new int[EmissionEngine.MAX_QUESTIONS];
+
+    private long loaded;
+
+    public CohortLoader(DatabaseReference surveysRef, EmissionEngine engine, int expectedUsers,
+                        int pageSize, Listener listener) {
+        this.engine = engine;
+        this.listener = listener;
+        this.builder = new CohortAnalytics.Builder(expectedUsers);
+        this.pager = new SurveyPager(surveysRef, pageSize, new SurveyPager.Pages() {
+            @Override
+            public void onPage(int category, DataSnapshot page, Runnable next) {
+                processPage(category, page);
+                next.run();
+            }
+
+            @Override
+            public void onDone() {
+                Log.d(TAG, "Loaded " + builder.size() + " users from " + loaded + " records");
+                listener.onLoaded(builder.build());
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        });
+    }
+
+    public void start() {
+        loaded = 0;
+        pager.start();
+    }
+
+    public void cancel() {
+        pager.cancel();
+    }
+
+    private void processPage(int category, DataSnapshot page) {
+        for (DataSnapshot record : page.getChildren()) {
+            SurveyRecord.readAnswers(category, record, answers);
+            Double annual = SurveyRecord.readStoredAnnual(record);
+            builder.add(record.getKey(), category, answers, annual != null
+                    ? annual
+                    : EmissionEngine.toAnnualTons(engine.weeklyEmissions(category, answers)));
+            loaded++;
+        }
+        listener.onProgress(EmissionEngine.CATEGORY_NAMES[category], loaded);
+    }
+}
@@ -6,27 +6,29 @@ import android.util.Log;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.TextView;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 
 public class DashBoard extends AppCompatActivity {
 
-    private TextView userName, monthYear, co2Saved, taliPoints;
+    private TextView userName, monthYear, co2Saved, taliPoints, syncStatus;
     private View homeBar, travelBar, foodBar, othersBar;
     private DatabaseReference databaseRef;
     private String userId;
 
-    private int categoriesLoaded = 0;
-    private static final int TOTAL_CATEGORIES = 4;
+    private final FootprintRepository.Observer footprintObserver = this::showSummary;
+    private final WriteQueue.Listener syncListener = this::showPendingSync;
     private float homeEmission = 0, travelEmission = 0, foodEmission = 0, othersEmission = 0;
+    private FootprintSummary summary;
+    private double[] month;   // newest rollup per category up to this month, NaN when none
 
     // Fixed bar height values
     private static final float BAR_HEIGHT_FOR_0_5_TONS = 100f;
@@ -47,6 +49,7 @@ public class DashBoard extends AppCompatActivity {
         monthYear = findViewById(R.id.monthYear);
         co2Saved = findViewById(R.id.co2Saved);
         taliPoints = findViewById(R.id.taliPoints);
+        syncStatus = findViewById(R.id.syncStatus);
         homeBar = findViewById(R.id.homeBar);
         travelBar = findViewById(R.id.travelBar);
         foodBar = findViewById(R.id.foodBar);
@@ -71,8 +74,40 @@ public class DashBoard extends AppCompatActivity {
         // Load user data with real-time updates (excluding name)
         loadUserData();
 
-        // Load emission data
-        loadEmissionData();
+        SurveyHistory.compactIfDue(this, FirebaseDatabase.getInstance().getReference(), userId);
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        FootprintRepository.get(this).observe(userId, footprintObserver);
+        WriteQueue.get(this).addListener(syncListener);
+        SurveyHistory.loadMonth(FirebaseDatabase.getInstance().getReference(), userId,
+                System.currentTimeMillis(), latest -> {
+                    month = latest;
+                    updateBars();
+                });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        FootprintRepository.get(this).removeObserver(footprintObserver);
+        WriteQueue.get(this).removeListener(syncListener);
+    }
+
+    private void showPendingSync(int pending, boolean stalled) {
+        if (pending == 0) {
+            syncStatus.setVisibility(View.GONE);
+        } else if (stalled) {
+            // A write the server keeps rejecting; it is kept and retried, but not saved yet
+            syncStatus.setText(pending == 1 ? "1 change could not be saved yet, retrying"
+                    : pending + " changes could not be saved yet, retrying");
+            syncStatus.setVisibility(View.VISIBLE);
+        } else {
+            syncStatus.setText(pending == 1 ? "1 change waiting to sync" : pending + " changes waiting to sync");
+            syncStatus.setVisibility(View.VISIBLE);
+        }
     }
 
     private void setCurrentDate() {
@@ -81,12 +116,11 @@ public class DashBoard extends AppCompatActivity {
     }
 
     private void loadUserData() {
-        // Use ValueEventListener for real-time updates (only CO2 and points, not name)
-        databaseRef.addValueEventListener(new ValueEventListener() {
+        // Shared realtime subscription, only while this screen is started (CO2 and points, not name)
+        SubscriptionHub.get().observe(this, databaseRef, new SubscriptionHub.Observer() {
             @Override
-            public void onDataChange(DataSnapshot dataSnapshot) {
+            public void onValue(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
-                    // Removed the firstName fetch here
                     Double co2Value = dataSnapshot.child("totalCO2Saved").getValue(Double.class);
                     Integer taliValue = dataSnapshot.child("taliPoints").getValue(Integer.class);
 
@@ -96,93 +130,44 @@ public class DashBoard extends AppCompatActivity {
             }
 
             @Override
-            public void onCancelled(DatabaseError databaseError) {
+            public void onError(@NonNull DatabaseError databaseError) {
                 Log.e("Firebase", "User data error: " + databaseError.getMessage());
             }
         });
     }
 
-    // The rest of the code remains unchanged...
-    private void loadEmissionData() {
-        DatabaseReference surveysRef = FirebaseDatabase.getInstance().getReference("surveys");
-
-        // Home emissions
-        surveysRef.child("home").child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                if (snapshot.exists() && snapshot.hasChild("annualEmissions")) {
-                    homeEmission = snapshot.child("annualEmissions").getValue(Float.class);
-                    Log.d("Dashboard", "Home: " + homeEmission + " tons");
-                }
-                checkAllCategoriesLoaded();
-            }
-
-            @Override
-            public void onCancelled(DatabaseError error) {
-                Log.e("Firebase", "Home error: " + error.getMessage());
-                checkAllCategoriesLoaded();
-            }
-        });
-
-        // Travel emissions
-        surveysRef.child("travel").child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                if (snapshot.exists() && snapshot.hasChild("annualEmissions")) {
-                    travelEmission = snapshot.child("annualEmissions").getValue(Float.class);
-                    Log.d("Dashboard", "Travel: " + travelEmission + " tons");
-                }
-                checkAllCategoriesLoaded();
-            }
-
-            @Override
-            public void onCancelled(DatabaseError error) {
-                Log.e("Firebase", "Travel error: " + error.getMessage());
-                checkAllCategoriesLoaded();
-            }
-        });
-
-        // Food emissions
-        surveysRef.child("food").child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                if (snapshot.exists() && snapshot.hasChild("annualEmissions")) {
-                    foodEmission = snapshot.child("annualEmissions").getValue(Float.class);
-                    Log.d("Dashboard", "Food: " + foodEmission + " tons");
-                }
-                checkAllCategoriesLoaded();
-            }
-
-            @Override
-            public void onCancelled(DatabaseError error) {
-                Log.e("Firebase", "Food error: " + error.getMessage());
-                checkAllCategoriesLoaded();
-            }
-        });
-
-        // Others emissions
-        surveysRef.child("others").child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(DataSnapshot snapshot) {
-                if (snapshot.exists() && snapshot.hasChild("annualEmissions")) {
-                    othersEmission = snapshot.child("annualEmissions").getValue(Float.class);
-                    Log.d("Dashboard", "Others: " + othersEmission + " tons");
-                }
-                checkAllCategoriesLoaded();
-            }
+    // The summary, from the shared footprint cache, paints the bars before any network call
+    private void showSummary(FootprintSummary summary) {
+        this.summary = summary;
+        updateBars();
+    }
 
-            @Override
-            public void onCancelled(DatabaseError error) {
-                Log.e("Firebase", "Others error: " + error.getMessage());
-                checkAllCategoriesLoaded();
-            }
-        });
+    // The month view comes from the history rollups; the summary fills categories with no
+    // submission in the months looked back and is the source of the running total elsewhere
+    private void updateBars() {
+        if (summary == null && month == null) return;
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            double tons = month != null && !Double.isNaN(month[c]) ? month[c]
+                    : summary != null ? summary.get(c) : 0;
+            setEmission(c, (float) tons);
+        }
+        updateChart();
     }
 
-    private void checkAllCategoriesLoaded() {
-        categoriesLoaded++;
-        if (categoriesLoaded >= TOTAL_CATEGORIES) {
-            updateChart();
+    private void setEmission(int category, float tons) {
+        switch (category) {
+            case EmissionEngine.HOME:
+                homeEmission = tons;
+                break;
+            case EmissionEngine.TRAVEL:
+                travelEmission = tons;
+                break;
+            case EmissionEngine.FOOD:
+                foodEmission = tons;
+                break;
+            case EmissionEngine.OTHERS:
+                othersEmission = tons;
+                break;
         }
     }
 
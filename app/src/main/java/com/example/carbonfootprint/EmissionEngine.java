@@ -0,0 +1,313 @@
+package com.example.carbonfootprint;
+
+/**
+ * Table-driven emission scoring for the four survey categories.
+ *
+ * Every question's factors live in one flat primitive table per category, indexed by
+ * the option ordinal (the position of the answer in its RadioGroup, or the SeekBar
+ * progress). Scoring a full answer vector is a handful of array reads and never
+ * allocates, so it can be used both on the UI thread and for bulk rescoring on a JVM.
+ *
+ * All factors are kg CO₂e per week.
+ */
+public final class EmissionEngine {
+
+    // Categories
+    public static final int HOME = 0;
+    public static final int TRAVEL = 1;
+    public static final int FOOD = 2;
+    public static final int OTHERS = 3;
+    public static final int CATEGORY_COUNT = 4;
+
+    public static final String[] CATEGORY_NAMES = {"home", "travel", "food", "others"};
+
+    // Home questions
+    public static final int HOME_HOUSEHOLD = 0;
+    public static final int HOME_BEDROOMS = 1;
+    public static final int HOME_HEATING = 2;
+    public static final int HOME_RENEWABLE = 3;
+    public static final int HOME_APPLIANCES = 4;
+    public static final int HOME_LAUNDRY = 5;
+    public static final int HOME_LAUNDRY_TIME = 6;
+
+    // Travel questions
+    public static final int TRAVEL_DISTANCE = 0;
+    public static final int TRAVEL_TRANSPORT = 1;
+    public static final int TRAVEL_VEHICLE_TYPE = 2;
+    public static final int TRAVEL_FLIGHTS = 3;
+    public static final int TRAVEL_CARPOOL = 4;
+    public static final int TRAVEL_RIDE_HAILING = 5;
+    public static final int TRAVEL_ROUTE_PLANNING = 6;
+
+    // Food questions
+    public static final int FOOD_MEAT = 0;
+    public static final int FOOD_VEGETARIAN_DAYS = 1;
+    public static final int FOOD_PURCHASE = 2;
+    public static final int FOOD_ORGANIC = 3;
+    public static final int FOOD_EAT_OUT = 4;
+    public static final int FOOD_WASTE = 5;
+    public static final int FOOD_REUSABLE = 6;
+
+    // Others questions
+    public static final int OTHERS_SCREEN_TIME = 0;
+    public static final int OTHERS_ECO_BRANDS = 1;
+    public static final int OTHERS_SHOPPING = 2;
+    public static final int OTHERS_RECYCLE = 3;
+    public static final int OTHERS_PLASTIC = 4;
+    public static final int OTHERS_COMPOST = 5;
+    public static final int OTHERS_DISPOSAL = 6;
+
+    /** Answer value for a question that has not been answered; it contributes nothing. */
+    public static final int UNANSWERED = -1;
+
+    // Factors per [category][question][option], options in on-screen order
+    static final double[][][] DEFAULT_FACTORS = {
+            {   // Home
+                    {3.5, 2.0, 1.5, 1.25, 1.1, 1.0, 0.95, 0.9, 0.87, 0.85}, // household size 1..10+
+                    {1.0, 1.5, 2.2, 3.0},                                   // Studio, 1, 2, 3+
+                    {4.0, 3.6, 5.5, 2.8, 1.2},                              // gas boiler .. heat pump
+                    {0.0, 1.5, 0.75},                                       // Yes, No, Not sure
+                    {0.0, 0.3, 0.8, 1.5},                                   // Always .. Never
+                    {0.5, 1.0, 1.8},                                        // <2, 3–4, 5+ per week
+                    {0, 0, 0, 0}                                            // laundry time, see forLaundryScale
+            },
+            {   // Travel
+                    {0.0, 2.0, 5.0, 12.0},
+                    {0.0, 0.1, 1.2, 3.5, 8.0},
+                    {3.0, 5.5, 8.0, 7.2, 0.0},
+                    {0.0, 2.0, 5.0, 10.0},
+                    {0.3, 0.6, 0.9, 1.0},
+                    {0.0, 0.8, 2.5, 6.0},
+                    {0.9, 1.0, 1.1}
+            },
+            {   // Food
+                    {0.0, 0.8, 1.6, 3.0},
+                    {2.5, 1.8, 1.0, 0.3},
+                    {0.9, 1.3, 2.0, 1.7},
+                    {0.0, 0.4, 0.8, 1.2},
+                    {0.0, 0.6, 1.5, 3.0},
+                    {0.0, 0.5, 1.2, 2.5},
+                    {0.0, 0.2, 0.5, 1.0}
+            },
+            {   // Others
+                    {0, 0, 0.3, 0.3, 0.6, 0.6, 1.0, 1.0, 1.5, 1.5, 2.0, 2.0, 3.0}, // screen hours 0..12
+                    {0, 1.0, 0.5},
+                    {0.5, 1.5, 4.0, 8.0},
+                    {0, 0.3, 0.7, 1.5},
+                    {1.5, 0.8, 0.2, 0},
+                    {0, 0.5, 0.2},
+                    {0.1, 0.2, 1.0, 0.1}
+            }
+    };
+
+    /** Questions in the largest category; sizes answer arrays that are reused across categories. */
+    public static final int MAX_QUESTIONS = maxQuestions(DEFAULT_FACTORS);
+
+    // Share of each factor that is grid electricity at GridIntensity.REFERENCE_KG_PER_KWH;
+    // only these parts scale with the user's grid. null where no option uses grid power.
+    static final double[][][] GRID_SHARES = {
+            {   // Home: electric heating, non-renewable supply, standby and laundry
+                    null,
+                    null,
+                    {0, 0, 0, 1.0, 1.0},
+                    {0, 1.0, 1.0},
+                    {0, 1.0, 1.0, 1.0},
+                    {1.0, 1.0, 1.0},
+                    null
+            },
+            {   // Travel: charging an electric or plug-in hybrid car
+                    null,
+                    null,
+                    {1.0, 0.3, 0, 0, 0},
+                    null,
+                    null,
+                    null,
+                    null
+            },
+            {null, null, null, null, null, null, null},
+            {   // Others: devices and data centres behind screen time
+                    {1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0, 1.0},
+                    null,
+                    null,
+                    null,
+                    null,
+                    null,
+                    null
+            }
+    };
+
+    /** Catalog version of {@link #DEFAULT_FACTORS}. */
+    static final int DEFAULT_VERSION = 2;
+
+    private static final EmissionEngine DEFAULT = new EmissionEngine(DEFAULT_VERSION, DEFAULT_FACTORS);
+
+    // One flat table per category and the start of each question inside it.
+    // offsets[c] has questionCount + 1 entries so option counts are offsets[q + 1] - offsets[q].
+    private final double[][] tables;
+    private final int[][] offsets;
+    private final int version;
+
+    public EmissionEngine(int version, double[][][] factors) {
+        if (factors.length != CATEGORY_COUNT) {
+            throw new IllegalArgumentException("Expected " + CATEGORY_COUNT + " categories");
+        }
+        this.version = version;
+        tables = new double[CATEGORY_COUNT][];
+        offsets = new int[CATEGORY_COUNT][];
+
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            double[][] questions = factors[c];
+            int[] offset = new int[questions.length + 1];
+            for (int q = 0; q < questions.length; q++) {
+                if (questions[q].length == 0) {
+                    throw new IllegalArgumentException("Question " + q + " of category " + c + " has no options");
+                }
+                offset[q + 1] = offset[q] + questions[q].length;
+            }
+
+            double[] table = new double[offset[questions.length]];
+            for (int q = 0; q < questions.length; q++) {
+                System.arraycopy(questions[q], 0, table, offset[q], questions[q].length);
+            }
+            tables[c] = table;
+            offsets[c] = offset;
+        }
+    }
+
+    /**
+     * Engine built from the factors compiled into the app, on the reference grid. Screens
+     * should score through {@link FactorCatalog#get(android.content.Context, String)} so a
+     * downloaded catalog and the user's grid take effect; this is its fallback.
+     */
+    public static EmissionEngine getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Engine for a grid of {@code kgPerKwh}: the electricity share of each factor (see
+     * {@link #GRID_SHARES}) is rescaled from the reference grid, everything else is kept.
+     * Built once per region and cached by {@link FactorCatalog#get(android.content.Context, String)},
+     * so scoring itself stays the same table lookups.
+     */
+    public EmissionEngine forGrid(double kgPerKwh) {
+        double scale = kgPerKwh / GridIntensity.REFERENCE_KG_PER_KWH;
+        if (scale == 1) return this;
+
+        double[][][] factors = new double[CATEGORY_COUNT][][];
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            factors[c] = new double[questionCount(c)][];
+            for (int q = 0; q < factors[c].length; q++) {
+                double[] shares = GRID_SHARES[c][q];
+                double[] row = new double[optionCount(c, q)];
+                for (int o = 0; o < row.length; o++) {
+                    double share = shares == null ? 0 : shares[Math.min(o, shares.length - 1)];
+                    row[o] = factor(c, q, o) * (1 + share * (scale - 1));
+                }
+                factors[c][q] = row;
+            }
+        }
+        return new EmissionEngine(version, factors);
+    }
+
+    /**
+     * Engine whose laundry factors are multiplied by {@code scale}, the grid's intensity in the
+     * user's usual laundry window relative to its mean (see {@link TimeOfUse#laundryScale}).
+     * The laundry time question itself scores 0; its effect lives in the laundry row, which
+     * keeps scoring additive.
+     */
+    public EmissionEngine forLaundryScale(double scale) {
+        if (scale == 1) return this;
+
+        double[][][] factors = new double[CATEGORY_COUNT][][];
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            factors[c] = new double[questionCount(c)][];
+            for (int q = 0; q < factors[c].length; q++) {
+                double[] row = new double[optionCount(c, q)];
+                double rowScale = c == HOME && q == HOME_LAUNDRY ? scale : 1;
+                for (int o = 0; o < row.length; o++) {
+                    row[o] = factor(c, q, o) * rowScale;
+                }
+                factors[c][q] = row;
+            }
+        }
+        return new EmissionEngine(version, factors);
+    }
+
+    /** Whether any answer of {@code category} depends on the electricity grid. */
+    public static boolean isGridSensitive(int category) {
+        for (double[] shares : GRID_SHARES[category]) {
+            if (shares != null) return true;
+        }
+        return false;
+    }
+
+    /** Version of the factor catalog these tables came from; stored with every survey record. */
+    public int getVersion() {
+        return version;
+    }
+
+    public int questionCount(int category) {
+        return offsets[category].length - 1;
+    }
+
+    public int optionCount(int category, int question) {
+        int[] offset = offsets[category];
+        return offset[question + 1] - offset[question];
+    }
+
+    /**
+     * Weekly kg CO₂e contributed by one answer. Unanswered questions contribute 0 and
+     * ordinals past the last option are clamped to it (e.g. SeekBar max larger than the table).
+     */
+    public double factor(int category, int question, int option) {
+        if (option < 0) return 0;
+        int[] offset = offsets[category];
+        int index = offset[question] + option;
+        int last = offset[question + 1] - 1;
+        return tables[category][index > last ? last : index];
+    }
+
+    /** Weekly kg CO₂e for a full answer vector of one category. */
+    public double weeklyEmissions(int category, int[] answers) {
+        return weeklyEmissions(category, answers, 0);
+    }
+
+    /** Weekly kg CO₂e for the answer vector starting at {@code from} in {@code answers}. */
+    public double weeklyEmissions(int category, int[] answers, int from) {
+        double[] table = tables[category];
+        int[] offset = offsets[category];
+        int questions = offset.length - 1;
+
+        double weekly = 0;
+        for (int q = 0; q < questions; q++) {
+            int option = answers[from + q];
+            if (option < 0) continue;
+            int index = offset[q] + option;
+            int last = offset[q + 1] - 1;
+            weekly += table[index > last ? last : index];
+        }
+        return weekly;
+    }
+
+    /**
+     * Scores {@code rows} answer vectors stored back to back in {@code answers}
+     * (stride = questionCount) into {@code weeklyOut}.
+     */
+    public void weeklyEmissionsBatch(int category, int[] answers, int rows, double[] weeklyOut) {
+        int stride = questionCount(category);
+        for (int r = 0; r < rows; r++) {
+            weeklyOut[r] = weeklyEmissions(category, answers, r * stride);
+        }
+    }
+
+    private static int maxQuestions(double[][][] factors) {
+        int max = 0;
+        for (double[][] category : factors) max = Math.max(max, category.length);
+        return max;
+    }
+
+    /** Converts kg CO₂e per week to metric tons per year. */
+    public static double toAnnualTons(double weeklyKg) {
+        return (weeklyKg * 52) / 1000;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Versioned emission-factor catalog.
+ *
+ * The catalog ships as a small binary asset ({@code assets/factors.bin}) that is read once
+ * into the primitive tables of an {@link EmissionEngine}. A newer catalog can be installed
+ * at runtime with {@link #install}; it is persisted to app storage and swapped in
+ * immediately, so the next score uses it without restarting the app.
+ *
+ * Screens score with {@link #get(Context, String)}, which rescales the electricity-driven
+ * factors to the user's grid, and the home screens with {@link #get(Context, String, int)},
+ * which also weighs laundry by the grid's intensity at the time it is usually run. Derived
+ * engines are built once and reused until the region or the catalog changes.
+ *
+ * Binary layout (big-endian, as written by {@link DataOutputStream}):
+ * <pre>
+ * int    magic "CFFC"
+ * short  format version
+ * int    catalog version
+ * byte   category count
+ *   byte   question count
+ *     byte   option count
+ *     double factor (kg CO₂e/week) x option count
+ * </pre>
+ */
+public final class FactorCatalog {
+
+    private static final String TAG = "FactorCatalog";
+    private static final String FILE_NAME = "factors.bin";
+    private static final int MAGIC = 0x43464643; // "CFFC"
+    private static final short FORMAT = 1;
+
+    private static volatile EmissionEngine current;
+    private static volatile Regional regional;
+
+    // Last regional engine and what it was derived from; replaced as a whole so reads need no lock
+    private static final class Regional {
+        final EmissionEngine base;
+        final String region;
+        final EmissionEngine engine;
+        final EmissionEngine[] byLaundryTime;  // filled on first use of each answer
+
+        Regional(EmissionEngine base, String region, EmissionEngine engine) {
+            this.base = base;
+            this.region = region;
+            this.engine = engine;
+            byLaundryTime = new EmissionEngine[
+                    engine.optionCount(EmissionEngine.HOME, EmissionEngine.HOME_LAUNDRY_TIME)];
+        }
+    }
+
+    private FactorCatalog() {}
+
+    /** Active catalog, loading the installed or bundled one on first use. */
+    public static EmissionEngine get(Context context) {
+        EmissionEngine engine = current;
+        if (engine == null) {
+            synchronized (FactorCatalog.class) {
+                if (current == null) {
+                    current = loadInstalled(context.getApplicationContext());
+                }
+                engine = current;
+            }
+        }
+        return engine;
+    }
+
+    /** Active catalog adjusted to the electricity grid of {@code region}. */
+    public static EmissionEngine get(Context context, String region) {
+        return regionalFor(context, region).engine;
+    }
+
+    /**
+     * Active catalog for {@code region} with laundry weighted for the {@code HOME_LAUNDRY_TIME}
+     * answer {@code laundryTime}; the plain regional engine when it is unanswered.
+     */
+    public static EmissionEngine get(Context context, String region, int laundryTime) {
+        Regional cached = regionalFor(context, region);
+        if (laundryTime < 0) return cached.engine;
+        int slot = Math.min(laundryTime, cached.byLaundryTime.length - 1);
+        EmissionEngine engine = cached.byLaundryTime[slot];
+        if (engine == null) {
+            // Racing threads build equal engines, so either may win
+            engine = cached.engine.forLaundryScale(TimeOfUse.get(context).laundryScale(region, slot));
+            cached.byLaundryTime[slot] = engine;
+        }
+        return engine;
+    }
+
+    private static Regional regionalFor(Context context, String region) {
+        EmissionEngine base = get(context);
+        Regional cached = regional;
+        if (cached == null || cached.base != base || !cached.region.equals(region)) {
+            double kgPerKwh = GridIntensity.get(context).kgPerKwh(region);
+            cached = new Regional(base, region, base.forGrid(kgPerKwh));
+            regional = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * Validates a downloaded catalog, persists it and makes it the active one.
+     * Scores computed after this call are tagged with the new version. A catalog that is not
+     * newer than the bundled one is rejected, as {@link #loadInstalled} would not load it again.
+     */
+    public static EmissionEngine install(Context context, byte[] catalog) throws IOException {
+        EmissionEngine engine = read(new ByteArrayInputStream(catalog));
+        EmissionEngine bundled = loadBundled(context);
+        if (bundled != null && engine.getVersion() <= bundled.getVersion()) {
+            throw new IOException("Catalog v" + engine.getVersion() + " is not newer than bundled v"
+                    + bundled.getVersion());
+        }
+
+        File target = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(catalog);
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Could not replace " + target);
+        }
+
+        current = engine;
+        Log.d(TAG, "Installed factor catalog v" + engine.getVersion());
+        return engine;
+    }
+
+    private static EmissionEngine loadBundled(Context context) {
+        try (InputStream in = new BufferedInputStream(context.getAssets().open(FILE_NAME))) {
+            return read(in);
+        } catch (IOException e) {
+            Log.e(TAG, "Bundled catalog unreadable: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static EmissionEngine loadInstalled(Context context) {
+        EmissionEngine bundled = loadBundled(context);
+
+        // A downloaded catalog wins only when it is newer than the one in the APK
+        File downloaded = new File(context.getFilesDir(), FILE_NAME);
+        if (downloaded.exists()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(downloaded))) {
+                EmissionEngine engine = read(in);
+                if (bundled == null || engine.getVersion() > bundled.getVersion()) {
+                    return engine;
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "Downloaded catalog unreadable: " + e.getMessage());
+            }
+        }
+
+        return bundled != null ? bundled : EmissionEngine.getDefault();
+    }
+
+    /**
+     * Reads a catalog. The question and option counts must match the survey screens,
+     * otherwise option ordinals would index the wrong factors.
+     */
+    public static EmissionEngine read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a factor catalog");
+        }
+        short format = in.readShort();
+        if (format != FORMAT) {
+            throw new IOException("Unsupported catalog format " + format);
+        }
+        int version = in.readInt();
+
+        EmissionEngine layout = EmissionEngine.getDefault();
+        int categories = in.readUnsignedByte();
+        if (categories != EmissionEngine.CATEGORY_COUNT) {
+            throw new IOException("Expected " + EmissionEngine.CATEGORY_COUNT + " categories, got " + categories);
+        }
+
+        double[][][] factors = new double[categories][][];
+        for (int c = 0; c < categories; c++) {
+            int questions = in.readUnsignedByte();
+            if (questions != layout.questionCount(c)) {
+                throw new IOException("Question count mismatch in " + EmissionEngine.CATEGORY_NAMES[c]);
+            }
+            factors[c] = new double[questions][];
+            for (int q = 0; q < questions; q++) {
+                int options = in.readUnsignedByte();
+                if (options != layout.optionCount(c, q)) {
+                    throw new IOException("Option count mismatch in " + EmissionEngine.CATEGORY_NAMES[c] + " question " + q);
+                }
+                double[] row = new double[options];
+                for (int o = 0; o < options; o++) {
+                    row[o] = in.readDouble();
+                }
+                factors[c][q] = row;
+            }
+        }
+        return new EmissionEngine(version, factors);
+    }
+
+    /** Writes {@code engine}'s tables in the catalog format; used to produce new assets. */
+    public static void write(EmissionEngine engine, OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeShort(FORMAT);
+        out.writeInt(engine.getVersion());
+        out.writeByte(EmissionEngine.CATEGORY_COUNT);
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            int questions = engine.questionCount(c);
+            out.writeByte(questions);
+            for (int q = 0; q < questions; q++) {
+                int options = engine.optionCount(c, q);
+                out.writeByte(options);
+                for (int o = 0; o < options; o++) {
+                    out.writeDouble(engine.factor(c, q, o));
+                }
+            }
+        }
+        out.flush();
+    }
+}
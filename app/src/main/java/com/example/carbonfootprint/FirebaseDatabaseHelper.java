@@ -1,20 +1,15 @@
 package com.example.carbonfootprint;
 
+import android.content.Context;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
 
 public class FirebaseDatabaseHelper {
-    private static final String SURVEY_COMPLETED_KEY = "survey_completed";
 
-    public static void markSurveyCompleted() {
+    public static void markSurveyCompleted(Context context) {
         String userId = FirebaseAuth.getInstance().getCurrentUser() != null ?
                 FirebaseAuth.getInstance().getCurrentUser().getUid() : "anonymous";
 
-        DatabaseReference userRef = FirebaseDatabase.getInstance()
-                .getReference("users")
-                .child(userId);
-
-        userRef.child(SURVEY_COMPLETED_KEY).setValue(true);
+        // Cached too, so the home card goes straight to Overall next time
+        SurveyStatus.markCompleted(context, userId);
     }
-}
\ No newline at end of file
+}
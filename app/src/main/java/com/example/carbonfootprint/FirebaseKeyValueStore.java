@@ -0,0 +1,134 @@
+package com.example.carbonfootprint;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.MutableData;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.Transaction;
+import com.google.firebase.database.ValueEventListener;
+import java.util.Map;
+
+/**
+ * {@link KeyValueStore} on the Firebase realtime database. Callbacks and observers run on the
+ * main thread, increments are applied by the server, and transactions use
+ * {@code runTransaction}, so a {@link KeyValueStore.Mutation} may first see the locally cached
+ * value and be rerun with the server's. Reads go through {@link SingleFlight}, and every write
+ * invalidates what it touches there.
+ */
+public final class FirebaseKeyValueStore implements KeyValueStore {
+
+    private static final String TAG = "FirebaseKeyValueStore";
+    private static volatile FirebaseKeyValueStore current;
+
+    private final DatabaseReference root;
+
+    public FirebaseKeyValueStore(DatabaseReference root) {
+        this.root = root;
+    }
+
+    /** Store on the default database's root. */
+    public static FirebaseKeyValueStore get() {
+        FirebaseKeyValueStore store = current;
+        if (store == null) {
+            synchronized (FirebaseKeyValueStore.class) {
+                if (current == null) {
+                    current = new FirebaseKeyValueStore(FirebaseDatabase.getInstance().getReference());
+                }
+                store = current;
+            }
+        }
+        return store;
+    }
+
+    private DatabaseReference ref(String path) {
+        return path.isEmpty() ? root : root.child(path);
+    }
+
+    @Override
+    public void get(String path, Callback<Object> callback) {
+        SingleFlight.get().read(ref(path), new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (callback != null) callback.onSuccess(snapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (callback != null) callback.onFailure(error.toException());
+            }
+        });
+    }
+
+    @Override
+    public void set(String path, Object value, Callback<Void> callback) {
+        SingleFlight.get().invalidate(path);
+        complete(ref(path).setValue(value), callback);
+    }
+
+    @Override
+    public void update(Map<String, Object> values, Callback<Void> callback) {
+        for (String path : values.keySet()) SingleFlight.get().invalidate(path);
+        complete(root.updateChildren(values), callback);
+    }
+
+    @Override
+    public void increment(String path, double delta, Callback<Void> callback) {
+        SingleFlight.get().invalidate(path);
+        complete(ref(path).setValue(ServerValue.increment(delta)), callback);
+    }
+
+    private static void complete(Task<Void> task, Callback<Void> callback) {
+        if (callback == null) return;
+        task.addOnSuccessListener(aVoid -> callback.onSuccess(null))
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void transact(String path, Mutation mutation, Callback<Object> callback) {
+        SingleFlight.get().invalidate(path);
+        ref(path).runTransaction(new Transaction.Handler() {
+            @NonNull
+            @Override
+            public Transaction.Result doTransaction(@NonNull MutableData mutableData) {
+                Object next = mutation.apply(mutableData.getValue());
+                if (next == ABORT) return Transaction.abort();
+                mutableData.setValue(next);
+                return Transaction.success(mutableData);
+            }
+
+            @Override
+            public void onComplete(DatabaseError error, boolean committed, DataSnapshot snapshot) {
+                if (callback == null) return;
+                if (error != null) {
+                    callback.onFailure(error.toException());
+                } else if (!committed) {
+                    callback.onFailure(new IllegalStateException("Transaction on " + path + " aborted"));
+                } else {
+                    callback.onSuccess(snapshot != null ? snapshot.getValue() : null);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Subscription observe(String path, Observer observer) {
+        DatabaseReference target = ref(path);
+        ValueEventListener listener = target.addValueEventListener(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                observer.onValue(snapshot.getValue());
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Observer on " + path + " cancelled: " + error.getMessage());
+            }
+        });
+        return () -> target.removeEventListener(listener);
+    }
+}
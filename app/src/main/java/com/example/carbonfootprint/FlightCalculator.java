@@ -0,0 +1,53 @@
+package com.example.carbonfootprint;
+
+/**
+ * Per-leg flight emissions from great-circle distance.
+ *
+ * Great-circle distance is raised by {@link #ROUTE_UPLIFT} for routing and stacking, then
+ * multiplied by a passenger-km factor for the haul length and cabin. The factors include
+ * radiative forcing.
+ */
+public final class FlightCalculator {
+
+    // Cabins, in the order of the cabin RadioGroup
+    public static final int ECONOMY = 0;
+    public static final int PREMIUM_ECONOMY = 1;
+    public static final int BUSINESS = 2;
+    public static final int FIRST = 3;
+
+    static final double ROUTE_UPLIFT = 1.08;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double DOMESTIC_KM = 500;
+    private static final double SHORT_HAUL_KM = 3700;
+
+    // kg CO₂e per passenger-km by cabin
+    private static final double DOMESTIC_KG_PER_KM = 0.273;
+    private static final double[] SHORT_HAUL_KG_PER_KM = {0.151, 0.227, 0.227, 0.227};
+    private static final double[] LONG_HAUL_KG_PER_KM = {0.148, 0.237, 0.429, 0.591};
+
+    private FlightCalculator() {}
+
+    /** kg CO₂e for one passenger flying one way over the given great-circle distance. */
+    public static double legKg(double greatCircleKm, int cabin) {
+        double flown = greatCircleKm * ROUTE_UPLIFT;
+        double factor;
+        if (flown < DOMESTIC_KM) {
+            factor = DOMESTIC_KG_PER_KM;
+        } else if (flown < SHORT_HAUL_KM) {
+            factor = SHORT_HAUL_KG_PER_KM[cabin];
+        } else {
+            factor = LONG_HAUL_KG_PER_KM[cabin];
+        }
+        return flown * factor;
+    }
+
+    public static double greatCircleKm(double lat1, double lon1, double lat2, double lon2) {
+        double phi1 = Math.toRadians(lat1);
+        double phi2 = Math.toRadians(lat2);
+        double sinLat = Math.sin((phi2 - phi1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double h = sinLat * sinLat + Math.cos(phi1) * Math.cos(phi2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1, h)));
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.carbonfootprint;
+
+/** One flight entered on the flights screen, stored in {@link FlightLog#legs}. */
+public class FlightLeg {
+
+    public String from;              // IATA codes
+    public String to;
+    public double distanceKm;        // great-circle
+    public int cabin;                // FlightCalculator cabin
+    public boolean roundTrip;
+    public double emissions;         // kg CO₂e, both ways for a round trip
+
+    public FlightLeg() {}  // Required for Firebase
+
+    public FlightLeg(String from, String to, double distanceKm, int cabin, boolean roundTrip) {
+        this.from = from;
+        this.to = to;
+        this.distanceKm = distanceKm;
+        this.cabin = cabin;
+        this.roundTrip = roundTrip;
+        this.emissions = FlightCalculator.legKg(distanceKm, cabin) * (roundTrip ? 2 : 1);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.carbonfootprint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Flights taken over the last twelve months, stored under {@code surveys/travel/{uid}/flights}
+ * next to the survey's flight bucket.
+ */
+public class FlightLog {
+
+    public List<FlightLeg> legs = new ArrayList<>();
+    public double weeklyEmissions;   // kg CO₂e/week
+    public double annualEmissions;   // metric tons CO₂e/year
+    public long timestamp = System.currentTimeMillis();
+
+    public FlightLog() {}  // Required for Firebase
+
+    /** Recomputes the totals from the legs. */
+    public void updateTotals() {
+        double kg = 0;
+        for (FlightLeg leg : legs) kg += leg.emissions;
+        weeklyEmissions = kg / 52;
+        annualEmissions = kg / 1000;
+        timestamp = System.currentTimeMillis();
+    }
+
+    /** This log as plain maps and lists, for a {@link WriteQueue} update of the whole node. */
+    public Map<String, Object> toValue() {
+        List<Object> legValues = new ArrayList<>();
+        for (FlightLeg leg : legs) {
+            Map<String, Object> value = new HashMap<>();
+            value.put("from", leg.from);
+            value.put("to", leg.to);
+            value.put("distanceKm", leg.distanceKm);
+            value.put("cabin", leg.cabin);
+            value.put("roundTrip", leg.roundTrip);
+            value.put("emissions", leg.emissions);
+            legValues.add(value);
+        }
+        Map<String, Object> value = new HashMap<>();
+        value.put("legs", legValues);
+        value.put("weeklyEmissions", weeklyEmissions);
+        value.put("annualEmissions", annualEmissions);
+        value.put("timestamp", timestamp);
+        return value;
+    }
+}
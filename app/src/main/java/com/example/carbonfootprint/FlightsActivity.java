@@ -0,0 +1,219 @@
+package com.example.carbonfootprint;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.ArrayAdapter;
+import android.widget.AutoCompleteTextView;
+import android.widget.CheckBox;
+import android.widget.Filter;
+import android.widget.RadioGroup;
+import android.widget.TextView;
+import android.widget.Toast;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Lets the user list individual flights by airport code or city and totals their emissions.
+ * The airport index is loaded in the background as soon as the screen opens, so type-ahead
+ * answers from memory by the time the first key is pressed. It lists major airports only
+ * (see {@link AirportIndex}); a smaller one is entered as the nearest listed airport.
+ */
+public class FlightsActivity extends AppCompatActivity {
+
+    private static final int SUGGESTIONS = 8;
+
+    // Firebase
+    private FirebaseAuth mAuth;
+    private String flightsPath;
+    private DatabaseReference flightsRef;
+
+    // UI Elements
+    private AutoCompleteTextView fromInput, toInput;
+    private RadioGroup cabinGroup;
+    private CheckBox returnCheck;
+    private TextView legsText, flightsTotalText;
+
+    private volatile AirportIndex airports;
+    private FlightLog log = new FlightLog();
+    private final DecimalFormat kmFormat = new DecimalFormat("#,##0");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_flights);
+
+        mAuth = FirebaseAuth.getInstance();
+        String userId = mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous";
+        flightsPath = SurveyRecord.NODE + "/travel/" + userId + "/flights";
+        flightsRef = FirebaseDatabase.getInstance().getReference(flightsPath);
+
+        fromInput = findViewById(R.id.fromInput);
+        toInput = findViewById(R.id.toInput);
+        cabinGroup = findViewById(R.id.cabinGroup);
+        returnCheck = findViewById(R.id.returnCheck);
+        legsText = findViewById(R.id.legsText);
+        flightsTotalText = findViewById(R.id.flightsTotalText);
+
+        fromInput.setAdapter(new AirportAdapter(this));
+        toInput.setAdapter(new AirportAdapter(this));
+
+        // Load the index before the first keystroke needs it
+        Context appContext = getApplicationContext();
+        ForkJoinPool.commonPool().execute(() -> {
+            try {
+                airports = AirportIndex.get(appContext);
+            } catch (IOException e) {
+                Log.e("AirportIndex", "Airport index unreadable: " + e.getMessage());
+            }
+        });
+
+        findViewById(R.id.addLegButton).setOnClickListener(v -> addLeg());
+        findViewById(R.id.clearLegsButton).setOnClickListener(v -> {
+            log.legs.clear();
+            showLegs();
+        });
+        findViewById(R.id.saveFlightsButton).setOnClickListener(v -> saveFlights());
+
+        loadFlights();
+    }
+
+    private void loadFlights() {
+        flightsRef.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                FlightLog stored = snapshot.getValue(FlightLog.class);
+                if (stored != null && stored.legs != null) {
+                    log = stored;
+                    showLegs();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("Firebase", "Error loading flights: " + error.getMessage());
+            }
+        });
+    }
+
+    private void addLeg() {
+        AirportIndex index = airports;
+        if (index == null) {
+            Toast.makeText(this, "Airport list is still loading", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        int from = index.resolve(fromInput.getText().toString());
+        int to = index.resolve(toInput.getText().toString());
+        if (from == AirportIndex.NOT_FOUND || to == AirportIndex.NOT_FOUND) {
+            // The bundled list has the major airports only, so say so rather than just "unknown"
+            Toast.makeText(this, "Unknown airport; only the " + index.size()
+                    + " major airports are listed, try a nearby one", Toast.LENGTH_LONG).show();
+            return;
+        }
+        if (from == to) {
+            Toast.makeText(this, "Choose two different airports", Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        int selectedId = cabinGroup.getCheckedRadioButtonId();
+        int cabin = selectedId == -1 ? FlightCalculator.ECONOMY
+                : cabinGroup.indexOfChild(cabinGroup.findViewById(selectedId));
+        log.legs.add(new FlightLeg(index.code(from), index.code(to), index.distanceKm(from, to),
+                cabin, returnCheck.isChecked()));
+        fromInput.setText("");
+        toInput.setText("");
+        showLegs();
+    }
+
+    private void showLegs() {
+        log.updateTotals();
+        StringBuilder text = new StringBuilder();
+        for (FlightLeg leg : log.legs) {
+            text.append(leg.from).append(leg.roundTrip ? " ⇄ " : " → ").append(leg.to)
+                    .append("  ").append(kmFormat.format(leg.distanceKm)).append(" km  ");
+            LiveScore.appendTons(text, leg.emissions / 1000);
+            text.append(" t\n");
+        }
+        legsText.setText(text);
+
+        if (log.legs.isEmpty()) {
+            flightsTotalText.setText("No flights added");
+        } else {
+            StringBuilder total = new StringBuilder("Flights: ");
+            LiveScore.appendTons(total, log.annualEmissions);
+            total.append(" t CO₂e/yr");
+            flightsTotalText.setText(total);
+        }
+    }
+
+    // Queued like the surveys, so the screen closes at once even offline
+    private void saveFlights() {
+        log.updateTotals();
+        Map<String, Object> update = new HashMap<>();
+        update.put(flightsPath, log.toValue());
+        WriteQueue.get(this).enqueue(update);
+        finish();
+    }
+
+    // Suggestions come straight from the prefix index; filtering runs on the adapter's worker thread
+    private class AirportAdapter extends ArrayAdapter<String> {
+        private final List<String> labels = new ArrayList<>();
+
+        AirportAdapter(Context context) {
+            super(context, android.R.layout.simple_dropdown_item_1line);
+        }
+
+        @Override
+        public int getCount() {
+            return labels.size();
+        }
+
+        @Override
+        public String getItem(int position) {
+            return labels.get(position);
+        }
+
+        @NonNull
+        @Override
+        public Filter getFilter() {
+            return new Filter() {
+                @Override
+                protected FilterResults performFiltering(CharSequence constraint) {
+                    FilterResults results = new FilterResults();
+                    AirportIndex index = airports;
+                    List<String> found = new ArrayList<>();
+                    if (index != null && constraint != null) {
+                        for (int airport : index.search(constraint.toString(), SUGGESTIONS)) {
+                            found.add(index.label(airport));
+                        }
+                    }
+                    results.values = found;
+                    results.count = found.size();
+                    return results;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                protected void publishResults(CharSequence constraint, FilterResults results) {
+                    labels.clear();
+                    if (results.values != null) labels.addAll((List<String>) results.values);
+                    notifyDataSetChanged();
+                }
+            };
+        }
+    }
+}
@@ -1,14 +1,26 @@
 package com.example.carbonfootprint;
 import androidx.appcompat.app.AppCompatActivity;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.Button;
-import android.widget.RadioButton;
 import android.widget.RadioGroup;
+import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class FoodSurveyActivity extends AppCompatActivity {
 
@@ -21,6 +33,20 @@ public class FoodSurveyActivity extends AppCompatActivity {
             organicProduceGroup, eatOutFrequencyGroup, foodWasteGroup, reusableGroup;
     private Button submitButton;
 
+    // Live running total
+    private LiveScore liveScore;
+    private TextView liveTotalText;
+    private final StringBuilder liveText = new StringBuilder();
+
+    // Stored annual total of this category, for the summary's total delta; NaN until read
+    private double previousAnnual = Double.NaN;
+
+    // Grocery receipt import, shown next to the survey estimate
+    private TextView receiptsText;
+    private ReceiptSummary receiptSummary;
+    private final ActivityResultLauncher<String[]> receiptPicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importReceipts);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -40,6 +66,27 @@ public class FoodSurveyActivity extends AppCompatActivity {
         reusableGroup = findViewById(R.id.reusableGroup);
         submitButton = findViewById(R.id.submitButton);
 
+        // Live running total, updated on every answer change
+        liveTotalText = findViewById(R.id.liveTotalText);
+        liveScore = new LiveScore(FactorCatalog.get(this, GridIntensity.region(this)), EmissionEngine.FOOD);
+        bindLiveScore(meatFrequencyGroup, EmissionEngine.FOOD_MEAT);
+        bindLiveScore(vegetarianDaysGroup, EmissionEngine.FOOD_VEGETARIAN_DAYS);
+        bindLiveScore(foodPurchaseGroup, EmissionEngine.FOOD_PURCHASE);
+        bindLiveScore(organicProduceGroup, EmissionEngine.FOOD_ORGANIC);
+        bindLiveScore(eatOutFrequencyGroup, EmissionEngine.FOOD_EAT_OUT);
+        bindLiveScore(foodWasteGroup, EmissionEngine.FOOD_WASTE);
+        bindLiveScore(reusableGroup, EmissionEngine.FOOD_REUSABLE);
+
+        // Grocery receipt import
+        receiptsText = findViewById(R.id.receiptsText);
+        findViewById(R.id.importReceiptsButton).setOnClickListener(v ->
+                receiptPicker.launch(new String[]{"text/*", "application/csv", "application/vnd.ms-excel"}));
+        loadReceiptSummary();
+
+        // Previous total, read while the survey is filled in so saving needs no extra round trip
+        FootprintSummary.loadPrevious(FirebaseKeyValueStore.get(), mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous", EmissionEngine.FOOD, annual -> previousAnnual = annual);
+
         // Submit button click listener
         submitButton.setOnClickListener(v -> {
             if (validateSelections()) {
@@ -60,74 +107,89 @@ public class FoodSurveyActivity extends AppCompatActivity {
                 reusableGroup.getCheckedRadioButtonId() != -1;
     }
 
-    // Emission calculation helper methods
-    private double getMeatFrequencyEmission() {
-        int selectedId = meatFrequencyGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.neverMeatOption) return 0.0;
-        if (selectedId == R.id.onceTwiceOption) return 0.8;
-        if (selectedId == R.id.threeFourOption) return 1.6;
-        if (selectedId == R.id.fivePlusOption) return 3.0;
-        return 0;
+    // Position of the checked button inside its group, matching the EmissionEngine option order
+    private int getSelectedOption(RadioGroup group) {
+        int selectedId = group.getCheckedRadioButtonId();
+        if (selectedId == -1) return EmissionEngine.UNANSWERED;
+        return group.indexOfChild(group.findViewById(selectedId));
     }
 
-    private double getVegetarianDaysEmission() {
-        int selectedId = vegetarianDaysGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.zeroDaysOption) return 2.5;
-        if (selectedId == R.id.oneTwoDaysOption) return 1.8;
-        if (selectedId == R.id.threeFiveDaysOption) return 1.0;
-        if (selectedId == R.id.sixSevenDaysOption) return 0.3;
-        return 0;
+    private void bindLiveScore(RadioGroup group, int question) {
+        group.setOnCheckedChangeListener((g, checkedId) -> onAnswerChanged(question, getSelectedOption(g)));
     }
 
-    private double getFoodPurchaseEmission() {
-        int selectedId = foodPurchaseGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.localMarketsOption) return 0.9;
-        if (selectedId == R.id.supermarketsOption) return 1.3;
-        if (selectedId == R.id.importedStoresOption) return 2.0;
-        if (selectedId == R.id.onlineGroceryOption) return 1.7;
-        return 0;
+    private void onAnswerChanged(int question, int option) {
+        double delta = liveScore.set(question, option);
+        liveScore.describe(liveText, delta);
+        liveTotalText.setText(liveText);
+        if (receiptSummary != null) showReceiptSummary();
     }
 
-    private double getOrganicProduceEmission() {
-        int selectedId = organicProduceGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.alwaysOrganicOption) return 0.0;
-        if (selectedId == R.id.sometimesOrganicOption) return 0.4;
-        if (selectedId == R.id.rarelyOrganicOption) return 0.8;
-        if (selectedId == R.id.neverOrganicOption) return 1.2;
-        return 0;
+    private DatabaseReference receiptsRef() {
+        String userId = mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous";
+        return mDatabase.child("surveys").child("food").child(userId).child("receipts");
     }
 
-    private double getEatOutFrequencyEmission() {
-        int selectedId = eatOutFrequencyGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.neverEatOutOption) return 0.0;
-        if (selectedId == R.id.onceTwiceEatOutOption) return 0.6;
-        if (selectedId == R.id.threeFiveEatOutOption) return 1.5;
-        if (selectedId == R.id.moreThanFiveOption) return 3.0;
-        return 0;
+    private void loadReceiptSummary() {
+        receiptsRef().addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                ReceiptSummary summary = snapshot.getValue(ReceiptSummary.class);
+                if (summary != null) {
+                    receiptSummary = summary;
+                    showReceiptSummary();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("Firebase", "Error loading receipt summary: " + error.getMessage());
+            }
+        });
     }
 
-    private double getFoodWasteEmission() {
-        int selectedId = foodWasteGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.noWasteOption) return 0.0;
-        if (selectedId == R.id.littleWasteOption) return 0.5;
-        if (selectedId == R.id.someWasteOption) return 1.2;
-        if (selectedId == R.id.lotWasteOption) return 2.5;
-        return 0;
+    // Parses off the main thread; only the aggregate is written, never the purchase lines
+    private void importReceipts(Uri uri) {
+        if (uri == null) return;
+        receiptsText.setText("Reading purchases…");
+        ForkJoinPool.commonPool().execute(() -> {
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open file");
+                ReceiptSummary summary = new ReceiptImporter(ProductMatcher.get(this)).parse(in);
+                runOnUiThread(() -> saveReceiptSummary(summary));
+            } catch (IOException e) {
+                runOnUiThread(() -> {
+                    showReceiptSummary();
+                    Toast.makeText(this, "Import failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            }
+        });
     }
 
-    private double getReusableEmission() {
-        int selectedId = reusableGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.alwaysReusableOption) return 0.0;
-        if (selectedId == R.id.sometimesReusableOption) return 0.2;
-        if (selectedId == R.id.rarelyReusableOption) return 0.5;
-        if (selectedId == R.id.neverReusableOption) return 1.0;
-        return 0;
+    private void saveReceiptSummary(ReceiptSummary summary) {
+        if (isFinishing()) return;
+        receiptSummary = summary;
+        showReceiptSummary();
+        SingleFlight.get().invalidate(receiptsRef());
+        receiptsRef().setValue(summary)
+                .addOnFailureListener(e -> Toast.makeText(this, "Failed to save purchases: " +
+                        e.getMessage(), Toast.LENGTH_SHORT).show());
     }
 
-    private String getSelectedRadioText(RadioGroup group) {
-        int selectedId = group.getCheckedRadioButtonId();
-        RadioButton radioButton = findViewById(selectedId);
-        return radioButton.getText().toString();
+    private void showReceiptSummary() {
+        if (receiptSummary == null) {
+            receiptsText.setText("");
+            return;
+        }
+        StringBuilder text = new StringBuilder("Measured from ")
+                .append(receiptSummary.lines).append(" products (")
+                .append(receiptSummary.matchedLines).append(" recognised): ");
+        LiveScore.appendTons(text, receiptSummary.annualEmissions);
+        text.append(" t CO₂e/yr (survey estimate ");
+        LiveScore.appendTons(text, liveScore.annualTons());
+        text.append(" t)");
+        receiptsText.setText(text);
     }
 
     private void saveSurveyData() {
@@ -135,109 +197,36 @@ public class FoodSurveyActivity extends AppCompatActivity {
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
 
-        // Get answers
-        String meatFrequency = getSelectedRadioText(meatFrequencyGroup);
-        String vegetarianDays = getSelectedRadioText(vegetarianDaysGroup);
-        String foodPurchase = getSelectedRadioText(foodPurchaseGroup);
-        String organicProduce = getSelectedRadioText(organicProduceGroup);
-        String eatOutFrequency = getSelectedRadioText(eatOutFrequencyGroup);
-        String foodWaste = getSelectedRadioText(foodWasteGroup);
-        String reusable = getSelectedRadioText(reusableGroup);
-
-        // Calculate emissions (kg CO₂e per week)
-        double meatEmission = getMeatFrequencyEmission();
-        double vegetarianEmission = getVegetarianDaysEmission();
-        double purchaseEmission = getFoodPurchaseEmission();
-        double organicEmission = getOrganicProduceEmission();
-        double eatOutEmission = getEatOutFrequencyEmission();
-        double wasteEmission = getFoodWasteEmission();
-        double reusableEmission = getReusableEmission();
-
-        // Calculate totals
-        double weeklyEmissions = meatEmission + vegetarianEmission + purchaseEmission +
-                organicEmission + eatOutEmission + wasteEmission + reusableEmission;
-        double annualEmissions = (weeklyEmissions * 52) / 1000; // Convert to metric tons/year
-
-        // Create survey data object with emissions
-        SurveyData surveyData = new SurveyData(
-                meatFrequency, vegetarianDays, foodPurchase, organicProduce,
-                eatOutFrequency, foodWaste, reusable,
-                meatEmission, vegetarianEmission, purchaseEmission,
-                organicEmission, eatOutEmission, wasteEmission, reusableEmission,
-                weeklyEmissions, annualEmissions
-        );
-
-        // Save to Firebase
-        mDatabase.child("surveys").child("food").child(userId)
-                .setValue(surveyData)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        // Redirect to Others Survey (create this activity next)
-                        startActivity(new Intent(FoodSurveyActivity.this, OthersSurveyActivity.class));
-                        finish();
-                    } else {
-                        Toast.makeText(this, "Failed to save: " +
-                                task.getException().getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                });
-    }
-
-    // Data model class
-    public static class SurveyData {
-        // User selections
-        public String meatFrequency;
-        public String vegetarianDays;
-        public String foodPurchase;
-        public String organicProduce;
-        public String eatOutFrequency;
-        public String foodWaste;
-        public String reusableContainers;
-
-        // Emission values (kg CO₂e/week)
-        public double meatEmission;
-        public double vegetarianEmission;
-        public double purchaseEmission;
-        public double organicEmission;
-        public double eatOutEmission;
-        public double wasteEmission;
-        public double reusableEmission;
-
-        // Totals
-        public double weeklyEmissions;   // kg CO₂e/week
-        public double annualEmissions;   // metric tons CO₂e/year
-
-        public long timestamp = System.currentTimeMillis();
-
-        public SurveyData() {}  // Required for Firebase
-
-        public SurveyData(String meatFrequency, String vegetarianDays, String foodPurchase,
-                          String organicProduce, String eatOutFrequency, String foodWaste,
-                          String reusableContainers,
-                          double meatEmission, double vegetarianEmission, double purchaseEmission,
-                          double organicEmission, double eatOutEmission, double wasteEmission,
-                          double reusableEmission,
-                          double weeklyEmissions, double annualEmissions) {
-            // User answers
-            this.meatFrequency = meatFrequency;
-            this.vegetarianDays = vegetarianDays;
-            this.foodPurchase = foodPurchase;
-            this.organicProduce = organicProduce;
-            this.eatOutFrequency = eatOutFrequency;
-            this.foodWaste = foodWaste;
-            this.reusableContainers = reusableContainers;
-
-            // Emission values
-            this.meatEmission = meatEmission;
-            this.vegetarianEmission = vegetarianEmission;
-            this.purchaseEmission = purchaseEmission;
-            this.organicEmission = organicEmission;
-            this.eatOutEmission = eatOutEmission;
-            this.wasteEmission = wasteEmission;
-            this.reusableEmission = reusableEmission;
-
-            // Totals
-            this.weeklyEmissions = weeklyEmissions;
-            this.annualEmissions = annualEmissions;
-        }
+        // Answer ordinals in EmissionEngine question order
+        int[] answers = {
+                getSelectedOption(meatFrequencyGroup),
+                getSelectedOption(vegetarianDaysGroup),
+                getSelectedOption(foodPurchaseGroup),
+                getSelectedOption(organicProduceGroup),
+                getSelectedOption(eatOutFrequencyGroup),
+                getSelectedOption(foodWasteGroup),
+                getSelectedOption(reusableGroup)
+        };
+
+        // Calculate totals (kg CO₂e per week, metric tons per year)
+        String region = GridIntensity.region(this);
+        EmissionEngine engine = FactorCatalog.get(this, region);
+        double weeklyEmissions = engine.weeklyEmissions(EmissionEngine.FOOD, answers);
+        double annualEmissions = EmissionEngine.toAnnualTons(weeklyEmissions);
+
+        // Answers are stored packed; labels are resolved locally when displayed
+        SurveyRecord record = new SurveyRecord(
+                AnswerCodec.encode(EmissionEngine.FOOD, answers, engine.getVersion()),
+                weeklyEmissions, annualEmissions, engine.getVersion(), region);
+
+        // Queue the record and its history entry; the multi-path update keeps an imported receipt summary
+        Map<String, Object> update = SurveyHistory.submission(mDatabase, userId, EmissionEngine.FOOD,
+                record, previousAnnual);
+        WriteQueue.get(this).enqueue(update, Double.isNaN(previousAnnual) ? userId : null);
+        FootprintRepository.get(this).applySubmission(userId, EmissionEngine.FOOD,
+                record.annualEmissions, record.answers);
+        // Redirect to Others Survey (create this activity next)
+        startActivity(new Intent(FoodSurveyActivity.this, OthersSurveyActivity.class));
+        finish();
     }
 }
\ No newline at end of file
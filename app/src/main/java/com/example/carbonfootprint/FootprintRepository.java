@@ -0,0 +1,309 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shared source of the signed-in user's {@link FootprintSummary} for the screens that display it.
+ *
+ * The last known summary is kept in memory and, as JSON, in shared preferences, so an observer
+ * gets it back immediately even after a cold start. When it is older than the TTL it is
+ * revalidated from {@code summary/{uid}} in the background and every observer receives the
+ * fresh copy; within the TTL a visit makes no network call at all. Categories the summary does
+ * not have yet (submitted before summaries existed) are read from their survey records once
+ * and copied into it; a category with no record either is remembered as absent with the
+ * snapshot, so later revalidations do not read it again. A submission always reaches the
+ * summary, so an absent category can only appear there.
+ *
+ * Survey screens report their saves through {@link #applySubmission} so a return to Overall
+ * shows the new numbers without waiting for the TTL. Until the {@link WriteQueue} has
+ * delivered such a save, a revalidation keeps the saved category as applied locally rather
+ * than the server's older value. Reads and the backfill's write go
+ * through a {@link KeyValueStore}. Call everything from the main thread; the store delivers
+ * its callbacks there too.
+ */
+public final class FootprintRepository {
+
+    public interface Observer {
+        void onFootprint(FootprintSummary summary);
+    }
+
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000;
+
+    private static final String TAG = "FootprintRepository";
+    private static final String PREFS_NAME = "footprint_cache";
+    private static final String KEY_SNAPSHOT = "snapshot";
+    private static final String KEY_TTL = "ttl_millis";
+
+    private static volatile FootprintRepository current;
+
+    // What goes to disk; fetchedAt is wall-clock so it survives restarts
+    private static final class Snapshot {
+        String uid;
+        long fetchedAt;
+        FootprintSummary summary;
+        List<String> absent = new ArrayList<>();   // categories with neither summary nor record
+    }
+
+    private final Context context;
+    private final KeyValueStore store;
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+    private final List<Observer> observers = new ArrayList<>();
+
+    private Snapshot snapshot;
+    private boolean loading;
+    private long loadStarted;
+
+    private FootprintRepository(Context context, KeyValueStore store) {
+        this.context = context;
+        this.store = store;
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String json = prefs.getString(KEY_SNAPSHOT, null);
+        if (json != null) {
+            try {
+                snapshot = gson.fromJson(json, Snapshot.class);
+            } catch (JsonParseException e) {
+                Log.e(TAG, "Cached footprint unreadable: " + e.getMessage());
+            }
+        }
+    }
+
+    public static FootprintRepository get(Context context) {
+        FootprintRepository repository = current;
+        if (repository == null) {
+            synchronized (FootprintRepository.class) {
+                if (current == null) {
+                    current = new FootprintRepository(context.getApplicationContext(), FirebaseKeyValueStore.get());
+                }
+                repository = current;
+            }
+        }
+        return repository;
+    }
+
+    public long getTtlMillis() {
+        return prefs.getLong(KEY_TTL, DEFAULT_TTL_MILLIS);
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        prefs.edit().putLong(KEY_TTL, ttlMillis).apply();
+    }
+
+    /**
+     * Registers {@code observer} for {@code uid}'s footprint. It is called right away with the
+     * cached summary when there is one, and again whenever a revalidation brings a new one.
+     */
+    public void observe(String uid, Observer observer) {
+        if (!observers.contains(observer)) observers.add(observer);
+        forgetOtherUser(uid);
+        if (snapshot != null) {
+            observer.onFootprint(snapshot.summary);
+        }
+        revalidateIfStale(uid);
+    }
+
+    /** Fetches {@code uid}'s summary ahead of the first screen that shows it, if the cache is stale. */
+    public void prefetch(String uid) {
+        forgetOtherUser(uid);
+        revalidateIfStale(uid);
+    }
+
+    private void forgetOtherUser(String uid) {
+        if (snapshot != null && !uid.equals(snapshot.uid)) {
+            snapshot = null;   // another account signed in on this device
+        }
+    }
+
+    private void revalidateIfStale(String uid) {
+        if (snapshot == null || System.currentTimeMillis() - snapshot.fetchedAt > getTtlMillis()) {
+            revalidate(uid);
+        }
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    /** Marks the cached summary stale, e.g. after a job rewrote the user's records. */
+    public void invalidate() {
+        if (snapshot != null) snapshot.fetchedAt = 0;
+    }
+
+    /** Folds a saved survey into the cached summary, as {@link FootprintSummary#put} did remotely. */
+    public void applySubmission(String uid, int category, double annualTons, long packedAnswers) {
+        if (snapshot == null || !uid.equals(snapshot.uid)) return;   // next observe fetches it
+        FootprintSummary summary = snapshot.summary;
+        summary.set(category, annualTons);
+        summary.answers.put(EmissionEngine.CATEGORY_NAMES[category], packedAnswers);
+        summary.total = summary.home + summary.travel + summary.food + summary.others;
+        summary.updatedAt = System.currentTimeMillis();
+        store(snapshot);
+        notifyObservers();
+    }
+
+    private void revalidate(String uid) {
+        // A fetch that never answered (offline without cache) must not block later ones forever
+        if (loading && SystemClock.elapsedRealtime() - loadStarted < getTtlMillis()) return;
+        loading = true;
+        loadStarted = SystemClock.elapsedRealtime();
+
+        store.get(FootprintSummary.NODE + "/" + uid, new KeyValueStore.Callback<Object>() {
+            @Override
+            public void onSuccess(Object value) {
+                FootprintSummary summary = FootprintSummary.fromValue(value);
+                if (summary == null) summary = new FootprintSummary();
+
+                List<String> absent = knownAbsent(uid);
+                List<Integer> missing = new ArrayList<>();
+                for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+                    if (summary.answers(c) != null) {
+                        absent.remove(EmissionEngine.CATEGORY_NAMES[c]);
+                    } else if (!absent.contains(EmissionEngine.CATEGORY_NAMES[c])) {
+                        missing.add(c);
+                    }
+                }
+                if (missing.isEmpty()) {
+                    loaded(uid, summary, absent);
+                } else {
+                    new Backfill(uid, summary, missing, absent).start();
+                }
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                loading = false;
+                Log.e(TAG, "Summary read failed: " + error.getMessage());
+            }
+        });
+    }
+
+    // Categories already found to have no record for uid; a copy the caller may change
+    private List<String> knownAbsent(String uid) {
+        if (snapshot == null || !uid.equals(snapshot.uid) || snapshot.absent == null) return new ArrayList<>();
+        return new ArrayList<>(snapshot.absent);
+    }
+
+    private void loaded(String uid, FootprintSummary summary, List<String> absent) {
+        loading = false;
+        keepQueuedSubmissions(uid, summary, absent);
+        Snapshot fresh = new Snapshot();
+        fresh.uid = uid;
+        fresh.fetchedAt = System.currentTimeMillis();
+        fresh.summary = summary;
+        fresh.absent = absent;
+        snapshot = fresh;
+        store(fresh);
+        notifyObservers();
+    }
+
+    // The server has not seen a queued submission yet; its category stays as applySubmission left it
+    private void keepQueuedSubmissions(String uid, FootprintSummary summary, List<String> absent) {
+        if (snapshot == null || !uid.equals(snapshot.uid)) return;
+        WriteQueue queue = WriteQueue.get(context);
+        boolean kept = false;
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            String name = EmissionEngine.CATEGORY_NAMES[c];
+            Long packed = snapshot.summary.answers(c);
+            if (packed == null || !queue.isPending(FootprintSummary.NODE + "/" + uid + "/" + name)) continue;
+            summary.set(c, snapshot.summary.get(c));
+            summary.answers.put(name, packed);
+            absent.remove(name);
+            kept = true;
+        }
+        if (kept) summary.total = summary.home + summary.travel + summary.food + summary.others;
+    }
+
+    private void store(Snapshot snapshot) {
+        prefs.edit().putString(KEY_SNAPSHOT, gson.toJson(snapshot)).apply();
+    }
+
+    private void notifyObservers() {
+        // Copy so an observer may unregister from its callback
+        for (Observer observer : new ArrayList<>(observers)) {
+            observer.onFootprint(snapshot.summary);
+        }
+    }
+
+    // Reads the records of categories missing from the summary and writes them into it
+    private final class Backfill {
+        private final String uid;
+        private final FootprintSummary summary;
+        private final List<Integer> categories;
+        private final List<String> absent;
+        private final Map<String, Object> update = new HashMap<>();
+        private int pending;
+
+        Backfill(String uid, FootprintSummary summary, List<Integer> categories, List<String> absent) {
+            this.uid = uid;
+            this.summary = summary;
+            this.categories = categories;
+            this.absent = absent;
+        }
+
+        void start() {
+            pending = categories.size();
+            for (int category : categories) {
+                String name = EmissionEngine.CATEGORY_NAMES[category];
+                store.get(SurveyRecord.NODE + "/" + name + "/" + uid, new KeyValueStore.Callback<Object>() {
+                    @Override
+                    public void onSuccess(Object record) {
+                        if (record instanceof Map) {
+                            add(category, (Map<?, ?>) record);
+                        } else {
+                            absent.add(name);   // a failed read is retried, a missing record is not
+                        }
+                        if (--pending == 0) finish();
+                    }
+
+                    @Override
+                    public void onFailure(Exception error) {
+                        Log.e(TAG, "Error loading " + name + ": " + error.getMessage());
+                        if (--pending == 0) finish();
+                    }
+                });
+            }
+        }
+
+        private void add(int category, Map<?, ?> record) {
+            double annual = SurveyRecord.readAnnual(record);
+            Object stored = record.get("answers");
+            long packed;
+            if (stored instanceof Number) {
+                packed = ((Number) stored).longValue();
+            } else {
+                int[] answers = new int[SurveyLabels.ANSWER_FIELDS[category].length];
+                SurveyRecord.readAnswers(category, record, answers);
+                packed = AnswerCodec.encode(category, answers, FactorCatalog.get(context).getVersion());
+            }
+            summary.set(category, annual);
+            summary.answers.put(EmissionEngine.CATEGORY_NAMES[category], packed);
+            FootprintSummary.put(update, uid, category, annual, packed, Double.NaN);
+        }
+
+        private void finish() {
+            summary.total = summary.home + summary.travel + summary.food + summary.others;
+            loaded(uid, summary, absent);
+            if (update.isEmpty() || uid.equals("anonymous")) return;
+            store.update(update, new KeyValueStore.Callback<Void>() {
+                @Override
+                public void onSuccess(Void result) {
+                    FootprintSummary.recomputeTotal(store, uid);
+                }
+
+                @Override
+                public void onFailure(Exception error) {
+                    Log.e(TAG, "Summary backfill failed: " + error.getMessage());
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.carbonfootprint;
+
+import android.util.Log;
+import com.google.firebase.database.ServerValue;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One user's current footprint in a single node, {@code summary/{uid}}: the annual total of
+ * each category, their sum, the packed answers behind them and when any of it last changed.
+ *
+ * It is denormalized from {@code surveys/{category}/{uid}} and always written in the same
+ * multi-path {@code updateChildren} as the record it mirrors ({@link #put}), with the total
+ * moved by the category's delta so no one has to read the other categories first. Screens
+ * that only display the footprint read this node alone.
+ */
+public class FootprintSummary {
+
+    public interface PreviousListener {
+        void onPrevious(double annualTons);
+    }
+
+    static final String NODE = "summary";
+    private static final String TAG = "FootprintSummary";
+
+    public double home;              // t CO₂e/yr per category, 0 until submitted
+    public double travel;
+    public double food;
+    public double others;
+    public double total;             // sum of the four, kept by increments
+    public Map<String, Long> answers = new HashMap<>();   // category name -> AnswerCodec value
+    public long updatedAt;
+
+    public FootprintSummary() {}  // Required for Firebase
+
+    public double get(int category) {
+        switch (category) {
+            case EmissionEngine.HOME: return home;
+            case EmissionEngine.TRAVEL: return travel;
+            case EmissionEngine.FOOD: return food;
+            default: return others;
+        }
+    }
+
+    public void set(int category, double annualTons) {
+        switch (category) {
+            case EmissionEngine.HOME: home = annualTons; break;
+            case EmissionEngine.TRAVEL: travel = annualTons; break;
+            case EmissionEngine.FOOD: food = annualTons; break;
+            default: others = annualTons; break;
+        }
+    }
+
+    /** Packed answers of {@code category}, or null when it was never submitted. */
+    public Long answers(int category) {
+        return answers != null ? answers.get(EmissionEngine.CATEGORY_NAMES[category]) : null;
+    }
+
+    /**
+     * Adds the root-relative writes that set {@code category} to {@code annualTons} to
+     * {@code update}. The total moves by the difference to {@code previousAnnual}, which must be
+     * the value this summary holds for the category (0 when absent), not the survey record's;
+     * when that is unknown (NaN) the total is left alone and the caller follows up with
+     * {@link #recomputeTotal}.
+     */
+    static void put(Map<String, Object> update, String uid, int category, double annualTons,
+                    long packedAnswers, double previousAnnual) {
+        String summary = NODE + "/" + uid + "/";
+        String name = EmissionEngine.CATEGORY_NAMES[category];
+        update.put(summary + name, annualTons);
+        update.put(summary + "answers/" + name, packedAnswers);
+        update.put(summary + "updatedAt", ServerValue.TIMESTAMP);
+        if (!Double.isNaN(previousAnnual)) putTotalDelta(update, uid, annualTons - previousAnnual);
+    }
+
+    /** Adds a server-side increment of the total; for writers that change several categories at once. */
+    static void putTotalDelta(Map<String, Object> update, String uid, double delta) {
+        if (delta != 0) update.put(NODE + "/" + uid + "/total", ServerValue.increment(delta));
+    }
+
+    /** Reads the stored annual total of one category; 0 when it was never submitted. */
+    static void loadPrevious(KeyValueStore store, String uid, int category, PreviousListener listener) {
+        String path = NODE + "/" + uid + "/" + EmissionEngine.CATEGORY_NAMES[category];
+        store.get(path, new KeyValueStore.Callback<Object>() {
+            @Override
+            public void onSuccess(Object annual) {
+                listener.onPrevious(annual instanceof Number ? ((Number) annual).doubleValue() : 0);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                Log.e(TAG, "Previous total unavailable: " + error.getMessage());
+            }
+        });
+    }
+
+    /** Summary from the value of {@code summary/{uid}} as a {@link KeyValueStore} returns it; null when absent. */
+    static FootprintSummary fromValue(Object value) {
+        if (!(value instanceof Map)) return null;
+        Map<?, ?> fields = (Map<?, ?>) value;
+        FootprintSummary summary = new FootprintSummary();
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            summary.set(c, number(fields.get(EmissionEngine.CATEGORY_NAMES[c])));
+        }
+        summary.total = number(fields.get("total"));
+        summary.updatedAt = (long) number(fields.get("updatedAt"));
+        Object answers = fields.get("answers");
+        if (answers instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) answers).entrySet()) {
+                if (entry.getValue() instanceof Number) {
+                    summary.answers.put(String.valueOf(entry.getKey()), ((Number) entry.getValue()).longValue());
+                }
+            }
+        }
+        return summary;
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+
+    /** Resets the total to the sum of the categories, for writes made without a known previous value. */
+    static void recomputeTotal(KeyValueStore store, String uid) {
+        store.transact(NODE + "/" + uid, current -> {
+            if (!(current instanceof Map)) return KeyValueStore.ABORT;
+            Map<String, Object> summary = new HashMap<>();
+            double total = 0;
+            for (Map.Entry<?, ?> field : ((Map<?, ?>) current).entrySet()) {
+                summary.put(String.valueOf(field.getKey()), field.getValue());
+            }
+            for (String category : EmissionEngine.CATEGORY_NAMES) {
+                total += number(summary.get(category));
+            }
+            summary.put("total", total);
+            return summary;
+        }, new KeyValueStore.Callback<Object>() {
+            @Override
+            public void onSuccess(Object result) {}
+
+            @Override
+            public void onFailure(Exception error) {
+                // Aborted when there is no summary yet; nothing to correct then
+                if (!(error instanceof IllegalStateException)) {
+                    Log.e(TAG, "Total recompute failed: " + error.getMessage());
+                }
+            }
+        });
+    }
+}
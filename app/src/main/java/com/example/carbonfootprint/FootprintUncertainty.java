@@ -0,0 +1,161 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo uncertainty bands for a user's footprint.
+ *
+ * Each selected factor is treated as a triangular distribution around its catalog value.
+ * Answers that are themselves a guess ("Not sure" for renewable electricity) span the whole
+ * range of their question instead. Samples are split across the common fork/join pool; each
+ * leaf task runs its own xorshift generator held in a local {@code long}, so the sampling
+ * loop allocates nothing. The result is the 10th, 50th and 90th percentile of annual tons
+ * per category and for the total.
+ */
+public final class FootprintUncertainty {
+
+    public static final int DEFAULT_SAMPLES = 20000;
+
+    // Columns of the result rows
+    public static final int P10 = 0;
+    public static final int P50 = 1;
+    public static final int P90 = 2;
+
+    /** Row index of the total in the result; rows 0..CATEGORY_COUNT-1 are the categories. */
+    public static final int TOTAL = EmissionEngine.CATEGORY_COUNT;
+
+    // Relative half-width of the triangular distribution around each factor, per category
+    private static final double[] RELATIVE_SPREAD = {0.25, 0.30, 0.35, 0.40};
+
+    // Samples per leaf task; below this, splitting costs more than it saves
+    private static final int LEAF_SAMPLES = 2048;
+
+    private FootprintUncertainty() {}
+
+    /**
+     * Runs {@code samples} draws for the given answers ({@code answers[category][question]})
+     * and returns percentile rows {@code [category or TOTAL][P10|P50|P90]} in tons per year.
+     */
+    public static double[][] simulate(EmissionEngine engine, int[][] answers, int samples, long seed) {
+        // Flatten the answered questions, grouped by category
+        int count = 0;
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            for (int option : answers[c]) {
+                if (option >= 0) count++;
+            }
+        }
+        double[] low = new double[count];
+        double[] mode = new double[count];
+        double[] high = new double[count];
+        int[] categoryStart = new int[EmissionEngine.CATEGORY_COUNT + 1];
+
+        int i = 0;
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            categoryStart[c] = i;
+            for (int q = 0; q < answers[c].length; q++) {
+                int option = answers[c][q];
+                if (option < 0) continue;
+                double factor = engine.factor(c, q, option);
+                mode[i] = factor;
+                if (isGuess(c, q, option)) {
+                    low[i] = Double.MAX_VALUE;
+                    high[i] = 0;
+                    for (int o = 0; o < engine.optionCount(c, q); o++) {
+                        low[i] = Math.min(low[i], engine.factor(c, q, o));
+                        high[i] = Math.max(high[i], engine.factor(c, q, o));
+                    }
+                } else {
+                    low[i] = factor * (1 - RELATIVE_SPREAD[c]);
+                    high[i] = factor * (1 + RELATIVE_SPREAD[c]);
+                }
+                i++;
+            }
+        }
+        categoryStart[EmissionEngine.CATEGORY_COUNT] = i;
+
+        double[][] draws = new double[EmissionEngine.CATEGORY_COUNT + 1][samples];
+        ForkJoinPool.commonPool().invoke(
+                new SampleTask(low, mode, high, categoryStart, draws, 0, samples, seed));
+
+        double[][] bands = new double[EmissionEngine.CATEGORY_COUNT + 1][3];
+        for (int row = 0; row < draws.length; row++) {
+            double[] sorted = draws[row];
+            Arrays.sort(sorted);
+            bands[row][P10] = sorted[(int) (samples * 0.1)];
+            bands[row][P50] = sorted[samples / 2];
+            bands[row][P90] = sorted[(int) (samples * 0.9)];
+        }
+        return bands;
+    }
+
+    // Answers that only say "I don't know" and so could be any option of their question
+    private static boolean isGuess(int category, int question, int option) {
+        return category == EmissionEngine.HOME && question == EmissionEngine.HOME_RENEWABLE && option == 2;
+    }
+
+    private static final class SampleTask extends RecursiveAction {
+        private final double[] low, mode, high;
+        private final int[] categoryStart;
+        private final double[][] draws;
+        private final int from, to;
+        private final long seed;
+
+        SampleTask(double[] low, double[] mode, double[] high, int[] categoryStart,
+                   double[][] draws, int from, int to, long seed) {
+            this.low = low;
+            this.mode = mode;
+            this.high = high;
+            this.categoryStart = categoryStart;
+            this.draws = draws;
+            this.from = from;
+            this.to = to;
+            this.seed = seed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SAMPLES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SampleTask(low, mode, high, categoryStart, draws, from, mid, seed),
+                        new SampleTask(low, mode, high, categoryStart, draws, mid, to, seed));
+                return;
+            }
+
+            // Per-leaf generator state derived from the sample range, so results are reproducible
+            long state = seed ^ ((from + 1) * 0x9E3779B97F4A7C15L);
+            if (state == 0) state = 1;
+
+            double[] total = draws[TOTAL];
+            for (int s = from; s < to; s++) {
+                double sum = 0;
+                for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+                    double weekly = 0;
+                    for (int i = categoryStart[c]; i < categoryStart[c + 1]; i++) {
+                        state ^= state >>> 12;
+                        state ^= state << 25;
+                        state ^= state >>> 27;
+                        double u = ((state * 0x2545F4914F6CDD1DL) >>> 11) * 0x1.0p-53;
+                        weekly += triangular(low[i], mode[i], high[i], u);
+                    }
+                    double annual = EmissionEngine.toAnnualTons(weekly);
+                    draws[c][s] = annual;
+                    sum += annual;
+                }
+                total[s] = sum;
+            }
+        }
+
+        // Inverse CDF of the triangular distribution
+        private static double triangular(double low, double mode, double high, double u) {
+            double range = high - low;
+            if (range <= 0) return mode;
+            double split = (mode - low) / range;
+            if (u < split) {
+                return low + Math.sqrt(u * range * (mode - low));
+            }
+            return high - Math.sqrt((1 - u) * range * (high - mode));
+        }
+    }
+}
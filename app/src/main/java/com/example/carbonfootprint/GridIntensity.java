@@ -0,0 +1,176 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Carbon intensity of the electricity grid per country and region.
+ *
+ * The table ships as {@code assets/grid_intensity.txt} and is read on first use into sorted
+ * parallel arrays, so a lookup is one binary search. Region codes are ISO 3166-1 countries,
+ * optionally with an ISO 3166-2 subdivision ("US-CA"); a subdivision missing from the table
+ * falls back to its country, and an unknown country to the reference grid the compiled
+ * factors assume.
+ *
+ * The user's region comes from the profile setting when there is one, otherwise from the
+ * locale's country. It is resolved once per session; {@link #setRegion} replaces it.
+ */
+public final class GridIntensity {
+
+    /** Grid the factors in {@link EmissionEngine} were calibrated on (GB), kg CO₂e/kWh. */
+    public static final double REFERENCE_KG_PER_KWH = 0.207;
+
+    /** Region code of the reference grid, used when nothing better is known. */
+    public static final String REFERENCE = "GB";
+
+    private static final String TAG = "GridIntensity";
+    private static final String FILE_NAME = "grid_intensity.txt";
+    private static final String PREFS_NAME = "profile";
+    private static final String KEY_REGION = "grid_region";
+
+    private static volatile GridIntensity current;
+    private static volatile String sessionRegion;
+
+    private final String[] codes;        // sorted
+    private final double[] kgPerKwh;
+    private final String[] names;
+
+    private GridIntensity(String[] codes, double[] kgPerKwh, String[] names) {
+        this.codes = codes;
+        this.kgPerKwh = kgPerKwh;
+        this.names = names;
+    }
+
+    /** Shared table, read from the bundled asset on first use. */
+    public static GridIntensity get(Context context) {
+        GridIntensity grid = current;
+        if (grid == null) {
+            synchronized (GridIntensity.class) {
+                if (current == null) {
+                    try (Reader in = new InputStreamReader(
+                            context.getApplicationContext().getAssets().open(FILE_NAME), "UTF-8")) {
+                        current = read(in);
+                    } catch (IOException e) {
+                        // Without the table every region scores on the reference grid
+                        Log.e(TAG, "Grid table unreadable: " + e.getMessage());
+                        current = new GridIntensity(new String[0], new double[0], new String[0]);
+                    }
+                }
+                grid = current;
+            }
+        }
+        return grid;
+    }
+
+    /** The user's region for this session: the profile setting, else the locale's country. */
+    public static String region(Context context) {
+        String region = sessionRegion;
+        if (region == null) {
+            synchronized (GridIntensity.class) {
+                if (sessionRegion == null) {
+                    SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                    String chosen = prefs.getString(KEY_REGION, null);
+                    sessionRegion = get(context).resolve(chosen != null ? chosen : Locale.getDefault().getCountry());
+                    Log.d(TAG, "Session region " + sessionRegion);
+                }
+                region = sessionRegion;
+            }
+        }
+        return region;
+    }
+
+    /** Saves {@code region} as the profile setting and makes it the session region; returns the resolved code. */
+    public static String setRegion(Context context, String region) {
+        String resolved = get(context).resolve(region);
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit().putString(KEY_REGION, resolved).apply();
+        sessionRegion = resolved;
+        return resolved;
+    }
+
+    /**
+     * Closest code in the table: the region itself, else its country, else {@link #REFERENCE}.
+     * Case and surrounding space are ignored; null and empty give the reference.
+     */
+    public String resolve(String region) {
+        int index = indexOf(region);
+        return index >= 0 ? codes[index] : REFERENCE;
+    }
+
+    /** kg CO₂e per kWh for {@code region}, with the same fallbacks as {@link #resolve}. */
+    public double kgPerKwh(String region) {
+        int index = indexOf(region);
+        return index >= 0 ? kgPerKwh[index] : REFERENCE_KG_PER_KWH;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    public String code(int index) {
+        return codes[index];
+    }
+
+    public String name(int index) {
+        return names[index];
+    }
+
+    public double kgPerKwhAt(int index) {
+        return kgPerKwh[index];
+    }
+
+    private int indexOf(String region) {
+        if (region == null) return -1;
+        String code = region.trim().toUpperCase(Locale.ROOT);
+        if (code.isEmpty()) return -1;
+        int index = Arrays.binarySearch(codes, code);
+        if (index < 0) {
+            int dash = code.indexOf('-');
+            if (dash > 0) index = Arrays.binarySearch(codes, code.substring(0, dash));
+        }
+        return index;
+    }
+
+    static GridIntensity read(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        List<String[]> rows = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+", 3);
+            if (parts.length != 3) throw new IOException("Bad region on line " + lineNumber + ": " + line);
+            parts[0] = parts[0].toUpperCase(Locale.ROOT);
+            rows.add(parts);
+        }
+        Collections.sort(rows, (a, b) -> a[0].compareTo(b[0]));
+
+        String[] codes = new String[rows.size()];
+        double[] kgPerKwh = new double[rows.size()];
+        String[] names = new String[rows.size()];
+        for (int i = 0; i < codes.length; i++) {
+            String[] row = rows.get(i);
+            if (i > 0 && row[0].equals(codes[i - 1])) throw new IOException("Duplicate region " + row[0]);
+            codes[i] = row[0];
+            try {
+                kgPerKwh[i] = Double.parseDouble(row[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad intensity for " + row[0] + ": " + row[1]);
+            }
+            names[i] = row[2];
+        }
+        return new GridIntensity(codes, kgPerKwh, names);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.carbonfootprint;
+
+/**
+ * Totals of one category's submissions in a month or year, stored under
+ * {@code history/{uid}/monthly/{yyyy-MM}/{category}} and {@code .../yearly/{yyyy}/{category}}.
+ * Maintained incrementally by {@link SurveyHistory}; never recomputed from the entries.
+ */
+public class HistoryRollup {
+
+    public long submissions;
+    public double annualSum;         // sum of annualEmissions over the submissions, t CO₂e/yr
+    public double latest;            // annualEmissions of the newest submission
+    public long latestAt;            // its timestamp
+    public long compacted;           // submissions whose raw entry has been dropped
+
+    public HistoryRollup() {}  // Required for Firebase
+
+    /** Mean annual footprint over the period's submissions, or 0 when there were none. */
+    public double mean() {
+        return submissions > 0 ? annualSum / submissions : 0;
+    }
+}
@@ -1,21 +1,35 @@
 package com.example.carbonfootprint;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
-import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 
 import com.example.carbonfootprint.R;
 import com.example.carbonfootprint.TravelServey;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.util.Calendar;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class HomeServey extends AppCompatActivity {
 
@@ -26,9 +40,32 @@ public class HomeServey extends AppCompatActivity {
     // UI Elements
     private SeekBar householdSeekBar;
     private TextView householdValue;
-    private RadioGroup bedroomsGroup, heatingGroup, renewableGroup, appliancesGroup, laundryGroup;
+    private RadioGroup bedroomsGroup, heatingGroup, renewableGroup, appliancesGroup, laundryGroup, laundryTimeGroup;
     private Button submitButton;
 
+    // Live running total
+    private LiveScore liveScore;
+    private TextView liveTotalText;
+    private final StringBuilder liveText = new StringBuilder();
+
+    // Stored annual total of this category, for the summary's total delta; NaN until read
+    private double previousAnnual = Double.NaN;
+
+    // Smart-meter import, shown next to the survey estimate
+    private TextView meterText;
+    private MeterSummary meterSummary;
+    private final DecimalFormat kwhFormat = new DecimalFormat("#,##0");
+    private final ActivityResultLauncher<String[]> meterPicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importMeterData);
+
+    // Cleanest upcoming window for a typical wash cycle
+    private static final int WASH_HOURS = 2;
+    private TextView laundryTipText;
+
+    // Electricity grid region
+    private TextView gridText;
+    private final DecimalFormat intensityFormat = new DecimalFormat("0.000");
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -46,6 +83,8 @@ public class HomeServey extends AppCompatActivity {
         renewableGroup = findViewById(R.id.renewableGroup);
         appliancesGroup = findViewById(R.id.appliancesGroup);
         laundryGroup = findViewById(R.id.laundryGroup);
+        laundryTimeGroup = findViewById(R.id.laundryTimeGroup);
+        laundryTipText = findViewById(R.id.laundryTipText);
         submitButton = findViewById(R.id.submitButton);
 
         // SeekBar change listener
@@ -54,12 +93,40 @@ public class HomeServey extends AppCompatActivity {
             public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
                 // Progress 0-9 corresponds to 1-10 people
                 householdValue.setText(String.valueOf(progress + 1));
+                onAnswerChanged(EmissionEngine.HOME_HOUSEHOLD, progress);
             }
 
             @Override public void onStartTrackingTouch(SeekBar seekBar) {}
             @Override public void onStopTrackingTouch(SeekBar seekBar) {}
         });
 
+        // Live running total, updated on every answer change
+        liveTotalText = findViewById(R.id.liveTotalText);
+        liveScore = new LiveScore(FactorCatalog.get(this, GridIntensity.region(this)), EmissionEngine.HOME);
+        onAnswerChanged(EmissionEngine.HOME_HOUSEHOLD, householdSeekBar.getProgress());
+        bindLiveScore(bedroomsGroup, EmissionEngine.HOME_BEDROOMS);
+        bindLiveScore(heatingGroup, EmissionEngine.HOME_HEATING);
+        bindLiveScore(renewableGroup, EmissionEngine.HOME_RENEWABLE);
+        bindLiveScore(appliancesGroup, EmissionEngine.HOME_APPLIANCES);
+        bindLiveScore(laundryGroup, EmissionEngine.HOME_LAUNDRY);
+        bindLiveScore(laundryTimeGroup, EmissionEngine.HOME_LAUNDRY_TIME);
+
+        // Smart-meter import
+        meterText = findViewById(R.id.meterText);
+        findViewById(R.id.importMeterButton).setOnClickListener(v ->
+                meterPicker.launch(new String[]{"text/*", "application/csv", "application/vnd.ms-excel"}));
+        loadMeterSummary();
+
+        // Previous total, read while the survey is filled in so saving needs no extra round trip
+        FootprintSummary.loadPrevious(FirebaseKeyValueStore.get(), mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous", EmissionEngine.HOME, annual -> previousAnnual = annual);
+
+        // Grid region, changeable here since home answers depend on it most
+        gridText = findViewById(R.id.gridText);
+        gridText.setOnClickListener(v -> chooseRegion());
+        showRegion();
+        showLaundryTip();
+
         // Submit button click listener
         submitButton.setOnClickListener(v -> {
             if (validateSelections()) {
@@ -78,177 +145,216 @@ public class HomeServey extends AppCompatActivity {
                 laundryGroup.getCheckedRadioButtonId() != -1;
     }
 
-    // Emission calculation helper methods
-    private double getHouseholdEmission(int count) {
-        switch (count) {
-            case 1: return 3.5;
-            case 2: return 2.0;
-            case 3: return 1.5;
-            case 4: return 1.25;
-            case 5: return 1.1;
-            case 6: return 1.0;
-            case 7: return 0.95;
-            case 8: return 0.9;
-            case 9: return 0.87;
-            default: return 0.85; // 10+
-        }
+    private void saveSurveyData() {
+        // Get current user ID
+        String userId = mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous";
+
+        // Answer ordinals in EmissionEngine question order
+        int[] answers = {
+                householdSeekBar.getProgress(),
+                getSelectedOption(bedroomsGroup),
+                getSelectedOption(heatingGroup),
+                getSelectedOption(renewableGroup),
+                getSelectedOption(appliancesGroup),
+                getSelectedOption(laundryGroup),
+                getSelectedOption(laundryTimeGroup)
+        };
+
+        // Calculate totals (kg CO₂e per week, metric tons per year)
+        String region = GridIntensity.region(this);
+        EmissionEngine engine = FactorCatalog.get(this, region, answers[EmissionEngine.HOME_LAUNDRY_TIME]);
+        double weeklyEmissions = engine.weeklyEmissions(EmissionEngine.HOME, answers);
+        double annualEmissions = EmissionEngine.toAnnualTons(weeklyEmissions);
+
+        // Answers are stored packed; labels are resolved locally when displayed
+        SurveyRecord record = new SurveyRecord(
+                AnswerCodec.encode(EmissionEngine.HOME, answers, engine.getVersion()),
+                weeklyEmissions, annualEmissions, engine.getVersion(), region);
+
+        // Queue the record and its history entry; the multi-path update keeps an imported meter summary
+        Map<String, Object> update = SurveyHistory.submission(mDatabase, userId, EmissionEngine.HOME,
+                record, previousAnnual);
+        WriteQueue.get(this).enqueue(update, Double.isNaN(previousAnnual) ? userId : null);
+        FootprintRepository.get(this).applySubmission(userId, EmissionEngine.HOME,
+                record.annualEmissions, record.answers);
+        startActivity(new Intent(HomeServey.this, TravelServey.class));
+        finish();
     }
 
-    private double getBedroomsEmission(String selection) {
-        switch (selection) {
-            case "Studio": return 1.0;
-            case "1": return 1.5;
-            case "2": return 2.2;
-            case "3+": return 3.0;
-            default: return 0;
-        }
+    private DatabaseReference meterRef() {
+        String userId = mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous";
+        return mDatabase.child("surveys").child("home").child(userId).child("meter");
     }
 
-    private double getHeatingEmission(String selection) {
-        switch (selection) {
-            case "Gas boiler": return 4.0;
-            case "Gas condenser": return 3.6;
-            case "Oil": return 5.5;
-            case "Electricity": return 2.8;
-            case "Ground-source heat pump": return 1.2;
-            default: return 0;
-        }
+    private void loadMeterSummary() {
+        meterRef().addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                MeterSummary summary = snapshot.getValue(MeterSummary.class);
+                if (summary != null) {
+                    meterSummary = summary;
+                    showMeterSummary();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("Firebase", "Error loading meter summary: " + error.getMessage());
+            }
+        });
     }
 
-    private double getRenewableEmission(String selection) {
-        switch (selection) {
-            case "Yes": return 0.0;
-            case "No": return 1.5;
-            case "Not sure": return 0.75;
-            default: return 0;
+    // Parses off the main thread; only the aggregate is written, never the raw readings
+    private void importMeterData(Uri uri) {
+        if (uri == null) return;
+        meterText.setText("Reading meter data…");
+        ForkJoinPool.commonPool().execute(() -> {
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open file");
+                String region = GridIntensity.region(this);
+                MeterSummary summary = new MeterImporter(GridIntensity.get(this).kgPerKwh(region)).parse(in);
+                summary.gridRegion = region;
+                runOnUiThread(() -> saveMeterSummary(summary));
+            } catch (IOException e) {
+                runOnUiThread(() -> {
+                    showMeterSummary();
+                    Toast.makeText(this, "Import failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            }
+        });
+    }
+
+    private void saveMeterSummary(MeterSummary summary) {
+        if (isFinishing()) return;
+        meterSummary = summary;
+        showMeterSummary();
+        SingleFlight.get().invalidate(meterRef());
+        meterRef().setValue(summary)
+                .addOnFailureListener(e -> Toast.makeText(this, "Failed to save meter data: " +
+                        e.getMessage(), Toast.LENGTH_SHORT).show());
+    }
+
+    private void showMeterSummary() {
+        if (meterSummary == null) {
+            meterText.setText("");
+            return;
         }
+        StringBuilder text = new StringBuilder("Measured: ")
+                .append(kwhFormat.format(meterSummary.electricityKwh)).append(" kWh electricity, ")
+                .append(kwhFormat.format(meterSummary.gasKwh)).append(" kWh gas = ");
+        LiveScore.appendTons(text, meterSummary.annualEmissions);
+        text.append(" t CO₂e/yr (survey estimate ");
+        LiveScore.appendTons(text, liveScore.annualTons());
+        text.append(" t)");
+        meterText.setText(text);
     }
 
-    private double getAppliancesEmission(String selection) {
-        switch (selection) {
-            case "Always": return 0.0;
-            case "Most of the time": return 0.3;
-            case "Rarely": return 0.8;
-            case "Never": return 1.5;
-            default: return 0;
+    private void showRegion() {
+        GridIntensity grid = GridIntensity.get(this);
+        String region = GridIntensity.region(this);
+        String name = region;
+        for (int i = 0; i < grid.size(); i++) {
+            if (grid.code(i).equals(region)) name = grid.name(i);
         }
+        gridText.setText("Electricity grid: " + name + ", "
+                + intensityFormat.format(grid.kgPerKwh(region)) + " kg CO₂e/kWh (tap to change)");
     }
 
-    private double getLaundryEmission(String selection) {
-        switch (selection) {
-            case "<2 times / week": return 0.5;
-            case "3–4 times / week": return 1.0;
-            case "5+ times / week": return 1.8;
-            default: return 0;
+    private void chooseRegion() {
+        GridIntensity grid = GridIntensity.get(this);
+        String[] names = new String[grid.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = grid.name(i);
         }
+        new AlertDialog.Builder(this)
+                .setTitle("Electricity region")
+                .setItems(names, (dialog, which) -> switchRegion(grid.code(which)))
+                .show();
     }
 
-    private void saveSurveyData() {
-        // Get current user ID
+    // Rescores the open survey locally and the stored grid-dependent records remotely
+    private void switchRegion(String code) {
+        String region = GridIntensity.setRegion(this, code);
+        double before = liveScore.weekly();
+        liveScore.setEngine(FactorCatalog.get(this, region, liveScore.answer(EmissionEngine.HOME_LAUNDRY_TIME)));
+        if (meterSummary != null) {
+            meterSummary.annualEmissions = MeterImporter.annualTons(meterSummary.electricityKwh,
+                    meterSummary.gasKwh, GridIntensity.get(this).kgPerKwh(region));
+            meterSummary.gridRegion = region;
+        }
+        showLiveScore(liveScore.weekly() - before);
+        showRegion();
+        showLaundryTip();
+
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
+        new RegionSwitch(mDatabase, userId, region, FactorCatalog.get(this, region),
+                GridIntensity.get(this).kgPerKwh(region), TimeOfUse.get(this), new RegionSwitch.Listener() {
+            @Override
+            public void onSwitched(String region, int updatedRecords) {
+                Log.d("Firebase", "Region " + region + ": rescored " + updatedRecords + " surveys");
+                FootprintRepository.get(HomeServey.this).invalidate();
+            }
 
-        // Get answers
-        int householdCount = Integer.parseInt(householdValue.getText().toString());
-        String bedrooms = getSelectedRadioText(bedroomsGroup);
-        String heating = getSelectedRadioText(heatingGroup);
-        String renewable = getSelectedRadioText(renewableGroup);
-        String appliances = getSelectedRadioText(appliancesGroup);
-        String laundry = getSelectedRadioText(laundryGroup);
-
-        // Calculate emissions (kg CO₂e per week)
-        double householdEmission = getHouseholdEmission(householdCount);
-        double bedroomsEmission = getBedroomsEmission(bedrooms);
-        double heatingEmission = getHeatingEmission(heating);
-        double renewableEmission = getRenewableEmission(renewable);
-        double appliancesEmission = getAppliancesEmission(appliances);
-        double laundryEmission = getLaundryEmission(laundry);
-
-        // Calculate totals
-        double weeklyEmissions = householdEmission + bedroomsEmission + heatingEmission +
-                renewableEmission + appliancesEmission + laundryEmission;
-        double annualEmissions = (weeklyEmissions * 52) / 1000; // Convert to metric tons/year
-
-        // Create survey data object with emissions
-        SurveyData surveyData = new SurveyData(
-                householdCount, bedrooms, heating, renewable, appliances, laundry,
-                householdEmission, bedroomsEmission, heatingEmission,
-                renewableEmission, appliancesEmission, laundryEmission,
-                weeklyEmissions, annualEmissions
-        );
-
-        // Save to Firebase
-        mDatabase.child("surveys").child("home").child(userId)
-                .setValue(surveyData)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        startActivity(new Intent(HomeServey.this, TravelServey.class));
-                        finish();
-                    } else {
-                        Toast.makeText(this, "Failed to save: " +
-                                task.getException().getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                });
+            @Override
+            public void onError(String message) {
+                Toast.makeText(HomeServey.this, "Failed to update region: " + message, Toast.LENGTH_SHORT).show();
+            }
+        }).start();
     }
 
-    private String getSelectedRadioText(RadioGroup group) {
+    // Position of the checked button inside its group, matching the EmissionEngine option order
+    private int getSelectedOption(RadioGroup group) {
         int selectedId = group.getCheckedRadioButtonId();
-        RadioButton radioButton = findViewById(selectedId);
-        return radioButton.getText().toString();
-    }
-
-    // Updated data model class with emission values
-    public static class SurveyData {
-        // User selections
-        public int householdCount;
-        public String bedrooms;
-        public String heatingSystem;
-        public String renewableElectricity;
-        public String appliancesUsage;
-        public String laundryFrequency;
-
-        // Emission values (kg CO₂e/week)
-        public double householdEmission;
-        public double bedroomsEmission;
-        public double heatingEmission;
-        public double renewableEmission;
-        public double appliancesEmission;
-        public double laundryEmission;
-
-        // Totals
-        public double weeklyEmissions;   // kg CO₂e/week
-        public double annualEmissions;   // metric tons CO₂e/year
-
-        public long timestamp = System.currentTimeMillis();
-
-        public SurveyData() {}  // Required for Firebase
-
-        public SurveyData(int householdCount, String bedrooms, String heatingSystem,
-                          String renewableElectricity, String appliancesUsage,
-                          String laundryFrequency,
-                          double householdEmission, double bedroomsEmission,
-                          double heatingEmission, double renewableEmission,
-                          double appliancesEmission, double laundryEmission,
-                          double weeklyEmissions, double annualEmissions) {
-            // User answers
-            this.householdCount = householdCount;
-            this.bedrooms = bedrooms;
-            this.heatingSystem = heatingSystem;
-            this.renewableElectricity = renewableElectricity;
-            this.appliancesUsage = appliancesUsage;
-            this.laundryFrequency = laundryFrequency;
-
-            // Emission values
-            this.householdEmission = householdEmission;
-            this.bedroomsEmission = bedroomsEmission;
-            this.heatingEmission = heatingEmission;
-            this.renewableEmission = renewableEmission;
-            this.appliancesEmission = appliancesEmission;
-            this.laundryEmission = laundryEmission;
-
-            // Totals
-            this.weeklyEmissions = weeklyEmissions;
-            this.annualEmissions = annualEmissions;
+        if (selectedId == -1) return EmissionEngine.UNANSWERED;
+        return group.indexOfChild(group.findViewById(selectedId));
+    }
+
+    private void bindLiveScore(RadioGroup group, int question) {
+        group.setOnCheckedChangeListener((g, checkedId) -> onAnswerChanged(question, getSelectedOption(g)));
+    }
+
+    private void showLaundryTip() {
+        TimeOfUse timeOfUse = TimeOfUse.get(this);
+        int profile = timeOfUse.profileOf(GridIntensity.region(this));
+        if (profile == TimeOfUse.FLAT) {
+            laundryTipText.setText("");
+            return;
+        }
+
+        Calendar now = Calendar.getInstance();
+        int today = (now.get(Calendar.DAY_OF_WEEK) + 5) % 7; // Monday = 0
+        int hourOfWeek = today * TimeOfUse.HOURS_PER_DAY + now.get(Calendar.HOUR_OF_DAY);
+        int start = timeOfUse.cleanestStart(profile, hourOfWeek, WASH_HOURS, TimeOfUse.HOURS_PER_DAY);
+        double saving = 1 - timeOfUse.hourScale(profile, start, WASH_HOURS)
+                / timeOfUse.hourScale(profile, hourOfWeek, WASH_HOURS);
+
+        StringBuilder text = new StringBuilder("Cleanest time to run the washing machine: ");
+        if (start == hourOfWeek) {
+            text.append("now");
+        } else {
+            text.append(start / TimeOfUse.HOURS_PER_DAY == today ? "today " : "tomorrow ")
+                    .append(String.format("%02d:00", start % TimeOfUse.HOURS_PER_DAY))
+                    .append(" (").append(Math.round(saving * 100)).append("% less CO₂ than now)");
+        }
+        laundryTipText.setText(text);
+    }
+
+    private void onAnswerChanged(int question, int option) {
+        double before = liveScore.weekly();
+        liveScore.set(question, option);
+        if (question == EmissionEngine.HOME_LAUNDRY_TIME) {
+            // Laundry time re-weighs the laundry answer instead of scoring on its own
+            liveScore.setEngine(FactorCatalog.get(this, GridIntensity.region(this), option));
         }
+        showLiveScore(liveScore.weekly() - before);
+    }
+
+    private void showLiveScore(double delta) {
+        liveScore.describe(liveText, delta);
+        liveTotalText.setText(liveText);
+        if (meterSummary != null) showMeterSummary();
     }
 }
\ No newline at end of file
@@ -0,0 +1,330 @@
+package com.example.carbonfootprint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe {@link KeyValueStore} held in memory, for JVM load tests, benchmarks and
+ * Robolectric tests.
+ *
+ * The tree is kept flat: one sorted map entry per leaf, keyed by its full path, so a subtree
+ * is a key range and reading or replacing it never walks the rest of the tree. Every write
+ * (set, increment, multi-path update, transaction) takes the write lock, so it is atomic with
+ * respect to the others and to readers; an increment of a plain leaf is a single
+ * {@code compute} on its key and never rebuilds the tree around it.
+ *
+ * Callbacks and observers run synchronously on the calling thread, after the lock is released.
+ * A {@link KeyValueStore.Mutation} runs exactly once, under the write lock. Only the value
+ * types listed on {@link KeyValueStore} are accepted; Integer and Float are widened like
+ * Firebase does.
+ */
+public final class InMemoryKeyValueStore implements KeyValueStore {
+
+    // Just past '/' in char order, so [p + "/", p + END) is exactly the subtree of p
+    private static final char END = '/' + 1;
+    private static final double MAX_EXACT_LONG = 1L << 53;
+
+    private final ConcurrentSkipListMap<String, Object> leaves = new ConcurrentSkipListMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Watch> watches = new CopyOnWriteArrayList<>();
+
+    private static final class Watch implements Subscription {
+        final String path;
+        final Observer observer;
+        final List<Watch> owner;
+
+        Watch(String path, Observer observer, List<Watch> owner) {
+            this.path = path;
+            this.observer = observer;
+            this.owner = owner;
+        }
+
+        @Override
+        public void cancel() {
+            owner.remove(this);
+        }
+    }
+
+    @Override
+    public void get(String path, Callback<Object> callback) {
+        Object value = get(path);
+        if (callback != null) callback.onSuccess(value);
+    }
+
+    /** Synchronous read, for tests and benchmarks. */
+    public Object get(String path) {
+        lock.readLock().lock();
+        try {
+            return read(normalize(path));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Leaves currently stored. */
+    public int size() {
+        return leaves.size();
+    }
+
+    @Override
+    public void set(String path, Object value, Callback<Void> callback) {
+        String key = normalize(path);
+        try {
+            lock.writeLock().lock();
+            try {
+                write(key, value);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IllegalArgumentException e) {
+            if (callback != null) callback.onFailure(e);
+            return;
+        }
+        changed(key);
+        if (callback != null) callback.onSuccess(null);
+    }
+
+    @Override
+    public void update(Map<String, Object> values, Callback<Void> callback) {
+        List<String> keys = new ArrayList<>(values.size());
+        for (String path : values.keySet()) keys.add(normalize(path));
+        try {
+            checkDisjoint(keys);
+            lock.writeLock().lock();
+            try {
+                // Validate everything first so a bad value cannot leave half an update behind
+                for (Object value : values.values()) validate(value);
+                for (Map.Entry<String, Object> entry : values.entrySet()) {
+                    write(normalize(entry.getKey()), entry.getValue());
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } catch (IllegalArgumentException e) {
+            if (callback != null) callback.onFailure(e);
+            return;
+        }
+        for (String key : keys) changed(key);
+        if (callback != null) callback.onSuccess(null);
+    }
+
+    @Override
+    public void increment(String path, double delta, Callback<Void> callback) {
+        String key = normalize(path);
+        lock.writeLock().lock();
+        try {
+            // Fast path: an existing or new leaf with no leaf above and nothing below it
+            if (!hasChildren(key) && !hasLeafAncestor(key)) {
+                leaves.compute(key, (k, current) -> add(current, delta));
+            } else {
+                write(key, add(read(key), delta));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changed(key);
+        if (callback != null) callback.onSuccess(null);
+    }
+
+    @Override
+    public void transact(String path, Mutation mutation, Callback<Object> callback) {
+        String key = normalize(path);
+        Object committed;
+        lock.writeLock().lock();
+        try {
+            Object next = mutation.apply(read(key));
+            if (next == ABORT) {
+                committed = ABORT;
+            } else {
+                write(key, next);
+                committed = read(key);
+            }
+        } catch (IllegalArgumentException e) {
+            if (callback != null) callback.onFailure(e);
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (committed == ABORT) {
+            if (callback != null) callback.onFailure(new IllegalStateException("Transaction on " + key + " aborted"));
+            return;
+        }
+        changed(key);
+        if (callback != null) callback.onSuccess(committed);
+    }
+
+    @Override
+    public Subscription observe(String path, Observer observer) {
+        Watch watch = new Watch(normalize(path), observer, watches);
+        watches.add(watch);
+        observer.onValue(get(watch.path));
+        return watch;
+    }
+
+    // --- tree helpers; callers hold the lock where it matters
+
+    private static String normalize(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') start++;
+        while (end > start && path.charAt(end - 1) == '/') end--;
+        return path.substring(start, end);
+    }
+
+    private NavigableMap<String, Object> subtree(String key) {
+        if (key.isEmpty()) return leaves;
+        return leaves.subMap(key + "/", true, key + END, false);
+    }
+
+    private boolean hasChildren(String key) {
+        return !subtree(key).isEmpty();
+    }
+
+    private boolean hasLeafAncestor(String key) {
+        for (int slash = key.indexOf('/'); slash >= 0; slash = key.indexOf('/', slash + 1)) {
+            if (leaves.containsKey(key.substring(0, slash))) return true;
+        }
+        return false;
+    }
+
+    private Object read(String key) {
+        Object leaf = key.isEmpty() ? null : leaves.get(key);
+        if (leaf != null) return leaf;
+
+        NavigableMap<String, Object> range = subtree(key);
+        if (range.isEmpty()) return null;
+        int skip = key.isEmpty() ? 0 : key.length() + 1;
+        Map<String, Object> tree = new HashMap<>();
+        for (Map.Entry<String, Object> entry : range.entrySet()) {
+            String[] parts = entry.getKey().substring(skip).split("/");
+            Map<String, Object> node = tree;
+            for (int i = 0; i < parts.length - 1; i++) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> child = (Map<String, Object>) node.get(parts[i]);
+                if (child == null) {
+                    child = new HashMap<>();
+                    node.put(parts[i], child);
+                }
+                node = child;
+            }
+            node.put(parts[parts.length - 1], entry.getValue());
+        }
+        return tree;
+    }
+
+    private void write(String key, Object value) {
+        validate(value);
+        value = resolve(key, value);
+        // Replace whatever was there, including a leaf that is now becoming a parent
+        if (!key.isEmpty()) leaves.remove(key);
+        subtree(key).clear();
+        for (int slash = key.indexOf('/'); slash >= 0; slash = key.indexOf('/', slash + 1)) {
+            leaves.remove(key.substring(0, slash));
+        }
+        put(key, value);
+    }
+
+    // Server values ({".sv": ...} maps, as ServerValue builds them) become concrete before a write
+    private Object resolve(String key, Object value) {
+        if (!(value instanceof Map)) return value;
+        Map<?, ?> map = (Map<?, ?>) value;
+        Object serverValue = map.get(".sv");
+        if (serverValue != null && map.size() == 1) {
+            if ("timestamp".equals(serverValue)) return System.currentTimeMillis();
+            if (serverValue instanceof Map && ((Map<?, ?>) serverValue).get("increment") instanceof Number) {
+                return add(read(key), ((Number) ((Map<?, ?>) serverValue).get("increment")).doubleValue());
+            }
+            throw new IllegalArgumentException("Unsupported server value " + serverValue);
+        }
+        Map<String, Object> resolved = new HashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String child = String.valueOf(entry.getKey());
+            resolved.put(child, resolve(key.isEmpty() ? child : key + "/" + child, entry.getValue()));
+        }
+        return resolved;
+    }
+
+    private void put(String key, Object value) {
+        if (value == null) return;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String child = String.valueOf(entry.getKey());
+                put(key.isEmpty() ? child : key + "/" + child, entry.getValue());
+            }
+            return;
+        }
+        if (key.isEmpty()) throw new IllegalArgumentException("Root must hold a map");
+        leaves.put(key, leafValue(value));
+    }
+
+    private static void validate(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof String || value instanceof Number) return;
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String child = String.valueOf(entry.getKey());
+                if (child.isEmpty() || child.indexOf('/') >= 0) {
+                    throw new IllegalArgumentException("Bad key: " + child);
+                }
+                validate(entry.getValue());
+            }
+            return;
+        }
+        throw new IllegalArgumentException("Unsupported value type " + value.getClass().getName());
+    }
+
+    // Firebase keeps numbers as doubles but hands whole ones back as Long
+    private static Object leafValue(Object value) {
+        if (!(value instanceof Number)) return value;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        double d = ((Number) value).doubleValue();
+        if (d == Math.rint(d) && Math.abs(d) <= MAX_EXACT_LONG) return (long) d;
+        return d;
+    }
+
+    private static Object add(Object current, double delta) {
+        if (current instanceof Long && delta == Math.rint(delta) && Math.abs(delta) <= MAX_EXACT_LONG) {
+            return (Long) current + (long) delta;
+        }
+        double base = current instanceof Number ? ((Number) current).doubleValue() : 0;
+        return leafValue(base + delta);
+    }
+
+    // Every key against each of its ancestors, so "a" and "a/b" clash even with "a-b" sorted between
+    private static void checkDisjoint(List<String> keys) {
+        Set<String> seen = new HashSet<>(keys.size() * 2);
+        for (String key : keys) {
+            if (!seen.add(key) || (key.isEmpty() && keys.size() > 1)) {
+                throw new IllegalArgumentException("Path " + key + " overlaps another in one update");
+            }
+        }
+        for (String key : keys) {
+            for (int slash = key.indexOf('/'); slash >= 0; slash = key.indexOf('/', slash + 1)) {
+                String ancestor = key.substring(0, slash);
+                if (seen.contains(ancestor)) {
+                    throw new IllegalArgumentException("Path " + ancestor + " overlaps " + key + " in one update");
+                }
+            }
+        }
+    }
+
+    // Observers of the changed path, anything inside it, or anything containing it
+    private void changed(String key) {
+        if (watches.isEmpty()) return;
+        for (Watch watch : watches) {
+            String path = watch.path;
+            boolean related = path.equals(key) || path.isEmpty() || key.isEmpty()
+                    || key.startsWith(path + "/") || path.startsWith(key + "/");
+            if (related) watch.observer.onValue(get(path));
+        }
+    }
+}
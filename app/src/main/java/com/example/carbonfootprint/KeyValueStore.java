@@ -0,0 +1,75 @@
+package com.example.carbonfootprint;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The slice of the realtime database the app's logic needs, without Firebase types.
+ *
+ * Paths are slash-separated and relative to the store's root ({@code "Users/abc/taliPoints"}).
+ * Values are shaped as Firebase returns them: {@code null}, {@link Boolean}, {@link Long},
+ * {@link Double}, {@link String} or a {@code Map<String, Object>} of those; whole numbers
+ * read back as {@link Long}, and writing {@code null} or an empty map deletes the path.
+ * Firebase server values ({@code ServerValue.increment}, {@code ServerValue.TIMESTAMP}) may be
+ * written anywhere a value can; every backend resolves them when the write is applied.
+ * {@link #serverIncrement} builds the increment without depending on Firebase.
+ *
+ * {@link FirebaseKeyValueStore} is the production backend. {@link InMemoryKeyValueStore}
+ * has the same semantics on a plain JVM, so logic written against this interface
+ * ({@link Rewards}, {@link WriteQueue}, the summary reads and writes of
+ * {@link FootprintRepository} and {@link FootprintSummary}) can be load-tested and benchmarked
+ * without a device or network.
+ * Callbacks may be null.
+ */
+public interface KeyValueStore {
+
+    interface Callback<T> {
+        void onSuccess(T result);
+        void onFailure(Exception error);
+    }
+
+    interface Observer {
+        void onValue(Object value);
+    }
+
+    /** Computes a path's new value from its current one; may run more than once. */
+    interface Mutation {
+        /** New value for the path, or {@link #ABORT} to leave it unchanged. */
+        Object apply(Object current);
+    }
+
+    interface Subscription {
+        void cancel();
+    }
+
+    /** Returned from a {@link Mutation} to abort the transaction. */
+    Object ABORT = new Object();
+
+    /** The {@code ServerValue.increment(delta)} map, for multi-path updates. */
+    static Map<String, Object> serverIncrement(Number delta) {
+        return Collections.<String, Object>singletonMap(".sv", Collections.singletonMap("increment", delta));
+    }
+
+    void get(String path, Callback<Object> callback);
+
+    /** Replaces the value at {@code path}, subtree included. */
+    void set(String path, Object value, Callback<Void> callback);
+
+    /**
+     * Writes every path in {@code values} atomically. No path may be an ancestor of another
+     * in the same update.
+     */
+    void update(Map<String, Object> values, Callback<Void> callback);
+
+    /** Adds {@code delta} to the number at {@code path}; anything else there is replaced by {@code delta}. */
+    void increment(String path, double delta, Callback<Void> callback);
+
+    /**
+     * Atomically replaces the value at {@code path} with {@code mutation}'s result. The callback
+     * receives the committed value; an aborted transaction fails with {@link IllegalStateException}.
+     */
+    void transact(String path, Mutation mutation, Callback<Object> callback);
+
+    /** Delivers the value at {@code path} now and after every change until cancelled. */
+    Subscription observe(String path, Observer observer);
+}
@@ -0,0 +1,147 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+
+/**
+ * Running score of one survey category while it is being answered.
+ *
+ * Holds the current answer ordinals and each question's contribution, so changing an answer
+ * is one table lookup and one subtraction: the total never has to be re-summed and nothing
+ * is allocated. The same state answers "what if" questions such as the biggest single saving
+ * available from the current answers.
+ */
+public final class LiveScore {
+
+    private EmissionEngine engine;
+    private final int category;
+    private final int[] answers;
+    private final double[] contributions;
+    private double weekly;
+
+    // Result of the last findBestChange()
+    private int bestQuestion = -1;
+    private int bestOption = -1;
+
+    public LiveScore(EmissionEngine engine, int category) {
+        this.engine = engine;
+        this.category = category;
+        int questions = engine.questionCount(category);
+        answers = new int[questions];
+        contributions = new double[questions];
+        Arrays.fill(answers, EmissionEngine.UNANSWERED);
+    }
+
+    public int getCategory() {
+        return category;
+    }
+
+    /** Forgets every answer, so the scorer can be reused for another set. */
+    public void clear() {
+        Arrays.fill(answers, EmissionEngine.UNANSWERED);
+        Arrays.fill(contributions, 0);
+        weekly = 0;
+        bestQuestion = -1;
+        bestOption = -1;
+    }
+
+    /** Records an answer and returns the change in weekly kg CO₂e it caused. */
+    public double set(int question, int option) {
+        double contribution = engine.factor(category, question, option);
+        double delta = contribution - contributions[question];
+        contributions[question] = contribution;
+        answers[question] = option;
+        weekly += delta;
+        return delta;
+    }
+
+    /**
+     * Rescores the current answers with another engine of the same layout, e.g. after the grid
+     * region or the laundry time changed. Nothing is allocated.
+     */
+    public void setEngine(EmissionEngine engine) {
+        this.engine = engine;
+        weekly = 0;
+        for (int q = 0; q < answers.length; q++) {
+            contributions[q] = engine.factor(category, q, answers[q]);
+            weekly += contributions[q];
+        }
+    }
+
+    public int answer(int question) {
+        return answers[question];
+    }
+
+    public double weekly() {
+        return weekly;
+    }
+
+    public double annualTons() {
+        return EmissionEngine.toAnnualTons(weekly);
+    }
+
+    /** Weekly kg CO₂e saved by switching {@code question} to {@code option}; negative if it costs more. */
+    public double savingFor(int question, int option) {
+        return contributions[question] - engine.factor(category, question, option);
+    }
+
+    /**
+     * Finds the single answered, changeable question whose best alternative saves the most.
+     * Returns the weekly saving (0 if nothing helps); the change is available from
+     * {@link #bestQuestion()} and {@link #bestOption()}.
+     */
+    public double findBestChange() {
+        bestQuestion = -1;
+        bestOption = -1;
+        double best = 0;
+        for (int q = 0; q < answers.length; q++) {
+            if (answers[q] < 0 || !SurveyLabels.isChangeable(category, q)) continue;
+            int options = engine.optionCount(category, q);
+            for (int o = 0; o < options; o++) {
+                double saving = contributions[q] - engine.factor(category, q, o);
+                if (saving > best) {
+                    best = saving;
+                    bestQuestion = q;
+                    bestOption = o;
+                }
+            }
+        }
+        return best;
+    }
+
+    public int bestQuestion() {
+        return bestQuestion;
+    }
+
+    public int bestOption() {
+        return bestOption;
+    }
+
+    /**
+     * Writes "Running total X t CO₂e/yr (±Y)" into {@code out}, reusing its buffer so the
+     * survey screens can refresh the label on every change without building new strings.
+     */
+    public void describe(StringBuilder out, double weeklyDelta) {
+        out.setLength(0);
+        out.append("Running total ");
+        appendTons(out, annualTons());
+        out.append(" t CO₂e/yr");
+        if (weeklyDelta != 0) {
+            out.append(" (").append(weeklyDelta > 0 ? '+' : '-');
+            appendTons(out, Math.abs(EmissionEngine.toAnnualTons(weeklyDelta)));
+            out.append(')');
+        }
+    }
+
+    // Two decimals without going through String.format
+    static void appendTons(StringBuilder out, double tons) {
+        long hundredths = Math.round(tons * 100);
+        if (hundredths < 0) {
+            out.append('-');
+            hundredths = -hundredths;
+        }
+        out.append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) out.append('0');
+        out.append(fraction);
+    }
+}
@@ -8,11 +8,6 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.activity.EdgeToEdge;
 import androidx.cardview.widget.CardView;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 public class Main1 extends AppCompatActivity {
 
@@ -56,40 +51,22 @@ public class Main1 extends AppCompatActivity {
             overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
         });
 
-        // Initialize Firebase
-        FirebaseDatabase database = FirebaseDatabase.getInstance();
+        // Survey completion comes from a local mirror kept fresh while this screen is shown
         FirebaseAuth mAuth = FirebaseAuth.getInstance();
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
-        DatabaseReference userRef = database.getReference("users").child(userId);
+        SurveyStatus.watch(this, this, userId);
+
+        // A prefetch armed at sign-in starts only after this screen's first frame
+        Prefetch.afterFirstFrame(getWindow().getDecorView());
 
         // Inner layout click (Survey Card)
         LinearLayout innerLayout = findViewById(R.id.innerLinearLayout);
-        innerLayout.setOnClickListener(v -> {
-            // Check survey completion status
-            userRef.child("survey_completed").addListenerForSingleValueEvent(
-                    new ValueEventListener() {
-                        @Override
-                        public void onDataChange(DataSnapshot snapshot) {
-                            if (snapshot.exists() && snapshot.getValue(Boolean.class)) {
-                                // Survey completed - go to Overall Dashboard
-                                startActivity(new Intent(Main1.this, Overall.class));
-                            } else {
-                                // Survey not completed - start survey flow
-                                startActivity(new Intent(Main1.this, TakeServey.class));
-                            }
-                            overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-                        }
-
-                        @Override
-                        public void onCancelled(DatabaseError error) {
-                            // On error, default to starting survey
-                            startActivity(new Intent(Main1.this, TakeServey.class));
-                            overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
-                        }
-                    }
-            );
-        });
+        innerLayout.setOnClickListener(v -> SurveyStatus.get(this, userId, completed -> {
+            // Completed goes to the Overall Dashboard, otherwise the survey flow starts
+            startActivity(new Intent(Main1.this, completed ? Overall.class : TakeServey.class));
+            overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
+        }));
 
         // User image click
         View userImage2 = findViewById(R.id.userImage2);
@@ -0,0 +1,304 @@
+package com.example.carbonfootprint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streams a smart-meter export into annual home energy use and emissions.
+ *
+ * Expects a CSV with a header row and one interval reading per line (15 or 30 minutes, about
+ * 35k lines for a year). Columns are found by name: a timestamp ("time", "date", "start"),
+ * one or more kWh columns ("kwh", "consumption", "usage", "value"; "gas" in the name marks a
+ * gas column), and optionally a fuel column ("fuel", "type", "supply") whose values start
+ * with "g" for gas rows. Semicolon-separated files take a comma as the decimal point.
+ *
+ * Parsing works on raw bytes through one fixed buffer, with no per-line strings. Only the
+ * totals, the earliest and latest timestamp, and the shortest interval are kept, so memory
+ * does not depend on file length. The covered span is scaled to a full year. Electricity is
+ * converted at the intensity of the user's grid, see {@link GridIntensity}.
+ */
+public final class MeterImporter {
+
+    // kg CO₂e per kWh of gas burned; electricity depends on the grid
+    public static final double GAS_KG_PER_KWH = 0.183;
+
+    private static final int MIN_DAYS = 7;
+    private static final int MAX_TIMESTAMP = 32;
+
+    // Column roles
+    private static final int IGNORED = 0;
+    private static final int TIME = 1;
+    private static final int ELECTRICITY = 2;
+    private static final int GAS = 3;
+    private static final int FUEL = 4;
+
+    private final double electricityKgPerKwh;
+
+    private final byte[] buffer = new byte[8192];
+    private final byte[] stamp = new byte[MAX_TIMESTAMP];
+    private final int[] stampFields = new int[5];
+    private int[] roles;
+    private int headerFill;     // bytes in the buffer when the header ended
+
+    // Per-line state
+    private int column;
+    private int stampLength;
+    private boolean gasRow;
+    private boolean inQuotes;
+    private long mantissa;
+    private int scale = -1;     // digits after the decimal point, -1 before it
+    private boolean negative;
+    private boolean hasDigits;
+    private double lineElectricity;
+    private double lineGas;
+
+    // Totals
+    private double electricityKwh;
+    private double gasKwh;
+    private int readings;
+    private long firstMinute = Long.MAX_VALUE;
+    private long lastMinute = Long.MIN_VALUE;
+    private long previousMinute = Long.MIN_VALUE;
+    private long intervalMinutes = Long.MAX_VALUE;
+
+    private byte separator = ',';
+    private byte decimalPoint = '.';
+
+    /** Importer converting electricity at {@code electricityKgPerKwh}, usually {@link GridIntensity#kgPerKwh}. */
+    public MeterImporter(double electricityKgPerKwh) {
+        this.electricityKgPerKwh = electricityKgPerKwh;
+    }
+
+    /** Metric tons CO₂e per year for annual energy use on a grid of {@code electricityKgPerKwh}. */
+    public static double annualTons(double electricityKwh, double gasKwh, double electricityKgPerKwh) {
+        return (electricityKwh * electricityKgPerKwh + gasKwh * GAS_KG_PER_KWH) / 1000;
+    }
+
+    /** Parses the whole stream; the caller closes it. A new importer is needed per file. */
+    public MeterSummary parse(InputStream in) throws IOException {
+        int lineStart = readHeader(in);
+        int length = headerFill;
+        int line = 1;
+
+        while (true) {
+            for (int i = lineStart; i < length; i++) {
+                byte b = buffer[i];
+                if (b == '\n') {
+                    line++;
+                    endLine(line);
+                } else if (b != '\r') {
+                    accept(b);
+                }
+            }
+            lineStart = 0;
+            length = in.read(buffer);
+            if (length < 0) break;
+        }
+        if (column > 0 || hasDigits || stampLength > 0) {
+            endLine(line + 1);  // last line without a newline
+        }
+        return summarize();
+    }
+
+    // Returns the index of the first byte after the header row
+    private int readHeader(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int length;
+        while ((length = in.read(buffer)) >= 0) {
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    parseHeader(header.toString());
+                    headerFill = length;
+                    return i + 1;
+                }
+                header.append((char) (buffer[i] & 0xFF));
+            }
+            if (header.length() > 4096) break;
+        }
+        throw new IOException("No header row found");
+    }
+
+    private void parseHeader(String header) throws IOException {
+        if (header.indexOf(';') >= 0 && header.indexOf(',') < 0) {
+            separator = ';';
+            decimalPoint = ',';
+        }
+        String[] names = header.toLowerCase().replace("\"", "").replace("\r", "")
+                .split(separator == ';' ? ";" : ",", -1);
+        roles = new int[names.length];
+        boolean hasTime = false;
+        boolean hasValue = false;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim();
+            if (!hasTime && (name.contains("time") || name.contains("date") || name.contains("start"))) {
+                roles[i] = TIME;
+                hasTime = true;
+            } else if (name.contains("fuel") || name.contains("type") || name.contains("supply")) {
+                roles[i] = FUEL;
+            } else if (name.contains("kwh") || name.contains("consumption") || name.contains("usage")
+                    || name.contains("value")) {
+                roles[i] = name.contains("gas") ? GAS : ELECTRICITY;
+                hasValue = true;
+            }
+        }
+        if (!hasTime || !hasValue) {
+            throw new IOException("Header needs a timestamp and a kWh column: " + header.trim());
+        }
+    }
+
+    private void accept(byte b) {
+        if (b == '"') {
+            inQuotes = !inQuotes;
+            return;
+        }
+        if (b == separator && !inQuotes) {
+            endField();
+            column++;
+            return;
+        }
+        int role = column < roles.length ? roles[column] : IGNORED;
+        switch (role) {
+            case TIME:
+                if (stampLength < MAX_TIMESTAMP) stamp[stampLength++] = b;
+                break;
+            case FUEL:
+                if (!hasDigits && b != ' ') {
+                    gasRow = b == 'g' || b == 'G';
+                    hasDigits = true;  // only the first letter matters
+                }
+                break;
+            case ELECTRICITY:
+            case GAS:
+                if (b >= '0' && b <= '9') {
+                    if (scale >= POWERS.length - 1) break;  // beyond double precision anyway
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (scale >= 0) scale++;
+                    hasDigits = true;
+                } else if (b == decimalPoint) {
+                    scale = 0;
+                } else if (b == '-') {
+                    negative = true;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void endField() {
+        int role = column < roles.length ? roles[column] : IGNORED;
+        if ((role == ELECTRICITY || role == GAS) && hasDigits) {
+            double value = mantissa / POWERS[Math.max(scale, 0)];
+            if (negative) value = -value;
+            if (role == GAS) {
+                lineGas += value;
+            } else {
+                lineElectricity += value;
+            }
+        }
+        mantissa = 0;
+        scale = -1;
+        negative = false;
+        hasDigits = false;
+    }
+
+    private void endLine(int line) throws IOException {
+        endField();
+        if (stampLength > 0) {
+            long minute = parseMinute(stamp, stampLength, stampFields);
+            if (minute == Long.MIN_VALUE) {
+                throw new IOException("Unrecognised timestamp on line " + line + ": "
+                        + new String(stamp, 0, stampLength, "US-ASCII"));
+            }
+            if (gasRow) {
+                gasKwh += lineElectricity + lineGas;
+            } else {
+                electricityKwh += lineElectricity;
+                gasKwh += lineGas;
+            }
+            readings++;
+            firstMinute = Math.min(firstMinute, minute);
+            lastMinute = Math.max(lastMinute, minute);
+            long step = Math.abs(minute - previousMinute);
+            if (previousMinute != Long.MIN_VALUE && step > 0) {
+                intervalMinutes = Math.min(intervalMinutes, step);
+            }
+            previousMinute = minute;
+        }
+        column = 0;
+        stampLength = 0;
+        gasRow = false;
+        inQuotes = false;
+        lineElectricity = 0;
+        lineGas = 0;
+    }
+
+    private MeterSummary summarize() throws IOException {
+        if (readings < 2 || intervalMinutes == Long.MAX_VALUE) {
+            throw new IOException("Not enough readings");
+        }
+        double days = (lastMinute - firstMinute + intervalMinutes) / 1440.0;
+        if (days < MIN_DAYS) {
+            throw new IOException("Export covers only " + Math.round(days) + " days; at least " + MIN_DAYS + " needed");
+        }
+        double toYear = 365.0 / days;
+
+        MeterSummary summary = new MeterSummary();
+        summary.electricityKwh = electricityKwh * toYear;
+        summary.gasKwh = gasKwh * toYear;
+        summary.annualEmissions = annualTons(summary.electricityKwh, summary.gasKwh, electricityKgPerKwh);
+        summary.coveredDays = days;
+        summary.readings = readings;
+        summary.intervalMinutes = (int) intervalMinutes;
+        return summary;
+    }
+
+    private static final double[] POWERS = new double[19];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i++) POWERS[i] = POWERS[i - 1] * 10;
+    }
+
+    /**
+     * Minutes since 1970-01-01 for "yyyy-MM-dd HH:mm[:ss]" (space or 'T') and
+     * "dd/MM/yyyy HH:mm[:ss]"; time zones are ignored. Long.MIN_VALUE when unrecognised.
+     */
+    static long parseMinute(byte[] s, int length, int[] fields) {
+        Arrays.fill(fields, 0);
+        int count = 0;
+        int value = 0;
+        boolean inNumber = false;
+        boolean dayFirst = false;
+        for (int i = 0; i <= length && count < fields.length; i++) {
+            byte b = i < length ? s[i] : (byte) ' ';
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                inNumber = true;
+            } else if (inNumber) {
+                if (count == 0 && b == '/') dayFirst = true;
+                fields[count++] = value;
+                value = 0;
+                inNumber = false;
+            }
+        }
+        if (count < 3) return Long.MIN_VALUE;
+
+        int year = dayFirst ? fields[2] : fields[0];
+        int month = fields[1];
+        int day = dayFirst ? fields[0] : fields[2];
+        if (month < 1 || month > 12 || day < 1 || day > 31 || year < 1970) return Long.MIN_VALUE;
+        return daysFromCivil(year, month, day) * 1440L + fields[3] * 60L + fields[4];
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar
+    static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        int era = year / 400;
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
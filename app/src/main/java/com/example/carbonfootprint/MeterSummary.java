@@ -0,0 +1,19 @@
+package com.example.carbonfootprint;
+
+/**
+ * Aggregate of an imported smart-meter export, stored under {@code surveys/home/{uid}/meter}
+ * next to the survey estimate. Energy is scaled to a full year from the covered span.
+ */
+public class MeterSummary {
+
+    public double electricityKwh;    // kWh/year
+    public double gasKwh;            // kWh/year
+    public double annualEmissions;   // metric tons CO₂e/year
+    public double coveredDays;
+    public int readings;
+    public int intervalMinutes;
+    public String gridRegion;        // GridIntensity region the electricity was converted for
+    public long timestamp = System.currentTimeMillis();
+
+    public MeterSummary() {}  // Required for Firebase
+}
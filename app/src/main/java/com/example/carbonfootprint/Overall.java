@@ -1,26 +1,25 @@
 package com.example.carbonfootprint;
 
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import android.content.Intent;
 import android.os.Bundle;
 import androidx.activity.EdgeToEdge;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 public class Overall extends AppCompatActivity {
 
     private static final double MAX_BAR_VALUE = 2.50;
-    private TextView homeValue, travelValue, foodValue, othersValue, overallText, overallValue;
+    private static final double PLAN_TARGET_FRACTION = 0.2; // plan for a 20% cut
+    private TextView homeValue, travelValue, foodValue, othersValue, overallText, overallValue, whatIfText, bandText, planText;
+    private final TextView[] barLabels = new TextView[EmissionEngine.CATEGORY_COUNT];
+    private static final String[] BAR_TITLES = {"Home", "Travel", "Food", "Others"};
     private View homeProgress, travelProgress, foodProgress, othersProgress;
     private double homeFootprint = 0.0;
     private double travelFootprint = 0.0;
@@ -28,8 +27,14 @@ public class Overall extends AppCompatActivity {
     private double othersFootprint = 0.0;
     private DecimalFormat decimalFormat = new DecimalFormat("#.#");
     private FirebaseAuth mAuth;
-    private int categoriesLoaded = 0;
-    private final int TOTAL_CATEGORIES = 4;
+
+    // Answers of each category, rebuilt from the summary for what-if suggestions; created once
+    private final LiveScore[] liveScores = new LiveScore[EmissionEngine.CATEGORY_COUNT];
+    private final int[] decoded = new int[EmissionEngine.MAX_QUESTIONS];
+    // Bumped per summary, so a plan or band computed for an older one is dropped
+    private int summaryVersion;
+
+    private final FootprintRepository.Observer footprintObserver = this::showSummary;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -47,6 +52,13 @@ public class Overall extends AppCompatActivity {
         othersValue = findViewById(R.id.othersValue);
         overallText = findViewById(R.id.overallText);
         overallValue = findViewById(R.id.overallValue);
+        whatIfText = findViewById(R.id.whatIfText);
+        bandText = findViewById(R.id.bandText);
+        planText = findViewById(R.id.planText);
+        barLabels[EmissionEngine.HOME] = findViewById(R.id.homeBarLabel);
+        barLabels[EmissionEngine.TRAVEL] = findViewById(R.id.travelBarLabel);
+        barLabels[EmissionEngine.FOOD] = findViewById(R.id.foodBarLabel);
+        barLabels[EmissionEngine.OTHERS] = findViewById(R.id.othersBarLabel);
 
         // Initialize progress bars
         homeProgress = findViewById(R.id.homeProgressFill);
@@ -61,106 +73,209 @@ public class Overall extends AppCompatActivity {
     @Override
     protected void onStart() {
         super.onStart();
-        fetchFootprintData();
-    }
-
-    private void fetchFootprintData() {
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
+        // Cached totals paint at once; a revalidation, if due, arrives through the same observer
+        FootprintRepository.get(this).observe(userId, footprintObserver);
+        // The installed sketch is read off the main thread; the percentile shows once it is in
+        PopulationSketch.load(this, this::updateUI);
+        PopulationSketch.syncIfDue(this, FirebaseDatabase.getInstance().getReference("stats"), this::updateUI);
+    }
 
-        // Reset counters and values
-        categoriesLoaded = 0;
+    @Override
+    protected void onStop() {
+        super.onStop();
+        FootprintRepository.get(this).removeObserver(footprintObserver);
+    }
+
+    private void showSummary(FootprintSummary summary) {
         homeFootprint = 0.0;
         travelFootprint = 0.0;
         foodFootprint = 0.0;
         othersFootprint = 0.0;
 
-        DatabaseReference dbRef = FirebaseDatabase.getInstance().getReference("surveys");
+        summaryVersion++;
+        EmissionEngine engine = FactorCatalog.get(this, GridIntensity.region(this));
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            if (liveScores[c] == null) {
+                liveScores[c] = new LiveScore(engine, c);
+            } else {
+                liveScores[c].clear();
+                liveScores[c].setEngine(engine);
+            }
+            Long packed = summary.answers(c);
+            if (packed != null) showCategory(c, summary.get(c), packed);
+        }
 
-        // Fetch each category separately
-        fetchCategoryData(dbRef.child("home"), userId, "home");
-        fetchCategoryData(dbRef.child("travel"), userId, "travel");
-        fetchCategoryData(dbRef.child("food"), userId, "food");
-        fetchCategoryData(dbRef.child("others"), userId, "others");
+        updateUI();
+        updateWhatIf();
+        updatePlan();
+        updateUncertainty();
+        Prefetch.reportPopulated("Overall");
     }
 
-    private void fetchCategoryData(DatabaseReference categoryRef, String userId, String categoryName) {
-        categoryRef.child(userId).addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                if (snapshot.exists()) {
-                    double footprint = 0.0;
-
-                    if (snapshot.child("annualEmissions").exists()) {
-                        footprint = getDoubleValue(snapshot.child("annualEmissions"));
-                    }
-                    else if (snapshot.child("footprint").exists()) {
-                        footprint = getDoubleValue(snapshot.child("footprint"));
-                    }
-                    else if (snapshot.child("carbon_footprint").exists()) {
-                        footprint = getDoubleValue(snapshot.child("carbon_footprint"));
-                    }
-                    else if (snapshot.child("home_footprint").exists()) {
-                        footprint = getDoubleValue(snapshot.child("home_footprint"));
-                    }
-
-                    // Assign to correct category
-                    switch (categoryName) {
-                        case "home":
-                            homeFootprint = footprint;
-                            break;
-                        case "travel":
-                            travelFootprint = footprint;
-                            break;
-                        case "food":
-                            foodFootprint = footprint;
-                            break;
-                        case "others":
-                            othersFootprint = footprint;
-                            break;
-                    }
-
-                    Log.d("Firebase", "Loaded " + categoryName + ": " + footprint);
-                } else {
-                    Log.d("Firebase", "No data for " + categoryName);
-                }
-
-                categoriesLoaded++;
-                if (categoriesLoaded >= TOTAL_CATEGORIES) {
-                    updateUI();
-                    updateTotalFootprint();
-                }
-            }
+    private void showCategory(int category, double footprint, long packedAnswers) {
+        switch (category) {
+            case EmissionEngine.HOME:
+                homeFootprint = footprint;
+                break;
+            case EmissionEngine.TRAVEL:
+                travelFootprint = footprint;
+                break;
+            case EmissionEngine.FOOD:
+                foodFootprint = footprint;
+                break;
+            case EmissionEngine.OTHERS:
+                othersFootprint = footprint;
+                break;
+        }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e("Firebase", "Error loading " + categoryName + ": " + error.getMessage());
-                categoriesLoaded++;
-                if (categoriesLoaded >= TOTAL_CATEGORIES) {
-                    updateUI();
-                }
+        LiveScore score = liveScores[category];
+        AnswerCodec.decode(category, packedAnswers, decoded);
+        for (int q = 0; q < SurveyLabels.ANSWER_FIELDS[category].length; q++) {
+            score.set(q, decoded[q]);
+        }
+        if (category == EmissionEngine.HOME) {
+            score.setEngine(scoringEngine());
+        }
+    }
+
+    // Regional catalog with laundry weighted for the stored laundry time; other categories are unaffected
+    private EmissionEngine scoringEngine() {
+        return FactorCatalog.get(this, GridIntensity.region(this),
+                liveScores[EmissionEngine.HOME].answer(EmissionEngine.HOME_LAUNDRY_TIME));
+    }
+
+    // Biggest single answer change across all categories, computed locally from the loaded answers
+    private void updateWhatIf() {
+        LiveScore bestScore = null;
+        double bestSaving = 0;
+        for (LiveScore score : liveScores) {
+            double saving = score.findBestChange();
+            if (saving > bestSaving) {
+                bestSaving = saving;
+                bestScore = score;
             }
+        }
+
+        if (bestScore == null) {
+            whatIfText.setText("");
+            return;
+        }
+
+        int category = bestScore.getCategory();
+        int question = bestScore.bestQuestion();
+        whatIfText.setText(String.format("If you changed your %s to \"%s\" you'd save %s t/yr",
+                SurveyLabels.questionTitle(category, question),
+                SurveyLabels.labelOf(category, question, bestScore.bestOption()),
+                new DecimalFormat("0.00").format(EmissionEngine.toAnnualTons(bestSaving))));
+    }
+
+    // Cheapest set of changes for a PLAN_TARGET_FRACTION cut, searched off the UI thread
+    private void updatePlan() {
+        int[][] answers = currentAnswers();
+        EmissionEngine engine = scoringEngine();
+        double total = homeFootprint + travelFootprint + foodFootprint + othersFootprint;
+        int version = summaryVersion;
+
+        ForkJoinPool.commonPool().execute(() -> {
+            ReductionPlanner planner = new ReductionPlanner(engine, answers);
+            ReductionPlanner.Plan plan = planner.plan(Math.min(total * PLAN_TARGET_FRACTION, planner.maxSaving()));
+            runOnUiThread(() -> showPlan(plan, version));
         });
     }
 
-    private double getDoubleValue(DataSnapshot snapshot) {
-        Object value = snapshot.getValue();
-        if (value instanceof Double) {
-            return (Double) value;
-        } else if (value instanceof Long) {
-            return ((Long) value).doubleValue();
-        } else if (value instanceof Integer) {
-            return ((Integer) value).doubleValue();
-        } else if (value instanceof String) {
-            try {
-                return Double.parseDouble((String) value);
-            } catch (NumberFormatException e) {
-                Log.e("Conversion", "Cannot convert to double: " + value);
-                return 0.0;
+    // Lists the plan, linked to a matching action screen
+    private void showPlan(ReductionPlanner.Plan plan, int version) {
+        if (isFinishing() || version != summaryVersion) return;
+
+        planText.setOnClickListener(null);
+        if (plan == null) {
+            planText.setText("");
+            return;
+        }
+
+        StringBuilder text = new StringBuilder("Plan to save ")
+                .append(decimalFormat.format(plan.annualSaving)).append(" t/yr:");
+        Class<?> action = null;
+        for (int i = 0; i < plan.size(); i++) {
+            int category = plan.categories[i];
+            int question = plan.questions[i];
+            text.append("\n• ").append(SurveyLabels.questionTitle(category, question))
+                    .append(" → ").append(SurveyLabels.labelOf(category, question, plan.options[i]));
+            if (action == null) {
+                action = actionFor(category, question);
             }
         }
-        Log.e("Conversion", "Unknown type: " + (value != null ? value.getClass().getSimpleName() : "null"));
-        return 0.0;
+        planText.setText(text);
+
+        if (action != null) {
+            Class<?> target = action;
+            planText.setOnClickListener(v -> {
+                startActivity(new Intent(this, target));
+                overridePendingTransition(android.R.anim.fade_in, android.R.anim.fade_out);
+            });
+        }
+    }
+
+    // Action screen that helps with a planned change, or null when there is none
+    private Class<?> actionFor(int category, int question) {
+        if (category == EmissionEngine.FOOD && question == EmissionEngine.FOOD_WASTE) return ReduceF_waste.class;
+        if (category == EmissionEngine.FOOD && question == EmissionEngine.FOOD_REUSABLE) return BottolWater.class;
+        if (category == EmissionEngine.OTHERS && question == EmissionEngine.OTHERS_PLASTIC) return BottolWater.class;
+        if (category == EmissionEngine.OTHERS && question == EmissionEngine.OTHERS_RECYCLE) return Clean.class;
+        if (category == EmissionEngine.OTHERS && question == EmissionEngine.OTHERS_DISPOSAL) return Clean.class;
+        if (category == EmissionEngine.TRAVEL && (question == EmissionEngine.TRAVEL_DISTANCE
+                || question == EmissionEngine.TRAVEL_TRANSPORT
+                || question == EmissionEngine.TRAVEL_RIDE_HAILING)) return ShortWalkAction.class;
+        return null;
+    }
+
+    private int[][] currentAnswers() {
+        int[][] answers = new int[EmissionEngine.CATEGORY_COUNT][];
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            answers[c] = new int[SurveyLabels.ANSWER_FIELDS[c].length];
+            for (int q = 0; q < answers[c].length; q++) {
+                answers[c][q] = liveScores[c].answer(q);
+            }
+        }
+        return answers;
+    }
+
+    // p10–p90 band per category and overall, sampled off the UI thread
+    private void updateUncertainty() {
+        int[][] answers = currentAnswers();
+        EmissionEngine engine = scoringEngine();
+        long seed = Arrays.deepHashCode(answers); // same answers, same band on every visit
+        int version = summaryVersion;
+
+        ForkJoinPool.commonPool().execute(() -> {
+            double[][] bands = FootprintUncertainty.simulate(
+                    engine, answers, FootprintUncertainty.DEFAULT_SAMPLES, seed);
+            runOnUiThread(() -> showBands(bands, version));
+        });
+    }
+
+    private void showBands(double[][] bands, int version) {
+        if (isFinishing() || version != summaryVersion) return;
+
+        double[] total = bands[FootprintUncertainty.TOTAL];
+        if (total[FootprintUncertainty.P90] <= 0) {
+            bandText.setText("");
+        } else {
+            bandText.setText(String.format("Likely range %s – %s tons (median %s)",
+                    decimalFormat.format(total[FootprintUncertainty.P10]),
+                    decimalFormat.format(total[FootprintUncertainty.P90]),
+                    decimalFormat.format(total[FootprintUncertainty.P50])));
+        }
+
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            double[] band = bands[c];
+            barLabels[c].setText(band[FootprintUncertainty.P90] <= 0 ? BAR_TITLES[c] :
+                    String.format("%s  %s – %s t", BAR_TITLES[c],
+                            decimalFormat.format(band[FootprintUncertainty.P10]),
+                            decimalFormat.format(band[FootprintUncertainty.P90])));
+        }
     }
 
     private void updateUI() {
@@ -178,20 +293,6 @@ public class Overall extends AppCompatActivity {
         updateProgressBarWithDelay();
     }
 
-    private void updateTotalFootprint() {
-        String userId = mAuth.getCurrentUser() != null ? mAuth.getCurrentUser().getUid() : "anonymous";
-        if (!userId.equals("anonymous")) {
-            double total = homeFootprint + travelFootprint + foodFootprint + othersFootprint;
-
-            DatabaseReference totalRef = FirebaseDatabase.getInstance().getReference("surveys")
-                    .child(userId)
-                    .child("total_footprint");
-
-            totalRef.setValue(total);
-            Log.d("Firebase", "Updated total_footprint: " + total);
-        }
-    }
-
     private String formatValue(double value) {
         return value == 0 ? "0.0" : decimalFormat.format(value);
     }
@@ -202,10 +303,18 @@ public class Overall extends AppCompatActivity {
         }
 
         int billboards = calculateBillboards(totalTons);
-        return String.format("%s tons of CO2e would melt an area\nof arctic sea ice the size of %d %s",
+        String impact = String.format("%s tons of CO2e would melt an area\nof arctic sea ice the size of %d %s",
                 decimalFormat.format(totalTons),
                 billboards,
                 billboards == 1 ? "billboard" : "billboards");
+
+        // Percentile from the synced population sketch, no network call or disk read
+        QuantileSketch population = PopulationSketch.get(this);
+        if (population == null) return impact;
+        double percentile = population.percentile(QuantileSketch.TOTAL, totalTons);
+        if (percentile < 0) return impact;
+        return impact + String.format("\nLower than %d%% of %d users",
+                Math.round(100 - percentile), population.count(QuantileSketch.TOTAL));
     }
 
     private void updateProgressBarWithDelay() {
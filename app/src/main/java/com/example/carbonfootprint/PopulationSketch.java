@@ -0,0 +1,185 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The population {@link QuantileSketch} on this device.
+ *
+ * {@link SketchJob} publishes the sketch as base64 under {@code stats/percentiles/blob}, next to
+ * its {@code builtAt} time. {@link #syncIfDue} fetches it at most once a day, and only when it
+ * is newer than the installed copy, which is kept in app storage so percentiles are available
+ * offline and cost no network call on the screens that show them. A day only counts as checked
+ * once the check got through: a failed read or an unusable blob is retried at the next call.
+ *
+ * The installed copy is read on a background thread: {@link #load} calls back on the main
+ * thread once it is in memory, and {@link #get} never touches storage.
+ */
+public final class PopulationSketch {
+
+    private static final String TAG = "PopulationSketch";
+    private static final String FILE_NAME = "percentiles.bin";
+    private static final String PREFS_NAME = "population_sketch";
+    private static final String KEY_LAST_SYNC = "last_sync";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static final ExecutorService io = Executors.newSingleThreadExecutor();
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    // Main thread only
+    private static final List<Runnable> waiting = new ArrayList<>();
+    private static boolean loading;
+
+    private static volatile QuantileSketch current;
+    private static volatile boolean loaded;
+
+    private PopulationSketch() {}
+
+    /** Sketch in memory; null until {@link #load} has finished or when none was ever synced. */
+    public static QuantileSketch get(Context context) {
+        if (!loaded) load(context, null);
+        return current;
+    }
+
+    /**
+     * Reads the installed sketch off the main thread, once, and then runs {@code onLoaded} on
+     * the main thread; right away when it is already loaded. Call from the main thread.
+     */
+    public static void load(Context context, Runnable onLoaded) {
+        if (loaded) {
+            if (onLoaded != null) onLoaded.run();
+            return;
+        }
+        if (onLoaded != null) waiting.add(onLoaded);
+        if (loading) return;
+        loading = true;
+        Context app = context.getApplicationContext();
+        io.execute(() -> {
+            QuantileSketch sketch = loadInstalled(app);
+            handler.post(() -> {
+                // An install that finished meanwhile is newer than what was on disk
+                if (!loaded) {
+                    current = sketch;
+                    loaded = true;
+                }
+                loading = false;
+                List<Runnable> callbacks = new ArrayList<>(waiting);
+                waiting.clear();
+                for (Runnable callback : callbacks) callback.run();
+            });
+        });
+    }
+
+    /** Validates a downloaded sketch, persists it and makes it the active one. Does file I/O. */
+    public static QuantileSketch install(Context context, byte[] blob) throws IOException {
+        QuantileSketch sketch = QuantileSketch.read(blob);
+
+        File target = new File(context.getFilesDir(), FILE_NAME);
+        File temp = new File(context.getFilesDir(), FILE_NAME + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp)) {
+            out.write(blob);
+        }
+        if (!temp.renameTo(target)) {
+            throw new IOException("Could not replace " + target);
+        }
+
+        current = sketch;
+        loaded = true;
+        Log.d(TAG, "Installed sketch of " + sketch.count(QuantileSketch.TOTAL) + " users");
+        return sketch;
+    }
+
+    /**
+     * Fetches the published sketch when the last successful check was more than a day ago and
+     * installs it if it is newer. {@code onUpdated} runs on the main thread after a new sketch
+     * is installed.
+     */
+    public static void syncIfDue(Context context, DatabaseReference statsRef, Runnable onUpdated) {
+        Context app = context.getApplicationContext();
+        SharedPreferences prefs = app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        if (now - prefs.getLong(KEY_LAST_SYNC, 0) < DAY_MILLIS) return;
+
+        DatabaseReference published = statsRef.child("percentiles");
+        SingleFlight.get().read(published.child("builtAt"), new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot builtAt) {
+                Long remote = builtAt.getValue(Long.class);
+                load(app, () -> {
+                    QuantileSketch installed = current;
+                    if (remote == null || installed != null && installed.getBuiltAt() >= remote) {
+                        // Nothing new published; checked for today
+                        prefs.edit().putLong(KEY_LAST_SYNC, now).apply();
+                        return;
+                    }
+                    fetch(app, published, prefs, now, onUpdated);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Sketch check failed: " + error.getMessage());
+            }
+        });
+    }
+
+    // Only downloads the blob once the small timestamp says it changed
+    private static void fetch(Context app, DatabaseReference published, SharedPreferences prefs, long now,
+                              Runnable onUpdated) {
+        SingleFlight.get().read(published.child("blob"), new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot blob) {
+                String encoded = blob.getValue(String.class);
+                if (encoded == null) {
+                    Log.e(TAG, "Published sketch has no blob");
+                    return;
+                }
+                io.execute(() -> {
+                    try {
+                        install(app, Base64.decode(encoded, Base64.NO_WRAP));
+                    } catch (IOException | IllegalArgumentException e) {
+                        Log.e(TAG, "Published sketch unusable: " + e.getMessage());
+                        return;
+                    }
+                    prefs.edit().putLong(KEY_LAST_SYNC, now).apply();
+                    if (onUpdated != null) handler.post(onUpdated);
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Sketch read failed: " + error.getMessage());
+            }
+        });
+    }
+
+    private static QuantileSketch loadInstalled(Context context) {
+        File installed = new File(context.getFilesDir(), FILE_NAME);
+        if (!installed.exists()) return null;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(installed))) {
+            return QuantileSketch.read(in);
+        } catch (IOException e) {
+            Log.e(TAG, "Installed sketch unreadable: " + e.getMessage());
+            return null;
+        }
+    }
+}
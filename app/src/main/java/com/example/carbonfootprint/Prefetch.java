@@ -0,0 +1,142 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import androidx.annotation.NonNull;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.target.Target;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Warms the main screens right after sign-in.
+ *
+ * {@link #start} arms a prefetch for the new user; it runs once {@code Main1} has drawn its
+ * first frame and the main thread goes idle ({@link #afterFirstFrame}), so it never delays
+ * that frame. It then fires, all at once, the footprint summary revalidation, the
+ * {@code Users/{uid}} profile and points subscription, the survey-completion read and the
+ * population sketch check, and decodes the first action screens' GIFs into Glide's cache.
+ * The user's one-time {@link SchemaMigration#migrateUser} goes last, behind the reads the
+ * screens wait for.
+ * The work is a fixed set of requests; the profile subscription is held through the
+ * {@link SubscriptionHub} for at most {@link #HOLD_MILLIS}, so the first screen that watches
+ * it gets the snapshot immediately. {@link #cancel} stops everything still pending.
+ *
+ * {@link #reportPopulated} logs the time from sign-in to a screen's first populated frame,
+ * the number this is meant to bring down. Call from the main thread.
+ */
+public final class Prefetch {
+
+    static final long HOLD_MILLIS = 20_000;
+
+    private static final String TAG = "Prefetch";
+
+    private static Prefetch current;
+    private static long signedInAt;
+    private static final Set<String> reported = new HashSet<>();
+
+    private final Context context;
+    private final String uid;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable expire = this::cancel;
+    private final List<Target<?>> gifs = new ArrayList<>();
+    private final SubscriptionHub.Observer userObserver = new SubscriptionHub.Observer() {
+        @Override
+        public void onValue(@NonNull DataSnapshot snapshot) {
+            Log.d(TAG, "Profile warm after " + sinceSignIn() + " ms");
+        }
+
+        @Override
+        public void onError(@NonNull DatabaseError error) {
+            Log.e(TAG, "Profile prefetch failed: " + error.getMessage());
+        }
+    };
+
+    private DatabaseReference userRef;
+    private boolean ran;
+    private boolean cancelled;
+
+    private Prefetch(Context context, String uid) {
+        this.context = context;
+        this.uid = uid;
+    }
+
+    /** Arms a prefetch for {@code uid}, replacing any earlier one. */
+    public static void start(Context context, String uid) {
+        cancelCurrent();
+        signedInAt = SystemClock.elapsedRealtime();
+        reported.clear();
+        current = new Prefetch(context.getApplicationContext(), uid);
+        // Bounded even if Main1 never shows
+        current.handler.postDelayed(current.expire, HOLD_MILLIS);
+    }
+
+    /** Runs the armed prefetch, if any, once {@code root} has drawn and the main thread is idle. */
+    public static void afterFirstFrame(View root) {
+        Prefetch prefetch = current;
+        if (prefetch == null || prefetch.ran) return;
+        // Posted from a view, this runs after the first traversal; the idle handler after that
+        root.post(() -> Looper.myQueue().addIdleHandler(() -> {
+            prefetch.run();
+            return false;
+        }));
+    }
+
+    public static void cancelCurrent() {
+        if (current != null) current.cancel();
+        current = null;
+    }
+
+    /** Logs how long after sign-in {@code screen} first showed data, once per sign-in. */
+    public static void reportPopulated(String screen) {
+        if (signedInAt == 0 || !reported.add(screen)) return;
+        Log.d(TAG, screen + " populated " + sinceSignIn() + " ms after sign-in");
+    }
+
+    private static long sinceSignIn() {
+        return SystemClock.elapsedRealtime() - signedInAt;
+    }
+
+    private void run() {
+        if (ran || cancelled) return;
+        ran = true;
+        Log.d(TAG, "Starting " + sinceSignIn() + " ms after sign-in");
+
+        // Each call returns at once; Firebase and Glide do the work off the main thread
+        FootprintRepository.get(context).prefetch(uid);
+        userRef = FirebaseDatabase.getInstance().getReference("Users").child(uid);
+        SubscriptionHub.get().subscribe(userRef, userObserver);
+        SurveyStatus.get(context, uid, completed ->
+                Log.d(TAG, "Survey status warm after " + sinceSignIn() + " ms"));
+        PopulationSketch.syncIfDue(context, FirebaseDatabase.getInstance().getReference("stats"), null);
+        for (int gif : ActionGifs.FIRST_SCREENS) {
+            gifs.add(ActionGifs.preload(context, gif));
+        }
+        SchemaMigration.migrateUser(context,
+                FirebaseDatabase.getInstance().getReference(SurveyRecord.NODE), uid);
+    }
+
+    /** Releases the held subscription and stops GIF decodes still in progress. */
+    public void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        handler.removeCallbacks(expire);
+        if (userRef != null) SubscriptionHub.get().unsubscribe(userRef, userObserver);
+        // A finished preload is already in the memory cache; clearing only stops the rest
+        for (Target<?> gif : gifs) {
+            Glide.with(context).clear(gif);
+        }
+        gifs.clear();
+        if (current == this) current = null;
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Maps grocery product names to food groups with an Aho-Corasick automaton.
+ *
+ * The keyword list ships as {@code assets/food_keywords.txt} and is compiled once into a
+ * full transition table over a 27-symbol alphabet (space plus a–z, accents folded; any
+ * other character counts as space). Matching a name is one table lookup per character,
+ * however many keywords there are. Keywords are anchored at the start of a word, and when
+ * several match the longest one wins, so "hamburger" beats "ham".
+ *
+ * Asset format: {@code @group kgCO2ePerKg kgPerItem} starts a group; each following
+ * non-comment line is one of its keywords.
+ */
+public final class ProductMatcher {
+
+    public static final int NO_MATCH = -1;
+
+    private static final String TAG = "ProductMatcher";
+    private static final String FILE_NAME = "food_keywords.txt";
+    private static final int ALPHABET = 27;
+
+    private static volatile ProductMatcher current;
+
+    private final String[] groupNames;
+    private final double[] kgPerKg;      // kg CO₂e per kg of product
+    private final double[] kgPerItem;    // typical item weight when only a count is known
+
+    private final int[] delta;           // [state * ALPHABET + symbol] -> next state
+    private final int[] matchGroup;      // longest keyword ending in each state, or NO_MATCH
+    private final int[] matchLength;
+
+    private ProductMatcher(String[] groupNames, double[] kgPerKg, double[] kgPerItem,
+                           int[] delta, int[] matchGroup, int[] matchLength) {
+        this.groupNames = groupNames;
+        this.kgPerKg = kgPerKg;
+        this.kgPerItem = kgPerItem;
+        this.delta = delta;
+        this.matchGroup = matchGroup;
+        this.matchLength = matchLength;
+    }
+
+    /** Shared matcher, compiled from the bundled keyword list on first use. */
+    public static ProductMatcher get(Context context) throws IOException {
+        ProductMatcher matcher = current;
+        if (matcher == null) {
+            synchronized (ProductMatcher.class) {
+                if (current == null) {
+                    try (Reader in = new InputStreamReader(
+                            context.getApplicationContext().getAssets().open(FILE_NAME), "UTF-8")) {
+                        current = read(in);
+                    }
+                    Log.d(TAG, "Compiled " + current.groupNames.length + " food groups");
+                }
+                matcher = current;
+            }
+        }
+        return matcher;
+    }
+
+    /** Group of the longest keyword in {@code name}, or {@link #NO_MATCH}. */
+    public int match(CharSequence name) {
+        // Start as if after a space so the first word is anchored too
+        int state = delta[0];
+        int bestGroup = NO_MATCH;
+        int bestLength = 0;
+        for (int i = 0, n = name.length(); i < n; i++) {
+            state = delta[state * ALPHABET + symbol(name.charAt(i))];
+            if (matchLength[state] > bestLength) {
+                bestLength = matchLength[state];
+                bestGroup = matchGroup[state];
+            }
+        }
+        return bestGroup;
+    }
+
+    public int groupCount() {
+        return groupNames.length;
+    }
+
+    public String groupName(int group) {
+        return groupNames[group];
+    }
+
+    public double kgPerKg(int group) {
+        return kgPerKg[group];
+    }
+
+    public double kgPerItem(int group) {
+        return kgPerItem[group];
+    }
+
+    // Latin-1 letters from U+00C0 folded to their base letter, so "crème" matches "creme"
+    private static final String LATIN1_BASE =
+            "aaaaaaaceeeeiiiidnooooo ouuuuyts" + "aaaaaaaceeeeiiiidnooooo ouuuuyty";
+
+    private static int symbol(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a' + 1;
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 1;
+        if (c >= '\u00C0' && c <= '\u00FF') return symbol(LATIN1_BASE.charAt(c - '\u00C0'));
+        return 0;
+    }
+
+    static ProductMatcher read(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        List<String> names = new ArrayList<>();
+        List<double[]> factors = new ArrayList<>();
+
+        // Trie in growable primitive arrays; goto holds -1 for missing edges
+        int[] go = new int[ALPHABET * 1024];
+        Arrays.fill(go, -1);
+        int[] group = new int[1024];
+        int[] length = new int[1024];
+        int states = 1;
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (line.startsWith("@")) {
+                String[] parts = line.substring(1).trim().split("\\s+");
+                if (parts.length != 3) throw new IOException("Bad group on line " + lineNumber + ": " + line);
+                names.add(parts[0]);
+                factors.add(new double[]{Double.parseDouble(parts[1]), Double.parseDouble(parts[2])});
+                continue;
+            }
+            if (names.isEmpty()) throw new IOException("Keyword before any group on line " + lineNumber);
+
+            // Leading space anchors the keyword at a word start; inner separators collapse to one
+            int state = 0;
+            int keywordLength = 0;
+            int previous = -1;
+            String keyword = " " + line;
+            for (int i = 0; i < keyword.length(); i++) {
+                int s = symbol(keyword.charAt(i));
+                if (s == 0 && previous == 0) continue;
+                previous = s;
+                int edge = state * ALPHABET + s;
+                if (go[edge] < 0) {
+                    if (states == group.length) {
+                        int grown = states * 2;
+                        go = Arrays.copyOf(go, grown * ALPHABET);
+                        Arrays.fill(go, states * ALPHABET, grown * ALPHABET, -1);
+                        group = Arrays.copyOf(group, grown);
+                        length = Arrays.copyOf(length, grown);
+                    }
+                    go[edge] = states++;
+                }
+                state = go[edge];
+                keywordLength++;
+            }
+            group[state] = names.size() - 1;
+            length[state] = keywordLength;
+        }
+        if (names.isEmpty()) throw new IOException("No food groups");
+
+        // Breadth-first: complete the transition table and inherit the longest output via failure links
+        int[] delta = new int[states * ALPHABET];
+        int[] matchGroup = new int[states];
+        int[] matchLength = new int[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0, tail = 0;
+
+        matchGroup[0] = NO_MATCH;
+        for (int s = 0; s < ALPHABET; s++) {
+            int next = go[s];
+            if (next > 0) {
+                delta[s] = next;
+                fail[next] = 0;
+                queue[tail++] = next;
+            } else {
+                delta[s] = 0;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            int f = fail[state];
+            if (length[state] > 0) {
+                matchGroup[state] = group[state];
+                matchLength[state] = length[state];
+            } else {
+                matchGroup[state] = matchGroup[f];
+                matchLength[state] = matchLength[f];
+            }
+            for (int s = 0; s < ALPHABET; s++) {
+                int next = go[state * ALPHABET + s];
+                if (next > 0) {
+                    delta[state * ALPHABET + s] = next;
+                    fail[next] = delta[f * ALPHABET + s];
+                    queue[tail++] = next;
+                } else {
+                    delta[state * ALPHABET + s] = delta[f * ALPHABET + s];
+                }
+            }
+        }
+
+        double[] perKg = new double[names.size()];
+        double[] perItem = new double[names.size()];
+        for (int g = 0; g < perKg.length; g++) {
+            perKg[g] = factors.get(g)[0];
+            perItem[g] = factors.get(g)[1];
+        }
+        return new ProductMatcher(names.toArray(new String[0]), perKg, perItem,
+                delta, matchGroup, matchLength);
+    }
+}
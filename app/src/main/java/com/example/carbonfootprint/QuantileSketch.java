@@ -0,0 +1,205 @@
+package com.example.carbonfootprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Population distribution of annual footprints, per category and for the total, as a
+ * fixed-bin histogram.
+ *
+ * Bins are log-spaced between {@link #MIN_TONS} and {@link #MAX_TONS} with an underflow and an
+ * overflow bin, so their bounds are implied by the constants and only counts are stored.
+ * Counts from different shards simply add up ({@link Builder#merge}), which lets a batch job
+ * split the users however it likes. On the device the counts are turned into cumulative
+ * totals once; a percentile is then a binary search over the bin bounds plus interpolation
+ * inside the bin.
+ *
+ * Blob layout (big-endian, counts as unsigned LEB128 varints so empty bins cost one byte):
+ * <pre>
+ * int    magic "CFQS"
+ * short  format version
+ * long   build time, ms since epoch
+ * short  bin count
+ * byte   column count
+ *   varint count x bin count
+ * </pre>
+ */
+public final class QuantileSketch {
+
+    /** Column holding each user's total over all categories; categories use their own index. */
+    public static final int TOTAL = EmissionEngine.CATEGORY_COUNT;
+    public static final int COLUMNS = TOTAL + 1;
+
+    static final double MIN_TONS = 0.01;
+    static final double MAX_TONS = 200;
+    static final int LOG_BINS = 512;
+    static final int BINS = LOG_BINS + 2;   // plus underflow and overflow
+
+    private static final int MAGIC = 0x43465153; // "CFQS"
+    private static final short FORMAT = 1;
+
+    // Upper bound of every bin but the overflow one; bin b holds [UPPER[b - 1], UPPER[b])
+    private static final double[] UPPER = new double[BINS - 1];
+
+    static {
+        UPPER[0] = MIN_TONS;
+        double step = Math.log(MAX_TONS / MIN_TONS) / LOG_BINS;
+        for (int i = 1; i <= LOG_BINS; i++) {
+            UPPER[i] = MIN_TONS * Math.exp(step * i);
+        }
+        UPPER[LOG_BINS] = MAX_TONS;
+    }
+
+    private final long builtAt;
+    private final long[][] cumulative;   // [column][bin] users in bins below bin, BINS + 1 entries
+
+    private QuantileSketch(long builtAt, long[][] counts) {
+        this.builtAt = builtAt;
+        cumulative = new long[COLUMNS][BINS + 1];
+        for (int c = 0; c < COLUMNS; c++) {
+            for (int b = 0; b < BINS; b++) {
+                cumulative[c][b + 1] = cumulative[c][b] + counts[c][b];
+            }
+        }
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /** Users counted in {@code column}. */
+    public long count(int column) {
+        return cumulative[column][BINS];
+    }
+
+    /**
+     * Share of users in {@code column} with a lower footprint than {@code tons}, from 0 to 100;
+     * -1 when the column is empty.
+     */
+    public double percentile(int column, double tons) {
+        long[] cum = cumulative[column];
+        long total = cum[BINS];
+        if (total == 0) return -1;
+
+        int bin = binOf(tons);
+        long inBin = cum[bin + 1] - cum[bin];
+        double lower = bin == 0 ? 0 : UPPER[bin - 1];
+        double upper = bin == BINS - 1 ? lower : UPPER[bin];
+        double within = upper > lower ? (tons - lower) / (upper - lower) : 0.5;
+        return 100.0 * (cum[bin] + inBin * within) / total;
+    }
+
+    private static int binOf(double tons) {
+        int index = Arrays.binarySearch(UPPER, tons);
+        // An exact bound starts the next bin; otherwise the insertion point is the bin
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    public static QuantileSketch read(byte[] blob) throws IOException {
+        return read(new ByteArrayInputStream(blob));
+    }
+
+    public static QuantileSketch read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a quantile sketch");
+        }
+        short format = in.readShort();
+        if (format != FORMAT) {
+            throw new IOException("Unsupported sketch format " + format);
+        }
+        long builtAt = in.readLong();
+        int bins = in.readUnsignedShort();
+        int columns = in.readUnsignedByte();
+        if (bins != BINS || columns != COLUMNS) {
+            throw new IOException("Sketch layout " + columns + "x" + bins + " does not match " + COLUMNS + "x" + BINS);
+        }
+        long[][] counts = new long[COLUMNS][BINS];
+        for (int c = 0; c < COLUMNS; c++) {
+            for (int b = 0; b < BINS; b++) {
+                counts[c][b] = readVarint(in);
+            }
+        }
+        return new QuantileSketch(builtAt, counts);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long");
+    }
+
+    /** Mutable counts for one shard of users; shards are combined with {@link #merge}. */
+    public static final class Builder {
+        private final long[][] counts = new long[COLUMNS][BINS];
+
+        public Builder add(int column, double tons) {
+            counts[column][binOf(tons)]++;
+            return this;
+        }
+
+        public Builder merge(Builder other) {
+            for (int c = 0; c < COLUMNS; c++) {
+                for (int b = 0; b < BINS; b++) {
+                    counts[c][b] += other.counts[c][b];
+                }
+            }
+            return this;
+        }
+
+        /** Reads a published blob back as counts, e.g. to merge a shard built elsewhere. */
+        public Builder merge(byte[] blob) throws IOException {
+            QuantileSketch sketch = read(blob);
+            for (int c = 0; c < COLUMNS; c++) {
+                for (int b = 0; b < BINS; b++) {
+                    counts[c][b] += sketch.cumulative[c][b + 1] - sketch.cumulative[c][b];
+                }
+            }
+            return this;
+        }
+
+        public QuantileSketch build(long builtAt) {
+            return new QuantileSketch(builtAt, counts);
+        }
+
+        public byte[] toBytes(long builtAt) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                write(builtAt, bytes);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // ByteArrayOutputStream does not throw
+            }
+            return bytes.toByteArray();
+        }
+
+        public void write(long builtAt, OutputStream stream) throws IOException {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT);
+            out.writeLong(builtAt);
+            out.writeShort(BINS);
+            out.writeByte(COLUMNS);
+            for (int c = 0; c < COLUMNS; c++) {
+                for (int b = 0; b < BINS; b++) {
+                    long value = counts[c][b];
+                    while ((value & ~0x7FL) != 0) {
+                        out.writeByte((int) (value & 0x7F) | 0x80);
+                        value >>>= 7;
+                    }
+                    out.writeByte((int) value);
+                }
+            }
+            out.flush();
+        }
+    }
+}
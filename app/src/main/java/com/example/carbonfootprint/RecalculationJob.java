@@ -0,0 +1,211 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rescores every stored survey after the factor catalog changes.
+ *
+ * Pages through {@code surveys/home|travel|food|others} with a {@link SurveyPager}, rescoring each record
+ * from its stored answers with the given {@link EmissionEngine}, adjusted to the grid region the
+ * record was scored for (see {@link GridIntensity}) and, for home, to its laundry time (see
+ * {@link TimeOfUse}). Corrected values for a page go out in one multi-path
+ * {@code updateChildren} call from the database root, in the canonical {@link SurveyRecord}
+ * layout, and each changed user's {@link FootprintSummary} is updated in the same write, as
+ * is the {@code latest} of the record's history rollups. The summary total moves by the
+ * difference to what the summary held for the category, read for the whole page in one key
+ * range query, so users whose summary lacks the category get its full value. Only one page is
+ * held at a time, so heap use stays flat however many users there are. Legacy records that
+ * store one label per field are migrated to the packed {@link AnswerCodec} form on the way.
+ *
+ * Progress is checkpointed after each committed page; a new job for the same catalog
+ * version resumes after the last committed key. To run against the emulator, pass the root
+ * of a {@code FirebaseDatabase} that had {@code useEmulator} called on it.
+ */
+public class RecalculationJob {
+
+    public interface Listener {
+        void onProgress(String category, long processed, double recordsPerSecond);
+        void onComplete(long processed, long updated, double recordsPerSecond);
+        void onError(String message);
+    }
+
+    private static final String PREFS_NAME = "recalculation_job";
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    // Stored annuals went through float rounding and JSON; closer than this counts as unchanged
+    private static final double ANNUAL_TOLERANCE = 1e-6;
+
+    private final DatabaseReference rootRef;
+    private final EmissionEngine engine;
+    private final GridIntensity grid;
+    private final TimeOfUse timeOfUse;
+    private final SurveyPager pager;
+    private final Listener listener;
+
+    // Reused for every record so a page costs no per-record arrays
+    private final int[] answers = new int[EmissionEngine.MAX_QUESTIONS];
+
+    // Derived engine per region and laundry time seen so far; a run meets a few hundred at most
+    private final Map<String, EmissionEngine> regionalEngines = new HashMap<>();
+
+    private int category;
+    private long processed;
+    private long updated;
+    private long startTime;
+
+    public RecalculationJob(Context context, DatabaseReference rootRef, EmissionEngine engine,
+                            GridIntensity grid, TimeOfUse timeOfUse, int pageSize, Listener listener) {
+        this.rootRef = rootRef;
+        this.engine = engine;
+        this.grid = grid;
+        this.timeOfUse = timeOfUse;
+        SharedPreferences checkpoint = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.pager = new SurveyPager(rootRef.child(SurveyRecord.NODE), pageSize, new SurveyPager.Pages() {
+            @Override
+            public void onPage(int category, DataSnapshot page, Runnable next) {
+                processPage(category, page, next);
+            }
+
+            @Override
+            public void onDone() {
+                listener.onComplete(processed, updated, recordsPerSecond());
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        }).resumable(checkpoint, engine.getVersion());
+        this.listener = listener;
+    }
+
+    /** Starts, or resumes from the checkpoint when it was written for the same catalog version. */
+    public void start() {
+        processed = 0;
+        updated = 0;
+        startTime = SystemClock.elapsedRealtime();
+        pager.start();
+    }
+
+    /** Stops after the page in flight; the checkpoint keeps the last committed key. */
+    public void cancel() {
+        pager.cancel();
+    }
+
+    private void processPage(int category, DataSnapshot page, Runnable next) {
+        String firstKey = null;
+        String lastKey = null;
+        for (DataSnapshot record : page.getChildren()) {
+            if (firstKey == null) firstKey = record.getKey();
+            lastKey = record.getKey();
+        }
+        String failedAt = EmissionEngine.CATEGORY_NAMES[category] + "/" + lastKey;
+        rootRef.child(FootprintSummary.NODE).orderByKey().startAt(firstKey).endAt(lastKey)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot summaries) {
+                        rescorePage(category, page, summaries, next, failedAt);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        listener.onError("Summary read failed at " + failedAt + ": " + error.getMessage());
+                    }
+                });
+    }
+
+    private void rescorePage(int category, DataSnapshot page, DataSnapshot summaries, Runnable next,
+                             String failedAt) {
+        this.category = category;
+        String categoryName = EmissionEngine.CATEGORY_NAMES[category];
+        Map<String, Object> updates = new HashMap<>();
+        for (DataSnapshot record : page.getChildren()) {
+            rescore(categoryName, record, summaries.child(record.getKey()), updates);
+        }
+
+        long records = page.getChildrenCount();
+        if (updates.isEmpty()) {
+            advance(categoryName, records, next);
+            return;
+        }
+        // A page touches hundreds of users, so whole nodes are dropped rather than each path
+        SingleFlight.get().invalidate(SurveyRecord.NODE + "/" + categoryName);
+        SingleFlight.get().invalidate(FootprintSummary.NODE);
+        SingleFlight.get().invalidate(SurveyHistory.NODE);
+        rootRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> advance(categoryName, records, next))
+                .addOnFailureListener(e -> listener.onError("Write failed at " + failedAt + ": " + e.getMessage()));
+    }
+
+    private void rescore(String categoryName, DataSnapshot record, DataSnapshot summary,
+                         Map<String, Object> updates) {
+        SurveyRecord.readAnswers(category, record, answers);
+        String region = SurveyRecord.readRegion(record);
+
+        int laundryTime = category == EmissionEngine.HOME
+                ? answers[EmissionEngine.HOME_LAUNDRY_TIME] : EmissionEngine.UNANSWERED;
+        double weekly = engineFor(region, laundryTime).weeklyEmissions(category, answers);
+        double annual = EmissionEngine.toAnnualTons(weekly);
+        Double stored = SurveyRecord.readStoredAnnual(record);
+        Integer storedVersion = record.child("catalogVersion").getValue(Integer.class);
+        if (SurveyRecord.isCanonical(record) && SurveyRecord.isPacked(record) && record.hasChild("gridRegion")
+                && stored != null && Math.abs(stored - annual) < ANNUAL_TOLERANCE
+                && storedVersion != null && storedVersion == engine.getVersion()) {
+            return;
+        }
+
+        // Same fields as a fresh submission, so the record is packed and stamped in one go
+        SurveyRecord rescored = new SurveyRecord(
+                AnswerCodec.encode(category, answers, engine.getVersion()),
+                weekly, annual, engine.getVersion(), region);
+        Long timestamp = record.child("timestamp").getValue(Long.class);
+        Map<String, Object> fields = rescored.toUpdate(category);
+        if (timestamp != null) {
+            fields.put("timestamp", timestamp);
+        } else {
+            fields.remove("timestamp");   // unknown submission time stays unknown
+        }
+
+        String uid = record.getKey();
+        String path = SurveyRecord.NODE + "/" + categoryName + "/" + uid + "/";
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            updates.put(path + field.getKey(), field.getValue());
+        }
+        // The total follows the summary, so the delta is taken against what it holds
+        Double held = summary.child(categoryName).getValue(Double.class);
+        FootprintSummary.put(updates, uid, category, annual, rescored.answers, held != null ? held : 0);
+        if (timestamp != null) SurveyHistory.putRescored(updates, uid, category, timestamp, annual);
+        updated++;
+    }
+
+    private EmissionEngine engineFor(String region, int laundryTime) {
+        String key = laundryTime < 0 ? region : region + "@" + laundryTime;
+        EmissionEngine derived = regionalEngines.get(key);
+        if (derived == null) {
+            derived = engine.forGrid(grid.kgPerKwh(region))
+                    .forLaundryScale(timeOfUse.laundryScale(region, laundryTime));
+            regionalEngines.put(key, derived);
+        }
+        return derived;
+    }
+
+    private void advance(String categoryName, long records, Runnable next) {
+        processed += records;
+        listener.onProgress(categoryName, processed, recordsPerSecond());
+        next.run();
+    }
+
+    private double recordsPerSecond() {
+        long elapsed = SystemClock.elapsedRealtime() - startTime;
+        return elapsed > 0 ? processed * 1000.0 / elapsed : 0;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.carbonfootprint;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rolls a grocery purchase export up into measured weekly food emissions.
+ *
+ * Expects a CSV with a header row and one purchased product per line. Columns are found by
+ * the words of their name: product ("product", "item", "description", "name"), quantity
+ * ("quantity", "qty", "weight", "amount"), price ("price", "cost", "total") and date ("date",
+ * "time", "timestamp"); see {@link #columnRole} for names with several. Each product is
+ * mapped to a food group by the shared {@link ProductMatcher}. Its weight comes from the
+ * quantity when that has a unit ("500g", "1.5 kg", "2 l"), or from a size in the product name
+ * ("Milk 2L") times the count, or otherwise from the group's typical item weight. Products no
+ * keyword matches fall back to a spend-based factor on their price.
+ */
+public final class ReceiptImporter {
+
+    // kg CO₂e per unit of currency for unmatched products
+    static final double UNMATCHED_KG_PER_CURRENCY = 0.5;
+
+    // Roles of a header column
+    static final int NONE = -1, PRODUCT = 0, QUANTITY = 1, PRICE = 2, DATE = 3;
+
+    private final ProductMatcher matcher;
+
+    private double kgCo2e;
+    private int lines;
+    private int matched;
+    private long firstSecond = Long.MAX_VALUE;
+    private long lastSecond = Long.MIN_VALUE;
+
+    public ReceiptImporter(ProductMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    /** Parses the whole stream; the caller closes it. A new importer is needed per file. */
+    public ReceiptSummary parse(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String header = reader.readLine();
+        if (header == null) throw new IOException("Empty file");
+
+        String separator = header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ";" : ",";
+        String[] names = header.toLowerCase().replace("\"", "").split(separator, -1);
+        int productColumn = -1, quantityColumn = -1, priceColumn = -1, dateColumn = -1;
+        for (int i = 0; i < names.length; i++) {
+            switch (columnRole(names[i])) {
+                case PRICE: if (priceColumn < 0) priceColumn = i; break;
+                case PRODUCT: if (productColumn < 0) productColumn = i; break;
+                case QUANTITY: if (quantityColumn < 0) quantityColumn = i; break;
+                case DATE: if (dateColumn < 0) dateColumn = i; break;
+                default: break;
+            }
+        }
+        if (productColumn < 0) {
+            throw new IOException("Header needs a product column: " + header.trim());
+        }
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.trim().isEmpty()) continue;
+            String[] cells = splitCsv(line, separator.charAt(0));
+            String product = cell(cells, productColumn);
+            if (product.isEmpty()) continue;
+            lines++;
+
+            int group = matcher.match(product);
+            if (group != ProductMatcher.NO_MATCH) {
+                matched++;
+                kgCo2e += weightKg(group, product, cell(cells, quantityColumn)) * matcher.kgPerKg(group);
+            } else {
+                double price = number(cell(cells, priceColumn));
+                if (price > 0) kgCo2e += price * UNMATCHED_KG_PER_CURRENCY;
+            }
+
+            if (dateColumn >= 0) {
+                long second = TripImporter.parseSecond(cell(cells, dateColumn));
+                if (second != Long.MIN_VALUE) {
+                    firstSecond = Math.min(firstSecond, second);
+                    lastSecond = Math.max(lastSecond, second);
+                }
+            }
+        }
+        if (lines == 0) throw new IOException("No products found");
+
+        // Span of whole days covered, at least a week
+        double days = lastSecond >= firstSecond
+                ? Math.floor(lastSecond / 86400.0) - Math.floor(firstSecond / 86400.0) + 1
+                : 7;
+        double weekly = kgCo2e / Math.max(1, days / 7);
+
+        ReceiptSummary summary = new ReceiptSummary();
+        summary.weeklyEmissions = weekly;
+        summary.annualEmissions = EmissionEngine.toAnnualTons(weekly);
+        summary.lines = lines;
+        summary.matchedLines = matched;
+        summary.coveredDays = days;
+        return summary;
+    }
+
+    /**
+     * Role of a lower-case header name, matched on whole words. Price words win wherever they
+     * are, so "item price" is not taken for the product column; otherwise the last word with a
+     * role decides, so "item quantity" is a quantity and "product name" a product.
+     */
+    static int columnRole(String name) {
+        int role = NONE;
+        for (String word : name.split("[^\\p{L}\\p{Nd}]+")) {
+            switch (word) {
+                case "price": case "cost": case "total":
+                    return PRICE;
+                case "product": case "item": case "description": case "name":
+                    role = PRODUCT;
+                    break;
+                case "quantity": case "qty": case "weight": case "amount":
+                    role = QUANTITY;
+                    break;
+                case "date": case "time": case "timestamp":
+                    role = DATE;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return role;
+    }
+
+    // Weight of one receipt line in kg
+    private double weightKg(int group, String product, String quantity) {
+        double quantityKg = sizeKg(quantity);
+        if (quantityKg > 0) return quantityKg;
+
+        double count = number(quantity);
+        if (count <= 0) count = 1;
+        double sizeKg = sizeKg(product);
+        return count * (sizeKg > 0 ? sizeKg : matcher.kgPerItem(group));
+    }
+
+    /**
+     * First "number unit" in the text as kg, treating litres as kilograms; 0 when there is
+     * none. Accepts g, kg, ml, cl and l, with or without a space ("500g", "1.5 kg").
+     */
+    static double sizeKg(String text) {
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9' || (i > 0 && Character.isLetter(text.charAt(i - 1)))) continue;
+
+            int end = i;
+            while (end < n && (Character.isDigit(text.charAt(end)) || text.charAt(end) == '.'
+                    || text.charAt(end) == ',')) end++;
+            double value;
+            try {
+                value = Double.parseDouble(text.substring(i, end).replace(',', '.'));
+            } catch (NumberFormatException e) {
+                i = end;
+                continue;
+            }
+            int unit = end;
+            while (unit < n && text.charAt(unit) == ' ') unit++;
+            int unitEnd = unit;
+            while (unitEnd < n && Character.isLetter(text.charAt(unitEnd))) unitEnd++;
+            String u = text.substring(unit, unitEnd).toLowerCase();
+            switch (u) {
+                case "kg": case "l": case "ltr": case "litre": case "liter": case "litres": case "liters":
+                    return value;
+                case "g": case "gr": case "ml":
+                    return value / 1000;
+                case "cl":
+                    return value / 100;
+                default:
+                    i = end;
+            }
+        }
+        return 0;
+    }
+
+    private static double number(String text) {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.') {
+                digits.append(c);
+            } else if (c == ',') {
+                digits.append('.');
+            } else if (digits.length() > 0) {
+                break;
+            }
+        }
+        try {
+            return digits.length() > 0 ? Double.parseDouble(digits.toString()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    // Splits on the separator outside double quotes; product names often contain commas
+    private static String[] splitCsv(String line, char separator) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == separator && !quoted) {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        cells.add(cell.toString());
+        return cells.toArray(new String[0]);
+    }
+
+    private static String cell(String[] cells, int column) {
+        return column >= 0 && column < cells.length ? cells[column].trim() : "";
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.carbonfootprint;
+
+/**
+ * Aggregate of an imported grocery purchase export, stored under
+ * {@code surveys/food/{uid}/receipts} next to the survey estimate.
+ */
+public class ReceiptSummary {
+
+    public double weeklyEmissions;   // kg CO₂e/week
+    public double annualEmissions;   // metric tons CO₂e/year
+    public int lines;
+    public int matchedLines;
+    public double coveredDays;
+    public long timestamp = System.currentTimeMillis();
+
+    public ReceiptSummary() {}  // Required for Firebase
+}
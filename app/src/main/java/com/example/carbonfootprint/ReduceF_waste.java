@@ -2,21 +2,13 @@ package com.example.carbonfootprint;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.util.Log;
 import android.widget.Button;
 import android.widget.ImageView;
-import android.widget.Toast;
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.MutableData;
-import com.google.firebase.database.Transaction;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
@@ -108,11 +100,8 @@ public class ReduceF_waste extends AppCompatActivity {
 
     // Helper method to load GIFs
     private void loadGif(ImageView imageView, int gifResourceId) {
-        Glide.with(this)
-                .asGif()
-                .load(gifResourceId)
-                .transition(DrawableTransitionOptions.withCrossFade())
-                .into(imageView);
+        // Shared options, so a GIF the login prefetch decoded is reused
+        ActionGifs.load(imageView, gifResourceId);
     }
 
     private void addOrUpdateCard(String title, String quantity, String count) {
@@ -141,42 +130,10 @@ public class ReduceF_waste extends AppCompatActivity {
 
     private void updateFirebaseData() {
         String userId = mAuth.getCurrentUser().getUid();
-        DatabaseReference userRef = mDatabase.child("Users").child(userId);
-
-        userRef.runTransaction(new Transaction.Handler() {
-            @Override
-            public Transaction.Result doTransaction(MutableData mutableData) {
-                User user = mutableData.getValue(User.class);
-                if (user == null) {
-                    // Create new user if doesn't exist
-                    user = new User("", 0.4, 25);
-                    mutableData.setValue(user);
-                    return Transaction.success(mutableData);
-                }
-
-                // Update CO2 saved (convert 400g to kg = 0.4kg)
-                user.setTotalCO2Saved(user.getTotalCO2Saved() + 0.4);
-
-                // Update Talipoints
-                user.setTaliPoints(user.getTaliPoints() + 25);
-
-                mutableData.setValue(user);
-                return Transaction.success(mutableData);
-            }
 
-            @Override
-            public void onComplete(DatabaseError databaseError, boolean committed, DataSnapshot dataSnapshot) {
-                if (committed) {
-                    Log.d("Firebase", "Transaction successfully committed");
-                    // Redirect to completion page
-                    Intent intent = new Intent(ReduceF_waste.this, ReduceF_waste_Done.class);
-                    startActivity(intent);
-                } else {
-                    Log.e("Firebase", "Transaction failed: " + databaseError.getMessage());
-                    // Show error message
-                    Toast.makeText(ReduceF_waste.this, "Failed to save data. Please try again.", Toast.LENGTH_SHORT).show();
-                }
-            }
-        });
+        // 400g CO2 saved = 0.4kg, 25 Talipoints; queued, so the action counts even without a connection
+        Rewards.queueAward(this, userId, 0.4, 25);
+        Intent intent = new Intent(ReduceF_waste.this, ReduceF_waste_Done.class);
+        startActivity(intent);
     }
 }
@@ -0,0 +1,238 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+
+/**
+ * Finds the least-effort set of answer changes that cuts the annual footprint by a target.
+ *
+ * Every changeable, answered question offers its options that save emissions; moving an
+ * answer costs {@code EFFORT[category][question]} per option step, so "two more vegetarian
+ * days" is cheaper than going fully vegetarian. At most one option is picked per question.
+ *
+ * The search is depth-first branch-and-bound over questions ordered by their best
+ * saving/effort ratio. A branch is cut when the remaining questions cannot reach the target,
+ * or when its effort plus a fractional lower bound (remaining saving at the best remaining
+ * ratio) cannot beat the best plan found so far. Options dominated within their question
+ * are dropped up front, and a node budget keeps the worst case bounded.
+ */
+public final class ReductionPlanner {
+
+    // Effort of moving one option step on each question; higher is harder.
+    // One entry per question of the survey layout, laundry time included.
+    static final double[][] EFFORT = {
+            {0, 0, 8, 3, 1, 1, 1},     // Home: heating is a big change, renewables a tariff switch
+            {3, 3, 6, 4, 2, 1, 1},     // Travel: vehicle change is a purchase
+            {2, 1, 1, 1, 1, 1, 1},     // Food
+            {1, 1, 1, 1, 1, 1, 1}      // Others
+    };
+
+    // Hard cap on visited nodes so the search always finishes quickly
+    private static final int NODE_BUDGET = 200000;
+
+    /** A chosen set of changes, in search order. */
+    public static final class Plan {
+        public final int[] categories;
+        public final int[] questions;
+        public final int[] options;
+        public final double annualSaving;
+        public final double effort;
+
+        Plan(int[] categories, int[] questions, int[] options, double annualSaving, double effort) {
+            this.categories = categories;
+            this.questions = questions;
+            this.options = options;
+            this.annualSaving = annualSaving;
+            this.effort = effort;
+        }
+
+        public int size() {
+            return questions.length;
+        }
+    }
+
+    // Candidate questions in search order; per question the non-dominated options
+    private final int[] candCategory;
+    private final int[] candQuestion;
+    private final int[][] candOptions;
+    private final double[][] candSaving;   // annual tons
+    private final double[][] candEffort;
+    private final int count;
+
+    // Suffix bounds over the search order
+    private final double[] suffixMaxSaving;
+    private final double[] suffixBestRatio;
+
+    // Search state
+    private final int[] choice;
+    private int[] bestChoice;
+    private double bestEffort;
+    private double target;
+    private int nodes;
+
+    public ReductionPlanner(EmissionEngine engine, int[][] answers) {
+        int max = 0;
+        for (int[] category : answers) max += category.length;
+        int[] category = new int[max];
+        int[] question = new int[max];
+        int[][] options = new int[max][];
+        double[][] saving = new double[max][];
+        double[][] effort = new double[max][];
+        double[] bestRatio = new double[max];
+
+        int n = 0;
+        for (int c = 0; c < answers.length; c++) {
+            for (int q = 0; q < answers[c].length; q++) {
+                int current = answers[c][q];
+                if (current < 0 || !SurveyLabels.isChangeable(c, q)) continue;
+
+                int optionCount = engine.optionCount(c, q);
+                double currentFactor = engine.factor(c, q, current);
+                int[] keptOptions = new int[optionCount];
+                double[] keptSaving = new double[optionCount];
+                double[] keptEffort = new double[optionCount];
+                int kept = 0;
+
+                for (int o = 0; o < optionCount; o++) {
+                    double s = EmissionEngine.toAnnualTons(currentFactor - engine.factor(c, q, o));
+                    if (s <= 0) continue;
+                    double e = EFFORT[c][q] * Math.abs(o - current);
+                    // Keep only options no other option beats on both saving and effort
+                    boolean dominated = false;
+                    for (int other = 0; other < optionCount && !dominated; other++) {
+                        if (other == o) continue;
+                        double so = EmissionEngine.toAnnualTons(currentFactor - engine.factor(c, q, other));
+                        double eo = EFFORT[c][q] * Math.abs(other - current);
+                        dominated = so >= s && eo <= e && (so > s || eo < e || other < o);
+                    }
+                    if (dominated) continue;
+                    // Insert keeping options sorted by ascending saving
+                    int at = kept++;
+                    while (at > 0 && keptSaving[at - 1] > s) {
+                        keptOptions[at] = keptOptions[at - 1];
+                        keptSaving[at] = keptSaving[at - 1];
+                        keptEffort[at] = keptEffort[at - 1];
+                        at--;
+                    }
+                    keptOptions[at] = o;
+                    keptSaving[at] = s;
+                    keptEffort[at] = e;
+                }
+                if (kept == 0) continue;
+
+                category[n] = c;
+                question[n] = q;
+                options[n] = Arrays.copyOf(keptOptions, kept);
+                saving[n] = Arrays.copyOf(keptSaving, kept);
+                effort[n] = Arrays.copyOf(keptEffort, kept);
+                for (int k = 0; k < kept; k++) {
+                    bestRatio[n] = Math.max(bestRatio[n], keptSaving[k] / Math.max(keptEffort[k], 1e-9));
+                }
+                n++;
+            }
+        }
+
+        // Search the most efficient questions first so good plans are found early
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(bestRatio[b], bestRatio[a]));
+
+        count = n;
+        candCategory = new int[n];
+        candQuestion = new int[n];
+        candOptions = new int[n][];
+        candSaving = new double[n][];
+        candEffort = new double[n][];
+        for (int i = 0; i < n; i++) {
+            int from = order[i];
+            candCategory[i] = category[from];
+            candQuestion[i] = question[from];
+            candOptions[i] = options[from];
+            candSaving[i] = saving[from];
+            candEffort[i] = effort[from];
+        }
+
+        suffixMaxSaving = new double[n + 1];
+        suffixBestRatio = new double[n + 1];
+        for (int i = n - 1; i >= 0; i--) {
+            double maxSaving = 0;
+            double ratio = 0;
+            for (int k = 0; k < candSaving[i].length; k++) {
+                maxSaving = Math.max(maxSaving, candSaving[i][k]);
+                ratio = Math.max(ratio, candSaving[i][k] / Math.max(candEffort[i][k], 1e-9));
+            }
+            suffixMaxSaving[i] = suffixMaxSaving[i + 1] + maxSaving;
+            suffixBestRatio[i] = Math.max(suffixBestRatio[i + 1], ratio);
+        }
+        choice = new int[n];
+    }
+
+    /** Largest annual saving any plan can reach from these answers. */
+    public double maxSaving() {
+        return suffixMaxSaving[0];
+    }
+
+    /**
+     * Cheapest plan saving at least {@code targetTons} per year, or null when the target is
+     * out of reach.
+     */
+    public Plan plan(double targetTons) {
+        if (targetTons <= 0 || targetTons > suffixMaxSaving[0] + 1e-9) return null;
+
+        target = targetTons;
+        bestEffort = Double.MAX_VALUE;
+        bestChoice = null;
+        nodes = 0;
+        Arrays.fill(choice, -1);
+        search(0, 0, 0);
+        if (bestChoice == null) return null;
+
+        int size = 0;
+        for (int k : bestChoice) if (k >= 0) size++;
+        int[] categories = new int[size];
+        int[] questions = new int[size];
+        int[] options = new int[size];
+        double saving = 0;
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            int k = bestChoice[i];
+            if (k < 0) continue;
+            categories[j] = candCategory[i];
+            questions[j] = candQuestion[i];
+            options[j] = candOptions[i][k];
+            saving += candSaving[i][k];
+            j++;
+        }
+        return new Plan(categories, questions, options, saving, bestEffort);
+    }
+
+    private void search(int index, double saving, double effort) {
+        if (++nodes > NODE_BUDGET) return;
+
+        if (saving >= target - 1e-9) {
+            if (effort < bestEffort) {
+                bestEffort = effort;
+                bestChoice = choice.clone();
+            }
+            return;
+        }
+        if (index == count) return;
+
+        // Feasibility: even taking every remaining maximum misses the target
+        if (saving + suffixMaxSaving[index] < target - 1e-9) return;
+
+        // Optimality: fractional lower bound on the effort still needed
+        double needed = target - saving;
+        double ratio = suffixBestRatio[index];
+        if (ratio > 0 && effort + needed / ratio >= bestEffort) return;
+
+        // Biggest saving first, then skipping this question
+        double[] savings = candSaving[index];
+        double[] efforts = candEffort[index];
+        for (int k = savings.length - 1; k >= 0; k--) {
+            choice[index] = k;
+            search(index + 1, saving + savings[k], effort + efforts[k]);
+        }
+        choice[index] = -1;
+        search(index + 1, saving, effort);
+    }
+}
@@ -16,7 +16,6 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 public class Reforest extends AppCompatActivity {
 
@@ -73,34 +72,39 @@ public class Reforest extends AppCompatActivity {
         // Spend button click
         btnSpend.setOnClickListener(v -> {
             if (selectedPoints > 0 && selectedPoints <= availablePoints) {
-                int newBalance = availablePoints - selectedPoints;
-
-                // Update in Firebase
-                databaseRef.child("taliPoints").setValue(newBalance)
-                        .addOnSuccessListener(aVoid -> {
-                            // Save spent points before reset
-                            int spentPoints = selectedPoints;
-
-                            // Reset selection
-                            selectedPoints = 0;
-                            tvPoints.setText("0");
-
-                            // ✅ Redirect to ReforestDone activity with spent points
-                            Intent intent = new Intent(Reforest.this, ReforestDone.class);
-                            intent.putExtra("spent_points", spentPoints); // pass spent points
-                            startActivity(intent);
-                            finish();
-                        })
-                        .addOnFailureListener(e -> Log.e("Firebase", "Update failed: " + e.getMessage()));
+                // Debit in a transaction so an award landing meanwhile isn't overwritten
+                Rewards.spend(FirebaseKeyValueStore.get(), userId, selectedPoints, new KeyValueStore.Callback<Object>() {
+                    @Override
+                    public void onSuccess(Object user) {
+                        // Save spent points before reset
+                        int spentPoints = selectedPoints;
+
+                        // Reset selection
+                        selectedPoints = 0;
+                        tvPoints.setText("0");
+
+                        // ✅ Redirect to ReforestDone activity with spent points
+                        Intent intent = new Intent(Reforest.this, ReforestDone.class);
+                        intent.putExtra("spent_points", spentPoints); // pass spent points
+                        startActivity(intent);
+                        finish();
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        Log.e("Firebase", "Update failed: " + e.getMessage());
+                    }
+                });
             }
         });
     }
 
     private void loadTailpointsData() {
-        databaseRef.child("taliPoints").addValueEventListener(new ValueEventListener() {
+        // Same Users/{uid} subscription as Reward and DashBoard, attached only while started
+        SubscriptionHub.get().observe(this, databaseRef, new SubscriptionHub.Observer() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                Integer taliValue = snapshot.getValue(Integer.class);
+            public void onValue(@NonNull DataSnapshot snapshot) {
+                Integer taliValue = snapshot.child("taliPoints").getValue(Integer.class);
                 if (taliValue != null) {
                     availablePoints = taliValue;
                     taliPointsTextView.setText(String.valueOf(availablePoints));
@@ -118,7 +122,7 @@ public class Reforest extends AppCompatActivity {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError error) {
+            public void onError(@NonNull DatabaseError error) {
                 Log.e("Firebase", "Error: " + error.getMessage());
                 taliPointsTextView.setText("0");
             }
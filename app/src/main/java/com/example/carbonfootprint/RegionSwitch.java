@@ -0,0 +1,165 @@
+package com.example.carbonfootprint;
+
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rescores one user's stored surveys after their grid region changes.
+ *
+ * Only the categories that have grid-dependent answers ({@link EmissionEngine#isGridSensitive})
+ * are read, and only records whose score actually moves are rewritten, so food is never
+ * touched and a gas-heated home with no electric answers costs one read. An imported meter
+ * summary is reconverted from its stored kWh. Everything, including the
+ * {@link FootprintSummary} deltas and the rollups' latest values
+ * ({@link SurveyHistory#putRescored}), goes out in one multi-path {@code updateChildren} from
+ * the database root. The user's summary is read alongside the records and the total moves by
+ * the difference to the category values it holds.
+ */
+public class RegionSwitch {
+
+    public interface Listener {
+        void onSwitched(String region, int updatedRecords);
+        void onError(String message);
+    }
+
+    // Closer than this to the stored annual counts as unchanged
+    private static final double ANNUAL_TOLERANCE = 1e-6;
+
+    private final DatabaseReference rootRef;
+    private final String uid;
+    private final String region;
+    private final EmissionEngine engine;
+    private final double kgPerKwh;
+    private final TimeOfUse timeOfUse;
+    private final Listener listener;
+
+    private final Map<String, Object> updates = new HashMap<>();
+    private final DataSnapshot[] records = new DataSnapshot[EmissionEngine.CATEGORY_COUNT];
+    private DataSnapshot summary;
+    private final int[] answers = new int[EmissionEngine.MAX_QUESTIONS];
+    private int pending;
+    private int updated;
+    private double annualDelta;
+    private boolean failed;
+
+    /**
+     * @param engine   catalog for the new region, from {@link FactorCatalog#get(android.content.Context, String)}
+     * @param kgPerKwh grid intensity of the new region, for the meter summary
+     */
+    public RegionSwitch(DatabaseReference rootRef, String uid, String region, EmissionEngine engine,
+                        double kgPerKwh, TimeOfUse timeOfUse, Listener listener) {
+        this.rootRef = rootRef;
+        this.uid = uid;
+        this.region = region;
+        this.engine = engine;
+        this.kgPerKwh = kgPerKwh;
+        this.timeOfUse = timeOfUse;
+        this.listener = listener;
+    }
+
+    public void start() {
+        pending = 1;   // the summary
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            if (EmissionEngine.isGridSensitive(c)) pending++;
+        }
+        read(rootRef.child(FootprintSummary.NODE).child(uid), -1);
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            if (!EmissionEngine.isGridSensitive(c)) continue;
+            read(rootRef.child(SurveyRecord.NODE).child(EmissionEngine.CATEGORY_NAMES[c]).child(uid), c);
+        }
+    }
+
+    /** Reads into {@link #records}, or {@link #summary} for a negative category. */
+    private void read(DatabaseReference ref, int category) {
+        ref.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (failed) return;
+                if (category < 0) summary = snapshot;
+                else records[category] = snapshot;
+                if (--pending == 0) rescoreAll();
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (failed) return;
+                failed = true;
+                listener.onError("Read failed: " + error.getMessage());
+            }
+        });
+    }
+
+    private void rescoreAll() {
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            if (records[c] != null && records[c].exists()) rescore(c, records[c]);
+            records[c] = null;
+        }
+        commit();
+    }
+
+    private void rescore(int category, DataSnapshot record) {
+        String name = EmissionEngine.CATEGORY_NAMES[category];
+        String path = SurveyRecord.NODE + "/" + name + "/" + uid + "/";
+
+        if (category == EmissionEngine.HOME) {
+            MeterSummary meter = record.child("meter").getValue(MeterSummary.class);
+            if (meter != null) {
+                updates.put(path + "meter/annualEmissions",
+                        MeterImporter.annualTons(meter.electricityKwh, meter.gasKwh, kgPerKwh));
+                updates.put(path + "meter/gridRegion", region);
+            }
+        }
+        if (!record.hasChild("answers") && !record.hasChild(SurveyLabels.ANSWER_FIELDS[category][0])) {
+            return; // only an imported aggregate, no survey yet
+        }
+
+        SurveyRecord.readAnswers(category, record, answers);
+        EmissionEngine scoring = engine;
+        if (category == EmissionEngine.HOME) {
+            // Laundry time weighs differently on the new grid's daily shape
+            scoring = engine.forLaundryScale(
+                    timeOfUse.laundryScale(region, answers[EmissionEngine.HOME_LAUNDRY_TIME]));
+        }
+        double weekly = scoring.weeklyEmissions(category, answers);
+        double annual = EmissionEngine.toAnnualTons(weekly);
+        Double stored = SurveyRecord.readStoredAnnual(record);
+        if (stored != null && Math.abs(stored - annual) < ANNUAL_TOLERANCE && SurveyRecord.isPacked(record)) {
+            updates.put(path + "gridRegion", region);
+            return;
+        }
+
+        // Same fields as a fresh submission, keeping when it was submitted
+        SurveyRecord rescored = new SurveyRecord(
+                AnswerCodec.encode(category, answers, engine.getVersion()),
+                weekly, annual, engine.getVersion(), region);
+        Long timestamp = record.child("timestamp").getValue(Long.class);
+        if (timestamp != null) rescored.timestamp = timestamp;
+        for (Map.Entry<String, Object> field : rescored.toUpdate(category).entrySet()) {
+            updates.put(path + field.getKey(), field.getValue());
+        }
+        // Categories share one total, so its delta is summed and written once in commit()
+        FootprintSummary.put(updates, uid, category, annual, rescored.answers, Double.NaN);
+        if (timestamp != null) SurveyHistory.putRescored(updates, uid, category, timestamp, annual);
+        // The total follows the summary, so the delta is taken against what it holds
+        Double held = summary.child(name).getValue(Double.class);
+        annualDelta += annual - (held != null ? held : 0);
+        updated++;
+    }
+
+    private void commit() {
+        if (updates.isEmpty()) {
+            listener.onSwitched(region, 0);
+            return;
+        }
+        FootprintSummary.putTotalDelta(updates, uid, annualDelta);
+        for (String path : updates.keySet()) SingleFlight.get().invalidate(path);
+        rootRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> listener.onSwitched(region, updated))
+                .addOnFailureListener(e -> listener.onError("Write failed: " + e.getMessage()));
+    }
+}
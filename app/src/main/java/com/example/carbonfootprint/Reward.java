@@ -17,7 +17,6 @@ import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 public class Reward extends AppCompatActivity {
 
@@ -58,9 +57,10 @@ public class Reward extends AppCompatActivity {
     }
 
     private void loadTailpointsData() {
-        databaseRef.addValueEventListener(new ValueEventListener() {
+        // Shared with the other Users/{uid} screens, attached only while this one is started
+        SubscriptionHub.get().observe(this, databaseRef, new SubscriptionHub.Observer() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            public void onValue(@NonNull DataSnapshot dataSnapshot) {
                 if (dataSnapshot.exists()) {
                     Integer taliValue = dataSnapshot.child("taliPoints").getValue(Integer.class);
                     taliPointsTextView.setText(taliValue != null ? String.valueOf(taliValue) : "0");
@@ -68,7 +68,7 @@ public class Reward extends AppCompatActivity {
             }
 
             @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
+            public void onError(@NonNull DatabaseError databaseError) {
                 Log.e("Firebase", "Tailpoints data error: " + databaseError.getMessage());
                 taliPointsTextView.setText("0");
                 Toast.makeText(Reward.this, "Error loading data", Toast.LENGTH_SHORT).show();
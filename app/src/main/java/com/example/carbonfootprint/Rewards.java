@@ -0,0 +1,70 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tali point and CO2 bookkeeping on {@code Users/{uid}}, written against {@link KeyValueStore}
+ * so it runs the same on Firebase and on {@link InMemoryKeyValueStore}.
+ *
+ * Awards are {@link #awardUpdate}: plain server-side increments queued on {@link WriteQueue},
+ * which can wait offline and be coalesced, and never lose points to a concurrent award. A spend is a
+ * transaction on the user node so it can never take the balance below zero; fields other than
+ * the two counters (name, email) are carried over untouched.
+ */
+public final class Rewards {
+
+    public static final String USERS = "Users";
+    public static final String CO2_SAVED = "totalCO2Saved";
+    public static final String POINTS = "taliPoints";
+
+    private Rewards() {}
+
+    /**
+     * Credits a completed action through {@link WriteQueue}. A user without a profile yet gets
+     * one with a blank first name once the award lands, as the screens expect a name.
+     */
+    public static void queueAward(Context context, String uid, double co2Kg, long points) {
+        WriteQueue.get(context).enqueue(awardUpdate(uid, co2Kg, points), null, uid);
+    }
+
+    /** Gives {@code uid} a blank first name if the profile has none; leaves an existing one alone. */
+    static void createProfile(KeyValueStore store, String uid) {
+        store.transact(USERS + "/" + uid + "/firstName",
+                current -> current == null ? "" : KeyValueStore.ABORT, null);
+    }
+
+    /** Multi-path update that credits a completed action with server-side increments. */
+    public static Map<String, Object> awardUpdate(String uid, double co2Kg, long points) {
+        String user = USERS + "/" + uid + "/";
+        Map<String, Object> update = new HashMap<>();
+        update.put(user + CO2_SAVED, KeyValueStore.serverIncrement(co2Kg));
+        update.put(user + POINTS, KeyValueStore.serverIncrement(points));
+        return update;
+    }
+
+    /**
+     * Debits {@code points}. Fails with {@link IllegalStateException} and changes nothing when
+     * the balance is short.
+     */
+    public static void spend(KeyValueStore store, String uid, long points,
+                             KeyValueStore.Callback<Object> callback) {
+        store.transact(USERS + "/" + uid, current -> {
+            Map<String, Object> user = copy(current);
+            long balance = (long) number(user.get(POINTS));
+            if (balance < points) return KeyValueStore.ABORT;
+            user.put(POINTS, balance - points);
+            return user;
+        }, callback);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> copy(Object current) {
+        return current instanceof Map ? new HashMap<>((Map<String, Object>) current) : new HashMap<>();
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0;
+    }
+}
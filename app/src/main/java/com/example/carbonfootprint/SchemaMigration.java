@@ -0,0 +1,245 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rewrites stored surveys to the canonical {@link SurveyRecord} schema.
+ *
+ * Early builds stored the footprint as {@code footprint}, {@code carbon_footprint} or
+ * {@code home_footprint} and some numbers as strings, so readers had to probe several fields
+ * and sniff types. This job pages through {@code surveys/home|travel|food|others} with a
+ * {@link SurveyPager}: the footprint is moved to {@code annualEmissions},
+ * numeric fields stored as text become numbers, the old names are deleted and the record is
+ * stamped with {@link SurveyRecord#SCHEMA_VERSION}. Each page goes out in one multi-path
+ * {@code updateChildren}; records already on the current schema cost nothing but the read.
+ *
+ * Answers are left as they are; packing legacy label fields needs scoring and is the
+ * recalculation job's work. Progress is checkpointed after each committed page.
+ *
+ * {@link #migrateUser} does the same for the four records of one user and runs once per user
+ * from {@link Prefetch}, after the first frame following sign-in, so a user's own surveys are
+ * canonical without waiting for the full pass.
+ */
+public class SchemaMigration {
+
+    public interface Listener {
+        void onProgress(String category, long processed, long migrated, double recordsPerSecond);
+        void onComplete(long processed, long migrated, double recordsPerSecond);
+        void onError(String message);
+    }
+
+    private static final String TAG = "SchemaMigration";
+    private static final String PREFS_NAME = "schema_migration";
+    private static final String KEY_USER_PREFIX = "user_";
+    public static final int DEFAULT_PAGE_SIZE = 500;
+
+    // Canonical numeric fields; text values are parsed, whole-number ones are stored as Long
+    private static final String[] DOUBLE_FIELDS = {"weeklyEmissions", "annualEmissions"};
+    private static final String[] LONG_FIELDS = {"answers", "catalogVersion", "timestamp"};
+
+    private final DatabaseReference surveysRef;
+    private final SurveyPager pager;
+    private final Listener listener;
+
+    private long processed;
+    private long migrated;
+    private long startTime;
+
+    public SchemaMigration(Context context, DatabaseReference surveysRef, int pageSize, Listener listener) {
+        this.surveysRef = surveysRef;
+        this.listener = listener;
+        SharedPreferences checkpoint = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.pager = new SurveyPager(surveysRef, pageSize, new SurveyPager.Pages() {
+            @Override
+            public void onPage(int category, DataSnapshot page, Runnable next) {
+                processPage(category, page, next);
+            }
+
+            @Override
+            public void onDone() {
+                listener.onComplete(processed, migrated, recordsPerSecond());
+            }
+
+            @Override
+            public void onError(String message) {
+                listener.onError(message);
+            }
+        }).resumable(checkpoint, SurveyRecord.SCHEMA_VERSION);
+    }
+
+    /** Starts, or resumes from the checkpoint when it was written for the same schema version. */
+    public void start() {
+        processed = 0;
+        migrated = 0;
+        startTime = SystemClock.elapsedRealtime();
+        pager.start();
+    }
+
+    /**
+     * Normalizes {@code uid}'s records in one {@code updateChildren}, unless that already
+     * succeeded on this device for the current schema version. A failed read or write is
+     * retried at the next sign-in.
+     */
+    public static void migrateUser(Context context, DatabaseReference surveysRef, String uid) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String key = KEY_USER_PREFIX + uid;
+        if (prefs.getInt(key, -1) == SurveyRecord.SCHEMA_VERSION) return;
+
+        Map<String, Object> updates = new HashMap<>();
+        int[] pending = {EmissionEngine.CATEGORY_COUNT};
+        boolean[] failed = {false};
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            String path = EmissionEngine.CATEGORY_NAMES[c] + "/" + uid;
+            surveysRef.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot record) {
+                    if (record.exists()) normalize(record, path + "/", updates);
+                    if (--pending[0] == 0 && !failed[0]) commitUser(surveysRef, updates, prefs, key);
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError error) {
+                    failed[0] = true;
+                    pending[0]--;
+                    Log.e(TAG, "Read failed for " + path + ": " + error.getMessage());
+                }
+            });
+        }
+    }
+
+    private static void commitUser(DatabaseReference surveysRef, Map<String, Object> updates,
+                                   SharedPreferences prefs, String key) {
+        if (updates.isEmpty()) {
+            prefs.edit().putInt(key, SurveyRecord.SCHEMA_VERSION).apply();
+            return;
+        }
+        for (String path : updates.keySet()) SingleFlight.get().invalidate(surveysRef.child(path));
+        surveysRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    prefs.edit().putInt(key, SurveyRecord.SCHEMA_VERSION).apply();
+                    Log.d(TAG, "Migrated " + key + " (" + updates.size() + " fields)");
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Write failed for " + key + ": " + e.getMessage()));
+    }
+
+    /** Stops after the page in flight; the checkpoint keeps the last committed key. */
+    public void cancel() {
+        pager.cancel();
+    }
+
+    private void processPage(int category, DataSnapshot page, Runnable next) {
+        String categoryName = EmissionEngine.CATEGORY_NAMES[category];
+        Map<String, Object> updates = new HashMap<>();
+        String lastKey = null;
+        int pageMigrated = 0;
+        for (DataSnapshot record : page.getChildren()) {
+            lastKey = record.getKey();
+            if (normalize(record, categoryName + "/" + lastKey + "/", updates)) pageMigrated++;
+        }
+
+        long records = page.getChildrenCount();
+        int pageUpdated = pageMigrated;
+        if (updates.isEmpty()) {
+            advance(categoryName, records, 0, next);
+            return;
+        }
+        String failedAt = categoryName + "/" + lastKey;
+        SingleFlight.get().invalidate(surveysRef.child(categoryName));
+        surveysRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> advance(categoryName, records, pageUpdated, next))
+                .addOnFailureListener(e -> listener.onError("Write failed at " + failedAt + ": " + e.getMessage()));
+    }
+
+    /**
+     * Adds the writes that bring {@code record} to the current schema to {@code updates}, with
+     * paths prefixed by {@code path}. Returns false when there is nothing to write.
+     *
+     * Text that does not parse as a number is left where it is, and a legacy footprint is only
+     * deleted once {@code annualEmissions} holds a number; such a record is not stamped with
+     * the new version, so {@link SurveyRecord#readAnnual} keeps reading it the old way.
+     */
+    static boolean normalize(DataSnapshot record, String path, Map<String, Object> updates) {
+        Long version = record.child("schemaVersion").getValue(Long.class);
+        if (version != null && version >= SurveyRecord.SCHEMA_VERSION) return false;
+
+        int before = updates.size();
+        boolean clean = true;
+        for (String field : DOUBLE_FIELDS) {
+            Object value = record.child(field).getValue();
+            if (!(value instanceof String)) continue;
+            Object number = toNumber(value);
+            if (number != null) updates.put(path + field, number);
+            else clean = false;
+        }
+        for (String field : LONG_FIELDS) {
+            Object value = record.child(field).getValue();
+            if (!(value instanceof String)) continue;
+            Object number = toNumber(value);
+            if (number != null) updates.put(path + field, number instanceof Double ? Math.round((Double) number) : number);
+            else clean = false;
+        }
+
+        // The first legacy name that parses supplies the footprint when the canonical field is missing
+        boolean hasAnnual = toNumber(record.child("annualEmissions").getValue()) != null;
+        for (String legacy : SurveyRecord.LEGACY_ANNUAL_FIELDS) {
+            if (hasAnnual || !record.hasChild(legacy)) continue;
+            Object number = toNumber(record.child(legacy).getValue());
+            if (number != null) {
+                updates.put(path + "annualEmissions", number);
+                hasAnnual = true;
+            }
+        }
+        boolean hasLegacy = false;
+        for (String legacy : SurveyRecord.LEGACY_ANNUAL_FIELDS) {
+            if (!record.hasChild(legacy)) continue;
+            if (hasAnnual) updates.put(path + legacy, null);
+            else hasLegacy = true;
+        }
+
+        if (clean && !hasLegacy) {
+            updates.put(path + "schemaVersion", SurveyRecord.SCHEMA_VERSION);
+        } else {
+            Log.w(TAG, "Left unparsable fields in " + path);
+        }
+        return updates.size() > before;
+    }
+
+    /** Numeric value of a stored field: the number itself, parsed text, or null when neither. Never logs. */
+    static Object toNumber(Object value) {
+        if (value instanceof Number) return value;
+        if (!(value instanceof String)) return null;
+        String text = ((String) value).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            try {
+                double parsed = Double.parseDouble(text);
+                return Double.isNaN(parsed) || Double.isInfinite(parsed) ? null : parsed;
+            } catch (NumberFormatException e2) {
+                return null;   // readers call this per record; the migration logs what it leaves
+            }
+        }
+    }
+
+    private void advance(String categoryName, long records, int pageMigrated, Runnable next) {
+        processed += records;
+        migrated += pageMigrated;
+        listener.onProgress(categoryName, processed, migrated, recordsPerSecond());
+        next.run();
+    }
+
+    private double recordsPerSecond() {
+        long elapsed = SystemClock.elapsedRealtime() - startTime;
+        return elapsed > 0 ? processed * 1000.0 / elapsed : 0;
+    }
+}
@@ -54,6 +54,10 @@ public class SignIn extends AppCompatActivity {
                     mAuth.signInWithEmailAndPassword(email, password)
                             .addOnCompleteListener(SignIn.this, task -> {
                                 if (task.isSuccessful()) {
+                                    // Warm the main screens' data; it runs once Main1 has drawn
+                                    String uid = mAuth.getCurrentUser().getUid();
+                                    Prefetch.start(SignIn.this, uid);
+
                                     // Sign-in success, navigate to the main screen
                                     Intent intent = new Intent(SignIn.this, Main1.class); // Redirect to Main1 activity
                                     startActivity(intent);
@@ -0,0 +1,213 @@
+package com.example.carbonfootprint;
+
+import android.os.SystemClock;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Coalesces one-off reads of the same database path.
+ *
+ * {@link #read} is a drop-in for {@code addListenerForSingleValueEvent}: while a read of a path
+ * is in flight, further reads of it join that read instead of starting another, and every
+ * waiter gets the same snapshot. A result is then reused for {@link #getTtlMillis()} (a couple
+ * of seconds, enough for screens opening together, short enough never to look stale).
+ * Every write to the database calls {@link #invalidate} so a read right after it is never
+ * answered from before it; {@link FirebaseKeyValueStore} does so for its writes, and the
+ * screens and jobs that write directly for theirs. Errors are shared but never reused.
+ *
+ * {@link #deduplicatedCount()} is the number of reads answered without a network call of
+ * their own. Call from the main thread; Firebase delivers its callbacks there too.
+ */
+public final class SingleFlight {
+
+    public static final long DEFAULT_TTL_MILLIS = 2000;
+
+    private static final String TAG = "SingleFlight";
+    private static final int SWEEP_SIZE = 64;
+    private static final SingleFlight INSTANCE = new SingleFlight(SystemClock::elapsedRealtime);
+
+    // Seams for tests: the time reuse is measured in, and how a network read is started
+    interface Clock {
+        long now();
+    }
+
+    interface Fetch {
+        void start(ValueEventListener flight);
+    }
+
+    // A network read and the listeners waiting for it
+    private final class Flight implements ValueEventListener {
+        final String path;
+        final List<ValueEventListener> waiters = new ArrayList<>();
+        boolean invalidated;
+
+        Flight(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            finished();
+            if (!invalidated && ttlMillis > 0) {
+                recent.put(path, new Result(snapshot, clock.now()));
+            }
+            for (ValueEventListener waiter : waiters) {
+                waiter.onDataChange(snapshot);
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            finished();
+            for (ValueEventListener waiter : waiters) {
+                waiter.onCancelled(error);
+            }
+        }
+
+        // A newer read may have replaced this one after an invalidation
+        private void finished() {
+            if (inFlight.get(path) == this) inFlight.remove(path);
+        }
+    }
+
+    private static final class Result {
+        final DataSnapshot snapshot;
+        final long at;
+
+        Result(DataSnapshot snapshot, long at) {
+            this.snapshot = snapshot;
+            this.at = at;
+        }
+    }
+
+    private final Clock clock;
+    private final Map<String, Flight> inFlight = new HashMap<>();
+    private final Map<String, Result> recent = new HashMap<>();
+
+    private long ttlMillis = DEFAULT_TTL_MILLIS;
+    private long requests;
+    private long networkReads;
+
+    SingleFlight(Clock clock) {
+        this.clock = clock;
+    }
+
+    public static SingleFlight get() {
+        return INSTANCE;
+    }
+
+    /** Delivers {@code ref}'s value to {@code listener} once, sharing a concurrent or recent read. */
+    public void read(DatabaseReference ref, ValueEventListener listener) {
+        read(key(ref), listener, ref::addListenerForSingleValueEvent);
+    }
+
+    void read(String path, ValueEventListener listener, Fetch fetch) {
+        requests++;
+
+        Result result = recent.get(path);
+        if (result != null) {
+            if (clock.now() - result.at <= ttlMillis) {
+                deduplicated(path);
+                listener.onDataChange(result.snapshot);
+                return;
+            }
+            recent.remove(path);
+        }
+
+        // A read started before a write may answer from before it, so it is not joined
+        Flight flight = inFlight.get(path);
+        if (flight != null && !flight.invalidated) {
+            deduplicated(path);
+            flight.waiters.add(listener);
+            return;
+        }
+
+        if (recent.size() > SWEEP_SIZE) sweep();
+        flight = new Flight(path);
+        flight.waiters.add(listener);
+        inFlight.put(path, flight);
+        networkReads++;
+        fetch.start(flight);
+    }
+
+    /**
+     * Forgets results for {@code path} (root-relative, e.g. {@code "summary/abc"}), everything
+     * under it and everything above it. Reads already in flight still answer their waiters but
+     * are neither joined nor kept; the next read of the path starts a new one.
+     */
+    public void invalidate(String path) {
+        String written = normalize(path);
+        for (Iterator<String> it = recent.keySet().iterator(); it.hasNext(); ) {
+            if (related(it.next(), written)) it.remove();
+        }
+        for (Flight flight : inFlight.values()) {
+            if (related(flight.path, written)) flight.invalidated = true;
+        }
+    }
+
+    /** As {@link #invalidate(String)}, for the path of {@code ref}. */
+    public void invalidate(DatabaseReference ref) {
+        invalidate(key(ref));
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /** 0 turns reuse off; in-flight reads are still shared. */
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        if (ttlMillis <= 0) recent.clear();
+    }
+
+    public long requestCount() {
+        return requests;
+    }
+
+    public long networkReadCount() {
+        return networkReads;
+    }
+
+    /** Reads served by another read in flight or a recent result. */
+    public long deduplicatedCount() {
+        return requests - networkReads;
+    }
+
+    private void deduplicated(String path) {
+        // Runs on every shared read, so the string is only built when someone is listening
+        if (!Log.isLoggable(TAG, Log.DEBUG)) return;
+        Log.d(TAG, "Shared read of " + path + " (" + deduplicatedCount() + " of " + requests + " deduplicated)");
+    }
+
+    private void sweep() {
+        long now = clock.now();
+        for (Iterator<Result> it = recent.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().at > ttlMillis) it.remove();
+        }
+    }
+
+    private static String key(DatabaseReference ref) {
+        return normalize(ref.getPath().toString());
+    }
+
+    private static String normalize(String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') start++;
+        while (end > start && path.charAt(end - 1) == '/') end--;
+        return path.substring(start, end);
+    }
+
+    private static boolean related(String a, String b) {
+        return a.equals(b) || a.isEmpty() || b.isEmpty() || a.startsWith(b + "/") || b.startsWith(a + "/");
+    }
+}
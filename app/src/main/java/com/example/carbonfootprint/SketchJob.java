@@ -0,0 +1,200 @@
+package com.example.carbonfootprint;
+
+import android.util.Base64;
+import android.util.Log;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the population {@link QuantileSketch} from every stored survey and publishes it to
+ * {@code stats/percentiles} for {@link PopulationSketch} to pick up.
+ *
+ * The uid keyspace is cut into shards by first character. Each shard pages through its key
+ * range of {@code surveys/home|travel|food|others} with a {@link SurveyPager}, sums every user's categories into a total,
+ * and turns its users into a partial sketch; partials are merged as shards finish. Only users
+ * with all four categories count towards the total, so a half-finished survey does not pull
+ * the total percentiles down, while each category still counts everyone who answered it. A user's
+ * categories all fall in the same shard, so per-user state never outlives one shard, and up
+ * to {@code parallelism} shards are read at once.
+ *
+ * Nothing in the app starts this job: it reads every user's surveys, which is an operator's
+ * task like {@link RecalculationJob}, not something each phone should repeat. Run it once a
+ * day from a build signed in with an account that can read {@code surveys} and write
+ * {@code stats}, with {@code new SketchJob(root, FactorCatalog.get(context), DEFAULT_PAGE_SIZE,
+ * DEFAULT_PARALLELISM, listener).start()}; to try it against the emulator, pass a root from a
+ * {@code FirebaseDatabase} that had {@code useEmulator} called on it. Clients pick up a new
+ * sketch within a day through {@link PopulationSketch#syncIfDue}.
+ */
+public class SketchJob {
+
+    public interface Listener {
+        void onShardDone(int shardsDone, int shards, long users);
+        void onPublished(long users);
+        void onError(String message);
+    }
+
+    private static final String TAG = "SketchJob";
+    public static final int DEFAULT_PAGE_SIZE = 500;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    // Shard i covers keys from bound(i - 1) up to bound(i); the first and last are open-ended
+    private static final String BOUNDS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int SHARDS = BOUNDS.length() + 1;
+
+    private final DatabaseReference rootRef;
+    private final EmissionEngine engine;
+    private final int pageSize;
+    private final int parallelism;
+    private final Listener listener;
+
+    private final QuantileSketch.Builder merged = new QuantileSketch.Builder();
+    private int nextShard;
+    private int shardsDone;
+    private long users;
+    private final List<Shard> running = new ArrayList<>();
+    private boolean failed;
+
+    public SketchJob(DatabaseReference rootRef, EmissionEngine engine, int pageSize, int parallelism,
+                     Listener listener) {
+        this.rootRef = rootRef;
+        this.engine = engine;
+        this.pageSize = pageSize;
+        this.parallelism = parallelism;
+        this.listener = listener;
+    }
+
+    public void start() {
+        nextShard = 0;
+        shardsDone = 0;
+        users = 0;
+        failed = false;
+        running.clear();
+        for (int i = 0; i < parallelism && nextShard < SHARDS; i++) {
+            startShard();
+        }
+    }
+
+    /** Stops after the pages in flight; nothing is published. */
+    public void cancel() {
+        for (Shard shard : running) shard.pager.cancel();
+        running.clear();
+    }
+
+    private void startShard() {
+        Shard shard = new Shard(nextShard++);
+        running.add(shard);
+        shard.pager.start();
+    }
+
+    // Callbacks all arrive on the main thread, so shards share the job's state without locks
+    private void shardDone(Shard shard) {
+        running.remove(shard);
+        merged.merge(shard.partial);
+        users += shard.users;
+        shardsDone++;
+        listener.onShardDone(shardsDone, SHARDS, users);
+
+        if (nextShard < SHARDS) {
+            startShard();
+        } else if (shardsDone == SHARDS) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        long builtAt = System.currentTimeMillis();
+        Map<String, Object> update = new HashMap<>();
+        update.put("blob", Base64.encodeToString(merged.toBytes(builtAt), Base64.NO_WRAP));
+        update.put("builtAt", builtAt);
+        update.put("users", users);
+        rootRef.child("stats").child("percentiles").updateChildren(update)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Published sketch of " + users + " users");
+                    listener.onPublished(users);
+                })
+                .addOnFailureListener(e -> listener.onError("Publish failed: " + e.getMessage()));
+    }
+
+    // The database orders integer-like keys ("0".."9") ahead of every string, so a bare digit
+    // bound would sit in front of the whole string keyspace: the digit shards would come back
+    // empty and every digit-led uid would land in the shard ending at "A". The '!' keeps each
+    // bound a string, and it sorts below every character a uid uses.
+    private static String bound(int index) {
+        return BOUNDS.charAt(index) + "!";
+    }
+
+    private void fail(String message) {
+        if (failed) return;
+        failed = true;
+        cancel();
+        listener.onError(message);
+    }
+
+    private final class Shard implements SurveyPager.Pages {
+        final SurveyPager pager;
+        final QuantileSketch.Builder partial = new QuantileSketch.Builder();
+        final Map<String, double[]> annual = new HashMap<>();
+        final int[] answers = new int[EmissionEngine.MAX_QUESTIONS];
+        long users;
+
+        Shard(int index) {
+            String from = index == 0 ? null : bound(index - 1);
+            String until = index == SHARDS - 1 ? null : bound(index);
+            pager = new SurveyPager(rootRef.child("surveys"), pageSize, this).range(from, until);
+        }
+
+        @Override
+        public void onPage(int category, DataSnapshot page, Runnable next) {
+            for (DataSnapshot record : page.getChildren()) {
+                String uid = record.getKey();
+                double[] user = annual.get(uid);
+                if (user == null) {
+                    user = new double[EmissionEngine.CATEGORY_COUNT];
+                    Arrays.fill(user, Double.NaN);   // NaN: no survey in that category
+                    annual.put(uid, user);
+                }
+                Double stored = SurveyRecord.readStoredAnnual(record);
+                if (stored == null) {
+                    SurveyRecord.readAnswers(category, record, answers);
+                    stored = EmissionEngine.toAnnualTons(engine.weeklyEmissions(category, answers));
+                }
+                user[category] = stored;
+            }
+            next.run();
+        }
+
+        @Override
+        public void onDone() {
+            finish();
+        }
+
+        @Override
+        public void onError(String message) {
+            fail(message);
+        }
+
+        void finish() {
+            for (double[] user : annual.values()) {
+                double total = 0;
+                boolean complete = true;
+                for (int c = 0; c < user.length; c++) {
+                    if (Double.isNaN(user[c])) {
+                        complete = false;
+                        continue;
+                    }
+                    partial.add(c, user[c]);
+                    total += user[c];
+                }
+                if (complete) partial.add(QuantileSketch.TOTAL, total);
+            }
+            users = annual.size();
+            annual.clear();
+            shardDone(this);
+        }
+    }
+}
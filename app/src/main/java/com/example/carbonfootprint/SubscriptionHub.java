@@ -0,0 +1,138 @@
+package com.example.carbonfootprint;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * App-wide multiplexer for realtime value listeners.
+ *
+ * Every database path gets at most one Firebase {@link ValueEventListener}, however many
+ * screens watch it; each snapshot is fanned out to all of the path's observers, and the
+ * Firebase listener is removed when the last observer leaves. A late observer receives the
+ * latest snapshot immediately instead of waiting for the next change. With
+ * {@link #observe(LifecycleOwner, DatabaseReference, Observer)} a screen is subscribed only
+ * while it is started, so activities stacked behind the current one hold no listeners.
+ *
+ * {@link #liveListenerCount()} is the number of Firebase listeners attached right now; it
+ * should fall back to the number of visible screens' paths, never grow with navigation.
+ * Call from the main thread.
+ */
+public final class SubscriptionHub {
+
+    public interface Observer {
+        void onValue(@NonNull DataSnapshot snapshot);
+        void onError(@NonNull DatabaseError error);
+    }
+
+    private static final String TAG = "SubscriptionHub";
+    private static final SubscriptionHub INSTANCE = new SubscriptionHub();
+
+    // One per watched path, alive while it has observers
+    private static final class Channel implements ValueEventListener {
+        final DatabaseReference ref;
+        final List<Observer> observers = new ArrayList<>();
+        DataSnapshot latest;
+
+        Channel(DatabaseReference ref) {
+            this.ref = ref;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            latest = snapshot;
+            // Copy so an observer may unsubscribe from its callback
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.onValue(snapshot);
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            Log.e(TAG, "Listener on " + ref.getPath() + " cancelled: " + error.getMessage());
+            for (Observer observer : new ArrayList<>(observers)) {
+                observer.onError(error);
+            }
+        }
+    }
+
+    private final Map<String, Channel> channels = new HashMap<>();
+
+    private SubscriptionHub() {}
+
+    public static SubscriptionHub get() {
+        return INSTANCE;
+    }
+
+    /** Subscribes {@code observer} to {@code ref} while {@code owner} is started. */
+    public void observe(LifecycleOwner owner, DatabaseReference ref, Observer observer) {
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onStart(@NonNull LifecycleOwner source) {
+                subscribe(ref, observer);
+            }
+
+            @Override
+            public void onStop(@NonNull LifecycleOwner source) {
+                unsubscribe(ref, observer);
+            }
+
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner source) {
+                source.getLifecycle().removeObserver(this);
+            }
+        });
+    }
+
+    /** Adds {@code observer} to {@code ref}, attaching the Firebase listener if it is the first. */
+    public void subscribe(DatabaseReference ref, Observer observer) {
+        String key = ref.toString();
+        Channel channel = channels.get(key);
+        if (channel == null) {
+            channel = new Channel(ref);
+            channels.put(key, channel);
+            ref.addValueEventListener(channel);
+            Log.d(TAG, "Attached " + ref.getPath() + ", " + channels.size() + " live");
+        }
+        if (channel.observers.contains(observer)) return;
+        channel.observers.add(observer);
+        if (channel.latest != null) {
+            observer.onValue(channel.latest);
+        }
+    }
+
+    /** Removes {@code observer}, detaching the Firebase listener when no one else watches {@code ref}. */
+    public void unsubscribe(DatabaseReference ref, Observer observer) {
+        String key = ref.toString();
+        Channel channel = channels.get(key);
+        if (channel == null || !channel.observers.remove(observer)) return;
+        if (channel.observers.isEmpty()) {
+            ref.removeEventListener(channel);
+            channels.remove(key);
+            Log.d(TAG, "Detached " + ref.getPath() + ", " + channels.size() + " live");
+        }
+    }
+
+    /** Firebase listeners currently attached through the hub. */
+    public int liveListenerCount() {
+        return channels.size();
+    }
+
+    /** Observers across all paths. */
+    public int observerCount() {
+        int count = 0;
+        for (Channel channel : channels.values()) {
+            count += channel.observers.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,230 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ServerValue;
+import com.google.firebase.database.ValueEventListener;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Append-only history of survey submissions, with monthly and yearly rollups.
+ *
+ * <pre>
+ * history/{uid}/entries/{pushId}               one immutable submission: SurveyRecord fields + category
+ * history/{uid}/monthly/{yyyy-MM}/{category}   HistoryRollup
+ * history/{uid}/yearly/{yyyy}/{category}       HistoryRollup
+ * </pre>
+ *
+ * {@link #submission} builds a single multi-path update from the database root that writes the
+ * current record at {@code surveys/{category}/{uid}} and its {@link FootprintSummary}, appends
+ * the entry and bumps both rollups with server-side increments, so a submission is never lost
+ * and readers only ever need the small rollup nodes. {@link #compact} later drops raw entries past the retention period; their
+ * numbers already live in the rollups.
+ *
+ * {@link #loadMonth} reads the rollups behind the dashboard's month view. Jobs that rescore the
+ * current record ({@link RecalculationJob}, {@link RegionSwitch}) move its rollups' {@code latest}
+ * along with {@link #putRescored}; counts and sums keep the values as they were submitted.
+ */
+public final class SurveyHistory {
+
+    public static final int DEFAULT_RETENTION_DAYS = 365;
+
+    static final String NODE = "history";
+
+    private static final String TAG = "SurveyHistory";
+    private static final String PREFS_NAME = "survey_history";
+    private static final String KEY_RETENTION_DAYS = "retention_days";
+    private static final String KEY_LAST_COMPACTION = "last_compaction";
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int COMPACT_PAGE = 200;
+
+    /** How far back {@link #loadMonth} looks for a category's last submission. */
+    static final int MONTHS_LOOKED_BACK = 12;
+
+    public interface MonthListener {
+        /** Per category, the footprint of the newest submission up to the month; NaN when none. */
+        void onMonth(double[] latest);
+    }
+
+    private SurveyHistory() {}
+
+    /**
+     * Update for {@code rootRef.updateChildren} that saves {@code record} and records it in the
+     * history. {@code previousAnnual} is the category's last annual total, for the summary's
+     * total delta; see {@link FootprintSummary#put}.
+     */
+    public static Map<String, Object> submission(DatabaseReference rootRef, String uid, int category,
+                                                 SurveyRecord record, double previousAnnual) {
+        String categoryName = EmissionEngine.CATEGORY_NAMES[category];
+        Map<String, Object> update = new HashMap<>();
+
+        // Current record; updateChildren keeps imported summaries next to it
+        String current = "surveys/" + categoryName + "/" + uid + "/";
+        for (Map.Entry<String, Object> field : record.toUpdate(category).entrySet()) {
+            update.put(current + field.getKey(), field.getValue());
+        }
+
+        FootprintSummary.put(update, uid, category, record.annualEmissions, record.answers, previousAnnual);
+
+        String history = "history/" + uid + "/";
+        String key = rootRef.child("history").child(uid).child("entries").push().getKey();
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("category", categoryName);
+        entry.put("answers", record.answers);
+        entry.put("weeklyEmissions", record.weeklyEmissions);
+        entry.put("annualEmissions", record.annualEmissions);
+        entry.put("catalogVersion", record.catalogVersion);
+        entry.put("gridRegion", record.gridRegion);
+        entry.put("timestamp", record.timestamp);
+        update.put(history + "entries/" + key, entry);
+
+        addToRollup(update, history + "monthly/" + monthKey(record.timestamp) + "/" + categoryName, record);
+        addToRollup(update, history + "yearly/" + yearKey(record.timestamp) + "/" + categoryName, record);
+        return update;
+    }
+
+    private static void addToRollup(Map<String, Object> update, String path, SurveyRecord record) {
+        update.put(path + "/submissions", ServerValue.increment(1));
+        update.put(path + "/annualSum", ServerValue.increment(record.annualEmissions));
+        update.put(path + "/latest", record.annualEmissions);
+        update.put(path + "/latestAt", record.timestamp);
+    }
+
+    /**
+     * Adds the rescored footprint of {@code uid}'s current record, submitted at {@code timestamp},
+     * to {@code update} as the {@code latest} of its month and year rollups. The current record is
+     * the category's newest submission, so it is the latest of both periods.
+     */
+    static void putRescored(Map<String, Object> update, String uid, int category, long timestamp, double annual) {
+        String history = "history/" + uid + "/";
+        String categoryName = EmissionEngine.CATEGORY_NAMES[category];
+        for (String rollup : new String[] {"monthly/" + monthKey(timestamp), "yearly/" + yearKey(timestamp)}) {
+            update.put(history + rollup + "/" + categoryName + "/latest", annual);
+            update.put(history + rollup + "/" + categoryName + "/latestAt", timestamp);
+        }
+    }
+
+    /**
+     * Reads the last {@link #MONTHS_LOOKED_BACK} monthly rollups up to the month containing
+     * {@code millis} in one query and reports each category's newest submission among them.
+     */
+    public static void loadMonth(DatabaseReference rootRef, String uid, long millis, MonthListener listener) {
+        rootRef.child("history").child(uid).child("monthly")
+                .orderByKey().endAt(monthKey(millis)).limitToLast(MONTHS_LOOKED_BACK)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot months) {
+                        double[] latest = new double[EmissionEngine.CATEGORY_COUNT];
+                        Arrays.fill(latest, Double.NaN);
+                        // Months come oldest first, so newer rollups overwrite older ones
+                        for (DataSnapshot month : months.getChildren()) {
+                            for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+                                HistoryRollup rollup = month.child(EmissionEngine.CATEGORY_NAMES[c])
+                                        .getValue(HistoryRollup.class);
+                                if (rollup != null) latest[c] = rollup.latest;
+                            }
+                        }
+                        listener.onMonth(latest);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Month rollups unavailable: " + error.getMessage());
+                    }
+                });
+    }
+
+    /** Rollup key of the month containing {@code millis}, in local time ("2024-03"). */
+    public static String monthKey(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        return String.format(Locale.ROOT, "%04d-%02d",
+                calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    /** Rollup key of the year containing {@code millis}, in local time ("2024"). */
+    public static String yearKey(long millis) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(millis);
+        return String.format(Locale.ROOT, "%04d", calendar.get(Calendar.YEAR));
+    }
+
+    public static int retentionDays(Context context) {
+        return prefs(context).getInt(KEY_RETENTION_DAYS, DEFAULT_RETENTION_DAYS);
+    }
+
+    public static void setRetentionDays(Context context, int days) {
+        prefs(context).edit().putInt(KEY_RETENTION_DAYS, days).apply();
+    }
+
+    /**
+     * Drops the user's raw entries older than the retention period, at most once a day.
+     * Each dropped entry is counted as {@code compacted} in its month's and year's rollup.
+     */
+    public static void compactIfDue(Context context, DatabaseReference rootRef, String uid) {
+        SharedPreferences prefs = prefs(context);
+        long now = System.currentTimeMillis();
+        if (now - prefs.getLong(KEY_LAST_COMPACTION, 0) < DAY_MILLIS) return;
+        prefs.edit().putLong(KEY_LAST_COMPACTION, now).apply();
+        compact(rootRef, uid, now - retentionDays(context) * DAY_MILLIS);
+    }
+
+    /** Drops entries with a timestamp before {@code cutoff}, one page per write. */
+    public static void compact(DatabaseReference rootRef, String uid, long cutoff) {
+        rootRef.child("history").child(uid).child("entries")
+                .orderByChild("timestamp").endAt(cutoff).limitToFirst(COMPACT_PAGE)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot page) {
+                        if (!page.hasChildren()) return;
+
+                        String history = "history/" + uid + "/";
+                        Map<String, Object> update = new HashMap<>();
+                        Map<String, Integer> counts = new HashMap<>();
+                        for (DataSnapshot entry : page.getChildren()) {
+                            Long timestamp = entry.child("timestamp").getValue(Long.class);
+                            String category = entry.child("category").getValue(String.class);
+                            update.put(history + "entries/" + entry.getKey(), null);
+                            if (timestamp == null || category == null) continue;
+                            count(counts, "monthly/" + monthKey(timestamp) + "/" + category);
+                            count(counts, "yearly/" + yearKey(timestamp) + "/" + category);
+                        }
+                        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                            update.put(history + count.getKey() + "/compacted", ServerValue.increment(count.getValue()));
+                        }
+
+                        int dropped = (int) page.getChildrenCount();
+                        SingleFlight.get().invalidate(NODE + "/" + uid);
+                        rootRef.updateChildren(update)
+                                .addOnSuccessListener(aVoid -> {
+                                    Log.d(TAG, "Compacted " + dropped + " entries");
+                                    if (dropped == COMPACT_PAGE) compact(rootRef, uid, cutoff);
+                                })
+                                .addOnFailureListener(e -> Log.e(TAG, "Compaction failed: " + e.getMessage()));
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Compaction read failed: " + error.getMessage());
+                    }
+                });
+    }
+
+    private static void count(Map<String, Integer> counts, String rollup) {
+        Integer count = counts.get(rollup);
+        counts.put(rollup, count == null ? 1 : count + 1);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.carbonfootprint;
+
+/**
+ * Answer labels and stored field names of the survey screens, in {@link EmissionEngine}
+ * question/option order.
+ *
+ * Survey records store each answer as the RadioButton text, so anything that rescored
+ * records away from the screens (bulk jobs, analytics) needs to turn those labels back
+ * into option ordinals. Labels must be kept in sync with the survey layouts.
+ */
+public final class SurveyLabels {
+
+    // Labels per [category][question][option]; null for SeekBar questions stored as numbers
+    static final String[][][] LABELS = {
+            {   // Home
+                    null,
+                    {"Studio (no bedroom)", "1", "2", "3+"},
+                    {"Gas boiler", "Gas condenser", "Oil", "Electricity", "Ground source heat pump"},
+                    {"Yes", "No", "Not sure"},
+                    {"Always", "Most of the time", "Rarely", "Never"},
+                    {"Less than 2 times per week", "3–4 times per week", "5+ times per week"},
+                    {"Morning (6–10)", "Daytime (10–16)", "Evening (16–22)", "Overnight (22–6)"}
+            },
+            {   // Travel
+                    {"I don't drive", "1–20 km", "21–50 km", "51+ km"},
+                    {"Walk", "Bicycle", "Public transport", "Motorcycle", "Car"},
+                    {"Electric", "Hybrid", "Petrol", "Diesel", "I don’t own a vehicle"},
+                    {"0", "1–2", "3–5", "6+"},
+                    {"Always", "Sometimes", "Rarely", "Never"},
+                    {"Never", "Occasionally", "Weekly", "Daily"},
+                    {"Yes", "Sometimes", "No"}
+            },
+            {   // Food
+                    {"Never", "1–2 times", "3–4 times", "5+ times"},
+                    {"0 days", "1–2 days", "3–5 days", "6–7 days"},
+                    {"Local markets", "Supermarkets", "Imported food stores", "Online grocery"},
+                    {"Always", "Sometimes", "Rarely", "Never"},
+                    {"Never", "1–2 times", "3–5 times", "More than 5 times"},
+                    {"None", "A little (1–2 small items)", "Some (about 1 grocery bag)", "A lot (multiple bags)"},
+                    {"Always", "Sometimes", "Rarely", "Never"}
+            },
+            {   // Others
+                    null,
+                    {"Yes", "No", "Sometimes"},
+                    {"Rarely (A few times a year)", "Monthly", "Weekly", "Very frequently"},
+                    {"Always", "Often", "Sometimes", "Never"},
+                    {"Always", "Often", "Sometimes", "Never"},
+                    {"Yes", "Planning to", "NO"},
+                    {"Donate", "Recycle", "Throw away", "Sale"}
+            }
+    };
+
+    // Record field holding each answer
+    static final String[][] ANSWER_FIELDS = {
+            {"householdCount", "bedrooms", "heatingSystem", "renewableElectricity", "appliancesUsage", "laundryFrequency", "laundryTime"},
+            {"distance", "transport", "vehicleType", "flights", "carpool", "rideHailing", "routePlanning"},
+            {"meatFrequency", "vegetarianDays", "foodPurchase", "organicProduce", "eatOutFrequency", "foodWaste", "reusableContainers"},
+            {"screenHours", "ecoBrands", "shoppingFrequency", "recycling", "plasticUsage", "composting", "disposalMethod"}
+    };
+
+    // Record field holding each per-question emission; null where the record or question has none
+    static final String[][] EMISSION_FIELDS = {
+            {"householdEmission", "bedroomsEmission", "heatingEmission", "renewableEmission", "appliancesEmission", "laundryEmission", null},
+            {"distanceEmission", "transportEmission", "vehicleTypeEmission", "flightsEmission", "carpoolEmission", "rideHailingEmission", "routePlanningEmission"},
+            {"meatEmission", "vegetarianEmission", "purchaseEmission", "organicEmission", "eatOutEmission", "wasteEmission", "reusableEmission"},
+            null
+    };
+
+    // Short question names for suggestions such as "Switch heating system to ..."
+    static final String[][] QUESTION_TITLES = {
+            {"household size", "bedrooms", "heating system", "renewable electricity", "switching off appliances", "laundry", "laundry time"},
+            {"weekly driving", "main transport", "vehicle type", "flights", "carpooling", "ride-hailing", "route planning"},
+            {"meat meals", "vegetarian days", "where you buy food", "organic produce", "eating out", "food waste", "reusable containers"},
+            {"screen time", "eco-friendly brands", "shopping frequency", "recycling", "single-use plastic", "composting", "disposal of old items"}
+    };
+
+    // Stored value of option 0 for the numeric (SeekBar) questions: household count starts at 1
+    private static final int[] NUMERIC_BASE = {1, 0, 0, 0};
+
+    private SurveyLabels() {}
+
+    /**
+     * Option ordinal of a stored answer, or {@link EmissionEngine#UNANSWERED} when the value
+     * is missing or does not match any label.
+     */
+    public static int ordinalOf(int category, int question, Object stored) {
+        if (stored instanceof Number) {
+            // SeekBar values beyond the factor table (older builds allowed more) map to its last option
+            int ordinal = ((Number) stored).intValue() - NUMERIC_BASE[category];
+            return Math.min(ordinal, EmissionEngine.getDefault().optionCount(category, question) - 1);
+        }
+        String[] labels = LABELS[category][question];
+        if (labels == null || !(stored instanceof String)) {
+            return EmissionEngine.UNANSWERED;
+        }
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equals(stored)) return i;
+        }
+        return EmissionEngine.UNANSWERED;
+    }
+
+    /** Whether a question is something the user can act on; household size and bedrooms are not. */
+    public static boolean isChangeable(int category, int question) {
+        return category != EmissionEngine.HOME
+                || (question != EmissionEngine.HOME_HOUSEHOLD && question != EmissionEngine.HOME_BEDROOMS);
+    }
+
+    public static String questionTitle(int category, int question) {
+        return QUESTION_TITLES[category][question];
+    }
+
+    /** Display label of an option; numeric questions render the stored number. */
+    public static String labelOf(int category, int question, int ordinal) {
+        if (ordinal < 0) return "Not answered";
+        String[] labels = LABELS[category][question];
+        if (labels == null) return String.valueOf(ordinal + NUMERIC_BASE[category]);
+        return labels[Math.min(ordinal, labels.length - 1)];
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.carbonfootprint;
+
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+/**
+ * Walks {@code surveys/home|travel|food|others} in key order one page at a time, for the jobs
+ * that visit every stored survey ({@link RecalculationJob}, {@link SchemaMigration},
+ * {@link CohortLoader}, {@link SketchJob}).
+ *
+ * Each page is handed to {@link Pages#onPage} together with a continuation; the next page is
+ * only read once the handler runs it, typically after the page's writes committed, so a
+ * single page of snapshots is alive at a time. A page shorter than the page size ends its
+ * category without another read. A pager can be limited to a key range and, when given
+ * shared preferences, checkpoints the last handed-over key so a new run for the same
+ * version resumes after it.
+ */
+final class SurveyPager {
+
+    interface Pages {
+        /** Handles a non-empty page of {@code category}; runs {@code next} to continue. */
+        void onPage(int category, DataSnapshot page, Runnable next);
+        void onDone();
+        void onError(String message);
+    }
+
+    private static final String TAG = "SurveyPager";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_CATEGORY = "category";
+    private static final String KEY_LAST_KEY = "last_key";
+
+    private final DatabaseReference surveysRef;
+    private final int pageSize;
+    private final Pages pages;
+
+    private String from;    // inclusive, null for the start of the keyspace
+    private String until;   // exclusive, null for its end
+    private SharedPreferences checkpoint;
+    private int version;
+
+    private int category;
+    private String lastKey;
+    private volatile boolean cancelled;
+
+    SurveyPager(DatabaseReference surveysRef, int pageSize, Pages pages) {
+        this.surveysRef = surveysRef;
+        this.pageSize = pageSize;
+        this.pages = pages;
+    }
+
+    /** Limits every category to keys from {@code from} (inclusive) up to {@code until} (exclusive). */
+    SurveyPager range(String from, String until) {
+        this.from = from;
+        this.until = until;
+        return this;
+    }
+
+    /** Checkpoints progress in {@code prefs}; a checkpoint of another {@code version} is discarded. */
+    SurveyPager resumable(SharedPreferences prefs, int version) {
+        this.checkpoint = prefs;
+        this.version = version;
+        return this;
+    }
+
+    void start() {
+        category = EmissionEngine.HOME;
+        lastKey = null;
+        if (checkpoint != null) {
+            if (checkpoint.getInt(KEY_VERSION, -1) == version) {
+                category = checkpoint.getInt(KEY_CATEGORY, EmissionEngine.HOME);
+                lastKey = checkpoint.getString(KEY_LAST_KEY, null);
+                Log.d(TAG, "Resuming at " + category + "/" + lastKey);
+            } else {
+                saveCheckpoint();
+            }
+        }
+        cancelled = false;
+        fetchPage();
+    }
+
+    /** Stops before the next page; the checkpoint keeps the last completed one. */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void fetchPage() {
+        if (cancelled) return;
+        if (category >= EmissionEngine.CATEGORY_COUNT) {
+            if (checkpoint != null) checkpoint.edit().clear().apply();
+            pages.onDone();
+            return;
+        }
+
+        Query query = surveysRef.child(EmissionEngine.CATEGORY_NAMES[category]).orderByKey();
+        if (lastKey != null) {
+            query = query.startAfter(lastKey);
+        } else if (from != null) {
+            query = query.startAt(from);
+        }
+        if (until != null) query = query.endBefore(until);
+        query.limitToFirst(pageSize).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot page) {
+                processPage(page);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                pages.onError("Read failed: " + error.getMessage());
+            }
+        });
+    }
+
+    private void processPage(DataSnapshot page) {
+        if (!page.hasChildren()) {
+            nextCategory();
+            return;
+        }
+        String pageLastKey = null;
+        for (DataSnapshot record : page.getChildren()) pageLastKey = record.getKey();
+        boolean last = page.getChildrenCount() < pageSize;
+        String nextKey = pageLastKey;
+        pages.onPage(category, page, () -> {
+            if (last) {
+                nextCategory();
+            } else {
+                lastKey = nextKey;
+                saveCheckpoint();
+                fetchPage();
+            }
+        });
+    }
+
+    private void nextCategory() {
+        category++;
+        lastKey = null;
+        saveCheckpoint();
+        fetchPage();
+    }
+
+    private void saveCheckpoint() {
+        if (checkpoint == null) return;
+        checkpoint.edit()
+                .putInt(KEY_VERSION, version)
+                .putInt(KEY_CATEGORY, category)
+                .putString(KEY_LAST_KEY, lastKey)
+                .apply();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.carbonfootprint;
+
+import com.google.firebase.database.DataSnapshot;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One survey submission as stored under {@code surveys/{category}/{uid}}.
+ *
+ * Answers are kept as a single {@link AnswerCodec} value; labels and per-question emissions
+ * are resolved locally from {@link SurveyLabels} and the factor catalog when displayed.
+ * Every write goes through {@link #toUpdate}, which produces the canonical schema
+ * ({@link #SCHEMA_VERSION}): numbers stored as numbers and the footprint only under
+ * {@code annualEmissions}. Older records are brought in line by {@link SchemaMigration}.
+ */
+public class SurveyRecord {
+
+    /** Database node the records live under, relative to the root. */
+    static final String NODE = "surveys";
+
+    /** Version of the field layout written by {@link #toUpdate}. */
+    public static final int SCHEMA_VERSION = 1;
+
+    /** Names the annual footprint was stored under before {@code annualEmissions}. */
+    static final String[] LEGACY_ANNUAL_FIELDS = {"footprint", "carbon_footprint", "home_footprint"};
+
+    public long answers;             // AnswerCodec-packed option ordinals
+    public double weeklyEmissions;   // kg CO₂e/week
+    public double annualEmissions;   // metric tons CO₂e/year
+    public int catalogVersion;       // factor catalog the emissions were computed with
+    public String gridRegion;        // GridIntensity region the electricity was scored on
+    public long timestamp = System.currentTimeMillis();
+    public int schemaVersion = SCHEMA_VERSION;
+
+    public SurveyRecord() {}  // Required for Firebase
+
+    public SurveyRecord(long answers, double weeklyEmissions, double annualEmissions, int catalogVersion,
+                        String gridRegion) {
+        this.answers = answers;
+        this.weeklyEmissions = weeklyEmissions;
+        this.annualEmissions = annualEmissions;
+        this.catalogVersion = catalogVersion;
+        this.gridRegion = gridRegion;
+    }
+
+    /**
+     * Fields of this record for {@code updateChildren} on {@code surveys/{category}/{uid}}.
+     * Unlike {@code setValue} this keeps sibling children such as an imported meter summary;
+     * the legacy per-answer and footprint fields are cleared as {@link RecalculationJob} and
+     * {@link SchemaMigration} do.
+     */
+    Map<String, Object> toUpdate(int category) {
+        Map<String, Object> update = new HashMap<>();
+        String[] answerFields = SurveyLabels.ANSWER_FIELDS[category];
+        String[] emissionFields = SurveyLabels.EMISSION_FIELDS[category];
+        for (int q = 0; q < answerFields.length; q++) {
+            update.put(answerFields[q], null);
+            if (emissionFields != null && emissionFields[q] != null) {
+                update.put(emissionFields[q], null);
+            }
+        }
+        for (String legacy : LEGACY_ANNUAL_FIELDS) {
+            update.put(legacy, null);
+        }
+        update.put("answers", answers);
+        update.put("weeklyEmissions", weeklyEmissions);
+        update.put("annualEmissions", annualEmissions);
+        update.put("catalogVersion", catalogVersion);
+        update.put("gridRegion", gridRegion);
+        update.put("timestamp", timestamp);
+        update.put("schemaVersion", schemaVersion);
+        return update;
+    }
+
+    /** Whether a stored record is stamped with the current {@link #SCHEMA_VERSION}. */
+    static boolean isCanonical(DataSnapshot record) {
+        Long version = record.child("schemaVersion").getValue(Long.class);
+        return version != null && version >= SCHEMA_VERSION;
+    }
+
+    /** Whether a stored record already uses the packed answer encoding. */
+    static boolean isPacked(DataSnapshot record) {
+        return record.hasChild("answers");
+    }
+
+    /**
+     * Annual footprint of a stored record in t CO₂e, 0 when it has none. Records not yet
+     * stamped by {@link SchemaMigration} may keep it under a legacy name or as text, so for
+     * those the legacy names are probed too.
+     */
+    static double readAnnual(DataSnapshot record) {
+        Double annual = readStoredAnnual(record);
+        return annual != null ? annual : 0;
+    }
+
+    /** Like {@link #readAnnual}, but null when the record has no readable footprint. */
+    static Double readStoredAnnual(DataSnapshot record) {
+        if (isCanonical(record)) return record.child("annualEmissions").getValue(Double.class);
+        Object annual = SchemaMigration.toNumber(record.child("annualEmissions").getValue());
+        for (int i = 0; annual == null && i < LEGACY_ANNUAL_FIELDS.length; i++) {
+            annual = SchemaMigration.toNumber(record.child(LEGACY_ANNUAL_FIELDS[i]).getValue());
+        }
+        return annual != null ? ((Number) annual).doubleValue() : null;
+    }
+
+    /** As {@link #readAnnual(DataSnapshot)}, for a record read through a {@link KeyValueStore}. */
+    static double readAnnual(Map<?, ?> record) {
+        Object version = record.get("schemaVersion");
+        Object annual = record.get("annualEmissions");
+        if (version instanceof Number && ((Number) version).intValue() >= SCHEMA_VERSION) {
+            return annual instanceof Number ? ((Number) annual).doubleValue() : 0;
+        }
+        annual = SchemaMigration.toNumber(annual);
+        for (int i = 0; annual == null && i < LEGACY_ANNUAL_FIELDS.length; i++) {
+            annual = SchemaMigration.toNumber(record.get(LEGACY_ANNUAL_FIELDS[i]));
+        }
+        return annual != null ? ((Number) annual).doubleValue() : 0;
+    }
+
+    /** Region a stored record was scored for; records from before regions used the reference grid. */
+    static String readRegion(DataSnapshot record) {
+        String region = record.child("gridRegion").getValue(String.class);
+        return region != null ? region : GridIntensity.REFERENCE;
+    }
+
+    /**
+     * Reads a stored record's answer ordinals into {@code out}, decoding the packed value when
+     * present and falling back to the legacy label fields for records written before packing.
+     */
+    static void readAnswers(int category, DataSnapshot record, int[] out) {
+        Long packed = record.child("answers").getValue(Long.class);
+        if (packed != null) {
+            AnswerCodec.decode(category, packed, out);
+            return;
+        }
+        String[] fields = SurveyLabels.ANSWER_FIELDS[category];
+        for (int q = 0; q < fields.length; q++) {
+            out[q] = SurveyLabels.ordinalOf(category, q, record.child(fields[q]).getValue());
+        }
+    }
+
+    /** As {@link #readAnswers(int, DataSnapshot, int[])}, for a record read through a {@link KeyValueStore}. */
+    static void readAnswers(int category, Map<?, ?> record, int[] out) {
+        Object packed = record.get("answers");
+        if (packed instanceof Number) {
+            AnswerCodec.decode(category, ((Number) packed).longValue(), out);
+            return;
+        }
+        String[] fields = SurveyLabels.ANSWER_FIELDS[category];
+        for (int q = 0; q < fields.length; q++) {
+            out[q] = SurveyLabels.ordinalOf(category, q, record.get(fields[q]));
+        }
+    }
+}
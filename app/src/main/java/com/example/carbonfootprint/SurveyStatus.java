@@ -0,0 +1,102 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LifecycleOwner;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+
+/**
+ * Whether a user has finished the survey, from {@code users/{uid}/survey_completed}.
+ *
+ * The flag is mirrored in shared preferences per uid, so the screens that branch on it decide
+ * from local state. {@link #watch} keeps the mirror in step through the {@link SubscriptionHub}
+ * while a screen is started; {@link #get} only goes to the network when nothing is cached yet.
+ */
+public final class SurveyStatus {
+
+    public interface Callback {
+        void onStatus(boolean completed);
+    }
+
+    static final String KEY = "survey_completed";
+
+    private static final String TAG = "SurveyStatus";
+    private static final String PREFS_NAME = "survey_status";
+
+    private SurveyStatus() {}
+
+    /** Cached flag, or null when this device has never seen it for {@code uid}. */
+    public static Boolean cached(Context context, String uid) {
+        SharedPreferences prefs = prefs(context);
+        return prefs.contains(uid) ? prefs.getBoolean(uid, false) : null;
+    }
+
+    /**
+     * Calls back with the flag: synchronously from the cache when it is there, otherwise after
+     * one read. A failed read reports false and caches nothing.
+     */
+    public static void get(Context context, String uid, Callback callback) {
+        Boolean cached = cached(context, uid);
+        if (cached != null) {
+            callback.onStatus(cached);
+            return;
+        }
+        Context app = context.getApplicationContext();
+        SingleFlight.get().read(ref(uid), new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                callback.onStatus(store(app, uid, snapshot));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Survey status unavailable: " + error.getMessage());
+                callback.onStatus(false);
+            }
+        });
+    }
+
+    /** Refreshes the cached flag from the database while {@code owner} is started. */
+    public static void watch(LifecycleOwner owner, Context context, String uid) {
+        Context app = context.getApplicationContext();
+        SubscriptionHub.get().observe(owner, ref(uid), new SubscriptionHub.Observer() {
+            @Override
+            public void onValue(@NonNull DataSnapshot snapshot) {
+                store(app, uid, snapshot);
+            }
+
+            @Override
+            public void onError(@NonNull DatabaseError error) {
+                Log.e(TAG, "Survey status listener failed: " + error.getMessage());
+            }
+        });
+    }
+
+    /** Records completion locally right away and in the database. */
+    public static void markCompleted(Context context, String uid) {
+        prefs(context).edit().putBoolean(uid, true).apply();
+        SingleFlight.get().invalidate(ref(uid));
+        ref(uid).setValue(true);
+    }
+
+    private static boolean store(Context context, String uid, DataSnapshot snapshot) {
+        Boolean value = snapshot.getValue(Boolean.class);
+        boolean completed = value != null && value;
+        prefs(context).edit().putBoolean(uid, completed).apply();
+        return completed;
+    }
+
+    private static DatabaseReference ref(String uid) {
+        return FirebaseDatabase.getInstance().getReference("users").child(uid).child(KEY);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
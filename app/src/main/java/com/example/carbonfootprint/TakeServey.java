@@ -7,11 +7,6 @@ import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.cardview.widget.CardView;
 import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.FirebaseDatabase;
-import com.google.firebase.database.ValueEventListener;
 
 public class TakeServey extends AppCompatActivity {
 
@@ -21,31 +16,17 @@ public class TakeServey extends AppCompatActivity {
         EdgeToEdge.enable(this);
         setContentView(R.layout.activity_takeservey);
 
-        // Initialize Firebase
-        FirebaseDatabase database = FirebaseDatabase.getInstance();
         FirebaseAuth mAuth = FirebaseAuth.getInstance();
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
-        DatabaseReference userRef = database.getReference("users").child(userId);
 
-        // Check if survey is already completed
-        userRef.child("survey_completed").addListenerForSingleValueEvent(
-                new ValueEventListener() {
-                    @Override
-                    public void onDataChange(DataSnapshot snapshot) {
-                        if (snapshot.exists() && snapshot.getValue(Boolean.class)) {
-                            // Survey completed - redirect to Overall Dashboard
-                            startActivity(new Intent(TakeServey.this, Overall.class));
-                            finish();
-                        }
-                    }
-
-                    @Override
-                    public void onCancelled(DatabaseError error) {
-                        // Do nothing - stay on survey screen
-                    }
-                }
-        );
+        // Already completed - redirect to Overall Dashboard; usually answered from the cache Main1 filled
+        SurveyStatus.get(this, userId, completed -> {
+            if (completed && !isFinishing()) {
+                startActivity(new Intent(TakeServey.this, Overall.class));
+                finish();
+            }
+        });
 
         // Home card click
         CardView homeCard = findViewById(R.id.homeCard);
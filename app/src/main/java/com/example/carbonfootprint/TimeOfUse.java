@@ -0,0 +1,267 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Hour-by-hour shape of grid carbon intensity, for scoring when electricity is used.
+ *
+ * Profiles ship as {@code assets/grid_hourly.txt}: 24 relative values per day of the week,
+ * scaled to a weekly mean of 1 so they multiply the annual figure from {@link GridIntensity}.
+ * Each profile is kept only as prefix sums in one flat array: over the week (Monday 00:00
+ * first, laid out twice so windows may wrap past Sunday midnight) and over the average day
+ * (also twice, for windows past midnight). The mean intensity of any window is then two
+ * reads and a division, and the lookups never allocate, so they can run on every answer change.
+ *
+ * Regions without a profile fall back from subdivision to country, then to {@link #FLAT}. The
+ * asset's profile named {@link #FLAT_NAME} is that same profile: its regions map to
+ * {@link #FLAT}, and loading fails unless its values are all equal.
+ */
+public final class TimeOfUse {
+
+    public static final int HOURS_PER_DAY = 24;
+    public static final int HOURS_PER_WEEK = 7 * HOURS_PER_DAY;
+
+    /** Profile index for regions with no known shape: every hour weighs the same. */
+    public static final int FLAT = 0;
+
+    /** Name of {@link #FLAT}; a profile of this name in the asset lists regions that use it. */
+    static final String FLAT_NAME = "flat";
+
+    // Laundry and dishwasher windows in HOME_LAUNDRY_TIME option order: morning, daytime, evening, overnight
+    static final int[] LAUNDRY_START = {6, 10, 16, 22};
+    static final int[] LAUNDRY_HOURS = {4, 6, 6, 8};
+
+    private static final String TAG = "TimeOfUse";
+    private static final String FILE_NAME = "grid_hourly.txt";
+    private static final int WEEK_STRIDE = 2 * HOURS_PER_WEEK + 1;
+    private static final int DAY_STRIDE = 2 * HOURS_PER_DAY + 1;
+
+    private static volatile TimeOfUse current;
+
+    private final String[] regions;      // sorted
+    private final int[] regionProfile;
+    private final String[] profileNames;
+    private final double[] weekPrefix;   // [profile * WEEK_STRIDE + hourOfWeek]
+    private final double[] dayPrefix;    // [profile * DAY_STRIDE + hourOfDay]
+
+    private TimeOfUse(String[] regions, int[] regionProfile, String[] profileNames,
+                      double[] weekPrefix, double[] dayPrefix) {
+        this.regions = regions;
+        this.regionProfile = regionProfile;
+        this.profileNames = profileNames;
+        this.weekPrefix = weekPrefix;
+        this.dayPrefix = dayPrefix;
+    }
+
+    /** Shared profiles, read from the bundled asset on first use. */
+    public static TimeOfUse get(Context context) {
+        TimeOfUse profiles = current;
+        if (profiles == null) {
+            synchronized (TimeOfUse.class) {
+                if (current == null) {
+                    try (Reader in = new InputStreamReader(
+                            context.getApplicationContext().getAssets().open(FILE_NAME), "UTF-8")) {
+                        current = read(in);
+                    } catch (IOException e) {
+                        // Without profiles every hour scores at the daily mean
+                        Log.e(TAG, "Hourly profiles unreadable: " + e.getMessage());
+                        current = build(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+                    }
+                }
+                profiles = current;
+            }
+        }
+        return profiles;
+    }
+
+    /** Profile of {@code region}: its own, else its country's, else {@link #FLAT}. */
+    public int profileOf(String region) {
+        if (region == null) return FLAT;
+        String code = region.trim().toUpperCase(Locale.ROOT);
+        int index = Arrays.binarySearch(regions, code);
+        if (index < 0) {
+            int dash = code.indexOf('-');
+            if (dash > 0) index = Arrays.binarySearch(regions, code.substring(0, dash));
+        }
+        return index >= 0 ? regionProfile[index] : FLAT;
+    }
+
+    public String profileName(int profile) {
+        return profileNames[profile];
+    }
+
+    /**
+     * Mean intensity of a daily habit from {@code startHour} for {@code hours} (1..24), averaged
+     * over the days of the week, relative to the weekly mean. A window may run past midnight.
+     */
+    public double windowScale(int profile, int startHour, int hours) {
+        int base = profile * DAY_STRIDE + startHour;
+        return (dayPrefix[base + hours] - dayPrefix[base]) / hours;
+    }
+
+    /**
+     * Mean intensity from {@code hourOfWeek} (0 = Monday 00:00) for {@code hours} (1..168),
+     * relative to the weekly mean. A window may run past Sunday midnight.
+     */
+    public double hourScale(int profile, int hourOfWeek, int hours) {
+        int base = profile * WEEK_STRIDE + hourOfWeek;
+        return (weekPrefix[base + hours] - weekPrefix[base]) / hours;
+    }
+
+    /**
+     * Start, as an hour of the week, of the cleanest {@code hours}-long run beginning within
+     * {@code horizon} hours of {@code fromHourOfWeek}. Earlier starts win ties.
+     */
+    public int cleanestStart(int profile, int fromHourOfWeek, int hours, int horizon) {
+        int base = profile * WEEK_STRIDE;
+        int best = fromHourOfWeek;
+        double bestSum = Double.MAX_VALUE;
+        for (int i = 0; i < horizon; i++) {
+            int start = (fromHourOfWeek + i) % HOURS_PER_WEEK;
+            double sum = weekPrefix[base + start + hours] - weekPrefix[base + start];
+            if (sum < bestSum) {
+                bestSum = sum;
+                best = start;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Factor on laundry emissions for the {@code HOME_LAUNDRY_TIME} answer in {@code region};
+     * 1 when unanswered.
+     */
+    public double laundryScale(String region, int option) {
+        if (option < 0) return 1;
+        int o = Math.min(option, LAUNDRY_START.length - 1);
+        return windowScale(profileOf(region), LAUNDRY_START[o], LAUNDRY_HOURS[o]);
+    }
+
+    static TimeOfUse read(Reader source) throws IOException {
+        BufferedReader reader = new BufferedReader(source);
+        List<String> names = new ArrayList<>();
+        List<List<double[]>> days = new ArrayList<>();
+        List<String> regionCodes = new ArrayList<>();
+        List<Integer> regionProfiles = new ArrayList<>();
+
+        String line;
+        int lineNumber = 0;
+        boolean flat = false;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            if (line.startsWith("@profile")) {
+                if (parts.length < 2) throw new IOException("Unnamed profile on line " + lineNumber);
+                if (names.contains(parts[1])) throw new IOException("Profile " + parts[1] + " defined twice");
+                // The flat profile's values are only checked; its regions share FLAT
+                flat = parts[1].equals(FLAT_NAME);
+                names.add(parts[1]);
+                days.add(new ArrayList<>());
+                for (int i = 2; i < parts.length; i++) {
+                    String code = parts[i].toUpperCase(Locale.ROOT);
+                    if (regionCodes.contains(code)) throw new IOException("Region " + code + " in two profiles");
+                    regionCodes.add(code);
+                    regionProfiles.add(flat ? FLAT : names.size()); // FLAT is profile 0
+                }
+                continue;
+            }
+            if (names.isEmpty()) throw new IOException("Values before any profile on line " + lineNumber);
+            if (parts.length != HOURS_PER_DAY) {
+                throw new IOException("Expected " + HOURS_PER_DAY + " values on line " + lineNumber);
+            }
+            double[] hours = new double[HOURS_PER_DAY];
+            for (int h = 0; h < HOURS_PER_DAY; h++) {
+                try {
+                    hours[h] = Double.parseDouble(parts[h]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad value on line " + lineNumber + ": " + parts[h]);
+                }
+                if (!(hours[h] > 0)) throw new IOException("Values must be positive on line " + lineNumber);
+                if (flat && hours[h] != hours[0]) {
+                    throw new IOException("Profile " + FLAT_NAME + " must be constant, line " + lineNumber);
+                }
+            }
+            days.get(days.size() - 1).add(hours);
+        }
+        for (int p = 0; p < names.size(); p++) {
+            // One line for every day, weekday plus weekend, or Monday..Sunday
+            int lines = days.get(p).size();
+            if (lines != 1 && lines != 2 && lines != 7) {
+                throw new IOException("Profile " + names.get(p) + " needs 1, 2 or 7 days, has " + lines);
+            }
+        }
+
+        // Drop the flat profile and renumber the ones after it; its regions already point at FLAT
+        int flatIndex = names.indexOf(FLAT_NAME);
+        if (flatIndex >= 0) {
+            names.remove(flatIndex);
+            days.remove(flatIndex);
+            for (int i = 0; i < regionProfiles.size(); i++) {
+                if (regionProfiles.get(i) > flatIndex + 1) regionProfiles.set(i, regionProfiles.get(i) - 1);
+            }
+        }
+        return build(names, days, regionCodes, regionProfiles);
+    }
+
+    private static TimeOfUse build(List<String> names, List<List<double[]>> days,
+                                   List<String> regionCodes, List<Integer> regionProfiles) {
+        int profiles = names.size() + 1;
+        double[] week = new double[HOURS_PER_WEEK];
+        double[] weekPrefix = new double[profiles * WEEK_STRIDE];
+        double[] dayPrefix = new double[profiles * DAY_STRIDE];
+        String[] profileNames = new String[profiles];
+        profileNames[FLAT] = FLAT_NAME;
+
+        for (int p = 0; p < profiles; p++) {
+            if (p == FLAT) {
+                Arrays.fill(week, 1);
+            } else {
+                List<double[]> lines = days.get(p - 1);
+                profileNames[p] = names.get(p - 1);
+                for (int d = 0; d < 7; d++) {
+                    double[] day = lines.size() == 7 ? lines.get(d)
+                            : lines.size() == 2 && d >= 5 ? lines.get(1) : lines.get(0);
+                    System.arraycopy(day, 0, week, d * HOURS_PER_DAY, HOURS_PER_DAY);
+                }
+            }
+
+            double total = 0;
+            for (double value : week) total += value;
+            double toMean = HOURS_PER_WEEK / total;
+
+            int weekBase = p * WEEK_STRIDE;
+            for (int h = 0; h < 2 * HOURS_PER_WEEK; h++) {
+                weekPrefix[weekBase + h + 1] = weekPrefix[weekBase + h] + week[h % HOURS_PER_WEEK] * toMean;
+            }
+            int dayBase = p * DAY_STRIDE;
+            for (int h = 0; h < 2 * HOURS_PER_DAY; h++) {
+                double sum = 0;
+                for (int d = 0; d < 7; d++) sum += week[d * HOURS_PER_DAY + h % HOURS_PER_DAY];
+                dayPrefix[dayBase + h + 1] = dayPrefix[dayBase + h] + sum / 7 * toMean;
+            }
+        }
+
+        // Regions sorted for binary search, each pointing at its profile
+        Integer[] order = new Integer[regionCodes.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> regionCodes.get(a).compareTo(regionCodes.get(b)));
+        String[] regions = new String[order.length];
+        int[] regionProfile = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            regions[i] = regionCodes.get(order[i]);
+            regionProfile[i] = regionProfiles.get(order[i]);
+        }
+        return new TimeOfUse(regions, regionProfile, profileNames, weekPrefix, dayPrefix);
+    }
+}
@@ -2,14 +2,27 @@ package com.example.carbonfootprint;
 
 import androidx.appcompat.app.AppCompatActivity;
 import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.widget.Button;
-import android.widget.RadioButton;
 import android.widget.RadioGroup;
+import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.ValueEventListener;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class TravelServey extends AppCompatActivity {
 
@@ -22,6 +35,21 @@ public class TravelServey extends AppCompatActivity {
             flightsGroup, carpoolGroup, rideHailingGroup, routePlanningGroup;
     private Button submitButton;
 
+    // Live running total
+    private LiveScore liveScore;
+    private TextView liveTotalText;
+    private final StringBuilder liveText = new StringBuilder();
+
+    // Stored annual total of this category, for the summary's total delta; NaN until read
+    private double previousAnnual = Double.NaN;
+
+    // Trip-log import, shown next to the survey estimate
+    private TextView tripsText;
+    private TripSummary tripSummary;
+    private final DecimalFormat kmFormat = new DecimalFormat("#,##0.#");
+    private final ActivityResultLauncher<String[]> tripPicker =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importTrips);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -41,6 +69,31 @@ public class TravelServey extends AppCompatActivity {
         routePlanningGroup = findViewById(R.id.routePlanningGroup);
         submitButton = findViewById(R.id.submitButton);
 
+        // Live running total, updated on every answer change
+        liveTotalText = findViewById(R.id.liveTotalText);
+        liveScore = new LiveScore(FactorCatalog.get(this, GridIntensity.region(this)), EmissionEngine.TRAVEL);
+        bindLiveScore(distanceGroup, EmissionEngine.TRAVEL_DISTANCE);
+        bindLiveScore(transportGroup, EmissionEngine.TRAVEL_TRANSPORT);
+        bindLiveScore(vehicleTypeGroup, EmissionEngine.TRAVEL_VEHICLE_TYPE);
+        bindLiveScore(flightsGroup, EmissionEngine.TRAVEL_FLIGHTS);
+        bindLiveScore(carpoolGroup, EmissionEngine.TRAVEL_CARPOOL);
+        bindLiveScore(rideHailingGroup, EmissionEngine.TRAVEL_RIDE_HAILING);
+        bindLiveScore(routePlanningGroup, EmissionEngine.TRAVEL_ROUTE_PLANNING);
+
+        findViewById(R.id.addFlightsButton).setOnClickListener(v ->
+                startActivity(new Intent(this, FlightsActivity.class)));
+
+        // Trip-log import
+        tripsText = findViewById(R.id.tripsText);
+        findViewById(R.id.importTripsButton).setOnClickListener(v ->
+                tripPicker.launch(new String[]{"application/gpx+xml", "application/xml", "text/*",
+                        "application/octet-stream"}));
+        loadTripSummary();
+
+        // Previous total, read while the survey is filled in so saving needs no extra round trip
+        FootprintSummary.loadPrevious(FirebaseKeyValueStore.get(), mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous", EmissionEngine.TRAVEL, annual -> previousAnnual = annual);
+
         // Submit button click listener
         submitButton.setOnClickListener(v -> {
             if (validateSelections()) {
@@ -61,75 +114,94 @@ public class TravelServey extends AppCompatActivity {
                 routePlanningGroup.getCheckedRadioButtonId() != -1;
     }
 
-    // Emission calculation helper methods
-    private double getDistanceEmission() {
-        int selectedId = distanceGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.noDriveOption) return 0.0;
-        if (selectedId == R.id.lowDistanceOption) return 2.0;
-        if (selectedId == R.id.mediumDistanceOption) return 5.0;
-        if (selectedId == R.id.highDistanceOption) return 12.0;
-        return 0;
+    // Position of the checked button inside its group, matching the EmissionEngine option order
+    private int getSelectedOption(RadioGroup group) {
+        int selectedId = group.getCheckedRadioButtonId();
+        if (selectedId == -1) return EmissionEngine.UNANSWERED;
+        return group.indexOfChild(group.findViewById(selectedId));
     }
 
-    private double getTransportEmission() {
-        int selectedId = transportGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.walkOption) return 0.0;
-        if (selectedId == R.id.bicycleOption) return 0.1;
-        if (selectedId == R.id.publicTransportOption) return 1.2;
-        if (selectedId == R.id.motorcycleOption) return 3.5;
-        if (selectedId == R.id.carOption) return 8.0;
-        return 0;
+    private void bindLiveScore(RadioGroup group, int question) {
+        group.setOnCheckedChangeListener((g, checkedId) -> onAnswerChanged(question, getSelectedOption(g)));
     }
 
-    private double getVehicleTypeEmission() {
-        int selectedId = vehicleTypeGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.electricOption) return 3.0;
-        if (selectedId == R.id.hybridOption) return 5.5;
-        if (selectedId == R.id.petrolOption) return 8.0;
-        if (selectedId == R.id.dieselOption) return 7.2;
-        if (selectedId == R.id.noVehicleOption) return 0.0;
-        return 0;
+    private void onAnswerChanged(int question, int option) {
+        double delta = liveScore.set(question, option);
+        liveScore.describe(liveText, delta);
+        liveTotalText.setText(liveText);
+        if (tripSummary != null) showTripSummary();
     }
 
-    private double getFlightsEmission() {
-        int selectedId = flightsGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.noFlightsOption) return 0.0;
-        if (selectedId == R.id.fewFlightsOption) return 2.0;
-        if (selectedId == R.id.moderateFlightsOption) return 5.0;
-        if (selectedId == R.id.manyFlightsOption) return 10.0;
-        return 0;
+    private DatabaseReference tripsRef() {
+        String userId = mAuth.getCurrentUser() != null ?
+                mAuth.getCurrentUser().getUid() : "anonymous";
+        return mDatabase.child("surveys").child("travel").child(userId).child("trips");
     }
 
-    private double getCarpoolEmission() {
-        int selectedId = carpoolGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.alwaysCarpoolOption) return 0.3;
-        if (selectedId == R.id.sometimesCarpoolOption) return 0.6;
-        if (selectedId == R.id.rarelyCarpoolOption) return 0.9;
-        if (selectedId == R.id.neverCarpoolOption) return 1.0;
-        return 0;
+    private void loadTripSummary() {
+        tripsRef().addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                TripSummary summary = snapshot.getValue(TripSummary.class);
+                if (summary != null) {
+                    tripSummary = summary;
+                    showTripSummary();
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e("Firebase", "Error loading trip summary: " + error.getMessage());
+            }
+        });
     }
 
-    private double getRideHailingEmission() {
-        int selectedId = rideHailingGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.neverRideOption) return 0.0;
-        if (selectedId == R.id.occasionallyOption) return 0.8;
-        if (selectedId == R.id.weeklyOption) return 2.5;
-        if (selectedId == R.id.dailyOption) return 6.0;
-        return 0;
+    // Parses off the main thread; only the aggregate is written, never the track points
+    private void importTrips(Uri uri) {
+        if (uri == null) return;
+        tripsText.setText("Reading trip log…");
+        ForkJoinPool.commonPool().execute(() -> {
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open file");
+                TripSummary summary = new TripImporter().parse(in);
+                runOnUiThread(() -> saveTripSummary(summary));
+            } catch (IOException e) {
+                runOnUiThread(() -> {
+                    showTripSummary();
+                    Toast.makeText(this, "Import failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
+                });
+            }
+        });
     }
 
-    private double getRoutePlanningEmission() {
-        int selectedId = routePlanningGroup.getCheckedRadioButtonId();
-        if (selectedId == R.id.yesPlanOption) return 0.9;
-        if (selectedId == R.id.sometimesPlanOption) return 1.0;
-        if (selectedId == R.id.noPlanOption) return 1.1;
-        return 0;
+    private void saveTripSummary(TripSummary summary) {
+        if (isFinishing()) return;
+        tripSummary = summary;
+        showTripSummary();
+        SingleFlight.get().invalidate(tripsRef());
+        tripsRef().setValue(summary)
+                .addOnFailureListener(e -> Toast.makeText(this, "Failed to save trips: " +
+                        e.getMessage(), Toast.LENGTH_SHORT).show());
     }
 
-    private String getSelectedRadioText(RadioGroup group) {
-        int selectedId = group.getCheckedRadioButtonId();
-        RadioButton radioButton = findViewById(selectedId);
-        return radioButton.getText().toString();
+    private void showTripSummary() {
+        if (tripSummary == null) {
+            tripsText.setText("");
+            return;
+        }
+        StringBuilder text = new StringBuilder("Measured per week: ")
+                .append(kmFormat.format(tripSummary.carKm)).append(" km car, ")
+                .append(kmFormat.format(tripSummary.publicTransportKm)).append(" km public transport, ")
+                .append(kmFormat.format(tripSummary.walkKm + tripSummary.cycleKm)).append(" km on foot or bike");
+        if (tripSummary.flightKm > 0) {
+            text.append(", ").append(kmFormat.format(tripSummary.flightKm)).append(" km flown");
+        }
+        text.append(" = ");
+        LiveScore.appendTons(text, tripSummary.annualEmissions);
+        text.append(" t CO₂e/yr (survey estimate ");
+        LiveScore.appendTons(text, liveScore.annualTons());
+        text.append(" t)");
+        tripsText.setText(text);
     }
 
     private void saveSurveyData() {
@@ -137,110 +209,36 @@ public class TravelServey extends AppCompatActivity {
         String userId = mAuth.getCurrentUser() != null ?
                 mAuth.getCurrentUser().getUid() : "anonymous";
 
-        // Get answers
-        String distance = getSelectedRadioText(distanceGroup);
-        String transport = getSelectedRadioText(transportGroup);
-        String vehicleType = getSelectedRadioText(vehicleTypeGroup);
-        String flights = getSelectedRadioText(flightsGroup);
-        String carpool = getSelectedRadioText(carpoolGroup);
-        String rideHailing = getSelectedRadioText(rideHailingGroup);
-        String routePlanning = getSelectedRadioText(routePlanningGroup);
-
-        // Calculate emissions (kg CO₂e per week)
-        double distanceEmission = getDistanceEmission();
-        double transportEmission = getTransportEmission();
-        double vehicleTypeEmission = getVehicleTypeEmission();
-        double flightsEmission = getFlightsEmission();
-        double carpoolEmission = getCarpoolEmission();
-        double rideHailingEmission = getRideHailingEmission();
-        double routePlanningEmission = getRoutePlanningEmission();
-
-        // Calculate totals
-        double weeklyEmissions = distanceEmission + transportEmission + vehicleTypeEmission +
-                flightsEmission + carpoolEmission + rideHailingEmission +
-                routePlanningEmission;
-        double annualEmissions = (weeklyEmissions * 52) / 1000; // Convert to metric tons/year
-
-        // Create survey data object with emissions
-        SurveyData surveyData = new SurveyData(
-                distance, transport, vehicleType, flights, carpool, rideHailing, routePlanning,
-                distanceEmission, transportEmission, vehicleTypeEmission,
-                flightsEmission, carpoolEmission, rideHailingEmission, routePlanningEmission,
-                weeklyEmissions, annualEmissions
-        );
-
-        // Save to Firebase
-        mDatabase.child("surveys").child("travel").child(userId)
-                .setValue(surveyData)
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful()) {
-                        // Redirect to Food Survey
-                        startActivity(new Intent(TravelServey.this, FoodSurveyActivity.class));
-                        finish();
-                    } else {
-                        Toast.makeText(this, "Failed to save: " +
-                                task.getException().getMessage(), Toast.LENGTH_SHORT).show();
-                    }
-                });
-    }
-
-    // Data model class
-    public static class SurveyData {
-        // User selections
-        public String distance;
-        public String transport;
-        public String vehicleType;
-        public String flights;
-        public String carpool;
-        public String rideHailing;
-        public String routePlanning;
-
-        // Emission values (kg CO₂e/week)
-        public double distanceEmission;
-        public double transportEmission;
-        public double vehicleTypeEmission;
-        public double flightsEmission;
-        public double carpoolEmission;
-        public double rideHailingEmission;
-        public double routePlanningEmission;
-
-        // Totals
-        public double weeklyEmissions;   // kg CO₂e/week
-        public double annualEmissions;   // metric tons CO₂e/year
-
-        public long timestamp = System.currentTimeMillis();
-
-        public SurveyData() {}  // Required for Firebase
-
-        public SurveyData(String distance, String transport, String vehicleType,
-                          String flights, String carpool, String rideHailing,
-                          String routePlanning,
-                          double distanceEmission, double transportEmission,
-                          double vehicleTypeEmission, double flightsEmission,
-                          double carpoolEmission, double rideHailingEmission,
-                          double routePlanningEmission,
-                          double weeklyEmissions, double annualEmissions) {
-            // User answers
-            this.distance = distance;
-            this.transport = transport;
-            this.vehicleType = vehicleType;
-            this.flights = flights;
-            this.carpool = carpool;
-            this.rideHailing = rideHailing;
-            this.routePlanning = routePlanning;
-
-            // Emission values
-            this.distanceEmission = distanceEmission;
-            this.transportEmission = transportEmission;
-            this.vehicleTypeEmission = vehicleTypeEmission;
-            this.flightsEmission = flightsEmission;
-            this.carpoolEmission = carpoolEmission;
-            this.rideHailingEmission = rideHailingEmission;
-            this.routePlanningEmission = routePlanningEmission;
-
-            // Totals
-            this.weeklyEmissions = weeklyEmissions;
-            this.annualEmissions = annualEmissions;
-        }
+        // Answer ordinals in EmissionEngine question order
+        int[] answers = {
+                getSelectedOption(distanceGroup),
+                getSelectedOption(transportGroup),
+                getSelectedOption(vehicleTypeGroup),
+                getSelectedOption(flightsGroup),
+                getSelectedOption(carpoolGroup),
+                getSelectedOption(rideHailingGroup),
+                getSelectedOption(routePlanningGroup)
+        };
+
+        // Calculate totals (kg CO₂e per week, metric tons per year)
+        String region = GridIntensity.region(this);
+        EmissionEngine engine = FactorCatalog.get(this, region);
+        double weeklyEmissions = engine.weeklyEmissions(EmissionEngine.TRAVEL, answers);
+        double annualEmissions = EmissionEngine.toAnnualTons(weeklyEmissions);
+
+        // Answers are stored packed; labels are resolved locally when displayed
+        SurveyRecord record = new SurveyRecord(
+                AnswerCodec.encode(EmissionEngine.TRAVEL, answers, engine.getVersion()),
+                weeklyEmissions, annualEmissions, engine.getVersion(), region);
+
+        // Queue the record and its history entry; the multi-path update keeps an imported trip summary
+        Map<String, Object> update = SurveyHistory.submission(mDatabase, userId, EmissionEngine.TRAVEL,
+                record, previousAnnual);
+        WriteQueue.get(this).enqueue(update, Double.isNaN(previousAnnual) ? userId : null);
+        FootprintRepository.get(this).applySubmission(userId, EmissionEngine.TRAVEL,
+                record.annualEmissions, record.answers);
+        // Redirect to Food Survey
+        startActivity(new Intent(TravelServey.this, FoodSurveyActivity.class));
+        finish();
     }
 }
\ No newline at end of file
@@ -0,0 +1,334 @@
+package com.example.carbonfootprint;
+
+import android.util.Xml;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Turns recorded trip logs into measured weekly travel emissions.
+ *
+ * GPX tracks are read with a pull parser, one point at a time, so file size does not matter.
+ * A trip ends at each track segment or after a gap of more than {@link #TRIP_GAP_SECONDS}.
+ * Leg distances use the haversine formula, with the previous point's cosine of latitude
+ * reused. Each trip keeps a distance-weighted speed histogram; the mode comes from its 85th
+ * percentile moving speed. Buses and cars move alike and are both counted as car.
+ *
+ * CSV logs have one trip per row with a distance column and optionally mode, duration and
+ * date columns. A named mode wins over the speed rule. Per-mode kilometres are averaged over
+ * the weeks the log covers; logs without dates count as one week.
+ */
+public final class TripImporter {
+
+    // Modes, in TripSummary field order
+    public static final int WALK = 0;
+    public static final int CYCLE = 1;
+    public static final int PUBLIC_TRANSPORT = 2;
+    public static final int CAR = 3;
+    public static final int FLIGHT = 4;
+    public static final int MODE_COUNT = 5;
+
+    // kg CO₂e per passenger-km
+    static final double[] KG_PER_KM = {0, 0, 0.06, 0.17, 0.25};
+
+    static final long TRIP_GAP_SECONDS = 20 * 60;
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    // Speed histogram: 5 km/h bins up to 400 km/h, the last bin open-ended
+    private static final double BIN_KMH = 5;
+    private static final int BINS = 80;
+    private static final double STOPPED_KMH = 1;
+
+    private final double[] modeKm = new double[MODE_COUNT];
+    private int trips;
+    private long firstSecond = Long.MAX_VALUE;
+    private long lastSecond = Long.MIN_VALUE;
+
+    // Current GPX trip
+    private final double[] speedHistogram = new double[BINS];
+    private double tripKm;
+    private boolean hasPrevious;
+    private double previousLat, previousLon, previousCosLat;
+    private long previousSecond;
+
+    /** Reads a GPX or CSV log, told apart by the first non-blank character. */
+    public TripSummary parse(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(1024);
+        int first;
+        do {
+            first = buffered.read();
+        } while (first == ' ' || first == '\n' || first == '\r' || first == '\t' || first == 0xEF
+                || first == 0xBB || first == 0xBF);  // byte order mark
+        buffered.reset();
+        if (first == '<') {
+            parseGpx(buffered);
+        } else {
+            parseCsv(buffered);
+        }
+        return summarize();
+    }
+
+    private void parseGpx(InputStream in) throws IOException {
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(in, null);
+
+            boolean inPoint = false;
+            double lat = 0, lon = 0;
+            long second = NO_TIME;
+            int event;
+            while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.START_TAG) {
+                    String name = parser.getName();
+                    if ("trkpt".equals(name) || "rtept".equals(name)) {
+                        lat = Double.parseDouble(parser.getAttributeValue(null, "lat"));
+                        lon = Double.parseDouble(parser.getAttributeValue(null, "lon"));
+                        second = NO_TIME;
+                        inPoint = true;
+                    } else if (inPoint && "time".equals(name)) {
+                        second = parseSecond(parser.nextText());
+                    } else if ("trkseg".equals(name) || "rte".equals(name)) {
+                        endTrip();
+                    }
+                } else if (event == XmlPullParser.END_TAG) {
+                    String name = parser.getName();
+                    if ("trkpt".equals(name) || "rtept".equals(name)) {
+                        addPoint(lat, lon, second);
+                        inPoint = false;
+                    }
+                }
+            }
+            endTrip();
+        } catch (XmlPullParserException | NumberFormatException | NullPointerException e) {
+            throw new IOException("Not a valid GPX file: " + e.getMessage(), e);
+        }
+    }
+
+    private void addPoint(double lat, double lon, long second) {
+        double latRad = Math.toRadians(lat);
+        double lonRad = Math.toRadians(lon);
+        double cosLat = Math.cos(latRad);
+        if (hasPrevious && second != NO_TIME && previousSecond != NO_TIME
+                && second - previousSecond > TRIP_GAP_SECONDS) {
+            endTrip();
+        }
+
+        if (hasPrevious) {
+            double sinLat = Math.sin((latRad - previousLat) / 2);
+            double sinLon = Math.sin((lonRad - previousLon) / 2);
+            double h = sinLat * sinLat + previousCosLat * cosLat * sinLon * sinLon;
+            double km = 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(Math.min(1, h)));
+            tripKm += km;
+
+            if (second != NO_TIME && previousSecond != NO_TIME && second > previousSecond) {
+                double kmh = km * 3600 / (second - previousSecond);
+                if (kmh >= STOPPED_KMH) {
+                    speedHistogram[Math.min(BINS - 1, (int) (kmh / BIN_KMH))] += km;
+                }
+            }
+        }
+        if (second != NO_TIME) {
+            firstSecond = Math.min(firstSecond, second);
+            lastSecond = Math.max(lastSecond, second);
+        }
+        hasPrevious = true;
+        previousLat = latRad;
+        previousLon = lonRad;
+        previousCosLat = cosLat;
+        previousSecond = second;
+    }
+
+    private void endTrip() {
+        if (tripKm > 0) {
+            // 85th percentile of moving speed, weighted by distance
+            double moving = 0;
+            for (double km : speedHistogram) moving += km;
+            int mode = CAR;  // no timestamps: nothing better to go on
+            if (moving > 0) {
+                double cumulative = 0;
+                int bin = 0;
+                while (bin < BINS - 1 && (cumulative += speedHistogram[bin]) < 0.85 * moving) bin++;
+                mode = classify((bin + 0.5) * BIN_KMH);
+            }
+            modeKm[mode] += tripKm;
+            trips++;
+        }
+        Arrays.fill(speedHistogram, 0);
+        tripKm = 0;
+        hasPrevious = false;
+    }
+
+    /** Mode for a typical moving speed in km/h. */
+    static int classify(double kmh) {
+        if (kmh < 8) return WALK;
+        if (kmh < 28) return CYCLE;
+        if (kmh > 250) return FLIGHT;
+        if (kmh > 130) return PUBLIC_TRANSPORT;  // sustained speeds only rail reaches
+        return CAR;
+    }
+
+    /**
+     * Mode named in a CSV cell, or -1 when it is not recognised. Matches whole words, so
+     * "IN_BUS" and "e-bike" are found but "chair" or "brunch" are not; the first word with
+     * a mode wins.
+     */
+    static int modeOf(String value) {
+        for (String word : value.toLowerCase().split("[^\\p{L}\\p{Nd}]+")) {
+            switch (word) {
+                case "walk": case "walking": case "foot": case "run": case "running": case "jog": case "jogging":
+                    return WALK;
+                case "cycle": case "cycling": case "bike": case "biking": case "bicycle": case "ebike":
+                    return CYCLE;
+                case "flight": case "flying": case "fly": case "plane": case "airplane": case "aeroplane": case "air":
+                    return FLIGHT;
+                case "bus": case "coach": case "train": case "rail": case "tram": case "metro": case "subway":
+                case "underground": case "public": case "transit":
+                    return PUBLIC_TRANSPORT;
+                case "car": case "drive": case "driving": case "taxi": case "vehicle": case "motorcycle":
+                case "motorcycling": case "motorbike":
+                    return CAR;
+                default:
+                    break;
+            }
+        }
+        return -1;
+    }
+
+    private void parseCsv(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        String header = reader.readLine();
+        if (header == null) throw new IOException("Empty file");
+
+        String separator = header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ";" : ",";
+        String[] names = header.toLowerCase().replace("\"", "").split(separator, -1);
+        int timeColumn = -1, distanceColumn = -1, modeColumn = -1, durationColumn = -1;
+        double kmPerUnit = 1;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim();
+            if (durationColumn < 0 && (name.contains("duration") || name.contains("minutes") || name.contains("(min"))) {
+                durationColumn = i;
+            } else if (distanceColumn < 0 && (name.contains("distance") || name.contains("km") || name.contains("mile"))) {
+                distanceColumn = i;
+                if (name.contains("mile")) kmPerUnit = 1.609344;
+                else if (name.contains("(m)") || name.contains("meter") || name.contains("metre")) kmPerUnit = 0.001;
+            } else if (modeColumn < 0 && (name.contains("mode") || name.contains("type") || name.contains("activity"))) {
+                modeColumn = i;
+            } else if (timeColumn < 0 && (name.contains("date") || name.contains("time") || name.contains("start"))) {
+                timeColumn = i;
+            }
+        }
+        if (distanceColumn < 0) {
+            throw new IOException("Header needs a distance column: " + header.trim());
+        }
+
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) continue;
+            String[] cells = line.replace("\"", "").split(separator, -1);
+            double km;
+            try {
+                km = Double.parseDouble(cell(cells, distanceColumn).replace(',', '.')) * kmPerUnit;
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad distance on line " + lineNumber + ": " + cell(cells, distanceColumn));
+            }
+            if (km <= 0) continue;
+
+            int mode = modeColumn >= 0 ? modeOf(cell(cells, modeColumn)) : -1;
+            if (mode < 0 && durationColumn >= 0) {
+                try {
+                    double minutes = Double.parseDouble(cell(cells, durationColumn).replace(',', '.'));
+                    if (minutes > 0) mode = classify(km * 60 / minutes);
+                } catch (NumberFormatException ignored) {
+                    // Leave the mode unknown
+                }
+            }
+            modeKm[mode < 0 ? CAR : mode] += km;
+            trips++;
+
+            if (timeColumn >= 0) {
+                long second = parseSecond(cell(cells, timeColumn));
+                if (second != NO_TIME) {
+                    firstSecond = Math.min(firstSecond, second);
+                    lastSecond = Math.max(lastSecond, second);
+                }
+            }
+        }
+    }
+
+    private static String cell(String[] cells, int column) {
+        return column < cells.length ? cells[column].trim() : "";
+    }
+
+    private TripSummary summarize() throws IOException {
+        if (trips == 0) throw new IOException("No trips found");
+
+        // Span of whole days covered, at least a week
+        double days = lastSecond >= firstSecond
+                ? Math.floor(lastSecond / 86400.0) - Math.floor(firstSecond / 86400.0) + 1
+                : 7;
+        double weeks = Math.max(1, days / 7);
+
+        double weekly = 0;
+        double[] weeklyKm = new double[MODE_COUNT];
+        for (int m = 0; m < MODE_COUNT; m++) {
+            weeklyKm[m] = modeKm[m] / weeks;
+            weekly += weeklyKm[m] * KG_PER_KM[m];
+        }
+
+        TripSummary summary = new TripSummary();
+        summary.walkKm = weeklyKm[WALK];
+        summary.cycleKm = weeklyKm[CYCLE];
+        summary.publicTransportKm = weeklyKm[PUBLIC_TRANSPORT];
+        summary.carKm = weeklyKm[CAR];
+        summary.flightKm = weeklyKm[FLIGHT];
+        summary.weeklyEmissions = weekly;
+        summary.annualEmissions = EmissionEngine.toAnnualTons(weekly);
+        summary.trips = trips;
+        summary.coveredDays = days;
+        return summary;
+    }
+
+    /**
+     * Seconds since 1970-01-01 for "yyyy-MM-ddTHH:mm:ss[.fff][Z]", the same with a space, or
+     * "dd/MM/yyyy HH:mm[:ss]"; offsets are ignored. NO_TIME when unrecognised.
+     */
+    static long parseSecond(CharSequence s) {
+        int[] fields = new int[6];
+        int count = 0;
+        int value = 0;
+        boolean inNumber = false;
+        boolean dayFirst = false;
+        int length = s.length();
+        for (int i = 0; i <= length && count < fields.length; i++) {
+            char c = i < length ? s.charAt(i) : ' ';
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                inNumber = true;
+            } else if (inNumber) {
+                if (count == 0 && c == '/') dayFirst = true;
+                fields[count++] = value;
+                value = 0;
+                inNumber = false;
+            }
+        }
+        if (count < 3) return NO_TIME;
+
+        int year = dayFirst ? fields[2] : fields[0];
+        int month = fields[1];
+        int day = dayFirst ? fields[0] : fields[2];
+        if (month < 1 || month > 12 || day < 1 || day > 31 || year < 1970) return NO_TIME;
+        return MeterImporter.daysFromCivil(year, month, day) * 86400L
+                + fields[3] * 3600L + fields[4] * 60L + fields[5];
+    }
+}
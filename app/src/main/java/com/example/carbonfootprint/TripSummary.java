@@ -0,0 +1,21 @@
+package com.example.carbonfootprint;
+
+/**
+ * Aggregate of an imported trip log, stored under {@code surveys/travel/{uid}/trips} next to
+ * the survey estimate. Distances are average kilometres per week over the covered span.
+ */
+public class TripSummary {
+
+    public double walkKm;
+    public double cycleKm;
+    public double publicTransportKm;
+    public double carKm;
+    public double flightKm;
+    public double weeklyEmissions;   // kg CO₂e/week
+    public double annualEmissions;   // metric tons CO₂e/year
+    public int trips;
+    public double coveredDays;
+    public long timestamp = System.currentTimeMillis();
+
+    public TripSummary() {}  // Required for Firebase
+}
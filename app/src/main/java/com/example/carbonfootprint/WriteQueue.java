@@ -0,0 +1,478 @@
+package com.example.carbonfootprint;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.ToNumberPolicy;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Durable write-ahead queue for the multi-path updates of survey submissions and actions.
+ *
+ * {@link #enqueue} returns at once: the update is appended to {@code write_queue.log} in app
+ * storage and the screen can move on, whatever the connection. The queue then replays its
+ * entries in order through a {@link KeyValueStore}. Consecutive entries are coalesced into one
+ * update, with later writes to a path replacing earlier ones and server-side increments of a
+ * path added together, so a backlog of a thousand actions goes out as one round trip; an entry
+ * that touches an ancestor or descendant of a path already in the batch starts the next one.
+ *
+ * Entries are numbered in order, and the numbering survives restarts. Every batch also writes
+ * the number of its last entry to {@code writeQueueMarks/{installId}} in the same update, so
+ * the server records exactly which entries it has applied. Before the first batch after a
+ * start or a failure the queue reads that mark and drops the entries it covers, so an update
+ * acknowledged just before the process died is not applied twice; the increments in it are
+ * not idempotent on their own.
+ *
+ * A failed batch is retried with exponential backoff, one entry at a time until one succeeds,
+ * so an entry the server keeps rejecting is isolated. It is never dropped: after
+ * {@link #MAX_ATTEMPTS} the queue reports itself stalled to its listeners, which tell the user,
+ * and keeps retrying at the longest delay. Regaining the connection retries immediately.
+ *
+ * Call from the main thread; file I/O, including reading the log at start-up, runs on a
+ * background thread in enqueue order.
+ */
+public final class WriteQueue {
+
+    public interface Listener {
+        /** {@code stalled} is set once an entry has been rejected {@link #MAX_ATTEMPTS} times. */
+        void onPendingChanged(int pending, boolean stalled);
+    }
+
+    static final int MAX_ATTEMPTS = 8;
+
+    private static final String TAG = "WriteQueue";
+    private static final String FILE_NAME = "write_queue.log";
+    private static final String PREFS_NAME = "write_queue";
+    private static final String KEY_INSTALL_ID = "install_id";
+    private static final String KEY_NEXT_SEQ = "next_seq";
+    static final String MARKS = "writeQueueMarks";
+    private static final long BASE_DELAY_MILLIS = 2000;
+    private static final long MAX_DELAY_MILLIS = 10 * 60 * 1000;
+
+    private static volatile WriteQueue current;
+    // Whole numbers back as Long, so packed answers survive the round trip; nulls are deletions
+    private static final Gson GSON = new GsonBuilder()
+            .serializeNulls()
+            .setObjectToNumberStrategy(ToNumberPolicy.LONG_OR_DOUBLE)
+            .create();
+
+    // One line of the log; once it lands, recomputeTotalFor asks for FootprintSummary.recomputeTotal
+    // and createProfileFor for Rewards.createProfile
+    static final class Entry {
+        long seq;
+        Map<String, Object> update;
+        String recomputeTotalFor;
+        String createProfileFor;
+    }
+
+    static final class Batch {
+        final TreeMap<String, Object> update = new TreeMap<>();
+        long lastSeq;
+        int entries;
+    }
+
+    private final File log;
+    private final SharedPreferences prefs;
+    private final String markPath;
+    private final KeyValueStore store;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService io = Executors.newSingleThreadExecutor();
+    private final Random random = new Random();
+    private final List<Entry> pending = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private final Runnable flush = this::flush;
+
+    private long nextSeq;
+    private Batch inFlight;
+    private int attempts;
+    private boolean loaded;
+    // Whether the server's mark has been read since the start or the last failure
+    private boolean checked;
+    private boolean checking;
+
+    private WriteQueue(Context context, KeyValueStore store) {
+        this.log = new File(context.getFilesDir(), FILE_NAME);
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String installId = prefs.getString(KEY_INSTALL_ID, null);
+        if (installId == null) {
+            installId = UUID.randomUUID().toString();
+            prefs.edit().putString(KEY_INSTALL_ID, installId).apply();
+        }
+        this.markPath = MARKS + "/" + installId;
+        this.nextSeq = prefs.getLong(KEY_NEXT_SEQ, 0);
+        this.store = store;
+        io.execute(() -> {
+            List<Entry> entries = load();
+            handler.post(() -> loaded(entries));
+        });
+        store.observe(".info/connected", connected -> {
+            if (Boolean.TRUE.equals(connected)) retryNow();
+        });
+    }
+
+    public static WriteQueue get(Context context) {
+        WriteQueue queue = current;
+        if (queue == null) {
+            synchronized (WriteQueue.class) {
+                if (current == null) {
+                    current = new WriteQueue(context.getApplicationContext(), FirebaseKeyValueStore.get());
+                }
+                queue = current;
+            }
+        }
+        return queue;
+    }
+
+    /** Queues a root-relative multi-path update, as for {@code updateChildren}. */
+    public void enqueue(Map<String, Object> update) {
+        enqueue(update, null, null);
+    }
+
+    /**
+     * Queues {@code update}; once it is written, the summary total of {@code recomputeTotalFor}
+     * is recomputed (see {@link FootprintSummary#put}). Pass null when no follow-up is needed.
+     */
+    public void enqueue(Map<String, Object> update, String recomputeTotalFor) {
+        enqueue(update, recomputeTotalFor, null);
+    }
+
+    /** As above; once written, {@code createProfileFor}'s profile is created if it has none. */
+    void enqueue(Map<String, Object> update, String recomputeTotalFor, String createProfileFor) {
+        Entry entry = new Entry();
+        entry.seq = nextSeq++;
+        entry.update = new HashMap<>(update);
+        entry.recomputeTotalFor = recomputeTotalFor;
+        entry.createProfileFor = createProfileFor;
+        pending.add(entry);
+
+        String line = encode(entry);
+        long next = nextSeq;
+        io.execute(() -> {
+            // Committed before the line, so numbers are never reused even once the log is empty
+            prefs.edit().putLong(KEY_NEXT_SEQ, next).commit();
+            append(line);
+        });
+        notifyListeners();
+        // Posted, so updates queued in the same frame leave together; a pending retry keeps its delay
+        if (inFlight == null && attempts == 0) {
+            handler.removeCallbacks(flush);
+            handler.post(flush);
+        }
+    }
+
+    /** Entries not yet acknowledged by the backend. */
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Whether an entry not yet acknowledged writes {@code path} (root-relative) or anything
+     * under it. Entries still in the log at start-up count once it has been read.
+     */
+    public boolean isPending(String path) {
+        String below = path + "/";
+        for (Entry entry : pending) {
+            for (String written : entry.update.keySet()) {
+                if (written.equals(path) || written.startsWith(below)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether an entry has been rejected {@link #MAX_ATTEMPTS} times and is still being retried. */
+    public boolean isStalled() {
+        return attempts >= MAX_ATTEMPTS;
+    }
+
+    /** Adds {@code listener} and tells it the current state. */
+    public void addListener(Listener listener) {
+        if (!listeners.contains(listener)) listeners.add(listener);
+        listener.onPendingChanged(pending.size(), isStalled());
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void retryNow() {
+        if (inFlight != null || pending.isEmpty()) return;
+        handler.removeCallbacks(flush);
+        handler.post(flush);
+    }
+
+    private void loaded(List<Entry> entries) {
+        loaded = true;
+        if (!entries.isEmpty()) {
+            Log.d(TAG, "Replaying " + entries.size() + " queued writes");
+            // Entries queued while the log was read came after these
+            pending.addAll(0, entries);
+            nextSeq = Math.max(nextSeq, entries.get(entries.size() - 1).seq + 1);
+            notifyListeners();
+        }
+        handler.post(flush);
+    }
+
+    private void flush() {
+        if (!loaded || inFlight != null || checking || pending.isEmpty()) return;
+        if (!checked) {
+            checkApplied();
+            return;
+        }
+        // After a failure, send entries on their own so a bad one can be found
+        Batch batch = coalesce(pending, attempts > 0 ? 1 : pending.size());
+        inFlight = batch;
+        Map<String, Object> update = new HashMap<>(batch.update);
+        update.put(markPath, batch.lastSeq);
+        store.update(update, new KeyValueStore.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                inFlight = null;
+                attempts = 0;
+                acknowledge(batch.entries);
+                Log.d(TAG, "Flushed " + batch.entries + " writes, " + pending.size() + " left");
+                handler.post(flush);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                inFlight = null;
+                checked = false;
+                attempts++;
+                Log.e(TAG, "Flush of " + batch.entries + " writes failed (attempt " + attempts + "): "
+                        + error.getMessage());
+                if (attempts == MAX_ATTEMPTS) {
+                    // Kept, not dropped: the user was told it was saved, so say it is not yet
+                    Log.e(TAG, "Write rejected " + attempts + " times, still retrying: " + batch.update.keySet());
+                    notifyListeners();
+                }
+                handler.postDelayed(flush, backoff(attempts));
+            }
+        });
+    }
+
+    // Drops the leading entries the server's mark says were applied, then resumes flushing
+    private void checkApplied() {
+        checking = true;
+        store.get(markPath, new KeyValueStore.Callback<Object>() {
+            @Override
+            public void onSuccess(Object mark) {
+                checking = false;
+                checked = true;
+                if (mark instanceof Number) {
+                    int covered = covered(pending, ((Number) mark).longValue());
+                    if (covered > 0) {
+                        Log.d(TAG, "Skipping " + covered + " writes the server already applied");
+                        acknowledge(covered);
+                    }
+                }
+                handler.post(flush);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                checking = false;
+                Log.e(TAG, "Could not read applied mark: " + error.getMessage());
+                handler.postDelayed(flush, backoff(Math.max(attempts, 1)));
+            }
+        });
+    }
+
+    private long backoff(int attempt) {
+        long delay = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(attempt - 1, 20));
+        // Full jitter keeps a fleet of devices from retrying in lockstep
+        return delay / 2 + (long) (random.nextDouble() * delay / 2);
+    }
+
+    // Removes the first entries once applied and runs their follow-ups
+    private void acknowledge(int entries) {
+        List<Entry> done = new ArrayList<>(pending.subList(0, entries));
+        pending.subList(0, entries).clear();
+        List<Entry> remaining = new ArrayList<>(pending);
+        io.execute(() -> rewrite(remaining));
+        notifyListeners();
+
+        Set<String> recompute = new LinkedHashSet<>();
+        Set<String> profiles = new LinkedHashSet<>();
+        for (Entry entry : done) {
+            if (entry.recomputeTotalFor != null) recompute.add(entry.recomputeTotalFor);
+            if (entry.createProfileFor != null) profiles.add(entry.createProfileFor);
+        }
+        for (String uid : recompute) {
+            FootprintSummary.recomputeTotal(store, uid);
+        }
+        for (String uid : profiles) {
+            Rewards.createProfile(store, uid);
+        }
+    }
+
+    // How many leading entries a mark of applied covers
+    static int covered(List<Entry> entries, long applied) {
+        int covered = 0;
+        while (covered < entries.size() && entries.get(covered).seq <= applied) covered++;
+        return covered;
+    }
+
+    // Folds the longest run of leading entries, at most limit of them, that can go out as one update
+    static Batch coalesce(List<Entry> entries, int limit) {
+        Batch batch = new Batch();
+        for (Entry entry : entries) {
+            if (batch.entries == limit || !fits(batch.update, entry.update)) break;
+            for (Map.Entry<String, Object> write : entry.update.entrySet()) {
+                String path = write.getKey();
+                Object value = write.getValue();
+                batch.update.put(path, batch.update.containsKey(path) ? combine(batch.update.get(path), value) : value);
+            }
+            batch.lastSeq = entry.seq;
+            batch.entries++;
+        }
+        return batch;
+    }
+
+    private static boolean fits(TreeMap<String, Object> batch, Map<String, Object> update) {
+        for (Map.Entry<String, Object> write : update.entrySet()) {
+            String path = write.getKey();
+            if (batch.containsKey(path)) {
+                if (!combinable(batch.get(path), write.getValue())) return false;
+                continue;
+            }
+            // updateChildren rejects a path together with one inside it
+            if (!batch.subMap(path + "/", path + "0").isEmpty()) return false;
+            for (int slash = path.indexOf('/'); slash >= 0; slash = path.indexOf('/', slash + 1)) {
+                if (batch.containsKey(path.substring(0, slash))) return false;
+            }
+        }
+        return true;
+    }
+
+    // An increment only folds into an earlier increment or number; any other write replaces
+    private static boolean combinable(Object earlier, Object later) {
+        return incrementOf(later) == null || incrementOf(earlier) != null || earlier instanceof Number;
+    }
+
+    // The single write equivalent to earlier then later, for combinable pairs
+    private static Object combine(Object earlier, Object later) {
+        Number delta = incrementOf(later);
+        if (delta == null) return later;
+        Number previous = incrementOf(earlier);
+        if (previous != null) return incrementBy(add(previous, delta));
+        return add((Number) earlier, delta);
+    }
+
+    // Whole counts such as points stay whole
+    private static Number add(Number a, Number b) {
+        if (a instanceof Long && b instanceof Long) return a.longValue() + b.longValue();
+        return a.doubleValue() + b.doubleValue();
+    }
+
+    private static Number incrementOf(Object value) {
+        if (!(value instanceof Map)) return null;
+        Object serverValue = ((Map<?, ?>) value).get(".sv");
+        if (!(serverValue instanceof Map)) return null;
+        Object delta = ((Map<?, ?>) serverValue).get("increment");
+        return delta instanceof Number ? (Number) delta : null;
+    }
+
+    // Same shape as ServerValue.increment, which is also what comes back from the log
+    private static Map<String, Object> incrementBy(Number delta) {
+        Map<String, Object> increment = new HashMap<>();
+        increment.put("increment", delta);
+        Map<String, Object> serverValue = new HashMap<>();
+        serverValue.put(".sv", increment);
+        return serverValue;
+    }
+
+    private void notifyListeners() {
+        // Copy so a listener may unregister from its callback
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onPendingChanged(pending.size(), isStalled());
+        }
+    }
+
+    static String encode(Entry entry) {
+        return GSON.toJson(entry) + "\n";
+    }
+
+    // Null for a line that holds no update; throws JsonParseException for a torn one
+    static Entry decode(String line) {
+        Entry entry = GSON.fromJson(line, Entry.class);
+        return entry == null || entry.update == null ? null : entry;
+    }
+
+    // --- log file; everything below runs on the io thread
+
+    private List<Entry> load() {
+        List<Entry> entries = new ArrayList<>();
+        if (!log.exists()) return entries;
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(log), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry;
+                try {
+                    entry = decode(line);
+                } catch (JsonParseException e) {
+                    // A line torn by a crash mid-append; it was never acknowledged to anyone
+                    Log.e(TAG, "Skipping unreadable queue entry: " + e.getMessage());
+                    continue;
+                }
+                if (entry != null) entries.add(entry);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Write queue unreadable: " + e.getMessage());
+        }
+        return entries;
+    }
+
+    private void append(String line) {
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not persist queued write: " + e.getMessage());
+        }
+    }
+
+    private void rewrite(List<Entry> remaining) {
+        if (remaining.isEmpty()) {
+            if (log.exists() && !log.delete()) Log.e(TAG, "Could not clear " + log);
+            return;
+        }
+        File temp = new File(log.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            OutputStream buffered = new BufferedOutputStream(out);
+            for (Entry entry : remaining) {
+                buffered.write(encode(entry).getBytes(StandardCharsets.UTF_8));
+            }
+            buffered.flush();
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Could not compact write queue: " + e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(log)) Log.e(TAG, "Could not replace " + log);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.carbonfootprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link AirportIndex} search over the bundled {@code airports.bin}, read from its source path,
+ * and {@link AirportIndex#compile} on small CSV extracts.
+ */
+public class AirportIndexTest {
+
+    private static final String ASSET = "src/main/assets/airports.bin";
+
+    private static final String HEADER =
+            "\"id\",\"ident\",\"type\",\"name\",\"latitude_deg\",\"longitude_deg\",\"iso_country\",\"municipality\",\"iata_code\"\n";
+
+    private static AirportIndex bundled() throws IOException {
+        try (InputStream in = new FileInputStream(ASSET)) {
+            return AirportIndex.read(in);
+        }
+    }
+
+    private static AirportIndex compile(String csv) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        AirportIndex.compile(new StringReader(csv), out);
+        return AirportIndex.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static String[] codes(AirportIndex index, int[] airports) {
+        String[] codes = new String[airports.length];
+        for (int i = 0; i < airports.length; i++) codes[i] = index.code(airports[i]);
+        return codes;
+    }
+
+    @Test
+    public void bundledListCoversMajorAirportsOnly() throws IOException {
+        // The scope is major airports with scheduled service; see the AirportIndex comment
+        AirportIndex index = bundled();
+        assertTrue(index.size() >= 100);
+        assertTrue(index.size() < 1000);
+        for (String code : new String[] {"LHR", "JFK", "HND", "SYD", "GRU", "JNB"}) {
+            assertNotEquals(code, AirportIndex.NOT_FOUND, index.resolve(code));
+        }
+    }
+
+    @Test
+    public void exactCodeComesFirst() throws IOException {
+        AirportIndex index = bundled();
+        int[] match = index.search("lhr", 5);
+        assertTrue(match.length > 0);
+        assertEquals("LHR", index.code(match[0]));
+        assertEquals("Heathrow Airport", index.name(match[0]));
+        assertEquals("London", index.city(match[0]));
+        assertEquals("GB", index.country(match[0]));
+    }
+
+    @Test
+    public void cityPrefixFindsEveryAirportUpToTheLimit() throws IOException {
+        AirportIndex index = bundled();
+        assertEquals(5, index.search("lon", 5).length);
+        assertEquals(2, index.search("lon", 2).length);
+        assertEquals(0, index.search("lon", 0).length);
+    }
+
+    @Test
+    public void searchIgnoresCaseAccentsAndPunctuation() throws IOException {
+        AirportIndex index = bundled();
+        assertEquals("GRU", index.code(index.search("São", 1)[0]));
+        assertEquals("GRU", index.code(index.search("SAO", 1)[0]));
+        assertEquals("LHR", index.code(index.search("  Heath", 1)[0]));
+    }
+
+    @Test
+    public void multiWordCityMatches() throws IOException {
+        AirportIndex index = bundled();
+        String[] found = codes(index, index.search("new y", 5));
+        assertTrue(found.length >= 2);
+        assertTrue(java.util.Arrays.asList(found).contains("JFK"));
+        assertTrue(java.util.Arrays.asList(found).contains("LGA"));
+    }
+
+    @Test
+    public void noMatch() throws IOException {
+        AirportIndex index = bundled();
+        assertEquals(0, index.search("xyzq", 5).length);
+        assertEquals(0, index.search("", 5).length);
+        assertEquals(AirportIndex.NOT_FOUND, index.resolve("   "));
+    }
+
+    @Test
+    public void resolveTakesCodesAndPickedLabels() throws IOException {
+        AirportIndex index = bundled();
+        int lhr = index.resolve("LHR");
+        assertEquals("LHR", index.code(lhr));
+        assertEquals(lhr, index.resolve(index.label(lhr)));
+        int jfk = index.resolve("jfk");
+        assertEquals(5540, index.distanceKm(lhr, jfk), 20);
+    }
+
+    @Test
+    public void compileUnescapesDoubledQuotes() throws IOException {
+        AirportIndex index = compile(HEADER
+                + "1,\"KXYZ\",\"medium_airport\",\"Bob \"\"Skip\"\" Smith Airport\",40.5,-75.25,\"US\",\"Quote, Town\",\"XYZ\"\n");
+        assertEquals(1, index.size());
+        assertEquals("Bob \"Skip\" Smith Airport", index.name(0));
+        assertEquals("Quote, Town", index.city(0));
+        assertEquals(40.5, index.latitude(0), 1e-6);
+        assertEquals(-75.25, index.longitude(0), 1e-6);
+        assertEquals("XYZ", index.code(index.search("skip", 1)[0]));
+    }
+
+    @Test
+    public void compileSkipsRowsWithoutCodeOrClosed() throws IOException {
+        AirportIndex index = compile(HEADER
+                + "1,\"A\",\"large_airport\",\"Alpha Airport\",1,2,\"AA\",\"Alpha\",\"AAA\"\n"
+                + "2,\"B\",\"small_airport\",\"Bravo Field\",1,2,\"AA\",\"Bravo\",\"\"\n"
+                + "3,\"C\",\"closed\",\"Charlie Airport\",1,2,\"AA\",\"Charlie\",\"CCC\"\n"
+                + "4,\"D\",\"heliport\",\"Delta Heliport\",1,2,\"AA\",\"Delta\",\"DDD\"\n");
+        assertEquals(1, index.size());
+        assertEquals("AAA", index.code(0));
+    }
+
+    @Test
+    public void largerAirportsRankFirst() throws IOException {
+        AirportIndex index = compile(HEADER
+                + "1,\"A\",\"small_airport\",\"Springfield Small Airport\",1,2,\"US\",\"Springfield\",\"SPA\"\n"
+                + "2,\"B\",\"large_airport\",\"Springfield Large Airport\",1,2,\"US\",\"Springfield\",\"SPB\"\n"
+                + "3,\"C\",\"medium_airport\",\"Springfield Medium Airport\",1,2,\"US\",\"Springfield\",\"SPC\"\n");
+        assertArrayEquals(new String[] {"SPB", "SPC", "SPA"}, codes(index, index.search("spring", 3)));
+        // The typed code wins over size
+        assertEquals("SPA", index.code(index.search("spa", 3)[0]));
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.carbonfootprint;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark for {@link CohortAnalytics} on a synthetic population with uniformly random
+ * answers. Run on the host JVM with
+ * {@code ./gradlew :app:compileDebugUnitTestJavaWithJavac} and then {@link #main} from the IDE.
+ * {@code dashboard} runs the four queries the Overall statistics need and should stay well
+ * under a second at a million users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class CohortAnalyticsBenchmark {
+
+    @Param({"1000000"})
+    public int users;
+
+    private CohortAnalytics analytics;
+    private CohortAnalytics.Filter gasHeating;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        Random random = new Random(42);
+        int[] answers = new int[EmissionEngine.MAX_QUESTIONS];
+        CohortAnalytics.Builder builder = new CohortAnalytics.Builder(users);
+        for (int u = 0; u < users; u++) {
+            String uid = "user" + u;
+            for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+                for (int q = 0; q < engine.questionCount(c); q++) {
+                    answers[q] = random.nextInt(engine.optionCount(c, q));
+                }
+                builder.add(uid, c, answers, EmissionEngine.toAnnualTons(engine.weeklyEmissions(c, answers)));
+            }
+        }
+        analytics = builder.build();
+        gasHeating = CohortAnalytics.Filter.where(EmissionEngine.HOME, EmissionEngine.HOME_HEATING, 0);
+    }
+
+    @Benchmark
+    public double[] heatingShares() {
+        return analytics.optionShares(EmissionEngine.HOME, EmissionEngine.HOME_HEATING, null);
+    }
+
+    @Benchmark
+    public double[] travelMeanByTransport() {
+        return analytics.meanByOption(EmissionEngine.TRAVEL, EmissionEngine.TRAVEL_TRANSPORT,
+                EmissionEngine.TRAVEL, null);
+    }
+
+    @Benchmark
+    public double[] totalPercentilesForGasHeating() {
+        return analytics.percentiles(CohortAnalytics.TOTAL, gasHeating, 0.1, 0.5, 0.9);
+    }
+
+    @Benchmark
+    public double dashboard() {
+        return analytics.optionShares(EmissionEngine.HOME, EmissionEngine.HOME_HEATING, null)[0]
+                + analytics.meanByOption(EmissionEngine.TRAVEL, EmissionEngine.TRAVEL_TRANSPORT,
+                        EmissionEngine.TRAVEL, null)[0]
+                + analytics.percentiles(CohortAnalytics.TOTAL, null, 0.5)[0]
+                + analytics.count(gasHeating);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CohortAnalyticsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.carbonfootprint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link EmissionEngine} table lookups, scoring and the grid and laundry adjustments.
+ */
+public class EmissionEngineTest {
+
+    private static final double EPS = 1e-9;
+
+    private final EmissionEngine engine = EmissionEngine.getDefault();
+
+    @Test
+    public void layoutMatchesDefaultFactors() {
+        assertEquals(EmissionEngine.DEFAULT_VERSION, engine.getVersion());
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            assertEquals(EmissionEngine.DEFAULT_FACTORS[c].length, engine.questionCount(c));
+            for (int q = 0; q < engine.questionCount(c); q++) {
+                assertEquals(EmissionEngine.DEFAULT_FACTORS[c][q].length, engine.optionCount(c, q));
+            }
+        }
+    }
+
+    @Test
+    public void factorClampsAndIgnoresUnanswered() {
+        int home = EmissionEngine.HOME, size = EmissionEngine.HOME_HOUSEHOLD;
+        assertEquals(3.5, engine.factor(home, size, 0), EPS);
+        assertEquals(0.85, engine.factor(home, size, 9), EPS);
+        assertEquals(0.85, engine.factor(home, size, 42), EPS);
+        assertEquals(0, engine.factor(home, size, EmissionEngine.UNANSWERED), EPS);
+    }
+
+    @Test
+    public void weeklyEmissionsSumsAnsweredQuestions() {
+        int[] answers = {0, 1, 2, 0, 3, 1, EmissionEngine.UNANSWERED};
+        assertEquals(3.5 + 1.5 + 5.5 + 0.0 + 1.5 + 1.0, engine.weeklyEmissions(EmissionEngine.HOME, answers), EPS);
+
+        int[] none = new int[engine.questionCount(EmissionEngine.FOOD)];
+        java.util.Arrays.fill(none, EmissionEngine.UNANSWERED);
+        assertEquals(0, engine.weeklyEmissions(EmissionEngine.FOOD, none), EPS);
+    }
+
+    @Test
+    public void batchMatchesSingleRows() {
+        int category = EmissionEngine.TRAVEL;
+        int stride = engine.questionCount(category);
+        int[] rows = {
+                0, 1, 2, 3, 0, 1, 2,
+                3, 4, 4, 0, 3, 3, 0,
+                -1, -1, 0, -1, 2, -1, 1
+        };
+        double[] weekly = new double[3];
+        engine.weeklyEmissionsBatch(category, rows, 3, weekly);
+        for (int r = 0; r < 3; r++) {
+            assertEquals(engine.weeklyEmissions(category, rows, r * stride), weekly[r], EPS);
+        }
+    }
+
+    @Test
+    public void annualTons() {
+        assertEquals(52, EmissionEngine.toAnnualTons(1000), EPS);
+        assertEquals(0, EmissionEngine.toAnnualTons(0), EPS);
+    }
+
+    @Test
+    public void gridScalesOnlyItsShare() {
+        assertSame(engine, engine.forGrid(GridIntensity.REFERENCE_KG_PER_KWH));
+
+        EmissionEngine dirty = engine.forGrid(2 * GridIntensity.REFERENCE_KG_PER_KWH);
+        int home = EmissionEngine.HOME, heating = EmissionEngine.HOME_HEATING;
+        assertEquals(engine.factor(home, heating, 0), dirty.factor(home, heating, 0), EPS);      // gas
+        assertEquals(2 * engine.factor(home, heating, 4), dirty.factor(home, heating, 4), EPS);  // heat pump
+        // Plug-in hybrid: 30 % of its factor is charging
+        int travel = EmissionEngine.TRAVEL, vehicle = EmissionEngine.TRAVEL_VEHICLE_TYPE;
+        assertEquals(1.3 * engine.factor(travel, vehicle, 1), dirty.factor(travel, vehicle, 1), EPS);
+        assertEquals(engine.factor(EmissionEngine.FOOD, EmissionEngine.FOOD_MEAT, 3),
+                dirty.factor(EmissionEngine.FOOD, EmissionEngine.FOOD_MEAT, 3), EPS);
+        assertEquals(engine.getVersion(), dirty.getVersion());
+    }
+
+    @Test
+    public void laundryScaleTouchesOnlyLaundry() {
+        assertSame(engine, engine.forLaundryScale(1));
+
+        EmissionEngine evening = engine.forLaundryScale(1.5);
+        int home = EmissionEngine.HOME;
+        assertEquals(1.5 * engine.factor(home, EmissionEngine.HOME_LAUNDRY, 2),
+                evening.factor(home, EmissionEngine.HOME_LAUNDRY, 2), EPS);
+        assertEquals(engine.factor(home, EmissionEngine.HOME_HEATING, 3),
+                evening.factor(home, EmissionEngine.HOME_HEATING, 3), EPS);
+    }
+
+    @Test
+    public void gridSensitiveCategories() {
+        assertTrue(EmissionEngine.isGridSensitive(EmissionEngine.HOME));
+        assertTrue(EmissionEngine.isGridSensitive(EmissionEngine.OTHERS));
+        assertFalse(EmissionEngine.isGridSensitive(EmissionEngine.FOOD));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongCategoryCount() {
+        new EmissionEngine(1, new double[][][] {{{1.0}}});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsQuestionWithoutOptions() {
+        new EmissionEngine(1, new double[][][] {{{1.0}}, {{}}, {{1.0}}, {{1.0}}});
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.carbonfootprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link FactorCatalog#read} on the bundled {@code factors.bin}, read from its source path,
+ * and on catalogs written by {@link FactorCatalog#write}.
+ */
+public class FactorCatalogTest {
+
+    private static final String ASSET = "src/main/assets/factors.bin";
+
+    private static byte[] bytes(EmissionEngine engine) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FactorCatalog.write(engine, out);
+        return out.toByteArray();
+    }
+
+    private static void assertSameFactors(EmissionEngine expected, EmissionEngine actual) {
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            assertEquals(expected.questionCount(c), actual.questionCount(c));
+            for (int q = 0; q < expected.questionCount(c); q++) {
+                assertEquals(expected.optionCount(c, q), actual.optionCount(c, q));
+                for (int o = 0; o < expected.optionCount(c, q); o++) {
+                    assertEquals(expected.factor(c, q, o), actual.factor(c, q, o), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bundledCatalogMatchesTheSurveyLayout() throws IOException {
+        try (InputStream in = new FileInputStream(ASSET)) {
+            EmissionEngine bundled = FactorCatalog.read(in);
+            assertEquals(EmissionEngine.DEFAULT_VERSION, bundled.getVersion());
+            assertSameFactors(EmissionEngine.getDefault(), bundled);
+        }
+    }
+
+    @Test
+    public void writeThenReadKeepsVersionAndFactors() throws IOException {
+        EmissionEngine doubled = EmissionEngine.getDefault().forGrid(2 * GridIntensity.REFERENCE_KG_PER_KWH);
+        EmissionEngine read = FactorCatalog.read(new ByteArrayInputStream(bytes(doubled)));
+        assertEquals(doubled.getVersion(), read.getVersion());
+        assertSameFactors(doubled, read);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        FactorCatalog.read(new ByteArrayInputStream("CFQS-not-factors".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormat() throws IOException {
+        byte[] catalog = bytes(EmissionEngine.getDefault());
+        catalog[5] = 2;   // low byte of the format short
+        FactorCatalog.read(new ByteArrayInputStream(catalog));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOptionCountMismatch() throws IOException {
+        double[][][] factors = new double[EmissionEngine.CATEGORY_COUNT][][];
+        for (int c = 0; c < factors.length; c++) {
+            factors[c] = EmissionEngine.DEFAULT_FACTORS[c].clone();
+        }
+        factors[EmissionEngine.FOOD][EmissionEngine.FOOD_MEAT] = new double[] {0, 1, 2, 3, 4};
+        FactorCatalog.read(new ByteArrayInputStream(bytes(new EmissionEngine(3, factors))));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedCatalog() throws IOException {
+        byte[] catalog = bytes(EmissionEngine.getDefault());
+        FactorCatalog.read(new ByteArrayInputStream(Arrays.copyOf(catalog, catalog.length - 3)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.carbonfootprint;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link FootprintSummary} against {@link InMemoryKeyValueStore}: total deltas, the total
+ * recompute, previous values and reading the node back.
+ */
+public class FootprintSummaryTest {
+
+    private static final double EPS = 1e-9;
+
+    private final InMemoryKeyValueStore store = new InMemoryKeyValueStore();
+
+    private void submit(int category, double annual, long packed, double previous) {
+        Map<String, Object> update = new HashMap<>();
+        FootprintSummary.put(update, "u1", category, annual, packed, previous);
+        store.update(update, null);
+    }
+
+    private FootprintSummary read() {
+        Object[] value = new Object[1];
+        store.get(FootprintSummary.NODE + "/u1", new KeyValueStore.Callback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                value[0] = result;
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                fail(error.getMessage());
+            }
+        });
+        return FootprintSummary.fromValue(value[0]);
+    }
+
+    @Test
+    public void totalMovesByTheDeltaToThePreviousValue() {
+        submit(EmissionEngine.HOME, 2.0, 11, 0);
+        submit(EmissionEngine.FOOD, 1.5, 12, 0);
+        submit(EmissionEngine.HOME, 1.25, 13, 2.0);
+
+        FootprintSummary summary = read();
+        assertEquals(1.25, summary.home, EPS);
+        assertEquals(1.5, summary.food, EPS);
+        assertEquals(2.75, summary.total, EPS);
+        assertEquals(Long.valueOf(13), summary.answers(EmissionEngine.HOME));
+        assertNull(summary.answers(EmissionEngine.TRAVEL));
+        assertTrue(summary.updatedAt > 0);
+    }
+
+    @Test
+    public void unknownPreviousLeavesTheTotalToTheRecompute() {
+        submit(EmissionEngine.TRAVEL, 3.0, 21, 0);
+        submit(EmissionEngine.TRAVEL, 1.0, 22, Double.NaN);
+        assertEquals(3.0, read().total, EPS);
+
+        FootprintSummary.recomputeTotal(store, "u1");
+        assertEquals(1.0, read().total, EPS);
+        assertEquals(1.0, read().travel, EPS);
+    }
+
+    @Test
+    public void recomputeWithoutSummaryWritesNothing() {
+        FootprintSummary.recomputeTotal(store, "u1");
+        assertNull(read());
+    }
+
+    @Test
+    public void previousIsZeroUntilSubmitted() {
+        double[] previous = {-1};
+        FootprintSummary.loadPrevious(store, "u1", EmissionEngine.OTHERS, annual -> previous[0] = annual);
+        assertEquals(0, previous[0], 0);
+
+        submit(EmissionEngine.OTHERS, 0.75, 31, 0);
+        FootprintSummary.loadPrevious(store, "u1", EmissionEngine.OTHERS, annual -> previous[0] = annual);
+        assertEquals(0.75, previous[0], EPS);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link FootprintUncertainty}: reproducible bands, ordering and bounds of the percentiles,
+ * and the wider spread of guessed answers.
+ */
+public class FootprintUncertaintyTest {
+
+    private static final int SAMPLES = 8000;
+
+    private final EmissionEngine engine = EmissionEngine.getDefault();
+
+    private int[][] unanswered() {
+        int[][] answers = new int[EmissionEngine.CATEGORY_COUNT][];
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            answers[c] = new int[engine.questionCount(c)];
+            Arrays.fill(answers[c], EmissionEngine.UNANSWERED);
+        }
+        return answers;
+    }
+
+    private int[][] typical() {
+        return new int[][] {
+                {1, 2, 0, 1, 2, 1, 2},
+                {2, 3, 1, 1, 0, 1, 1},
+                {2, 1, 2, 1, 2, 1, 1},
+                {4, 2, 1, 1, 1, 0, 1}
+        };
+    }
+
+    @Test
+    public void sameSeedGivesTheSameBands() {
+        double[][] first = FootprintUncertainty.simulate(engine, typical(), SAMPLES, 42);
+        double[][] second = FootprintUncertainty.simulate(engine, typical(), SAMPLES, 42);
+        assertTrue(Arrays.deepEquals(first, second));
+    }
+
+    @Test
+    public void nothingAnsweredIsZero() {
+        double[][] bands = FootprintUncertainty.simulate(engine, unanswered(), SAMPLES, 1);
+        for (double[] band : bands) {
+            assertArrayEquals(new double[3], band, 0);
+        }
+    }
+
+    @Test
+    public void bandsAreOrderedAndBracketTheEstimate() {
+        int[][] answers = typical();
+        double[][] bands = FootprintUncertainty.simulate(engine, answers, SAMPLES, 7);
+        double total = 0;
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            double[] band = bands[c];
+            double estimate = EmissionEngine.toAnnualTons(engine.weeklyEmissions(c, answers[c]));
+            total += estimate;
+            assertTrue(band[FootprintUncertainty.P10] <= band[FootprintUncertainty.P50]);
+            assertTrue(band[FootprintUncertainty.P50] <= band[FootprintUncertainty.P90]);
+            assertTrue(band[FootprintUncertainty.P10] < estimate && estimate < band[FootprintUncertainty.P90]);
+        }
+        double[] totalBand = bands[FootprintUncertainty.TOTAL];
+        // Symmetric spreads, so the median stays close to the point estimate
+        assertEquals(total, totalBand[FootprintUncertainty.P50], total * 0.02);
+        assertTrue(totalBand[FootprintUncertainty.P10] < total && total < totalBand[FootprintUncertainty.P90]);
+    }
+
+    @Test
+    public void guessedAnswerSpansItsQuestion() {
+        int[][] sure = unanswered();
+        sure[EmissionEngine.HOME][EmissionEngine.HOME_RENEWABLE] = 1;   // No
+        int[][] guess = unanswered();
+        guess[EmissionEngine.HOME][EmissionEngine.HOME_RENEWABLE] = 2;  // Not sure
+        double[] sureBand = FootprintUncertainty.simulate(engine, sure, SAMPLES, 3)[EmissionEngine.HOME];
+        double[] guessBand = FootprintUncertainty.simulate(engine, guess, SAMPLES, 3)[EmissionEngine.HOME];
+        assertTrue(guessBand[FootprintUncertainty.P90] - guessBand[FootprintUncertainty.P10]
+                > sureBand[FootprintUncertainty.P90] - sureBand[FootprintUncertainty.P10]);
+        // Never below the cheapest option of the question
+        assertTrue(guessBand[FootprintUncertainty.P10] >= 0);
+    }
+}
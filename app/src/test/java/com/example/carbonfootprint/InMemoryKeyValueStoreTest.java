@@ -0,0 +1,194 @@
+package com.example.carbonfootprint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link InMemoryKeyValueStore}: tree reads and writes, multi-path updates, increments,
+ * transactions, server values and observers.
+ */
+public class InMemoryKeyValueStoreTest {
+
+    private final InMemoryKeyValueStore store = new InMemoryKeyValueStore();
+
+    // Records how a callback was completed
+    private static final class Result<T> implements KeyValueStore.Callback<T> {
+        T value;
+        Exception error;
+        boolean succeeded;
+
+        @Override
+        public void onSuccess(T result) {
+            value = result;
+            succeeded = true;
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            error = e;
+        }
+    }
+
+    private static Map<String, Object> map(Object... keysAndValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) map.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        return map;
+    }
+
+    @Test
+    public void setAndReadSubtrees() {
+        store.set("Users/u1", map("firstName", "Ada", "taliPoints", 3), null);
+        assertEquals("Ada", store.get("Users/u1/firstName"));
+        assertEquals(3L, store.get("/Users/u1/taliPoints/"));
+        assertEquals(map("firstName", "Ada", "taliPoints", 3L), store.get("Users/u1"));
+        assertEquals(map("u1", map("firstName", "Ada", "taliPoints", 3L)), store.get("Users"));
+        assertNull(store.get("Users/u2"));
+    }
+
+    @Test
+    public void setReplacesTheWholeSubtree() {
+        store.set("a", map("b", 1, "c", 2), null);
+        store.set("a", map("d", 3), null);
+        assertEquals(map("d", 3L), store.get("a"));
+
+        store.set("a/d/e", "deeper", null);     // a leaf becomes a parent
+        assertEquals(map("d", map("e", "deeper")), store.get("a"));
+
+        store.set("a", null, null);
+        assertNull(store.get("a"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void numbersReadBackLikeFirebase() {
+        store.set("n/int", 4, null);
+        store.set("n/whole", 4.0, null);
+        store.set("n/float", 0.5f, null);
+        assertEquals(4L, store.get("n/int"));
+        assertEquals(4L, store.get("n/whole"));
+        assertEquals(0.5, store.get("n/float"));
+    }
+
+    @Test
+    public void updateWritesEveryPath() {
+        store.set("keep", "me", null);
+        Result<Void> result = new Result<>();
+        store.update(map("x/a", 1, "x/b/c", "deep", "y", true), result);
+        assertTrue(result.succeeded);
+        assertEquals(map("a", 1L, "b", map("c", "deep")), store.get("x"));
+        assertEquals(true, store.get("y"));
+        assertEquals("me", store.get("keep"));
+    }
+
+    @Test
+    public void updateRejectsOverlappingPaths() {
+        store.set("a", "before", null);
+        // "a-b" sorts between "a" and "a/b", so a neighbour-only check would miss the clash
+        Result<Void> result = new Result<>();
+        store.update(map("a", 1, "a-b", 2, "a/b", 3), result);
+        assertFalse(result.succeeded);
+        assertTrue(result.error instanceof IllegalArgumentException);
+        assertEquals("before", store.get("a"));
+        assertNull(store.get("a-b"));
+
+        Result<Void> deep = new Result<>();
+        store.update(map("p/q/r", 1, "p", 2), deep);
+        assertFalse(deep.succeeded);
+
+        Result<Void> siblings = new Result<>();
+        store.update(map("a", 1, "a-b", 2, "ab/c", 3), siblings);
+        assertTrue(siblings.succeeded);
+    }
+
+    @Test
+    public void updateWithBadValueWritesNothing() {
+        Result<Void> result = new Result<>();
+        store.update(map("ok", 1, "bad", new Object()), result);
+        assertTrue(result.error instanceof IllegalArgumentException);
+        assertNull(store.get("ok"));
+    }
+
+    @Test
+    public void incrementAddsAndReplacesNonNumbers() {
+        store.increment("points", 5, null);
+        store.increment("points", 2, null);
+        assertEquals(7L, store.get("points"));
+        store.increment("points", 0.5, null);
+        assertEquals(7.5, store.get("points"));
+
+        store.set("text", "x", null);
+        store.increment("text", 3, null);
+        assertEquals(3L, store.get("text"));
+
+        store.set("parent/child", 1, null);
+        store.increment("parent", 1, null);
+        assertEquals(1L, store.get("parent"));
+        assertNull(store.get("parent/child"));
+    }
+
+    @Test
+    public void concurrentIncrementsOnParentAndChildStayConsistent() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String path = t % 2 == 0 ? "a" : "a/b";
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) store.increment(path, 1, null);
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+
+        // Either a is a number or it holds b, never both
+        Object a = store.get("a");
+        assertTrue(a instanceof Long || a instanceof Map);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void serverValuesResolveOnWrite() {
+        store.set("total", 10, null);
+        long before = System.currentTimeMillis();
+        store.update(map("total", KeyValueStore.serverIncrement(2.5),
+                "updatedAt", map(".sv", "timestamp")), null);
+        assertEquals(12.5, store.get("total"));
+        assertTrue((Long) store.get("updatedAt") >= before);
+
+        Result<Void> result = new Result<>();
+        store.set("odd", map(".sv", "unknown"), result);
+        assertTrue(result.error instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void transactionCommitsOrAborts() {
+        Result<Object> created = new Result<>();
+        store.transact("Users/u1/firstName", current -> current == null ? "Ada" : KeyValueStore.ABORT, created);
+        assertEquals("Ada", created.value);
+
+        Result<Object> again = new Result<>();
+        store.transact("Users/u1/firstName", current -> current == null ? "Bob" : KeyValueStore.ABORT, again);
+        assertFalse(again.succeeded);
+        assertTrue(again.error instanceof IllegalStateException);
+        assertEquals("Ada", store.get("Users/u1/firstName"));
+    }
+
+    @Test
+    public void observersSeeRelatedChangesUntilCancelled() {
+        List<Object> seen = new ArrayList<>();
+        KeyValueStore.Subscription subscription = store.observe("Users/u1", seen::add);
+        store.set("Users/u1/points", 1, null);
+        store.set("Users/u2/points", 1, null);     // unrelated
+        store.set("Users", null, null);            // contains the watched path
+        subscription.cancel();
+        store.set("Users/u1/points", 2, null);
+
+        assertEquals(3, seen.size());
+        assertNull(seen.get(0));
+        assertEquals(map("points", 1L), seen.get(1));
+        assertNull(seen.get(2));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.carbonfootprint;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH throughput benchmark for {@link InMemoryKeyValueStore} under the app's write patterns,
+ * from four threads over a population of users. Run like {@link CohortAnalyticsBenchmark}.
+ * {@code increment} should reach millions of operations per second; {@code award} is the
+ * {@link Rewards#awardUpdate} multi-path update an action screen queues.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(4)
+public class KeyValueStoreBenchmark {
+
+    @Param({"100000"})
+    public int users;
+
+    private InMemoryKeyValueStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new InMemoryKeyValueStore();
+        for (int u = 0; u < users; u++) {
+            Map<String, Object> user = new HashMap<>();
+            user.put("firstName", "user" + u);
+            user.put(Rewards.CO2_SAVED, 0.0);
+            user.put(Rewards.POINTS, 0L);
+            store.set(Rewards.USERS + "/user" + u, user, null);
+        }
+    }
+
+    private String randomUser() {
+        return Rewards.USERS + "/user" + ThreadLocalRandom.current().nextInt(users);
+    }
+
+    @Benchmark
+    public void increment() {
+        store.increment(randomUser() + "/" + Rewards.POINTS, 5, null);
+    }
+
+    @Benchmark
+    public void award() {
+        store.update(Rewards.awardUpdate("user" + ThreadLocalRandom.current().nextInt(users), 0.4, 5), null);
+    }
+
+    @Benchmark
+    public Object read() {
+        return store.get(randomUser());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KeyValueStoreBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link LiveScore}: the running total against a full rescore, engine swaps, clearing, the
+ * best single change and the label formatting.
+ */
+public class LiveScoreTest {
+
+    private static final double EPS = 1e-9;
+
+    private final EmissionEngine engine = EmissionEngine.getDefault();
+
+    private static LiveScore answered(EmissionEngine engine, int category, int[] answers) {
+        LiveScore score = new LiveScore(engine, category);
+        for (int q = 0; q < answers.length; q++) {
+            if (answers[q] >= 0) score.set(q, answers[q]);
+        }
+        return score;
+    }
+
+    @Test
+    public void runningTotalMatchesFullRescore() {
+        int category = EmissionEngine.HOME;
+        int[] answers = new int[engine.questionCount(category)];
+        Arrays.fill(answers, EmissionEngine.UNANSWERED);
+        LiveScore score = new LiveScore(engine, category);
+        assertEquals(0, score.weekly(), EPS);
+
+        int[][] changes = {{0, 1}, {2, 2}, {4, 3}, {0, 0}, {2, 1}, {6, 2}};
+        for (int[] change : changes) {
+            double before = score.weekly();
+            double delta = score.set(change[0], change[1]);
+            answers[change[0]] = change[1];
+            assertEquals(before + delta, score.weekly(), EPS);
+            assertEquals(engine.weeklyEmissions(category, answers), score.weekly(), EPS);
+            assertEquals(change[1], score.answer(change[0]));
+        }
+        assertEquals(EmissionEngine.toAnnualTons(score.weekly()), score.annualTons(), EPS);
+    }
+
+    @Test
+    public void setEngineRescoresCurrentAnswers() {
+        int category = EmissionEngine.HOME;
+        int[] answers = {1, 1, 2, 0, 3, 1, 2};
+        LiveScore score = answered(engine, category, answers);
+        EmissionEngine cleanGrid = engine.forGrid(0.05);
+        score.setEngine(cleanGrid);
+        assertEquals(cleanGrid.weeklyEmissions(category, answers), score.weekly(), EPS);
+        assertEquals(2, score.answer(2));
+    }
+
+    @Test
+    public void clearForgetsEveryAnswer() {
+        LiveScore score = answered(engine, EmissionEngine.FOOD, new int[] {1, 2, 0, 1, 2});
+        score.clear();
+        assertEquals(0, score.weekly(), EPS);
+        assertEquals(EmissionEngine.UNANSWERED, score.answer(0));
+        assertEquals(0, score.findBestChange(), EPS);
+        score.set(0, 1);
+        assertEquals(engine.factor(EmissionEngine.FOOD, 0, 1), score.weekly(), EPS);
+    }
+
+    @Test
+    public void bestChangeIsTheLargestSingleSaving() {
+        int category = EmissionEngine.TRAVEL;
+        int[] answers = new int[engine.questionCount(category)];
+        for (int q = 0; q < answers.length; q++) answers[q] = engine.optionCount(category, q) - 1;
+        LiveScore score = answered(engine, category, answers);
+
+        double expected = 0;
+        for (int q = 0; q < answers.length; q++) {
+            for (int o = 0; o < engine.optionCount(category, q); o++) {
+                expected = Math.max(expected, score.savingFor(q, o));
+            }
+        }
+        assertEquals(expected, score.findBestChange(), EPS);
+        if (expected > 0) {
+            assertEquals(expected, score.savingFor(score.bestQuestion(), score.bestOption()), EPS);
+        }
+    }
+
+    @Test
+    public void bestChangeSkipsFixedQuestions() {
+        int category = EmissionEngine.HOME;
+        LiveScore score = new LiveScore(engine, category);
+        // Only the household size is answered, and it is not something to change
+        score.set(EmissionEngine.HOME_HOUSEHOLD, 0);
+        assertEquals(0, score.findBestChange(), EPS);
+        assertEquals(-1, score.bestQuestion());
+        assertEquals(-1, score.bestOption());
+    }
+
+    @Test
+    public void describeReusesTheBuffer() {
+        LiveScore score = new LiveScore(engine, EmissionEngine.HOME);
+        StringBuilder out = new StringBuilder("stale text");
+        score.describe(out, 0);
+        assertEquals("Running total 0.00 t CO₂e/yr", out.toString());
+
+        double delta = score.set(EmissionEngine.HOME_HOUSEHOLD, 0);
+        score.describe(out, delta);
+        StringBuilder expected = new StringBuilder("Running total ");
+        LiveScore.appendTons(expected, score.annualTons());
+        expected.append(" t CO₂e/yr (+");
+        LiveScore.appendTons(expected, EmissionEngine.toAnnualTons(delta));
+        expected.append(')');
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void appendTonsRoundsToHundredths() {
+        StringBuilder out = new StringBuilder();
+        LiveScore.appendTons(out, 1.005);
+        out.append('|');
+        LiveScore.appendTons(out, 12.3);
+        out.append('|');
+        LiveScore.appendTons(out, -0.456);
+        out.append('|');
+        LiveScore.appendTons(out, 0.999);
+        assertEquals("1.00|12.30|-0.46|1.00", out.toString());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.carbonfootprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link MeterImporter} on generated exports: column detection, gas rows, decimal commas,
+ * scaling to a year and the errors for unusable files.
+ */
+public class MeterImporterTest {
+
+    private static final double KG_PER_KWH = 0.2;
+
+    private static MeterSummary parse(String csv) throws IOException {
+        return new MeterImporter(KG_PER_KWH).parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // One week of half-hourly readings starting 2024-01-01
+    private static String halfHourly(String header, String row) {
+        StringBuilder csv = new StringBuilder(header).append('\n');
+        for (int i = 0; i < 7 * 48; i++) {
+            int day = 1 + i / 48;
+            int minutes = (i % 48) * 30;
+            csv.append(String.format("2024-01-%02d %02d:%02d,", day, minutes / 60, minutes % 60))
+                    .append(row).append('\n');
+        }
+        return csv.toString();
+    }
+
+    @Test
+    public void weekOfReadingsScalesToAYear() throws IOException {
+        MeterSummary summary = parse(halfHourly("Start time,Consumption (kWh),Gas kWh", "0.5,1"));
+        assertEquals(336, summary.readings);
+        assertEquals(30, summary.intervalMinutes);
+        assertEquals(7, summary.coveredDays, 1e-9);
+        assertEquals(0.5 * 48 * 365, summary.electricityKwh, 1e-6);
+        assertEquals(48 * 365, summary.gasKwh, 1e-6);
+        assertEquals(MeterImporter.annualTons(summary.electricityKwh, summary.gasKwh, KG_PER_KWH),
+                summary.annualEmissions, 1e-12);
+    }
+
+    @Test
+    public void fuelColumnMarksGasRowsWithDecimalCommas() throws IOException {
+        StringBuilder csv = new StringBuilder("Date;Fuel;Value\r\n");
+        for (int day = 1; day <= 7; day++) {
+            for (int hour = 0; hour < 24; hour++) {
+                String stamp = String.format("%02d/01/2024 %02d:00", day, hour);
+                csv.append(stamp).append(";Electricity;0,25\r\n");
+                csv.append(stamp).append(";\"Gas\";1,5\r\n");
+            }
+        }
+        MeterSummary summary = parse(csv.toString());
+        assertEquals(60, summary.intervalMinutes);
+        assertEquals(0.25 * 24 * 365, summary.electricityKwh, 1e-6);
+        assertEquals(1.5 * 24 * 365, summary.gasKwh, 1e-6);
+    }
+
+    @Test
+    public void lastLineWithoutNewlineCounts() throws IOException {
+        String csv = halfHourly("time,kwh", "1");
+        MeterSummary withNewline = parse(csv);
+        MeterSummary without = parse(csv.substring(0, csv.length() - 1));
+        assertEquals(withNewline.readings, without.readings);
+        assertEquals(withNewline.electricityKwh, without.electricityKwh, 0);
+    }
+
+    @Test
+    public void parsesBothDateOrders() {
+        int[] fields = new int[5];
+        byte[] iso = "2024-03-01T10:15:00Z".getBytes(StandardCharsets.US_ASCII);
+        byte[] dayFirst = "01/03/2024 10:15".getBytes(StandardCharsets.US_ASCII);
+        long minute = MeterImporter.parseMinute(iso, iso.length, fields);
+        assertEquals(minute, MeterImporter.parseMinute(dayFirst, dayFirst.length, fields));
+        assertEquals(MeterImporter.daysFromCivil(2024, 3, 1) * 1440 + 10 * 60 + 15, minute);
+        byte[] text = "yesterday".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(Long.MIN_VALUE, MeterImporter.parseMinute(text, text.length, fields));
+    }
+
+    @Test
+    public void daysFromCivilMatchesTheEpoch() {
+        assertEquals(0, MeterImporter.daysFromCivil(1970, 1, 1));
+        assertEquals(11017, MeterImporter.daysFromCivil(2000, 3, 1));
+        assertEquals(19782, MeterImporter.daysFromCivil(2024, 2, 29));
+    }
+
+    @Test(expected = IOException.class)
+    public void kwhColumnIsRequired() throws IOException {
+        parse("time,note\n2024-01-01 00:00,x\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void lessThanAWeekIsRejected() throws IOException {
+        parse("time,kwh\n2024-01-01 00:00,1\n2024-01-01 00:30,1\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void unrecognisedTimestampIsRejected() throws IOException {
+        parse("time,kwh\nsoon,1\n");
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.carbonfootprint;
+
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link QuantileSketch} percentiles, blob round trips and shard merging.
+ */
+public class QuantileSketchTest {
+
+    // One user at each whole ton from 1 to 100 in the total column
+    private static QuantileSketch.Builder oneToHundred() {
+        QuantileSketch.Builder builder = new QuantileSketch.Builder();
+        for (int tons = 1; tons <= 100; tons++) builder.add(QuantileSketch.TOTAL, tons);
+        return builder;
+    }
+
+    @Test
+    public void emptyColumnHasNoPercentile() {
+        QuantileSketch sketch = oneToHundred().build(0);
+        assertEquals(0, sketch.count(EmissionEngine.FOOD));
+        assertEquals(-1, sketch.percentile(EmissionEngine.FOOD, 2.5), 0);
+    }
+
+    @Test
+    public void percentileFollowsTheDistribution() {
+        QuantileSketch sketch = oneToHundred().build(0);
+        assertEquals(100, sketch.count(QuantileSketch.TOTAL));
+        assertEquals(50, sketch.percentile(QuantileSketch.TOTAL, 50.5), 1);
+        assertEquals(10, sketch.percentile(QuantileSketch.TOTAL, 10.5), 1);
+        assertEquals(90, sketch.percentile(QuantileSketch.TOTAL, 90.5), 1);
+
+        double previous = -1;
+        for (double tons = 0.5; tons < 120; tons += 0.25) {
+            double percentile = sketch.percentile(QuantileSketch.TOTAL, tons);
+            assertTrue(percentile >= previous);
+            previous = percentile;
+        }
+    }
+
+    @Test
+    public void valuesOutsideTheRangeLandInUnderflowAndOverflow() {
+        QuantileSketch sketch = oneToHundred()
+                .add(QuantileSketch.TOTAL, 0)
+                .add(QuantileSketch.TOTAL, 1000)
+                .build(0);
+        assertEquals(102, sketch.count(QuantileSketch.TOTAL));
+        assertEquals(0, sketch.percentile(QuantileSketch.TOTAL, 0), 1e-9);
+        assertEquals(100.0 * 101.5 / 102, sketch.percentile(QuantileSketch.TOTAL, 5000), 1e-9);
+    }
+
+    @Test
+    public void blobRoundTrip() throws IOException {
+        QuantileSketch.Builder builder = oneToHundred().add(EmissionEngine.HOME, 3.2);
+        QuantileSketch direct = builder.build(1234);
+        QuantileSketch read = QuantileSketch.read(builder.toBytes(1234));
+        assertEquals(1234, read.getBuiltAt());
+        for (int c = 0; c < QuantileSketch.COLUMNS; c++) {
+            assertEquals(direct.count(c), read.count(c));
+        }
+        assertEquals(direct.percentile(QuantileSketch.TOTAL, 42), read.percentile(QuantileSketch.TOTAL, 42), 0);
+        assertEquals(direct.percentile(EmissionEngine.HOME, 4), read.percentile(EmissionEngine.HOME, 4), 0);
+    }
+
+    @Test
+    public void shardsMergeToTheWhole() throws IOException {
+        QuantileSketch.Builder low = new QuantileSketch.Builder();
+        QuantileSketch.Builder high = new QuantileSketch.Builder();
+        for (int tons = 1; tons <= 100; tons++) (tons <= 50 ? low : high).add(QuantileSketch.TOTAL, tons);
+
+        QuantileSketch whole = oneToHundred().build(0);
+        QuantileSketch merged = new QuantileSketch.Builder().merge(low).merge(high.toBytes(0)).build(0);
+        for (double tons = 1; tons <= 100; tons += 3.7) {
+            assertEquals(whole.percentile(QuantileSketch.TOTAL, tons), merged.percentile(QuantileSketch.TOTAL, tons), 0);
+        }
+    }
+
+    @Test
+    public void largeCountsSurviveVarints() throws IOException {
+        QuantileSketch.Builder builder = new QuantileSketch.Builder();
+        QuantileSketch.Builder one = new QuantileSketch.Builder().add(EmissionEngine.TRAVEL, 1.5);
+        for (int i = 0; i < 300; i++) builder.merge(one);
+        assertEquals(300, QuantileSketch.read(builder.toBytes(0)).count(EmissionEngine.TRAVEL));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherBlobs() throws IOException {
+        QuantileSketch.read(new byte[] {'C', 'F', 'F', 'C', 0, 1});
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.carbonfootprint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ReceiptImporter} header detection and size parsing.
+ */
+public class ReceiptImporterTest {
+
+    @Test
+    public void headerWordsPickTheRole() {
+        assertEquals(ReceiptImporter.PRODUCT, ReceiptImporter.columnRole("item"));
+        assertEquals(ReceiptImporter.PRODUCT, ReceiptImporter.columnRole("product name"));
+        assertEquals(ReceiptImporter.QUANTITY, ReceiptImporter.columnRole("item quantity"));
+        assertEquals(ReceiptImporter.QUANTITY, ReceiptImporter.columnRole("net weight (kg)"));
+        assertEquals(ReceiptImporter.PRICE, ReceiptImporter.columnRole("item price"));
+        assertEquals(ReceiptImporter.PRICE, ReceiptImporter.columnRole("total amount"));
+        assertEquals(ReceiptImporter.DATE, ReceiptImporter.columnRole("purchase_date"));
+    }
+
+    @Test
+    public void partsOfWordsDoNotCount() {
+        assertEquals(ReceiptImporter.NONE, ReceiptImporter.columnRole("items_count"));
+        assertEquals(ReceiptImporter.NONE, ReceiptImporter.columnRole("costume"));
+        assertEquals(ReceiptImporter.NONE, ReceiptImporter.columnRole("lifetime"));
+        assertEquals(ReceiptImporter.NONE, ReceiptImporter.columnRole("username"));
+    }
+
+    @Test
+    public void sizeWithUnit() {
+        assertEquals(0.5, ReceiptImporter.sizeKg("500g"), 1e-9);
+        assertEquals(1.5, ReceiptImporter.sizeKg("1,5 kg"), 1e-9);
+        assertEquals(2, ReceiptImporter.sizeKg("Milk 2L"), 1e-9);
+        assertEquals(0, ReceiptImporter.sizeKg("Pack of 6"), 1e-9);
+        assertEquals(0, ReceiptImporter.sizeKg("B12 vitamins"), 1e-9);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.carbonfootprint;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ReductionPlanner} effort table and plan search, checked against enumerating every
+ * plan on a small answer set.
+ */
+public class ReductionPlannerTest {
+
+    @Test
+    public void effortCoversEveryQuestion() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        assertEquals(EmissionEngine.CATEGORY_COUNT, ReductionPlanner.EFFORT.length);
+        for (int c = 0; c < EmissionEngine.CATEGORY_COUNT; c++) {
+            assertEquals(EmissionEngine.CATEGORY_NAMES[c], engine.questionCount(c), ReductionPlanner.EFFORT[c].length);
+        }
+    }
+
+    @Test
+    public void laundryTimeWithNonZeroFactorsIsPlanned() {
+        // A catalog that gives laundry time its own factors, as a downloaded one may
+        double[][][] factors = new double[EmissionEngine.CATEGORY_COUNT][][];
+        for (int c = 0; c < factors.length; c++) factors[c] = EmissionEngine.DEFAULT_FACTORS[c].clone();
+        factors[EmissionEngine.HOME][EmissionEngine.HOME_LAUNDRY_TIME] = new double[] {0, 10, 20, 30};
+        EmissionEngine engine = new EmissionEngine(3, factors);
+
+        int[][] answers = new int[EmissionEngine.CATEGORY_COUNT][];
+        for (int c = 0; c < answers.length; c++) {
+            answers[c] = new int[engine.questionCount(c)];
+            Arrays.fill(answers[c], EmissionEngine.UNANSWERED);
+        }
+        answers[EmissionEngine.HOME][EmissionEngine.HOME_LAUNDRY_TIME] = 3;
+
+        ReductionPlanner.Plan plan = new ReductionPlanner(engine, answers).plan(EmissionEngine.toAnnualTons(10));
+        assertNotNull(plan);
+        assertEquals(1, plan.size());
+        assertEquals(EmissionEngine.HOME_LAUNDRY_TIME, plan.questions[0]);
+        assertEquals(2, plan.options[0]);
+    }
+
+    private static int[][] unanswered(EmissionEngine engine) {
+        int[][] answers = new int[EmissionEngine.CATEGORY_COUNT][];
+        for (int c = 0; c < answers.length; c++) {
+            answers[c] = new int[engine.questionCount(c)];
+            Arrays.fill(answers[c], EmissionEngine.UNANSWERED);
+        }
+        return answers;
+    }
+
+    // A few high answers across categories, small enough to enumerate every plan
+    private static int[][] sample(EmissionEngine engine) {
+        int[][] answers = unanswered(engine);
+        answers[EmissionEngine.HOME][EmissionEngine.HOME_HOUSEHOLD] = 0;
+        answers[EmissionEngine.HOME][EmissionEngine.HOME_RENEWABLE] = 1;
+        answers[EmissionEngine.TRAVEL][EmissionEngine.TRAVEL_TRANSPORT] = 4;
+        answers[EmissionEngine.FOOD][EmissionEngine.FOOD_MEAT] = 3;
+        answers[EmissionEngine.FOOD][EmissionEngine.FOOD_VEGETARIAN_DAYS] = 0;
+        answers[EmissionEngine.OTHERS][EmissionEngine.OTHERS_SHOPPING] = 3;
+        return answers;
+    }
+
+    // Least effort over every combination of at most one change per answered question
+    private static double bruteForceEffort(EmissionEngine engine, int[][] answers, double target) {
+        int n = 0;
+        int[][] slots = new int[EmissionEngine.MAX_QUESTIONS * EmissionEngine.CATEGORY_COUNT][];
+        for (int c = 0; c < answers.length; c++) {
+            for (int q = 0; q < answers[c].length; q++) {
+                if (answers[c][q] >= 0 && SurveyLabels.isChangeable(c, q)) slots[n++] = new int[] {c, q};
+            }
+        }
+        int[] pick = new int[n];
+        double best = Double.MAX_VALUE;
+        while (true) {
+            double saving = 0;
+            double effort = 0;
+            for (int i = 0; i < n; i++) {
+                int c = slots[i][0], q = slots[i][1], current = answers[c][q];
+                int option = pick[i] - 1;   // 0 keeps the answer
+                if (option < 0) continue;
+                saving += EmissionEngine.toAnnualTons(engine.factor(c, q, current) - engine.factor(c, q, option));
+                effort += ReductionPlanner.EFFORT[c][q] * Math.abs(option - current);
+            }
+            if (saving >= target - 1e-9) best = Math.min(best, effort);
+            int i = 0;
+            while (i < n && ++pick[i] > engine.optionCount(slots[i][0], slots[i][1])) pick[i++] = 0;
+            if (i == n) return best;
+        }
+    }
+
+    @Test
+    public void planIsTheLeastEffortOverAllCombinations() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        int[][] answers = sample(engine);
+        ReductionPlanner planner = new ReductionPlanner(engine, answers);
+        for (double fraction : new double[] {0.05, 0.2, 0.5, 0.9, 1.0}) {
+            double target = planner.maxSaving() * fraction;
+            ReductionPlanner.Plan plan = planner.plan(target);
+            assertNotNull(plan);
+            assertTrue(plan.annualSaving >= target - 1e-9);
+            assertEquals(bruteForceEffort(engine, answers, target), plan.effort, 1e-9);
+        }
+    }
+
+    @Test
+    public void planReportsItsOwnSavingAndEffort() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        int[][] answers = sample(engine);
+        ReductionPlanner planner = new ReductionPlanner(engine, answers);
+        ReductionPlanner.Plan plan = planner.plan(planner.maxSaving() * 0.6);
+        assertNotNull(plan);
+        double saving = 0;
+        double effort = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            int c = plan.categories[i], q = plan.questions[i], current = answers[c][q];
+            assertNotEquals(current, plan.options[i]);
+            saving += EmissionEngine.toAnnualTons(engine.factor(c, q, current) - engine.factor(c, q, plan.options[i]));
+            effort += ReductionPlanner.EFFORT[c][q] * Math.abs(plan.options[i] - current);
+        }
+        assertEquals(plan.annualSaving, saving, 1e-9);
+        assertEquals(plan.effort, effort, 1e-9);
+    }
+
+    @Test
+    public void smallTargetPrefersTheSmallerStep() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        int[][] answers = unanswered(engine);
+        answers[EmissionEngine.FOOD][EmissionEngine.FOOD_VEGETARIAN_DAYS] = 0;
+        // Less than the first step saves, so one more vegetarian day is enough
+        double oneStep = EmissionEngine.toAnnualTons(2.5 - 1.8);
+        ReductionPlanner.Plan plan = new ReductionPlanner(engine, answers).plan(oneStep / 2);
+        assertNotNull(plan);
+        assertEquals(1, plan.size());
+        assertEquals(1, plan.options[0]);
+    }
+
+    @Test
+    public void fixedQuestionsAreNeverPlanned() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        int[][] answers = unanswered(engine);
+        answers[EmissionEngine.HOME][EmissionEngine.HOME_HOUSEHOLD] = 0;
+        answers[EmissionEngine.HOME][EmissionEngine.HOME_BEDROOMS] = 3;
+        ReductionPlanner planner = new ReductionPlanner(engine, answers);
+        assertEquals(0, planner.maxSaving(), 0);
+        assertNull(planner.plan(0.1));
+    }
+
+    @Test
+    public void unreachableOrEmptyTargetHasNoPlan() {
+        EmissionEngine engine = EmissionEngine.getDefault();
+        ReductionPlanner planner = new ReductionPlanner(engine, sample(engine));
+        assertNull(planner.plan(planner.maxSaving() * 1.01));
+        assertNull(planner.plan(0));
+        assertNull(planner.plan(-1));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.carbonfootprint;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.ValueEventListener;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link SingleFlight} on a manual clock, with network reads held until a test answers them:
+ * joining reads in flight, reuse within the TTL, invalidation and the counters.
+ */
+public class SingleFlightTest {
+
+    private static final class Waiter implements ValueEventListener {
+        int values;
+        int errors;
+
+        @Override
+        public void onDataChange(DataSnapshot snapshot) {
+            values++;
+        }
+
+        @Override
+        public void onCancelled(DatabaseError error) {
+            errors++;
+        }
+    }
+
+    private long now = 1000;
+    private final SingleFlight flights = new SingleFlight(() -> now);
+    // Network reads started so far, answered by the test
+    private final List<ValueEventListener> started = new ArrayList<>();
+
+    private Waiter read(String path) {
+        Waiter waiter = new Waiter();
+        flights.read(path, waiter, started::add);
+        return waiter;
+    }
+
+    private void answer(int read) {
+        started.get(read).onDataChange(null);
+    }
+
+    @Test
+    public void concurrentReadsJoinOneFlight() {
+        Waiter first = read("summary/u1");
+        Waiter second = read("summary/u1");
+        Waiter other = read("summary/u2");
+        assertEquals(2, started.size());
+        assertEquals(0, first.values);
+
+        answer(0);
+        assertEquals(1, first.values);
+        assertEquals(1, second.values);
+        assertEquals(0, other.values);
+        assertEquals(3, flights.requestCount());
+        assertEquals(2, flights.networkReadCount());
+        assertEquals(1, flights.deduplicatedCount());
+    }
+
+    @Test
+    public void resultIsReusedUntilTheTtlRunsOut() {
+        read("summary/u1");
+        answer(0);
+
+        now += SingleFlight.DEFAULT_TTL_MILLIS;
+        Waiter reused = read("summary/u1");
+        assertEquals(1, reused.values);
+        assertEquals(1, started.size());
+
+        now += 1;
+        Waiter expired = read("summary/u1");
+        assertEquals(0, expired.values);
+        assertEquals(2, started.size());
+        assertEquals(1, flights.deduplicatedCount());
+    }
+
+    @Test
+    public void invalidateForgetsThePathItsAncestorsAndDescendants() {
+        String[] paths = {"summary/u1", "summary/u2", "surveys/home/u1", "surveys/homes"};
+        for (int i = 0; i < paths.length; i++) {
+            read(paths[i]);
+            answer(i);
+        }
+
+        flights.invalidate("summary/u1/home");
+        flights.invalidate("/surveys/home/");
+        read("summary/u1");
+        read("summary/u2");
+        read("surveys/home/u1");
+        read("surveys/homes");
+        assertEquals(paths.length + 2, started.size());
+
+        flights.invalidate("");
+        read("summary/u2");
+        assertEquals(paths.length + 3, started.size());
+    }
+
+    @Test
+    public void invalidatedFlightIsNeitherJoinedNorKept() {
+        Waiter before = read("summary/u1");
+        flights.invalidate("summary");
+        Waiter after = read("summary/u1");
+        assertEquals(2, started.size());
+
+        // The stale read still answers its own waiter, but leaves the newer read in place
+        answer(0);
+        assertEquals(1, before.values);
+        assertEquals(0, after.values);
+        Waiter joined = read("summary/u1");
+        assertEquals(2, started.size());
+
+        answer(1);
+        assertEquals(1, after.values);
+        assertEquals(1, joined.values);
+        assertEquals(1, read("summary/u1").values);
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void staleResultIsNotKept() {
+        read("summary/u1");
+        flights.invalidate("summary/u1");
+        answer(0);
+        read("summary/u1");
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void errorsAreSharedButNotReused() {
+        Waiter first = read("summary/u1");
+        Waiter second = read("summary/u1");
+        started.get(0).onCancelled(null);
+        assertEquals(1, first.errors);
+        assertEquals(1, second.errors);
+        assertEquals(0, first.values);
+
+        Waiter retry = read("summary/u1");
+        assertEquals(2, started.size());
+        assertEquals(0, retry.errors);
+    }
+
+    @Test
+    public void zeroTtlStillSharesReadsInFlight() {
+        read("summary/u1");
+        answer(0);
+        flights.setTtlMillis(0);
+        read("summary/u1");
+        assertEquals(2, started.size());
+
+        read("summary/u1");
+        assertEquals(2, started.size());
+        answer(1);
+        read("summary/u1");
+        assertEquals(3, started.size());
+        assertEquals(3, flights.networkReadCount());
+        assertEquals(1, flights.deduplicatedCount());
+    }
+}
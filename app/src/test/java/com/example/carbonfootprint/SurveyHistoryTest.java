@@ -0,0 +1,65 @@
+package com.example.carbonfootprint;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link SurveyHistory} rollup keys: local-time periods, their order as database keys and the
+ * paths a rescore writes.
+ */
+public class SurveyHistoryTest {
+
+    private static long localMillis(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void keysNameTheLocalPeriod() {
+        long march = localMillis(2024, 3, 15, 12, 0);
+        assertEquals("2024-03", SurveyHistory.monthKey(march));
+        assertEquals("2024", SurveyHistory.yearKey(march));
+        assertEquals("0987-11", SurveyHistory.monthKey(localMillis(987, 11, 2, 0, 0)));
+    }
+
+    @Test
+    public void keysChangeAtLocalMidnight() {
+        long newYear = localMillis(2025, 1, 1, 0, 0);
+        assertEquals("2024-12", SurveyHistory.monthKey(newYear - 1));
+        assertEquals("2024", SurveyHistory.yearKey(newYear - 1));
+        assertEquals("2025-01", SurveyHistory.monthKey(newYear));
+        assertEquals("2025", SurveyHistory.yearKey(newYear));
+    }
+
+    @Test
+    public void monthKeysSortInTimeOrder() {
+        // loadMonth relies on key order for its orderByKey range
+        String previous = null;
+        for (int year = 2023; year <= 2025; year++) {
+            for (int month = 1; month <= 12; month++) {
+                String key = SurveyHistory.monthKey(localMillis(year, month, 1, 0, 0));
+                if (previous != null) assertTrue(previous + " < " + key, previous.compareTo(key) < 0);
+                previous = key;
+            }
+        }
+    }
+
+    @Test
+    public void rescoreMovesLatestOfBothRollups() {
+        long timestamp = localMillis(2024, 7, 9, 8, 30);
+        Map<String, Object> update = new HashMap<>();
+        SurveyHistory.putRescored(update, "u1", EmissionEngine.FOOD, timestamp, 1.25);
+
+        assertEquals(4, update.size());
+        assertEquals(1.25, update.get("history/u1/monthly/2024-07/food/latest"));
+        assertEquals(timestamp, update.get("history/u1/monthly/2024-07/food/latestAt"));
+        assertEquals(1.25, update.get("history/u1/yearly/2024/food/latest"));
+        assertEquals(timestamp, update.get("history/u1/yearly/2024/food/latestAt"));
+    }
+}
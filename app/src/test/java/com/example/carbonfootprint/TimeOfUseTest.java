@@ -0,0 +1,82 @@
+package com.example.carbonfootprint;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link TimeOfUse} against the bundled {@code grid_hourly.txt}; unit tests run from the
+ * module directory, so the asset is read from its source path.
+ */
+public class TimeOfUseTest {
+
+    private static final String ASSET = "src/main/assets/grid_hourly.txt";
+
+    private static TimeOfUse bundled() throws IOException {
+        try (Reader in = new InputStreamReader(new FileInputStream(ASSET), StandardCharsets.UTF_8)) {
+            return TimeOfUse.read(in);
+        }
+    }
+
+    @Test
+    public void assetFlatProfileIsFlatConstant() throws IOException {
+        TimeOfUse profiles = bundled();
+        // Listed under "@profile flat" in the asset
+        assertEquals(TimeOfUse.FLAT, profiles.profileOf("FR"));
+        assertEquals(TimeOfUse.FLAT, profiles.profileOf("CA-QC"));
+        assertEquals(TimeOfUse.FLAT_NAME, profiles.profileName(TimeOfUse.FLAT));
+        // Not listed at all
+        assertEquals(TimeOfUse.FLAT, profiles.profileOf("XX"));
+    }
+
+    @Test
+    public void shapedRegionsResolveByName() throws IOException {
+        TimeOfUse profiles = bundled();
+        assertEquals("solar", profiles.profileName(profiles.profileOf("US-CA")));
+        assertEquals("wind", profiles.profileName(profiles.profileOf("gb")));
+        // Subdivision without its own profile falls back to its country
+        assertEquals("wind", profiles.profileName(profiles.profileOf("DE-BY")));
+    }
+
+    @Test
+    public void flatProfileScalesToOne() throws IOException {
+        TimeOfUse profiles = bundled();
+        int fr = profiles.profileOf("FR");
+        assertEquals(1.0, profiles.windowScale(fr, 22, 8), 1e-9);
+        assertEquals(1.0, profiles.hourScale(fr, 160, 20), 1e-9);
+        assertEquals(1.0, profiles.laundryScale("FR", 2), 1e-9);
+    }
+
+    @Test
+    public void solarMiddayIsCleanerThanEvening() throws IOException {
+        TimeOfUse profiles = bundled();
+        int solar = profiles.profileOf("ES");
+        assertTrue(profiles.windowScale(solar, 10, 4) < 1);
+        assertTrue(profiles.windowScale(solar, 17, 4) > 1);
+        assertEquals(11, profiles.cleanestStart(solar, 0, 2, TimeOfUse.HOURS_PER_DAY));
+    }
+
+    @Test(expected = IOException.class)
+    public void flatProfileMustBeConstant() throws IOException {
+        TimeOfUse.read(new StringReader("@profile flat FR\n"
+                + "1 1 1 1 1 1 1 1 1 1 1 1 2 1 1 1 1 1 1 1 1 1 1 1\n"));
+    }
+
+    @Test
+    public void profilesAfterFlatKeepTheirShape() throws IOException {
+        TimeOfUse profiles = TimeOfUse.read(new StringReader("@profile flat FR\n"
+                + "1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1\n"
+                + "@profile peak GB\n"
+                + "1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 1 3 1 1 1 1 1\n"));
+        int gb = profiles.profileOf("GB");
+        assertNotEquals(TimeOfUse.FLAT, gb);
+        assertEquals("peak", profiles.profileName(gb));
+        assertEquals(3 * 24 / 26.0, profiles.windowScale(gb, 18, 1), 1e-9);
+    }
+}
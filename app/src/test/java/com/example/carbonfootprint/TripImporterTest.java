@@ -0,0 +1,69 @@
+package com.example.carbonfootprint;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link TripImporter} on small CSV logs: named modes, the speed rule and date parsing.
+ */
+public class TripImporterTest {
+
+    private static TripSummary parse(String csv) throws IOException {
+        return new TripImporter().parse(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void modeMatchesWholeWords() {
+        assertEquals(TripImporter.WALK, TripImporter.modeOf("Walking"));
+        assertEquals(TripImporter.CYCLE, TripImporter.modeOf("e-bike"));
+        assertEquals(TripImporter.PUBLIC_TRANSPORT, TripImporter.modeOf("IN_BUS"));
+        assertEquals(TripImporter.PUBLIC_TRANSPORT, TripImporter.modeOf("public transport"));
+        assertEquals(TripImporter.CAR, TripImporter.modeOf("IN_PASSENGER_VEHICLE"));
+        assertEquals(TripImporter.FLIGHT, TripImporter.modeOf("Air travel"));
+    }
+
+    @Test
+    public void partsOfWordsDoNotCount() {
+        assertEquals(-1, TripImporter.modeOf("wheelchair"));
+        assertEquals(-1, TripImporter.modeOf("brunch"));
+        assertEquals(-1, TripImporter.modeOf("scarf"));
+        assertEquals(-1, TripImporter.modeOf("   "));
+    }
+
+    @Test
+    public void namedModeWinsOverSpeed() throws IOException {
+        TripSummary summary = parse("date,distance (km),mode,duration (min)\n"
+                + "2024-03-01,10,train,5\n"
+                + "2024-03-02,2,,30\n"
+                + "2024-03-03,4,shared airport shuttle,\n");
+        assertEquals(3, summary.trips);
+        assertEquals(10, summary.publicTransportKm, 1e-9);
+        assertEquals(2, summary.walkKm, 1e-9);
+        // Neither named nor timed: counted as car
+        assertEquals(4, summary.carKm, 1e-9);
+        assertEquals(0, summary.flightKm, 1e-9);
+    }
+
+    @Test
+    public void milesAreConverted() throws IOException {
+        TripSummary summary = parse("miles;mode\n10;car\n");
+        assertEquals(16.09344, summary.carKm, 1e-9);
+        assertEquals(7, summary.coveredDays, 0);
+    }
+
+    @Test
+    public void parsesBothDateOrders() {
+        assertEquals(TripImporter.parseSecond("2024-03-01T10:00:00Z"), TripImporter.parseSecond("01/03/2024 10:00"));
+        assertEquals(86400, TripImporter.parseSecond("1970-01-02 00:00:00"));
+        assertEquals(Long.MIN_VALUE, TripImporter.parseSecond("yesterday"));
+    }
+
+    @Test(expected = IOException.class)
+    public void distanceColumnIsRequired() throws IOException {
+        parse("date,mode\n2024-03-01,car\n");
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.carbonfootprint;
+
+import com.google.gson.JsonParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link WriteQueue} without a device: coalescing entries into batches, the entries an applied
+ * mark covers and the log line round trip.
+ */
+public class WriteQueueTest {
+
+    private static WriteQueue.Entry entry(long seq, Object... pathsAndValues) {
+        WriteQueue.Entry entry = new WriteQueue.Entry();
+        entry.seq = seq;
+        entry.update = new HashMap<>();
+        for (int i = 0; i < pathsAndValues.length; i += 2) {
+            entry.update.put((String) pathsAndValues[i], pathsAndValues[i + 1]);
+        }
+        return entry;
+    }
+
+    // Same shape as ServerValue.increment
+    private static Map<String, Object> increment(Number delta) {
+        Map<String, Object> increment = new HashMap<>();
+        increment.put("increment", delta);
+        Map<String, Object> serverValue = new HashMap<>();
+        serverValue.put(".sv", increment);
+        return serverValue;
+    }
+
+    private static WriteQueue.Batch coalesce(WriteQueue.Entry... entries) {
+        return WriteQueue.coalesce(Arrays.asList(entries), entries.length);
+    }
+
+    @Test
+    public void laterWriteReplacesEarlier() {
+        WriteQueue.Batch batch = coalesce(
+                entry(3, "summary/u1/home", 1.5, "summary/u1/updatedAt", 10L),
+                entry(4, "summary/u1/home", 2.5),
+                entry(5, "surveys/home/u1/answers", 123L));
+        assertEquals(3, batch.entries);
+        assertEquals(5, batch.lastSeq);
+        assertEquals(2.5, batch.update.get("summary/u1/home"));
+        assertEquals(10L, batch.update.get("summary/u1/updatedAt"));
+        assertEquals(123L, batch.update.get("surveys/home/u1/answers"));
+        assertEquals(3, batch.update.size());
+    }
+
+    @Test
+    public void incrementsAddUp() {
+        WriteQueue.Batch batch = coalesce(
+                entry(0, "rewards/u1/points", increment(5L), "rewards/u1/co2", increment(0.5)),
+                entry(1, "rewards/u1/points", increment(10L), "rewards/u1/co2", increment(1L)),
+                entry(2, "rewards/u1/streak", 3L),
+                entry(3, "rewards/u1/streak", increment(1L)));
+        assertEquals(4, batch.entries);
+        assertEquals(increment(15L), batch.update.get("rewards/u1/points"));
+        assertEquals(increment(1.5), batch.update.get("rewards/u1/co2"));
+        // An increment on a plain number folds into the number
+        assertEquals(4L, batch.update.get("rewards/u1/streak"));
+    }
+
+    @Test
+    public void incrementAfterOtherWriteStartsNextBatch() {
+        WriteQueue.Batch batch = coalesce(
+                entry(0, "rewards/u1/points", null),
+                entry(1, "rewards/u1/points", increment(5L)));
+        assertEquals(1, batch.entries);
+        assertEquals(0, batch.lastSeq);
+        assertTrue(batch.update.containsKey("rewards/u1/points"));
+        assertNull(batch.update.get("rewards/u1/points"));
+
+        // A plain write after an increment simply replaces it
+        batch = coalesce(
+                entry(0, "rewards/u1/points", increment(5L)),
+                entry(1, "rewards/u1/points", 0L));
+        assertEquals(2, batch.entries);
+        assertEquals(0L, batch.update.get("rewards/u1/points"));
+    }
+
+    @Test
+    public void ancestorOrDescendantStartsNextBatch() {
+        Map<String, Object> flights = new HashMap<>();
+        flights.put("count", 2L);
+        assertEquals(1, coalesce(
+                entry(0, "flights/u1/count", 1L),
+                entry(1, "flights/u1", flights)).entries);
+        assertEquals(1, coalesce(
+                entry(0, "flights/u1", flights),
+                entry(1, "flights/u1/legs/0/from", "LHR")).entries);
+
+        // A sibling that only shares a prefix is not inside the path
+        WriteQueue.Batch batch = coalesce(
+                entry(0, "surveys/home/u1", 1L),
+                entry(1, "surveys/home/u10", 2L),
+                entry(2, "surveys/home/u1-b", 3L));
+        assertEquals(3, batch.entries);
+    }
+
+    @Test
+    public void limitCapsTheBatch() {
+        List<WriteQueue.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 5; i++) entries.add(entry(i, "actions/u1/a" + i, (long) i));
+        WriteQueue.Batch one = WriteQueue.coalesce(entries, 1);
+        assertEquals(1, one.entries);
+        assertEquals(0, one.lastSeq);
+        assertEquals(1, one.update.size());
+        WriteQueue.Batch all = WriteQueue.coalesce(entries, entries.size());
+        assertEquals(5, all.entries);
+        assertEquals(4, all.lastSeq);
+        assertEquals(0, WriteQueue.coalesce(new ArrayList<>(), 10).entries);
+    }
+
+    @Test
+    public void markCoversEntriesUpToIt() {
+        List<WriteQueue.Entry> entries = Arrays.asList(
+                entry(5, "a", 1L), entry(6, "b", 1L), entry(7, "c", 1L));
+        assertEquals(0, WriteQueue.covered(entries, 4));
+        assertEquals(1, WriteQueue.covered(entries, 5));
+        assertEquals(2, WriteQueue.covered(entries, 6));
+        assertEquals(3, WriteQueue.covered(entries, 100));
+        assertEquals(0, WriteQueue.covered(new ArrayList<>(), 100));
+    }
+
+    @Test
+    public void logLineRoundTripKeepsTypes() {
+        WriteQueue.Entry written = entry(42,
+                "surveys/food/u1/answers", 1234567890123L,
+                "surveys/food/u1/annualEmissions", 1.75,
+                "surveys/food/u1/legacy", null,
+                "rewards/u1/points", increment(10L));
+        written.recomputeTotalFor = "u1";
+        String line = WriteQueue.encode(written);
+        assertTrue(line.endsWith("\n"));
+        assertEquals(line.length() - 1, line.indexOf('\n'));
+
+        WriteQueue.Entry read = WriteQueue.decode(line.trim());
+        assertEquals(42, read.seq);
+        assertEquals("u1", read.recomputeTotalFor);
+        assertNull(read.createProfileFor);
+        assertEquals(1234567890123L, read.update.get("surveys/food/u1/answers"));
+        assertEquals(1.75, read.update.get("surveys/food/u1/annualEmissions"));
+        assertTrue(read.update.containsKey("surveys/food/u1/legacy"));
+        assertNull(read.update.get("surveys/food/u1/legacy"));
+        assertEquals(increment(10L), read.update.get("rewards/u1/points"));
+
+        // Replayed increments still fold after the round trip
+        WriteQueue.Batch batch = coalesce(read, entry(43, "rewards/u1/points", increment(5L)));
+        assertEquals(increment(15L), batch.update.get("rewards/u1/points"));
+    }
+
+    @Test
+    public void unusableLinesAreRejected() {
+        assertNull(WriteQueue.decode("{\"seq\":3}"));
+        try {
+            WriteQueue.decode("{\"seq\":3,\"update\":{\"a\":");
+            fail("torn line parsed");
+        } catch (JsonParseException expected) {
+            // load() skips it
+        }
+    }
+}